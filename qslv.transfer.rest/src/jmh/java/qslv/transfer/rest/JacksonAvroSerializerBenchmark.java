@@ -0,0 +1,71 @@
+package qslv.transfer.rest;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.databind.JavaType;
+
+import qslv.common.kafka.JacksonAvroSerializer;
+import qslv.common.kafka.TraceableMessage;
+import qslv.transfer.request.TransferFulfillmentMessage;
+
+/**
+ * Encoding of the fulfillment message as configured by KafkaProducerConfig.
+ * The serializer is configured from kafka-local.properties with an in-process schema registry (mock://),
+ * so no registry round trip is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JacksonAvroSerializerBenchmark {
+	static final String TOPIC = "online.transfer.requests";
+
+	JacksonAvroSerializer<TraceableMessage<TransferFulfillmentMessage>> serializer = new JacksonAvroSerializer<>();
+	TraceableMessage<TransferFulfillmentMessage> message = new TraceableMessage<>();
+
+	@Setup
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public void setup() throws Exception {
+		Properties properties = new Properties();
+		properties.load(Thread.currentThread().getContextClassLoader().getResourceAsStream("kafka-local.properties"));
+		Map<String, Object> kafkaprops = new HashMap(properties);
+		kafkaprops.put("schema.registry.url", "mock://benchmark");
+		JavaType type = serializer.getTypeFactory().constructParametricType(TraceableMessage.class, TransferFulfillmentMessage.class);
+		serializer.configure(kafkaprops, false, type);
+
+		TransferFulfillmentMessage tfr = new TransferFulfillmentMessage();
+		tfr.setRequestUuid(UUID.randomUUID());
+		tfr.setReservationUuid(tfr.getRequestUuid());
+		tfr.setFromAccountNumber("DDDD3456HKWER7890");
+		tfr.setToAccountNumber("YYYY3456HKWER7890");
+		tfr.setTransactionAmount(27384L);
+		tfr.setTransactionMetaDataJson("{\"memo\": \"payroll\"}");
+		tfr.setVersion(TransferFulfillmentMessage.version1_0);
+		message.setBusinessTaxonomyId("7483495");
+		message.setCorrelationId("273849273498273498");
+		message.setProducerAit("12345");
+		message.setPayload(tfr);
+	}
+
+	@Benchmark
+	public byte[] serialize() {
+		return serializer.serialize(TOPIC, message);
+	}
+}
@@ -0,0 +1,93 @@
+package qslv.transfer.rest;
+
+import java.sql.Timestamp;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import qslv.common.TimedResponse;
+import qslv.transaction.resource.TransactionResource;
+import qslv.transfer.request.TransferFulfillmentMessage;
+import qslv.transfer.request.TransferFundsRequest;
+import qslv.transfer.response.TransferFundsResponse;
+
+/**
+ * JSON binding of the POST /TransferFunds request body and response.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JacksonBenchmark {
+	ObjectMapper mapper = new ObjectMapper();
+	ObjectReader requestReader = mapper.readerFor(TransferFundsRequest.class);
+	ObjectWriter requestWriter = mapper.writerFor(TransferFundsRequest.class);
+	ObjectWriter responseWriter = mapper.writer();
+	TransferFundsRequest request = new TransferFundsRequest();
+	TimedResponse<TransferFundsResponse> response;
+	byte[] requestJson;
+
+	@Setup
+	public void setup() throws Exception {
+		request.setRequestUuid(UUID.randomUUID());
+		request.setFromAccountNumber("DDDD3456HKWER7890");
+		request.setToAccountNumber("YYYY3456HKWER7890");
+		request.setTransactionAmount(27384L);
+		request.setTransactionJsonMetaData("{\"memo\": \"payroll\"}");
+		requestJson = requestWriter.writeValueAsBytes(request);
+
+		TransactionResource reservation = new TransactionResource();
+		reservation.setTransactionUuid(UUID.randomUUID());
+		reservation.setRequestUuid(request.getRequestUuid());
+		reservation.setAccountNumber(request.getFromAccountNumber());
+		reservation.setInsertTimestamp(new Timestamp(System.currentTimeMillis()));
+		reservation.setRunningBalanceAmount(99999L);
+		reservation.setTransactionAmount(0L - request.getTransactionAmount());
+		reservation.setTransactionMetaDataJson(request.getTransactionJsonMetaData());
+		reservation.setTransactionTypeCode(TransactionResource.RESERVATION);
+		TransferFulfillmentMessage tfr = new TransferFulfillmentMessage();
+		tfr.setRequestUuid(reservation.getTransactionUuid());
+		tfr.setReservationUuid(reservation.getTransactionUuid());
+		tfr.setFromAccountNumber(request.getFromAccountNumber());
+		tfr.setToAccountNumber(request.getToAccountNumber());
+		tfr.setTransactionAmount(request.getTransactionAmount());
+		tfr.setTransactionMetaDataJson(request.getTransactionJsonMetaData());
+		tfr.setVersion(TransferFulfillmentMessage.version1_0);
+		TransferFundsResponse transfer = new TransferFundsResponse();
+		transfer.setStatus(TransferFundsResponse.SUCCESS);
+		transfer.setReservation(reservation);
+		transfer.setFulfillmentMessage(tfr);
+		response = new TimedResponse<>(1234L, transfer);
+	}
+
+	@Benchmark
+	public TransferFundsRequest readTransferFundsRequest() throws Exception {
+		return requestReader.readValue(requestJson);
+	}
+
+	@Benchmark
+	public byte[] writeTransferFundsRequest() throws Exception {
+		return requestWriter.writeValueAsBytes(request);
+	}
+
+	@Benchmark
+	public byte[] writeTimedResponse() throws Exception {
+		return responseWriter.writeValueAsBytes(response);
+	}
+}
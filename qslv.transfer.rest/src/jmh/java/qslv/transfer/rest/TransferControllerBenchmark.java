@@ -0,0 +1,72 @@
+package qslv.transfer.rest;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.ResponseEntity;
+
+import qslv.common.TimedResponse;
+import qslv.common.TraceableRequest;
+import qslv.transfer.request.TransferFundsRequest;
+import qslv.transfer.response.TransferFundsResponse;
+
+/**
+ * POST /TransferFunds header and request validation plus response assembly, with the service already complete.
+ * The controller is a plain object here, so the tracing and SLI aspects are not included.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransferControllerBenchmark {
+	TransferController controller = new TransferController();
+	Map<String, String> headers = new HashMap<>();
+	TransferFundsRequest request = new TransferFundsRequest();
+
+	@Setup
+	public void setup() {
+		TransferFundsResponse response = new TransferFundsResponse();
+		response.setStatus(TransferFundsResponse.SUCCESS);
+		CompletableFuture<TransferFundsResponse> completed = CompletableFuture.completedFuture(response);
+
+		controller.setConfig(new ConfigProperties());
+		controller.setTransferService(new TransferService() {
+			@Override
+			public CompletableFuture<TransferFundsResponse> transferFundsAsync(Map<String, String> callingHeaders, TransferFundsRequest request,
+					ServerTiming timing, Deadline deadline) {
+				return completed;
+			}
+		});
+
+		headers.put(TraceableRequest.AIT_ID, "12345");
+		headers.put(TraceableRequest.BUSINESS_TAXONOMY_ID, "7483495");
+		headers.put(TraceableRequest.CORRELATION_ID, "273849273498273498");
+		headers.put(TraceableRequest.ACCEPT_VERSION, TransferFundsRequest.Version1_0);
+
+		request.setRequestUuid(UUID.randomUUID());
+		request.setFromAccountNumber("DDDD3456HKWER7890");
+		request.setToAccountNumber("YYYY3456HKWER7890");
+		request.setTransactionAmount(27384L);
+		request.setTransactionJsonMetaData("{\"memo\": \"payroll\"}");
+	}
+
+	@Benchmark
+	public ResponseEntity<TimedResponse<TransferFundsResponse>> postTransferFunds() {
+		return controller.postTransferFunds(headers, request).join();
+	}
+}
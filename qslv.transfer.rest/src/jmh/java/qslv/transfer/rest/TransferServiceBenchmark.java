@@ -0,0 +1,128 @@
+package qslv.transfer.rest;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import qslv.common.TraceableRequest;
+import qslv.data.Account;
+import qslv.transaction.request.ReservationRequest;
+import qslv.transaction.resource.TransactionResource;
+import qslv.transaction.response.ReservationResponse;
+import qslv.transfer.request.TransferFulfillmentMessage;
+import qslv.transfer.request.TransferFundsRequest;
+import qslv.transfer.response.TransferFundsResponse;
+
+/**
+ * TransferService orchestration against in-memory accounts, reservation and kafka, so only this service's own
+ * work is measured: account checks, message assembly and the idempotency store.
+ * Every invocation uses a new requestUuid, as a first attempt would.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransferServiceBenchmark {
+	TransferService service = new TransferService();
+	Map<String, String> headers = new HashMap<>();
+	TransferFundsRequest request = new TransferFundsRequest();
+	long sequence = 0;
+
+	@Setup
+	public void setup() {
+		ConfigProperties config = new ConfigProperties();
+		config.setAitid("12345");
+
+		Map<String, Account> accounts = new HashMap<>();
+		accounts.put("DDDD3456HKWER7890", account("DDDD3456HKWER7890"));
+		accounts.put("YYYY3456HKWER7890", account("YYYY3456HKWER7890"));
+		service.setAccountCache(new AccountCache() {
+			@Override
+			public Map<String, Account> getAccounts(String fromAccountNumber, String toAccountNumber, Deadline deadline) {
+				return accounts;
+			}
+		});
+		service.setReservationDao(new ReservationDao() {
+			@Override
+			public ReservationResponse recordReservation(Map<String, String> callingHeaders, ReservationRequest request, Deadline deadline) {
+				TransactionResource resource = new TransactionResource();
+				resource.setTransactionUuid(request.getRequestUuid());
+				resource.setRequestUuid(request.getRequestUuid());
+				resource.setAccountNumber(request.getAccountNumber());
+				resource.setTransactionAmount(request.getTransactionAmount());
+				resource.setTransactionTypeCode(TransactionResource.RESERVATION);
+				return new ReservationResponse(ReservationResponse.SUCCESS, resource);
+			}
+		});
+		CompletableFuture<Void> acknowledged = CompletableFuture.completedFuture(null);
+		service.setKafkaDao(new KafkaDao() {
+			@Override
+			public void produceTransferMessage(Map<String, String> callingHeaders, TransferFulfillmentMessage tfr, Deadline deadline) {
+			}
+			@Override
+			public CompletableFuture<Void> produceTransferMessageAsync(Map<String, String> callingHeaders, TransferFulfillmentMessage tfr,
+					Deadline deadline) {
+				return acknowledged;
+			}
+		});
+		service.setFulfillmentOutbox(new FulfillmentOutbox());
+		service.setTransferExecutor(Runnable::run);
+
+		IdempotencyStore idempotencyStore = new IdempotencyStore();
+		idempotencyStore.setConfig(config);
+		idempotencyStore.setMeterRegistry(new SimpleMeterRegistry());
+		idempotencyStore.setTransferExecutor(Runnable::run);
+		idempotencyStore.init();
+		service.setIdempotencyStore(idempotencyStore);
+		service.setConfig(config);
+
+		TransferMetrics transferMetrics = new TransferMetrics();
+		transferMetrics.setMeterRegistry(new SimpleMeterRegistry());
+		service.setTransferMetrics(transferMetrics);
+
+		headers.put(TraceableRequest.AIT_ID, "12345");
+		headers.put(TraceableRequest.BUSINESS_TAXONOMY_ID, "7483495");
+		headers.put(TraceableRequest.CORRELATION_ID, "273849273498273498");
+		headers.put(TraceableRequest.ACCEPT_VERSION, TransferFundsRequest.Version1_0);
+
+		request.setFromAccountNumber("DDDD3456HKWER7890");
+		request.setToAccountNumber("YYYY3456HKWER7890");
+		request.setTransactionAmount(27384L);
+		request.setTransactionJsonMetaData("{\"memo\": \"payroll\"}");
+	}
+
+	@Benchmark
+	public TransferFundsResponse transferFunds() {
+		request.setRequestUuid(new UUID(0L, ++sequence));
+		return service.transferFunds(headers, request);
+	}
+
+	@Benchmark
+	public TransferFundsResponse transferFundsAsync() {
+		request.setRequestUuid(new UUID(0L, ++sequence));
+		return service.transferFundsAsync(headers, request).join();
+	}
+
+	private static Account account(String accountNumber) {
+		Account account = new Account();
+		account.setAccountNumber(accountNumber);
+		account.setAccountLifeCycleStatus("EF");
+		return account;
+	}
+}
@@ -0,0 +1,159 @@
+package qslv.transfer.rest;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import qslv.common.TraceableRequest;
+import qslv.transfer.request.TransferFundsRequest;
+
+/**
+ * Open-loop driver for POST /TransferFunds.
+ * Request i of a step is due at start + i / rate whether or not earlier requests have answered, and its latency
+ * is measured from that due time, so a stalled service is charged for the requests it held back
+ * (no coordinated omission). Latencies of every outcome go into one histogram; outcomes are counted by HTTP
+ * status, with transport failures under 0.
+ */
+public class LoadGenerator implements AutoCloseable {
+	static final long HIGHEST_LATENCY = TimeUnit.MINUTES.toNanos(5);
+
+	public static class Result {
+		private final double targetRate;
+		private final double throughput;
+		private final Histogram latency;
+		private final Map<Integer, Long> statusCounts;
+
+		Result(double targetRate, double throughput, Histogram latency, Map<Integer, Long> statusCounts) {
+			this.targetRate = targetRate;
+			this.throughput = throughput;
+			this.latency = latency;
+			this.statusCounts = statusCounts;
+		}
+		public double getTargetRate() {
+			return targetRate;
+		}
+		public double getThroughput() {
+			return throughput;
+		}
+		public Histogram getLatency() {
+			return latency;
+		}
+		public Map<Integer, Long> getStatusCounts() {
+			return statusCounts;
+		}
+	}
+
+	private final ObjectMapper mapper = new ObjectMapper();
+	private final String url;
+	private final int accounts;
+	private final CloseableHttpClient client;
+	private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+		Thread thread = new Thread(runnable, "load");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	public LoadGenerator(String url, int accounts, int connections, int timeout) {
+		this.url = url;
+		this.accounts = accounts;
+		PoolingHttpClientConnectionManager manager = new PoolingHttpClientConnectionManager();
+		manager.setMaxTotal(connections);
+		manager.setDefaultMaxPerRoute(connections);
+		this.client = HttpClients.custom()
+				.setConnectionManager(manager)
+				.setDefaultRequestConfig(RequestConfig.custom().setConnectTimeout(timeout).setSocketTimeout(timeout)
+						.setConnectionRequestTimeout(timeout).build())
+				.build();
+	}
+
+	/**
+	 * Drives rate requests per second for the duration and waits for the stragglers.
+	 */
+	public Result run(double rate, long duration, TimeUnit unit) throws InterruptedException {
+		Recorder recorder = new Recorder(HIGHEST_LATENCY, 3);
+		Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+		long interval = (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+		long total = unit.toNanos(duration) / interval;
+		CountDownLatch outstanding = new CountDownLatch((int) total);
+		long start = System.nanoTime();
+		for (long sent = 0; sent < total; sent++) {
+			final long intended = start + sent * interval;
+			long wait = intended - System.nanoTime();
+			if (wait > 0) {
+				LockSupport.parkNanos(wait);
+			}
+			executor.execute(() -> {
+				try {
+					int status = send();
+					statuses.computeIfAbsent(status, s -> new LongAdder()).increment();
+					recorder.recordValue(Math.min(System.nanoTime() - intended, HIGHEST_LATENCY));
+				} finally {
+					outstanding.countDown();
+				}
+			});
+		}
+		outstanding.await();
+		long elapsed = System.nanoTime() - start;
+
+		Map<Integer, Long> statusCounts = new TreeMap<>();
+		statuses.forEach((status, count) -> statusCounts.put(status, count.sum()));
+		return new Result(rate, total * (double) TimeUnit.SECONDS.toNanos(1) / elapsed, recorder.getIntervalHistogram(), statusCounts);
+	}
+
+	private int send() {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		int from = random.nextInt(accounts);
+		int to = (from + 1 + random.nextInt(Math.max(accounts - 1, 1))) % accounts;
+
+		TransferFundsRequest request = new TransferFundsRequest();
+		request.setRequestUuid(UUID.randomUUID());
+		request.setFromAccountNumber(LoadTest.accountNumber(from));
+		request.setToAccountNumber(LoadTest.accountNumber(to));
+		request.setTransactionAmount(1 + random.nextInt(10000));
+		request.setTransactionJsonMetaData("{\"memo\": \"load test\"}");
+
+		HttpPost post = new HttpPost(url);
+		post.setHeader(TraceableRequest.AIT_ID, "12345");
+		post.setHeader(TraceableRequest.BUSINESS_TAXONOMY_ID, "7483495");
+		post.setHeader(TraceableRequest.CORRELATION_ID, request.getRequestUuid().toString());
+		post.setHeader(TraceableRequest.ACCEPT_VERSION, TransferFundsRequest.Version1_0);
+		try {
+			post.setEntity(new ByteArrayEntity(mapper.writeValueAsBytes(request), ContentType.APPLICATION_JSON));
+			try (CloseableHttpResponse response = client.execute(post)) {
+				EntityUtils.consume(response.getEntity());
+				return response.getStatusLine().getStatusCode();
+			}
+		} catch (IOException ex) {
+			return 0;
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		executor.shutdownNow();
+		client.close();
+	}
+}
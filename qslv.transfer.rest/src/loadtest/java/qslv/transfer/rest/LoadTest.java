@@ -0,0 +1,174 @@
+package qslv.transfer.rest;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+
+/**
+ * Self-contained load test of POST /TransferFunds.
+ * Starts TransferApplication against local stand-ins: ReservationStub for /Reservation, an embedded kafka broker
+ * and an in-memory H2 database in PostgreSQL mode seeded with accounts. LoadGenerator then drives each rate in
+ * loadtest.rates open-loop for loadtest.duration seconds, after a discarded warmup at the first rate, and the
+ * p50/p99/p99.9 latency, throughput and status counts of each step are reported.
+ * <p>
+ * Arguments are --key=value. loadtest.* and reservation.* configure the harness, see the defaults below; anything
+ * else overrides the application's own properties, e.g. --qslv.outbox-enabled=true or --qslv.rest-timeout=200.
+ * The numbers describe this machine running everything at once, so compare runs with each other rather than
+ * with production.
+ */
+public class LoadTest {
+	static final String TOPIC = "online.transfer.requests";
+
+	static String accountNumber(int index) {
+		return String.format("LOADTEST%09d", index);
+	}
+
+	public static void main(String[] args) throws Exception {
+		Map<String, String> options = new LinkedHashMap<>();
+		options.put("loadtest.rates", "100,250,500");
+		options.put("loadtest.duration", "30");
+		options.put("loadtest.warmup", "10");
+		options.put("loadtest.accounts", "1000");
+		options.put("loadtest.connections", "1000");
+		options.put("loadtest.timeout", "30000");
+		options.put("reservation.latency-median", "5");
+		options.put("reservation.latency-p99", "50");
+		options.put("reservation.error-rate", "0");
+		options.put("reservation.stall-rate", "0");
+		options.put("reservation.stall-time", "1000");
+		Map<String, String> overrides = new LinkedHashMap<>();
+		for (String arg : args) {
+			if (false == arg.startsWith("--") || arg.indexOf('=') < 0) {
+				throw new IllegalArgumentException("Expected --key=value, not " + arg);
+			}
+			String key = arg.substring(2, arg.indexOf('='));
+			String value = arg.substring(arg.indexOf('=') + 1);
+			if (key.startsWith("loadtest.") || key.startsWith("reservation.")) {
+				options.put(key, value);
+			} else {
+				overrides.put(key, value);
+			}
+		}
+
+		ReservationStub reservation = new ReservationStub(
+				Double.parseDouble(options.get("reservation.latency-median")),
+				Double.parseDouble(options.get("reservation.latency-p99")),
+				Double.parseDouble(options.get("reservation.error-rate")),
+				Double.parseDouble(options.get("reservation.stall-rate")),
+				Long.parseLong(options.get("reservation.stall-time")));
+		reservation.start();
+
+		EmbeddedKafkaBroker broker = new EmbeddedKafkaBroker(1, true, 4, TOPIC);
+		broker.afterPropertiesSet();
+
+		ConfigurableApplicationContext context = null;
+		try {
+			context = startApplication(reservation, kafkaProperties(broker), overrides);
+			int accounts = Integer.parseInt(options.get("loadtest.accounts"));
+			seed(context.getBean(JdbcTemplate.class), accounts);
+
+			String url = "http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort() + "/TransferFunds";
+			try (LoadGenerator generator = new LoadGenerator(url, accounts,
+					Integer.parseInt(options.get("loadtest.connections")), Integer.parseInt(options.get("loadtest.timeout")))) {
+
+				List<Double> rates = new ArrayList<>();
+				for (String rate : options.get("loadtest.rates").split(",")) {
+					rates.add(Double.valueOf(rate.trim()));
+				}
+				long warmup = Long.parseLong(options.get("loadtest.warmup"));
+				if (warmup > 0) {
+					System.out.printf("warmup %.0f/s for %ds%n", rates.get(0), warmup);
+					generator.run(rates.get(0), warmup, TimeUnit.SECONDS);
+				}
+
+				long duration = Long.parseLong(options.get("loadtest.duration"));
+				List<LoadGenerator.Result> results = new ArrayList<>();
+				for (Double rate : rates) {
+					System.out.printf("run %.0f/s for %ds%n", rate, duration);
+					results.add(generator.run(rate, duration, TimeUnit.SECONDS));
+				}
+				report(System.out, options, results);
+			}
+		} finally {
+			if (context != null) {
+				context.close();
+			}
+			broker.destroy();
+			reservation.stop();
+		}
+	}
+
+	static ConfigurableApplicationContext startApplication(ReservationStub reservation, File kafkaProperties, Map<String, String> overrides) {
+		Map<String, String> properties = new LinkedHashMap<>();
+		properties.put("server.port", "0");
+		properties.put("spring.datasource.url", "jdbc:h2:mem:loadtest;MODE=PostgreSQL;DB_CLOSE_DELAY=-1");
+		properties.put("spring.datasource.username", "sa");
+		properties.put("spring.datasource.hikari.maximum-pool-size", "50");
+		properties.put("logging.level.root", "WARN");
+		properties.put("logging.level.qslv", "WARN");
+		properties.put("qslv.reservation-url", reservation.getUrl());
+		properties.put("qslv.cancel-reservation-url", reservation.getCancelUrl());
+		properties.put("qslv.kafka-properties", kafkaProperties.getAbsolutePath());
+		properties.put("qslv.rest-max-connections", "1000");
+		properties.put("qslv.rest-max-connections-per-route", "1000");
+		properties.putAll(overrides);
+
+		List<String> args = new ArrayList<>();
+		properties.forEach((key, value) -> args.add("--" + key + "=" + value));
+		return new SpringApplication(TransferApplication.class).run(args.toArray(new String[0]));
+	}
+
+	static File kafkaProperties(EmbeddedKafkaBroker broker) throws IOException {
+		Properties kafka = new Properties();
+		kafka.setProperty("bootstrap.servers", broker.getBrokersAsString());
+		kafka.setProperty("schema.registry.url", "mock://loadtest");
+		File file = File.createTempFile("loadtest-kafka", ".properties");
+		file.deleteOnExit();
+		try (OutputStream out = new FileOutputStream(file)) {
+			kafka.store(out, "LoadTest");
+		}
+		return file;
+	}
+
+	static void seed(JdbcTemplate jdbcTemplate, int accounts) {
+		jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS account (account_no VARCHAR(32) PRIMARY KEY, lifecycle_status_cd VARCHAR(2) NOT NULL)");
+		jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS transfer_response (request_uuid UUID PRIMARY KEY, request_fingerprint UUID, response_json VARCHAR NOT NULL)");
+		List<Object[]> rows = new ArrayList<>(accounts);
+		for (int index = 0; index < accounts; index++) {
+			rows.add(new Object[] { accountNumber(index), "EF" });
+		}
+		jdbcTemplate.batchUpdate("INSERT INTO account (account_no, lifecycle_status_cd) VALUES (?, ?)", rows);
+	}
+
+	static void report(PrintStream out, Map<String, String> options, List<LoadGenerator.Result> results) {
+		out.println();
+		out.println(options);
+		out.printf("%10s %10s %10s %10s %10s %10s %10s  %s%n", "rate/s", "achieved/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms", "status counts");
+		for (LoadGenerator.Result result : results) {
+			Histogram latency = result.getLatency();
+			out.printf("%10.0f %10.1f %10.2f %10.2f %10.2f %10.2f %10.2f  %s%n", result.getTargetRate(), result.getThroughput(),
+					millis(latency.getValueAtPercentile(50.0)), millis(latency.getValueAtPercentile(90.0)),
+					millis(latency.getValueAtPercentile(99.0)), millis(latency.getValueAtPercentile(99.9)),
+					millis(latency.getMaxValue()), result.getStatusCounts());
+		}
+	}
+
+	private static double millis(long nanos) {
+		return nanos / 1000000.0;
+	}
+}
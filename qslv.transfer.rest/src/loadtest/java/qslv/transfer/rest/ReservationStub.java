@@ -0,0 +1,130 @@
+package qslv.transfer.rest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import qslv.common.TimedResponse;
+import qslv.transaction.request.CancelReservationRequest;
+import qslv.transaction.request.ReservationRequest;
+import qslv.transaction.resource.TransactionResource;
+import qslv.transaction.response.CancelReservationResponse;
+import qslv.transaction.response.ReservationResponse;
+
+/**
+ * Stand-in for the transaction service POST /Reservation and /CancelReservation endpoints.
+ * Service time is lognormal, fitted to a median and a p99 in milliseconds. A fraction of requests answer 503
+ * and a fraction stall for a fixed time before answering, to show how the transfer service's timeouts and
+ * retries shape its own tail. Every other request is reserved successfully.
+ */
+public class ReservationStub {
+	private static final double Z99 = 2.326;
+
+	private final ObjectMapper mapper = new ObjectMapper();
+	private final double mu;
+	private final double sigma;
+	private final double errorRate;
+	private final double stallRate;
+	private final long stallTime;
+	private HttpServer server;
+	private ExecutorService executor;
+
+	public ReservationStub(double latencyMedian, double latencyP99, double errorRate, double stallRate, long stallTime) {
+		this.mu = Math.log(Math.max(latencyMedian, 0.001));
+		this.sigma = Math.max(0.0, (Math.log(Math.max(latencyP99, latencyMedian)) - mu) / Z99);
+		this.errorRate = errorRate;
+		this.stallRate = stallRate;
+		this.stallTime = stallTime;
+	}
+
+	public void start() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 1024);
+		executor = Executors.newCachedThreadPool();
+		server.setExecutor(executor);
+		server.createContext("/Reservation", this::handle);
+		server.createContext("/CancelReservation", this::handleCancel);
+		server.start();
+	}
+
+	public void stop() {
+		server.stop(0);
+		executor.shutdownNow();
+	}
+
+	public String getUrl() {
+		return "http://localhost:" + server.getAddress().getPort() + "/Reservation";
+	}
+
+	public String getCancelUrl() {
+		return "http://localhost:" + server.getAddress().getPort() + "/CancelReservation";
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		try (InputStream body = exchange.getRequestBody()) {
+			ReservationRequest request = mapper.readValue(body, ReservationRequest.class);
+			Random random = ThreadLocalRandom.current();
+
+			long delay = random.nextDouble() < stallRate ? TimeUnit.MILLISECONDS.toNanos(stallTime)
+					: (long) (Math.exp(mu + sigma * random.nextGaussian()) * 1000000.0);
+			TimeUnit.NANOSECONDS.sleep(delay);
+
+			if (random.nextDouble() < errorRate) {
+				respond(exchange, 503, "{\"message\":\"Reservation stub error.\"}".getBytes(StandardCharsets.UTF_8));
+				return;
+			}
+
+			TransactionResource resource = new TransactionResource();
+			resource.setTransactionUuid(UUID.randomUUID());
+			resource.setRequestUuid(request.getRequestUuid());
+			resource.setAccountNumber(request.getAccountNumber());
+			resource.setTransactionAmount(request.getTransactionAmount());
+			resource.setTransactionMetaDataJson(request.getTransactionMetaDataJson());
+			resource.setTransactionTypeCode(TransactionResource.RESERVATION);
+			resource.setRunningBalanceAmount(1000000L + request.getTransactionAmount());
+			respond(exchange, 201, mapper.writeValueAsBytes(
+					new TimedResponse<>(delay, new ReservationResponse(ReservationResponse.SUCCESS, resource))));
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			respond(exchange, 503, new byte[0]);
+		} finally {
+			exchange.close();
+		}
+	}
+
+	// cancellations always succeed, without added latency.
+	private void handleCancel(HttpExchange exchange) throws IOException {
+		try (InputStream body = exchange.getRequestBody()) {
+			CancelReservationRequest request = mapper.readValue(body, CancelReservationRequest.class);
+			TransactionResource resource = new TransactionResource();
+			resource.setTransactionUuid(UUID.randomUUID());
+			resource.setRequestUuid(request.getRequestUuid());
+			resource.setReservationUuid(request.getReservationUuid());
+			resource.setAccountNumber(request.getAccountNumber());
+			resource.setTransactionTypeCode(TransactionResource.RESERVATION_CANCEL);
+			respond(exchange, 201, mapper.writeValueAsBytes(
+					new TimedResponse<>(0L, new CancelReservationResponse(CancelReservationResponse.SUCCESS, resource))));
+		} finally {
+			exchange.close();
+		}
+	}
+
+	private static void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+		exchange.getResponseHeaders().set("Content-Type", "application/json");
+		exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(body);
+		}
+	}
+}
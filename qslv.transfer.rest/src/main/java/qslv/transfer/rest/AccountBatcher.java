@@ -0,0 +1,210 @@
+package qslv.transfer.rest;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import qslv.data.Account;
+
+/**
+ * Cross-request batching of account lookups (qslv.account-batch-enabled=true).
+ * Account numbers requested by concurrent transfers are collected for qslv.account-batch-window milliseconds after the
+ * first, or until qslv.account-batch-size are waiting, and read with one JdbcDao query. Concurrent lookups of the same
+ * account share one future. A lookup waits for its batch at most qslv.account-batch-timeout milliseconds, or what is
+ * left of the caller's deadline if that is sooner. Published as transfer.account.batch.size and
+ * transfer.account.batch.deduplicated.
+ */
+@Component
+public class AccountBatcher {
+	private static final Logger log = LoggerFactory.getLogger(AccountBatcher.class);
+
+	@Autowired
+	private ConfigProperties config;
+	@Autowired
+	private JdbcDao jdbcDao;
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	private final Map<String, CompletableFuture<Account>> inFlight = new ConcurrentHashMap<>();
+	private final AtomicInteger threadCount = new AtomicInteger();
+	private List<String> queued = new ArrayList<>();
+	private boolean dispatchScheduled = false;
+	private ScheduledExecutorService dispatcher;
+	private DistributionSummary batchSize;
+	private Counter deduplicated;
+
+	public void setConfig(ConfigProperties config) {
+		this.config = config;
+	}
+	public void setJdbcDao(JdbcDao jdbcDao) {
+		this.jdbcDao = jdbcDao;
+	}
+	public void setMeterRegistry(MeterRegistry meterRegistry) {
+		this.meterRegistry = meterRegistry;
+	}
+
+	@PostConstruct
+	public void init() {
+		// several threads, so a slow query does not hold up the batches behind it.
+		dispatcher = Executors.newScheduledThreadPool(config.getAccountBatchThreads(), runnable -> {
+			Thread thread = new Thread(runnable, "account-batch-" + threadCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		batchSize = DistributionSummary.builder("transfer.account.batch.size")
+			.description("accounts read per batched query")
+			.register(meterRegistry);
+		deduplicated = Counter.builder("transfer.account.batch.deduplicated")
+			.description("lookups answered by a query already in flight for the same account")
+			.register(meterRegistry);
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		dispatcher.shutdown();
+	}
+
+	public Map<String, Account> getAccounts(final String fromAccountNumber, final String toAccountNumber) {
+		return getAccounts(fromAccountNumber, toAccountNumber, Deadline.NONE);
+	}
+
+	/**
+	 * Same contract as JdbcDao.getAccounts(from, to), answered from a shared batch.
+	 * @throws DeadlineExceededException if the caller's deadline passes first, or a 503 ResponseStatusException if the
+	 * batch is not read within qslv.account-batch-timeout. The batch itself carries on for the others.
+	 */
+	public Map<String, Account> getAccounts(final String fromAccountNumber, final String toAccountNumber, final Deadline deadline) {
+		CompletableFuture<Account> from = load(fromAccountNumber);
+		CompletableFuture<Account> to = load(toAccountNumber);
+		long until = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(deadline.clamp(config.getAccountBatchTimeout()));
+		try {
+			Map<String, Account> accounts = new HashMap<>();
+			accounts.put(fromAccountNumber, from.get(until - System.nanoTime(), TimeUnit.NANOSECONDS));
+			accounts.put(toAccountNumber, to.get(until - System.nanoTime(), TimeUnit.NANOSECONDS));
+			return accounts;
+		} catch (ExecutionException ex) {
+			if (ex.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) ex.getCause();
+			}
+			throw new CompletionException(ex.getCause());
+		} catch (TimeoutException ex) {
+			log.debug("getAccounts timed out waiting for {} {}", fromAccountNumber, toAccountNumber);
+			if (deadline.isExpired()) {
+				throw new DeadlineExceededException("account lookup", ex);
+			}
+			throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Account lookup timed out.", ex);
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Account lookup timed out.", ex);
+		}
+	}
+
+	/**
+	 * The account, once the batch it joined has been read. Completes exceptionally with 422 if it does not exist,
+	 * or with the query's exception.
+	 */
+	public CompletableFuture<Account> load(final String accountNumber) {
+		CompletableFuture<Account> future = new CompletableFuture<>();
+		CompletableFuture<Account> existing = inFlight.putIfAbsent(accountNumber, future);
+		if (existing != null) {
+			deduplicated.increment();
+			return existing;
+		}
+		future.whenComplete((account, ex) -> inFlight.remove(accountNumber, future));
+
+		List<String> full = null;
+		boolean schedule = false;
+		synchronized (this) {
+			queued.add(accountNumber);
+			if (queued.size() >= config.getAccountBatchSize()) {
+				full = queued;
+				queued = new ArrayList<>();
+			} else if (false == dispatchScheduled) {
+				dispatchScheduled = schedule = true;
+			}
+		}
+		try {
+			if (full != null) {
+				List<String> batch = full;
+				dispatcher.execute(() -> dispatch(batch));
+			} else if (schedule) {
+				dispatcher.schedule(this::dispatchQueued, config.getAccountBatchWindow(), TimeUnit.MILLISECONDS);
+			}
+		} catch (RejectedExecutionException ex) {
+			// shutting down. read on the caller's thread rather than leave it waiting.
+			if (full != null) {
+				dispatch(full);
+			} else {
+				dispatchQueued();
+			}
+		}
+		return future;
+	}
+
+	void dispatchQueued() {
+		List<String> batch;
+		synchronized (this) {
+			dispatchScheduled = false;
+			batch = queued;
+			queued = new ArrayList<>();
+		}
+		if (false == batch.isEmpty()) {
+			dispatch(batch);
+		}
+	}
+
+	private void dispatch(List<String> batch) {
+		log.trace("dispatch {} accounts", batch.size());
+		batchSize.record(batch.size());
+		Map<String, Account> accounts;
+		try {
+			accounts = jdbcDao.getAccounts(batch);
+		} catch (RuntimeException ex) {
+			log.warn("Account batch of {} failed. {}", batch.size(), ex.getLocalizedMessage());
+			for (String accountNumber : batch) {
+				complete(accountNumber, null, ex);
+			}
+			return;
+		}
+		for (String accountNumber : batch) {
+			Account account = accounts.get(accountNumber);
+			complete(accountNumber, account, account == null ? JdbcDao.notFound(accountNumber) : null);
+		}
+	}
+
+	private void complete(String accountNumber, Account account, RuntimeException ex) {
+		CompletableFuture<Account> future = inFlight.get(accountNumber);
+		if (future == null) {
+			return;
+		}
+		if (ex == null) {
+			future.complete(account);
+		} else {
+			future.completeExceptionally(ex);
+		}
+	}
+}
@@ -0,0 +1,164 @@
+package qslv.transfer.rest;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Repository;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import qslv.data.Account;
+
+/**
+ * Read-through cache in front of JdbcDao account lookups.
+ * Entries are bounded by qslv.account-cache-size (size based eviction, W-TinyLFU)
+ * and expire qslv.account-cache-time-to-live milliseconds after they were read from the database.
+ * Account numbers found not to exist are remembered too, up to qslv.account-negative-cache-size for
+ * qslv.account-negative-cache-time-to-live milliseconds, so repeated lookups of them are rejected without a query.
+ * Only a consistent read is trusted to say an account does not exist. With qslv.account-read-mode=follower or
+ * bounded-staleness an account opened seconds ago can be missing from the stale read, so a miss is read again
+ * consistently before it is remembered; otherwise one stale read would turn the account away for the whole
+ * negative time to live. Accounts that are found may still be up to qslv.account-read-staleness old in those modes.
+ * Hit, miss and eviction counts are published as cache.* meters tagged cache=accountCache and cache=accountNegativeCache.
+ */
+@Repository
+public class AccountCache {
+	private static final Logger log = LoggerFactory.getLogger(AccountCache.class);
+	public static final String CACHE_NAME = "accountCache";
+	public static final String NEGATIVE_CACHE_NAME = "accountNegativeCache";
+
+	@Autowired
+	private ConfigProperties config;
+	@Autowired
+	private JdbcDao jdbcDao;
+	@Autowired
+	private MeterRegistry meterRegistry;
+	@Autowired
+	private AccountBatcher accountBatcher;
+	@Autowired
+	private AccountSnapshot accountSnapshot;
+
+	private Cache<String, Account> cache;
+	private Cache<String, Boolean> notFound;
+
+	public void setConfig(ConfigProperties config) {
+		this.config = config;
+	}
+	public void setJdbcDao(JdbcDao jdbcDao) {
+		this.jdbcDao = jdbcDao;
+	}
+	public void setMeterRegistry(MeterRegistry meterRegistry) {
+		this.meterRegistry = meterRegistry;
+	}
+	public void setAccountBatcher(AccountBatcher accountBatcher) {
+		this.accountBatcher = accountBatcher;
+	}
+	public void setAccountSnapshot(AccountSnapshot accountSnapshot) {
+		this.accountSnapshot = accountSnapshot;
+	}
+
+	@PostConstruct
+	public void init() {
+		cache = Caffeine.newBuilder()
+				.maximumSize(config.getAccountCacheSize())
+				.expireAfterWrite(config.getAccountCacheTimeToLive(), TimeUnit.MILLISECONDS)
+				.recordStats()
+				.build();
+		CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+		notFound = Caffeine.newBuilder()
+				.maximumSize(config.getAccountNegativeCacheSize())
+				.expireAfterWrite(config.getAccountNegativeCacheTimeToLive(), TimeUnit.MILLISECONDS)
+				.recordStats()
+				.build();
+		CaffeineCacheMetrics.monitor(meterRegistry, notFound, NEGATIVE_CACHE_NAME);
+	}
+
+	public Map<String, Account> getAccounts(final String fromAccountNumber, final String toAccountNumber) {
+		return getAccounts(fromAccountNumber, toAccountNumber, Deadline.NONE);
+	}
+
+	/**
+	 * Same contract as JdbcDao.getAccounts. The database is only read when either account is not cached,
+	 * in which case both are refreshed with the one query, shared with other transfers when batching is enabled.
+	 * When the AccountSnapshot is enabled it is asked first. The wait for a shared query is bounded by deadline.
+	 */
+	public Map<String, Account> getAccounts(final String fromAccountNumber, final String toAccountNumber, final Deadline deadline) {
+		rejectNotFound(fromAccountNumber);
+		rejectNotFound(toAccountNumber);
+		if (config.isAccountSnapshotEnabled()) {
+			Account fromAccount = accountSnapshot.getAccount(fromAccountNumber);
+			Account toAccount = fromAccount == null ? null : accountSnapshot.getAccount(toAccountNumber);
+			if (toAccount != null) {
+				Map<String, Account> accounts = new HashMap<>();
+				accounts.put(fromAccountNumber, fromAccount);
+				accounts.put(toAccountNumber, toAccount);
+				return accounts;
+			}
+		}
+
+		Map<String, Account> accounts = cache.getAllPresent(Arrays.asList(fromAccountNumber, toAccountNumber));
+		if (accounts.containsKey(fromAccountNumber) && accounts.containsKey(toAccountNumber)) {
+			log.debug("getAccounts cache hit {} {}", fromAccountNumber, toAccountNumber);
+			return accounts;
+		}
+
+		try {
+			accounts = config.isAccountBatchEnabled() ? accountBatcher.getAccounts(fromAccountNumber, toAccountNumber, deadline)
+					: jdbcDao.getAccounts(fromAccountNumber, toAccountNumber);
+		} catch (AccountNotFoundException ex) {
+			accounts = confirmNotFound(fromAccountNumber, toAccountNumber, ex);
+		}
+		cache.putAll(accounts);
+		return accounts;
+	}
+
+	private Map<String, Account> confirmNotFound(final String fromAccountNumber, final String toAccountNumber,
+			AccountNotFoundException ex) {
+		if (false == JdbcDao.CONSISTENT_READ.equals(config.getAccountReadMode())) {
+			try {
+				Map<String, Account> accounts = jdbcDao.getAccountsConsistently(fromAccountNumber, toAccountNumber);
+				log.debug("getAccounts {} missing from a stale read.", ex.getAccountNumber());
+				return accounts;
+			} catch (AccountNotFoundException consistent) {
+				ex = consistent;
+			}
+		}
+		notFound.put(ex.getAccountNumber(), Boolean.TRUE);
+		throw ex;
+	}
+
+	private void rejectNotFound(final String accountNumber) {
+		if (notFound.getIfPresent(accountNumber) != null) {
+			log.debug("getAccounts negative cache hit {}", accountNumber);
+			throw JdbcDao.notFound(accountNumber);
+		}
+	}
+
+	/**
+	 * Invalidation hook for account change notifications. The next lookup reads the database.
+	 */
+	public void invalidate(final String accountNumber) {
+		log.debug("invalidate {}", accountNumber);
+		cache.invalidate(accountNumber);
+		notFound.invalidate(accountNumber);
+		if (config.isAccountSnapshotEnabled()) {
+			accountSnapshot.invalidate(accountNumber);
+		}
+	}
+
+	public void invalidateAll() {
+		cache.invalidateAll();
+		notFound.invalidateAll();
+	}
+
+}
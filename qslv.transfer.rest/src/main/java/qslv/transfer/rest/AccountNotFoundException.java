@@ -0,0 +1,21 @@
+package qslv.transfer.rest;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * The account does not exist.
+ */
+public class AccountNotFoundException extends ResponseStatusException {
+	private static final long serialVersionUID = 1L;
+	private final String accountNumber;
+
+	public AccountNotFoundException(String accountNumber) {
+		super(HttpStatus.UNPROCESSABLE_ENTITY, String.format("Account %s not found.", accountNumber));
+		this.accountNumber = accountNumber;
+	}
+
+	public String getAccountNumber() {
+		return accountNumber;
+	}
+}
@@ -0,0 +1,184 @@
+package qslv.transfer.rest;
+
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import qslv.data.Account;
+
+/**
+ * Every account's lifecycle status held in an AccountStatusTable (qslv.account-snapshot-enabled=true), so account
+ * validation needs no round trip at all.
+ * The table is loaded in the background at startup, qslv.account-snapshot-page-size accounts per query, and rebuilt
+ * every qslv.account-snapshot-reload-interval milliseconds or when it fills. In between, when
+ * qslv.account-snapshot-updated-column names a timestamp column maintained on the account table, rows changed since
+ * the last refresh are applied every qslv.account-snapshot-refresh-interval milliseconds. Account change
+ * notifications mark the account stale until then. Until loaded, and for accounts it does not know, callers fall
+ * back to the database.
+ * The table lives in direct memory, about 14 bytes per account. A reload builds the new table while the old one still
+ * serves lookups, so -XX:MaxDirectMemorySize must allow about 28 bytes per account.
+ * Published as transfer.account.snapshot.size, transfer.account.snapshot.bytes and transfer.account.snapshot.lookups
+ * tagged result=hit|miss.
+ */
+@Component
+public class AccountSnapshot implements MeterBinder {
+	private static final Logger log = LoggerFactory.getLogger(AccountSnapshot.class);
+	private static final Pattern COLUMN = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+
+	@Autowired
+	private ConfigProperties config;
+	@Autowired
+	private JdbcDao jdbcDao;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private volatile AccountStatusTable table;
+	// refresher thread only
+	private Timestamp changedSince;
+	private long reloadedAt;
+	private ScheduledExecutorService refresher;
+
+	public void setConfig(ConfigProperties config) {
+		this.config = config;
+	}
+	public void setJdbcDao(JdbcDao jdbcDao) {
+		this.jdbcDao = jdbcDao;
+	}
+
+	@PostConstruct
+	public void init() {
+		if (false == config.isAccountSnapshotEnabled()) {
+			return;
+		}
+		String updatedColumn = config.getAccountSnapshotUpdatedColumn();
+		if (StringUtils.hasText(updatedColumn) && false == COLUMN.matcher(updatedColumn).matches()) {
+			throw new IllegalArgumentException(String.format("Invalid account snapshot updated column %s.", updatedColumn));
+		}
+		refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "account-snapshot");
+			thread.setDaemon(true);
+			return thread;
+		});
+		refresher.scheduleWithFixedDelay(this::refresh, 0, config.getAccountSnapshotRefreshInterval(), TimeUnit.MILLISECONDS);
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		if (refresher != null) {
+			refresher.shutdownNow();
+		}
+	}
+
+	public boolean isLoaded() {
+		return table != null;
+	}
+
+	/**
+	 * The account with its lifecycle status, or null if the snapshot cannot answer and the database must.
+	 */
+	public Account getAccount(final String accountNumber) {
+		AccountStatusTable current = table;
+		String status = current == null ? null : current.get(accountNumber);
+		if (status == null) {
+			misses.increment();
+			return null;
+		}
+		hits.increment();
+		Account account = new Account();
+		account.setAccountNumber(accountNumber);
+		account.setAccountLifeCycleStatus(status);
+		return account;
+	}
+
+	/**
+	 * The account changed. Lookups go to the database until the snapshot has caught up with it.
+	 */
+	public void invalidate(final String accountNumber) {
+		AccountStatusTable current = table;
+		if (current != null) {
+			current.markStale(accountNumber);
+		}
+	}
+
+	void refresh() {
+		try {
+			AccountStatusTable current = table;
+			String updatedColumn = config.getAccountSnapshotUpdatedColumn();
+			if (current == null || current.isFull()
+					|| System.nanoTime() - reloadedAt >= TimeUnit.MILLISECONDS.toNanos(config.getAccountSnapshotReloadInterval())) {
+				reload();
+			} else if (StringUtils.hasText(updatedColumn)) {
+				changedSince = jdbcDao.getAccountChanges(updatedColumn, changedSince,
+						account -> current.put(account.getAccountNumber(), account.getAccountLifeCycleStatus()));
+			}
+		} catch (RuntimeException ex) {
+			// keep serving the snapshot we have, the next refresh tries again.
+			log.warn("Account snapshot refresh failed. {}", ex.getLocalizedMessage());
+		}
+	}
+
+	private void reload() {
+		long start = System.nanoTime();
+		String updatedColumn = config.getAccountSnapshotUpdatedColumn();
+		Timestamp since = StringUtils.hasText(updatedColumn) ? jdbcDao.getLatestAccountChange(updatedColumn) : null;
+		AccountStatusTable loading = new AccountStatusTable(AccountStatusTable.capacityFor(jdbcDao.getAccountCount()));
+		String after = "";
+		while (true) {
+			List<Account> page = jdbcDao.getAccountPage(after, config.getAccountSnapshotPageSize());
+			for (Account account : page) {
+				if (false == loading.put(account.getAccountNumber(), account.getAccountLifeCycleStatus())) {
+					// the table grew far beyond its count while we read it. start over with room for it.
+					loading = new AccountStatusTable(AccountStatusTable.capacityFor(loading.capacity()));
+					after = "";
+					page = null;
+					break;
+				}
+				after = account.getAccountNumber();
+			}
+			if (page != null && page.size() < config.getAccountSnapshotPageSize()) {
+				break;
+			}
+		}
+		table = loading;
+		changedSince = since;
+		reloadedAt = System.nanoTime();
+		log.info("Account snapshot loaded {} accounts, {}MB, in {}ms.", loading.size(), loading.bytes() >> 20,
+				TimeUnit.NANOSECONDS.toMillis(reloadedAt - start));
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		Gauge.builder("transfer.account.snapshot.size", this, snapshot -> snapshot.table == null ? 0 : snapshot.table.size())
+			.description("accounts in the snapshot")
+			.register(registry);
+		Gauge.builder("transfer.account.snapshot.bytes", this, snapshot -> snapshot.table == null ? 0 : snapshot.table.bytes())
+			.description("direct memory held by the snapshot")
+			.baseUnit("bytes")
+			.register(registry);
+		FunctionCounter.builder("transfer.account.snapshot.lookups", hits, LongAdder::sum)
+			.description("lookups answered by the snapshot")
+			.tag("result", "hit")
+			.register(registry);
+		FunctionCounter.builder("transfer.account.snapshot.lookups", misses, LongAdder::sum)
+			.description("lookups answered by the snapshot")
+			.tag("result", "miss")
+			.register(registry);
+	}
+}
@@ -0,0 +1,212 @@
+package qslv.transfer.rest;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Open addressing hash table of account number to lifecycle status, held in direct buffers so it costs the
+ * collector nothing however many accounts it holds.
+ * A slot is an 8 byte fingerprint of the account number and a 1 byte status code, so an account costs about
+ * 9 / load bytes; 30 million accounts fit in roughly 400MB. Account numbers themselves are not kept: two accounts
+ * sharing a 64 bit fingerprint would share a status, and an unknown account matches a fingerprint with probability
+ * size / 2^64. The fingerprint is SipHash-2-4 under a key drawn at random when the process starts, so account numbers
+ * cannot be chosen to collide with another account's; left to chance both are negligible next to the cost of storing
+ * the keys.
+ * <p>
+ * Status codes are interned into at most 254 distinct values. Code 0 marks an empty slot and STALE an account whose
+ * status must be read from the database. There is a single writer at a time (put and markStale are synchronized)
+ * and any number of readers. A reader racing a writer may miss a new account or see its previous status, never
+ * another account's.
+ */
+public class AccountStatusTable {
+	private static final byte EMPTY = 0;
+	private static final byte STALE = (byte) 0xFF;
+	private static final int MAX_CODES = 254;
+	private static final long KEY0;
+	private static final long KEY1;
+
+	static {
+		SecureRandom random = new SecureRandom();
+		KEY0 = random.nextLong();
+		KEY1 = random.nextLong();
+	}
+
+	private final int capacity;
+	private final int limit;
+	private final ByteBuffer fingerprints;
+	private final ByteBuffer statuses;
+	private final Map<String, Byte> codes = new HashMap<>();
+	private volatile String[] statusByCode = new String[256];
+	private volatile int size = 0;
+
+	/**
+	 * @param capacity slots. The table is full once 85% of them are used.
+	 */
+	public AccountStatusTable(int capacity) {
+		if (capacity < 1 || capacity > Integer.MAX_VALUE / Long.BYTES) {
+			throw new IllegalArgumentException(String.format("Account status table capacity %d out of range.", capacity));
+		}
+		this.capacity = capacity;
+		this.limit = (int) (capacity * 0.85);
+		this.fingerprints = ByteBuffer.allocateDirect(capacity * Long.BYTES);
+		this.statuses = ByteBuffer.allocateDirect(capacity);
+	}
+
+	/**
+	 * Capacity for a table of accounts that leaves room to grow by a quarter before it fills.
+	 */
+	public static int capacityFor(long accounts) {
+		return (int) Math.min(Integer.MAX_VALUE / Long.BYTES, Math.max(1024L, accounts * 3 / 2));
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int capacity() {
+		return capacity;
+	}
+
+	public boolean isFull() {
+		return size >= limit;
+	}
+
+	public long bytes() {
+		return (long) capacity * (Long.BYTES + 1);
+	}
+
+	/**
+	 * The account's status, or null if it is not in the table or marked stale.
+	 */
+	public String get(String accountNumber) {
+		long fingerprint = fingerprint(accountNumber);
+		int slot = slot(fingerprint);
+		for (int probe = 0; probe < capacity; probe++) {
+			byte code = statuses.get(slot);
+			if (code == EMPTY) {
+				return null;
+			}
+			if (fingerprints.getLong(slot * Long.BYTES) == fingerprint) {
+				return code == STALE ? null : statusByCode[code & 0xFF];
+			}
+			slot = slot + 1 == capacity ? 0 : slot + 1;
+		}
+		return null;
+	}
+
+	/**
+	 * Adds the account or replaces its status.
+	 * @return false if the account is new and the table is full.
+	 */
+	public synchronized boolean put(String accountNumber, String status) {
+		return store(accountNumber, encode(status));
+	}
+
+	/**
+	 * Make lookups of the account miss until its status is put again. An account not in the table misses already and
+	 * is left out, so change notifications for unknown accounts cannot fill it.
+	 */
+	public synchronized void markStale(String accountNumber) {
+		store(accountNumber, STALE, false);
+	}
+
+	private boolean store(String accountNumber, byte code) {
+		return store(accountNumber, code, true);
+	}
+
+	private boolean store(String accountNumber, byte code, boolean insert) {
+		long fingerprint = fingerprint(accountNumber);
+		int slot = slot(fingerprint);
+		while (statuses.get(slot) != EMPTY) {
+			if (fingerprints.getLong(slot * Long.BYTES) == fingerprint) {
+				statuses.put(slot, code);
+				return true;
+			}
+			slot = slot + 1 == capacity ? 0 : slot + 1;
+		}
+		if (false == insert || size >= limit) {
+			return false;
+		}
+		// status first: a reader that sees the slot occupied before the fingerprint lands just probes past it.
+		statuses.put(slot, code);
+		fingerprints.putLong(slot * Long.BYTES, fingerprint);
+		size++;
+		return true;
+	}
+
+	private byte encode(String status) {
+		if (status == null) {
+			return STALE;
+		}
+		Byte code = codes.get(status);
+		if (code == null) {
+			if (codes.size() == MAX_CODES) {
+				return STALE;
+			}
+			code = (byte) (codes.size() + 1);
+			String[] statusByCode = this.statusByCode.clone();
+			statusByCode[code & 0xFF] = status;
+			this.statusByCode = statusByCode;
+			codes.put(status, code);
+		}
+		return code;
+	}
+
+	private int slot(long fingerprint) {
+		// multiply-shift rather than modulo, so capacity need not be a power of two.
+		return (int) (((fingerprint >>> 32) * capacity) >>> 32);
+	}
+
+	static long fingerprint(String accountNumber) {
+		return sipHash(KEY0, KEY1, accountNumber.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * SipHash-2-4. Keyed, so the fingerprints of a process cannot be predicted, and its output is well spread in the
+	 * high bits used for the slot.
+	 */
+	static long sipHash(long key0, long key1, byte[] data) {
+		long[] v = { key0 ^ 0x736f6d6570736575L, key1 ^ 0x646f72616e646f6dL, key0 ^ 0x6c7967656e657261L, key1 ^ 0x7465646279746573L };
+		int end = data.length - data.length % 8;
+		for (int offset = 0; offset < end; offset += 8) {
+			compress(v, littleEndian(data, offset, 8));
+		}
+		compress(v, ((long) data.length << 56) | littleEndian(data, end, data.length - end));
+		v[2] ^= 0xff;
+		for (int round = 0; round < 4; round++) {
+			round(v);
+		}
+		return v[0] ^ v[1] ^ v[2] ^ v[3];
+	}
+
+	private static void compress(long[] v, long word) {
+		v[3] ^= word;
+		round(v);
+		round(v);
+		v[0] ^= word;
+	}
+
+	private static void round(long[] v) {
+		v[0] += v[1];
+		v[1] = Long.rotateLeft(v[1], 13) ^ v[0];
+		v[0] = Long.rotateLeft(v[0], 32);
+		v[2] += v[3];
+		v[3] = Long.rotateLeft(v[3], 16) ^ v[2];
+		v[0] += v[3];
+		v[3] = Long.rotateLeft(v[3], 21) ^ v[0];
+		v[2] += v[1];
+		v[1] = Long.rotateLeft(v[1], 17) ^ v[2];
+		v[2] = Long.rotateLeft(v[2], 32);
+	}
+
+	private static long littleEndian(byte[] data, int offset, int length) {
+		long word = 0;
+		for (int index = length - 1; index >= 0; index--) {
+			word = (word << 8) | (data[offset + index] & 0xFF);
+		}
+		return word;
+	}
+}
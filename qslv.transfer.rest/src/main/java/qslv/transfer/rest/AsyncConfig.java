@@ -0,0 +1,76 @@
+package qslv.transfer.rest;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+@Configuration
+public class AsyncConfig {
+	@Autowired
+	private ConfigProperties config;
+
+	/**
+	 * Runs the blocking part of a transfer (account lookup and reservation) once the servlet thread is released.
+	 * A full queue rejects the transfer rather than growing without bound.
+	 */
+	@Bean
+	public ThreadPoolTaskExecutor transferExecutor() {
+		ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+		executor.setCorePoolSize(config.getTransferThreads());
+		executor.setMaxPoolSize(config.getTransferThreads());
+		executor.setQueueCapacity(config.getTransferQueueCapacity());
+		executor.setThreadNamePrefix("transfer-");
+		return executor;
+	}
+
+	/**
+	 * Sheds POST /TransferFunds requests beyond what the service can complete without queueing.
+	 */
+	@Bean
+	public ConcurrencyLimiter transferLimiter() {
+		return new ConcurrencyLimiter("transfer", config.getTransferLimitInitial(), config.getTransferLimitMin(),
+				config.getTransferLimitMax(), config.getTransferLimitTolerance(), config.getTransferLimitRetryAfter());
+	}
+
+	/**
+	 * Reads POST /TransferFundsBatch request streams. Each batch holds one thread while it feeds items to transferExecutor,
+	 * so batches get their own pool and are rejected outright when it is busy.
+	 */
+	@Bean
+	public ThreadPoolTaskExecutor batchExecutor() {
+		ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+		executor.setCorePoolSize(config.getBatchThreads());
+		executor.setMaxPoolSize(config.getBatchThreads());
+		executor.setQueueCapacity(0);
+		executor.setThreadNamePrefix("batch-");
+		return executor;
+	}
+
+	/**
+	 * Sends fulfillment messages to the next kafka cluster when one fails. KafkaTemplate.send can block on metadata or a
+	 * full buffer, which must not hold up the producer's I/O thread or the acknowledgement timeouts.
+	 */
+	@Bean
+	public ThreadPoolTaskExecutor kafkaFailoverExecutor() {
+		ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+		executor.setCorePoolSize(config.getKafkaFailoverThreads());
+		executor.setMaxPoolSize(config.getKafkaFailoverThreads());
+		executor.setQueueCapacity(config.getTransferQueueCapacity());
+		executor.setThreadNamePrefix("kafka-failover-");
+		return executor;
+	}
+
+	/**
+	 * Runs hedged reservation attempts. When it is busy calls are made unhedged on the caller's thread.
+	 */
+	@Bean
+	public ThreadPoolTaskExecutor hedgeExecutor() {
+		ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+		executor.setCorePoolSize(config.getReservationHedgeThreads());
+		executor.setMaxPoolSize(config.getReservationHedgeThreads());
+		executor.setQueueCapacity(0);
+		executor.setThreadNamePrefix("hedge-");
+		return executor;
+	}
+}
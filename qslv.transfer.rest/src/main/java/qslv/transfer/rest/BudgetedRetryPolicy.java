@@ -0,0 +1,57 @@
+package qslv.transfer.rest;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.retry.RetryContext;
+import org.springframework.retry.RetryPolicy;
+
+/**
+ * RetryPolicy that only allows the retries of its delegate the RetryBudget can pay for.
+ */
+public class BudgetedRetryPolicy implements RetryPolicy {
+	private static final Logger log = LoggerFactory.getLogger(BudgetedRetryPolicy.class);
+	private static final String GRANTED = BudgetedRetryPolicy.class.getName() + ".granted";
+
+	private final RetryPolicy delegate;
+	private final RetryBudget budget;
+
+	public BudgetedRetryPolicy(RetryPolicy delegate, RetryBudget budget) {
+		this.delegate = delegate;
+		this.budget = budget;
+	}
+
+	@Override
+	public boolean canRetry(RetryContext context) {
+		if (false == delegate.canRetry(context)) {
+			return false;
+		}
+		int retry = context.getRetryCount();
+		// RetryTemplate asks more than once per attempt, the retry is only paid for once.
+		if (retry == 0 || Integer.valueOf(retry).equals(context.getAttribute(GRANTED))) {
+			return true;
+		}
+		if (budget.tryRetry()) {
+			context.setAttribute(GRANTED, retry);
+			return true;
+		}
+		log.debug("Retry budget {} exhausted, not retrying. {}", budget.getName(),
+				context.getLastThrowable() == null ? "" : context.getLastThrowable().getLocalizedMessage());
+		return false;
+	}
+
+	@Override
+	public RetryContext open(RetryContext parent) {
+		budget.deposit();
+		return delegate.open(parent);
+	}
+
+	@Override
+	public void close(RetryContext context) {
+		delegate.close(context);
+	}
+
+	@Override
+	public void registerThrowable(RetryContext context, Throwable throwable) {
+		delegate.registerThrowable(context, throwable);
+	}
+}
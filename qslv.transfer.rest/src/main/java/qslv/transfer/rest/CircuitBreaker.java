@@ -0,0 +1,174 @@
+package qslv.transfer.rest;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Fails calls to a dependency fast while it is failing or slow, instead of letting every request wait out its timeout.
+ * The outcome of the last qslv.circuit-breaker-window-size calls is kept. Once at least qslv.circuit-breaker-minimum-calls
+ * are recorded and the percentage of failed or slow calls reaches its threshold the breaker opens, and calls are
+ * rejected for qslv.circuit-breaker-open-duration milliseconds. It then half-opens and lets
+ * qslv.circuit-breaker-half-open-calls probes through, which close it again or re-open it by the same thresholds.
+ * State is published as transfer.circuit.breaker.state (0 closed, 1 open, 2 half open) and rejections as
+ * transfer.circuit.breaker.rejected, both tagged by name.
+ */
+public class CircuitBreaker implements MeterBinder {
+	private static final Logger log = LoggerFactory.getLogger(CircuitBreaker.class);
+	private static final byte FAILED = 1;
+	private static final byte SLOW = 2;
+
+	public enum State { CLOSED, OPEN, HALF_OPEN }
+
+	private final String name;
+	private final boolean enabled;
+	private final int minimumCalls;
+	private final int failureRateThreshold;
+	private final int slowCallRateThreshold;
+	private final int halfOpenCalls;
+	private final long openDuration;
+	private final long slowCallDuration;
+	private final LongAdder rejected = new LongAdder();
+
+	// guarded by this
+	private final byte[] window;
+	private int position = 0;
+	private int calls = 0;
+	private int failures = 0;
+	private int slowCalls = 0;
+	private volatile State state = State.CLOSED;
+	private long openUntil = 0;
+	private int probes = 0;
+
+	/**
+	 * @param slowCallDuration milliseconds after which a call counts as slow.
+	 */
+	public CircuitBreaker(String name, ConfigProperties config, int slowCallDuration) {
+		this.name = name;
+		this.enabled = config.isCircuitBreakerEnabled();
+		this.window = new byte[Math.max(1, config.getCircuitBreakerWindowSize())];
+		this.minimumCalls = Math.max(1, Math.min(config.getCircuitBreakerMinimumCalls(), window.length));
+		this.failureRateThreshold = config.getCircuitBreakerFailureRateThreshold();
+		this.slowCallRateThreshold = config.getCircuitBreakerSlowCallRateThreshold();
+		this.halfOpenCalls = Math.max(1, config.getCircuitBreakerHalfOpenCalls());
+		this.openDuration = TimeUnit.MILLISECONDS.toNanos(config.getCircuitBreakerOpenDuration());
+		this.slowCallDuration = TimeUnit.MILLISECONDS.toNanos(slowCallDuration);
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public State getState() {
+		return state;
+	}
+
+	/**
+	 * @return true if the call may go ahead, in which case its outcome must be passed to onResult.
+	 */
+	public synchronized boolean tryAcquire() {
+		if (false == enabled || state == State.CLOSED) {
+			return true;
+		}
+		if (state == State.OPEN) {
+			if (System.nanoTime() - openUntil < 0) {
+				rejected.increment();
+				return false;
+			}
+			log.info("Circuit breaker {} half open.", name);
+			state = State.HALF_OPEN;
+			clear();
+		}
+		if (probes < halfOpenCalls) {
+			probes++;
+			return true;
+		}
+		rejected.increment();
+		return false;
+	}
+
+	/**
+	 * tryAcquire, throwing CircuitBreakerOpenException if the call may not go ahead.
+	 */
+	public void acquire() throws CircuitBreakerOpenException {
+		if (false == tryAcquire()) {
+			throw new CircuitBreakerOpenException(name);
+		}
+	}
+
+	/**
+	 * Records the outcome of a call permitted by tryAcquire.
+	 */
+	public synchronized void onResult(long elapsedNanos, boolean failed) {
+		if (false == enabled || state == State.OPEN) {
+			// calls admitted before the breaker opened say nothing about the dependency now.
+			return;
+		}
+		byte outcome = (byte) ((failed ? FAILED : 0) | (elapsedNanos >= slowCallDuration ? SLOW : 0));
+		if (calls == window.length) {
+			failures -= window[position] & FAILED;
+			slowCalls -= (window[position] & SLOW) >> 1;
+		} else {
+			calls++;
+		}
+		window[position] = outcome;
+		failures += outcome & FAILED;
+		slowCalls += (outcome & SLOW) >> 1;
+		position = (position + 1) % window.length;
+
+		if (state == State.HALF_OPEN) {
+			if (calls < halfOpenCalls) {
+				return;
+			}
+			if (exceedsThreshold()) {
+				open();
+			} else {
+				log.info("Circuit breaker {} closed.", name);
+				state = State.CLOSED;
+				clear();
+			}
+		} else if (calls >= minimumCalls && exceedsThreshold()) {
+			open();
+		}
+	}
+
+	private boolean exceedsThreshold() {
+		return failures * 100 >= failureRateThreshold * calls || slowCalls * 100 >= slowCallRateThreshold * calls;
+	}
+
+	private void open() {
+		log.warn("Circuit breaker {} open for {}ms. {} of {} calls failed, {} slow.", name, TimeUnit.NANOSECONDS.toMillis(openDuration),
+				failures, calls, slowCalls);
+		state = State.OPEN;
+		openUntil = System.nanoTime() + openDuration;
+	}
+
+	private void clear() {
+		Arrays.fill(window, (byte) 0);
+		position = 0;
+		calls = 0;
+		failures = 0;
+		slowCalls = 0;
+		probes = 0;
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		Gauge.builder("transfer.circuit.breaker.state", this, breaker -> breaker.getState().ordinal())
+			.description("0 closed, 1 open, 2 half open")
+			.tag("name", name)
+			.register(registry);
+		FunctionCounter.builder("transfer.circuit.breaker.rejected", rejected, LongAdder::sum)
+			.description("calls rejected while the circuit breaker was open")
+			.tag("name", name)
+			.register(registry);
+	}
+}
@@ -0,0 +1,15 @@
+package qslv.transfer.rest;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * A call was not attempted because the circuit breaker guarding the dependency is open.
+ */
+public class CircuitBreakerOpenException extends ResponseStatusException {
+	private static final long serialVersionUID = 1L;
+
+	public CircuitBreakerOpenException(String name) {
+		super(HttpStatus.SERVICE_UNAVAILABLE, String.format("Circuit breaker %s is open.", name));
+	}
+}
@@ -0,0 +1,156 @@
+package qslv.transfer.rest;
+
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.server.ResponseStatusException;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Adaptive limit on the requests in progress, so overload is shed with a fast rejection instead of queueing until
+ * everything times out.
+ * The limit follows the latency gradient: every WINDOW completed requests the window's average latency is compared
+ * with a slow moving baseline. While it stays within tolerance percent of the baseline the limit grows by about its
+ * square root; as latency climbs above that the limit shrinks in proportion, down to half per window. Requests that
+ * fail with a 5xx cut the limit by a tenth straight away. The limit only grows while it is actually being used, and
+ * stays between minLimit and maxLimit.
+ * Published as transfer.concurrency.limit, transfer.concurrency.inflight and transfer.concurrency.rejected, tagged by name.
+ */
+public class ConcurrencyLimiter implements MeterBinder {
+	private static final Logger log = LoggerFactory.getLogger(ConcurrencyLimiter.class);
+	static final int WINDOW = 50;
+	private static final double SMOOTHING = 0.2;
+	private static final double BASELINE_DECAY = 0.05;
+
+	private final String name;
+	private final int minLimit;
+	private final int maxLimit;
+	private final double tolerance;
+	private final int retryAfter;
+	private final AtomicInteger inflight = new AtomicInteger();
+	private final LongAdder rejected = new LongAdder();
+	private volatile double limit;
+
+	// guarded by this
+	private long windowLatency = 0;
+	private int windowCount = 0;
+	private int windowMaxInflight = 0;
+	private double baseline = 0;
+
+	/**
+	 * @param tolerance percent of the baseline latency accepted before the limit shrinks.
+	 * @param retryAfter seconds, sent with rejections.
+	 */
+	public ConcurrencyLimiter(String name, int initialLimit, int minLimit, int maxLimit, int tolerance, int retryAfter) {
+		this.name = name;
+		this.minLimit = Math.max(1, minLimit);
+		this.maxLimit = Math.max(this.minLimit, maxLimit);
+		this.limit = Math.max(this.minLimit, Math.min(this.maxLimit, initialLimit));
+		this.tolerance = Math.max(100, tolerance) / 100.0;
+		this.retryAfter = retryAfter;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public int getLimit() {
+		return (int) limit;
+	}
+
+	public int getInflight() {
+		return inflight.get();
+	}
+
+	/**
+	 * Admit a request, which must be released once it completes.
+	 * @throws LimitExceededException if the limit is reached.
+	 */
+	public long acquire() throws LimitExceededException {
+		int current;
+		do {
+			current = inflight.get();
+			if (current >= (int) limit) {
+				rejected.increment();
+				throw new LimitExceededException(name, retryAfter);
+			}
+		} while (false == inflight.compareAndSet(current, current + 1));
+		return System.nanoTime();
+	}
+
+	/**
+	 * @param start the value returned by acquire.
+	 * @param exception the request's failure, or null.
+	 */
+	public void release(long start, Throwable exception) {
+		int wasInflight = inflight.getAndDecrement();
+		onSample(System.nanoTime() - start, wasInflight, isOverload(exception));
+	}
+
+	synchronized void onSample(long latency, int wasInflight, boolean overload) {
+		if (overload) {
+			limit = Math.max(minLimit, limit * 0.9);
+			return;
+		}
+		windowLatency += latency;
+		windowMaxInflight = Math.max(windowMaxInflight, wasInflight);
+		if (++windowCount < WINDOW) {
+			return;
+		}
+		double shortLatency = (double) windowLatency / windowCount;
+		boolean used = windowMaxInflight >= limit / 2;
+		windowLatency = 0;
+		windowCount = 0;
+		windowMaxInflight = 0;
+
+		baseline = baseline == 0 ? shortLatency : baseline * (1 - BASELINE_DECAY) + shortLatency * BASELINE_DECAY;
+		if (baseline > 2 * shortLatency) {
+			// latency has fallen well below the baseline, e.g. after an overload. catch up faster.
+			baseline *= 0.95;
+		}
+		double gradient = Math.max(0.5, Math.min(1.0, tolerance * baseline / shortLatency));
+		double target = limit * gradient + Math.sqrt(limit);
+		if (target > limit && false == used) {
+			return;
+		}
+		double updated = Math.max(minLimit, Math.min(maxLimit, limit * (1 - SMOOTHING) + target * SMOOTHING));
+		if ((int) updated != (int) limit) {
+			log.debug("{} limit {} latency {}us baseline {}us", name, (int) updated, (long) shortLatency / 1000, (long) baseline / 1000);
+		}
+		limit = updated;
+	}
+
+	static boolean isOverload(Throwable exception) {
+		Throwable cause = (exception instanceof CompletionException && exception.getCause() != null) ? exception.getCause() : exception;
+		if (cause == null) {
+			return false;
+		}
+		if (cause instanceof ResponseStatusException) {
+			return ((ResponseStatusException) cause).getStatus().is5xxServerError();
+		}
+		return true;
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		Gauge.builder("transfer.concurrency.limit", this, ConcurrencyLimiter::getLimit)
+			.description("requests allowed in progress")
+			.tag("name", name)
+			.register(registry);
+		Gauge.builder("transfer.concurrency.inflight", this, ConcurrencyLimiter::getInflight)
+			.description("requests in progress")
+			.tag("name", name)
+			.register(registry);
+		FunctionCounter.builder("transfer.concurrency.rejected", rejected, LongAdder::sum)
+			.description("requests rejected at the limit")
+			.tag("name", name)
+			.register(registry);
+	}
+}
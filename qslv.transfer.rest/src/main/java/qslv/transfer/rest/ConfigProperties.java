@@ -12,15 +12,97 @@ public class ConfigProperties {
 
 	private String aitid = "27834";
 	private String reservationUrl;
+	private String cancelReservationUrl;
+	private String reservationInstances = "";
+	private int reservationDiscoveryInterval = 10000;
+	private int reservationEjectFailures = 5;
+	private int reservationEjectDuration = 10000;
+	private boolean speculativeReservation = false;
+	private int reservationCancelAttempts = 5;
+	private int reservationCancelRetryDelay = 1000;
 	private int restConnectionRequestTimeout = 1000;
 	private int restConnectTimeout = 1000;
 	private int restTimeout = 1000;
 	private int restAttempts = 3;
 	private int restBackoffDelay = 100;
 	private int restBackoffDelayMax = 500; 
+	private int restRetryBudgetPercent = 10;
+	private int restRetryBudgetBurst = 20;
+	private boolean reservationHedgeEnabled = false;
+	private int reservationHedgePercentile = 95;
+	private int reservationHedgeMinDelay = 20;
+	private int reservationHedgeBudgetPercent = 5;
+	private int reservationHedgeBudgetBurst = 10;
+	private int reservationHedgeThreads = 200;
+	private int restMaxConnections = 200;
+	private int restMaxConnectionsPerRoute = 50;
+	private int restKeepAlive = 30000;
+	private int restIdleTimeout = 10000;
+	private int restValidateAfterInactivity = 2000;
 	private String kafkaTransferRequestQueue;
 	private String kafkaProperties;
 	private int kafkaTimeout;
+	private String kafkaFailoverProperties = "";
+	private int kafkaFailoverThreshold = 3;
+	private int kafkaFailoverThreads = 8;
+	private int kafkaFailbackInterval = 30000;
+	private boolean serverTimingHeader = false;
+	private boolean circuitBreakerEnabled = true;
+	private int circuitBreakerWindowSize = 100;
+	private int circuitBreakerMinimumCalls = 20;
+	private int circuitBreakerFailureRateThreshold = 50;
+	private int circuitBreakerSlowCallRateThreshold = 80;
+	private int circuitBreakerOpenDuration = 10000;
+	private int circuitBreakerHalfOpenCalls = 5;
+	private int circuitBreakerReservationSlowCall = 500;
+	private int circuitBreakerKafkaSlowCall = 500;
+	private String kafkaProducerProfile = "standard";
+	private int kafkaMaxInFlight = 5;
+	private boolean kafkaGroupCommit = false;
+	private int kafkaGroupCommitLinger = 5;
+	private int kafkaGroupCommitSize = 100;
+	private int transferThreads = 200;
+	private int transferQueueCapacity = 1000;
+	private boolean transferLimitEnabled = false;
+	private int transferLimitInitial = 100;
+	private int transferLimitMin = 10;
+	private int transferLimitMax = 1000;
+	private int transferLimitTolerance = 150;
+	private int transferLimitRetryAfter = 1;
+	private int batchThreads = 8;
+	private int batchParallelism = 16;
+	private long batchTimeout = 600000;
+	private long accountCacheSize = 10000;
+	private int accountCacheTimeToLive = 60000;
+	private int accountNegativeCacheSize = 10000;
+	private int accountNegativeCacheTimeToLive = 30000;
+	private String accountReadMode = "consistent";
+	private int accountReadStaleness = 10000;
+	private String accountReadUrl = "";
+	private String accountReadUsername;
+	private String accountReadPassword;
+	private int accountReadPoolSize = 10;
+	private boolean accountBatchEnabled = false;
+	private int accountBatchWindow = 2;
+	private int accountBatchSize = 100;
+	private int accountBatchThreads = 4;
+	private int accountBatchTimeout = 1000;
+	private boolean accountSnapshotEnabled = false;
+	private int accountSnapshotPageSize = 10000;
+	private int accountSnapshotRefreshInterval = 5000;
+	private int accountSnapshotReloadInterval = 3600000;
+	private String accountSnapshotUpdatedColumn = "";
+	private String kafkaAccountChangeQueue;
+	private long idempotencyCacheSize = 100000;
+	private int idempotencyTimeToLive = 600000;
+	private boolean idempotencyPersistent = false;
+	private boolean outboxEnabled = false;
+	private String outboxDirectory = "outbox";
+	private long outboxSegmentSize = 64L * 1024 * 1024;
+	private int outboxRelayBatch = 500;
+	private int outboxRelayInterval = 20;
+	private int outboxRelayAttempts = 5;
+	private long outboxMaxBytes = 1024L * 1024 * 1024;
 
 	public String getAitid() {
 		return aitid;
@@ -38,6 +120,70 @@ public class ConfigProperties {
 		this.reservationUrl = reservationUrl;
 	}
 
+	public String getCancelReservationUrl() {
+		return cancelReservationUrl;
+	}
+
+	public void setCancelReservationUrl(String cancelReservationUrl) {
+		this.cancelReservationUrl = cancelReservationUrl;
+	}
+
+	public String getReservationInstances() {
+		return reservationInstances;
+	}
+
+	public void setReservationInstances(String reservationInstances) {
+		this.reservationInstances = reservationInstances;
+	}
+
+	public int getReservationDiscoveryInterval() {
+		return reservationDiscoveryInterval;
+	}
+
+	public void setReservationDiscoveryInterval(int reservationDiscoveryInterval) {
+		this.reservationDiscoveryInterval = reservationDiscoveryInterval;
+	}
+
+	public int getReservationEjectFailures() {
+		return reservationEjectFailures;
+	}
+
+	public void setReservationEjectFailures(int reservationEjectFailures) {
+		this.reservationEjectFailures = reservationEjectFailures;
+	}
+
+	public int getReservationEjectDuration() {
+		return reservationEjectDuration;
+	}
+
+	public void setReservationEjectDuration(int reservationEjectDuration) {
+		this.reservationEjectDuration = reservationEjectDuration;
+	}
+
+	public boolean isSpeculativeReservation() {
+		return speculativeReservation;
+	}
+
+	public void setSpeculativeReservation(boolean speculativeReservation) {
+		this.speculativeReservation = speculativeReservation;
+	}
+
+	public int getReservationCancelAttempts() {
+		return reservationCancelAttempts;
+	}
+
+	public void setReservationCancelAttempts(int reservationCancelAttempts) {
+		this.reservationCancelAttempts = reservationCancelAttempts;
+	}
+
+	public int getReservationCancelRetryDelay() {
+		return reservationCancelRetryDelay;
+	}
+
+	public void setReservationCancelRetryDelay(int reservationCancelRetryDelay) {
+		this.reservationCancelRetryDelay = reservationCancelRetryDelay;
+	}
+
 	public int getRestConnectionRequestTimeout() {
 		return restConnectionRequestTimeout;
 	}
@@ -86,6 +232,110 @@ public class ConfigProperties {
 		this.restBackoffDelayMax = restBackoffDelayMax;
 	}
 
+	public int getRestRetryBudgetPercent() {
+		return restRetryBudgetPercent;
+	}
+
+	public void setRestRetryBudgetPercent(int restRetryBudgetPercent) {
+		this.restRetryBudgetPercent = restRetryBudgetPercent;
+	}
+
+	public int getRestRetryBudgetBurst() {
+		return restRetryBudgetBurst;
+	}
+
+	public void setRestRetryBudgetBurst(int restRetryBudgetBurst) {
+		this.restRetryBudgetBurst = restRetryBudgetBurst;
+	}
+
+	public boolean isReservationHedgeEnabled() {
+		return reservationHedgeEnabled;
+	}
+
+	public void setReservationHedgeEnabled(boolean reservationHedgeEnabled) {
+		this.reservationHedgeEnabled = reservationHedgeEnabled;
+	}
+
+	public int getReservationHedgePercentile() {
+		return reservationHedgePercentile;
+	}
+
+	public void setReservationHedgePercentile(int reservationHedgePercentile) {
+		this.reservationHedgePercentile = reservationHedgePercentile;
+	}
+
+	public int getReservationHedgeMinDelay() {
+		return reservationHedgeMinDelay;
+	}
+
+	public void setReservationHedgeMinDelay(int reservationHedgeMinDelay) {
+		this.reservationHedgeMinDelay = reservationHedgeMinDelay;
+	}
+
+	public int getReservationHedgeBudgetPercent() {
+		return reservationHedgeBudgetPercent;
+	}
+
+	public void setReservationHedgeBudgetPercent(int reservationHedgeBudgetPercent) {
+		this.reservationHedgeBudgetPercent = reservationHedgeBudgetPercent;
+	}
+
+	public int getReservationHedgeBudgetBurst() {
+		return reservationHedgeBudgetBurst;
+	}
+
+	public void setReservationHedgeBudgetBurst(int reservationHedgeBudgetBurst) {
+		this.reservationHedgeBudgetBurst = reservationHedgeBudgetBurst;
+	}
+
+	public int getReservationHedgeThreads() {
+		return reservationHedgeThreads;
+	}
+
+	public void setReservationHedgeThreads(int reservationHedgeThreads) {
+		this.reservationHedgeThreads = reservationHedgeThreads;
+	}
+
+	public int getRestMaxConnections() {
+		return restMaxConnections;
+	}
+
+	public void setRestMaxConnections(int restMaxConnections) {
+		this.restMaxConnections = restMaxConnections;
+	}
+
+	public int getRestMaxConnectionsPerRoute() {
+		return restMaxConnectionsPerRoute;
+	}
+
+	public void setRestMaxConnectionsPerRoute(int restMaxConnectionsPerRoute) {
+		this.restMaxConnectionsPerRoute = restMaxConnectionsPerRoute;
+	}
+
+	public int getRestKeepAlive() {
+		return restKeepAlive;
+	}
+
+	public void setRestKeepAlive(int restKeepAlive) {
+		this.restKeepAlive = restKeepAlive;
+	}
+
+	public int getRestIdleTimeout() {
+		return restIdleTimeout;
+	}
+
+	public void setRestIdleTimeout(int restIdleTimeout) {
+		this.restIdleTimeout = restIdleTimeout;
+	}
+
+	public int getRestValidateAfterInactivity() {
+		return restValidateAfterInactivity;
+	}
+
+	public void setRestValidateAfterInactivity(int restValidateAfterInactivity) {
+		this.restValidateAfterInactivity = restValidateAfterInactivity;
+	}
+
 	public String getKafkaTransferRequestQueue() {
 		return kafkaTransferRequestQueue;
 	}
@@ -106,6 +356,43 @@ public class ConfigProperties {
 		return kafkaProperties.split(",");
 	}
 
+	public String getKafkaFailoverProperties() {
+		return kafkaFailoverProperties;
+	}
+
+	public void setKafkaFailoverProperties(String kafkaFailoverProperties) {
+		this.kafkaFailoverProperties = kafkaFailoverProperties;
+	}
+
+	public String[] getKafkaFailoverPropertiesArray() {
+		return (kafkaFailoverProperties == null || kafkaFailoverProperties.trim().isEmpty())
+				? new String[0] : kafkaFailoverProperties.trim().split("\\s*,\\s*");
+	}
+
+	public int getKafkaFailoverThreshold() {
+		return kafkaFailoverThreshold;
+	}
+
+	public void setKafkaFailoverThreshold(int kafkaFailoverThreshold) {
+		this.kafkaFailoverThreshold = kafkaFailoverThreshold;
+	}
+
+	public int getKafkaFailoverThreads() {
+		return kafkaFailoverThreads;
+	}
+
+	public void setKafkaFailoverThreads(int kafkaFailoverThreads) {
+		this.kafkaFailoverThreads = kafkaFailoverThreads;
+	}
+
+	public int getKafkaFailbackInterval() {
+		return kafkaFailbackInterval;
+	}
+
+	public void setKafkaFailbackInterval(int kafkaFailbackInterval) {
+		this.kafkaFailbackInterval = kafkaFailbackInterval;
+	}
+
 	public int getKafkaTimeout() {
 		return kafkaTimeout;
 	}
@@ -114,4 +401,460 @@ public class ConfigProperties {
 		this.kafkaTimeout = kafkaTimeout;
 	}
 	
+	public String getKafkaProducerProfile() {
+		return kafkaProducerProfile;
+	}
+
+	public void setKafkaProducerProfile(String kafkaProducerProfile) {
+		this.kafkaProducerProfile = kafkaProducerProfile;
+	}
+
+	public int getKafkaMaxInFlight() {
+		return kafkaMaxInFlight;
+	}
+
+	public void setKafkaMaxInFlight(int kafkaMaxInFlight) {
+		this.kafkaMaxInFlight = kafkaMaxInFlight;
+	}
+
+	public boolean isKafkaGroupCommit() {
+		return kafkaGroupCommit;
+	}
+
+	public void setKafkaGroupCommit(boolean kafkaGroupCommit) {
+		this.kafkaGroupCommit = kafkaGroupCommit;
+	}
+
+	public int getKafkaGroupCommitLinger() {
+		return kafkaGroupCommitLinger;
+	}
+
+	public void setKafkaGroupCommitLinger(int kafkaGroupCommitLinger) {
+		this.kafkaGroupCommitLinger = kafkaGroupCommitLinger;
+	}
+
+	public int getKafkaGroupCommitSize() {
+		return kafkaGroupCommitSize;
+	}
+
+	public void setKafkaGroupCommitSize(int kafkaGroupCommitSize) {
+		this.kafkaGroupCommitSize = kafkaGroupCommitSize;
+	}
+
+	public int getTransferThreads() {
+		return transferThreads;
+	}
+
+	public void setTransferThreads(int transferThreads) {
+		this.transferThreads = transferThreads;
+	}
+
+	public int getTransferQueueCapacity() {
+		return transferQueueCapacity;
+	}
+
+	public void setTransferQueueCapacity(int transferQueueCapacity) {
+		this.transferQueueCapacity = transferQueueCapacity;
+	}
+
+	public boolean isTransferLimitEnabled() {
+		return transferLimitEnabled;
+	}
+
+	public void setTransferLimitEnabled(boolean transferLimitEnabled) {
+		this.transferLimitEnabled = transferLimitEnabled;
+	}
+
+	public int getTransferLimitInitial() {
+		return transferLimitInitial;
+	}
+
+	public void setTransferLimitInitial(int transferLimitInitial) {
+		this.transferLimitInitial = transferLimitInitial;
+	}
+
+	public int getTransferLimitMin() {
+		return transferLimitMin;
+	}
+
+	public void setTransferLimitMin(int transferLimitMin) {
+		this.transferLimitMin = transferLimitMin;
+	}
+
+	public int getTransferLimitMax() {
+		return transferLimitMax;
+	}
+
+	public void setTransferLimitMax(int transferLimitMax) {
+		this.transferLimitMax = transferLimitMax;
+	}
+
+	public int getTransferLimitTolerance() {
+		return transferLimitTolerance;
+	}
+
+	public void setTransferLimitTolerance(int transferLimitTolerance) {
+		this.transferLimitTolerance = transferLimitTolerance;
+	}
+
+	public int getTransferLimitRetryAfter() {
+		return transferLimitRetryAfter;
+	}
+
+	public void setTransferLimitRetryAfter(int transferLimitRetryAfter) {
+		this.transferLimitRetryAfter = transferLimitRetryAfter;
+	}
+
+	public int getBatchThreads() {
+		return batchThreads;
+	}
+
+	public void setBatchThreads(int batchThreads) {
+		this.batchThreads = batchThreads;
+	}
+
+	public int getBatchParallelism() {
+		return batchParallelism;
+	}
+
+	public void setBatchParallelism(int batchParallelism) {
+		this.batchParallelism = batchParallelism;
+	}
+
+	public long getBatchTimeout() {
+		return batchTimeout;
+	}
+
+	public void setBatchTimeout(long batchTimeout) {
+		this.batchTimeout = batchTimeout;
+	}
+
+	public long getAccountCacheSize() {
+		return accountCacheSize;
+	}
+
+	public void setAccountCacheSize(long accountCacheSize) {
+		this.accountCacheSize = accountCacheSize;
+	}
+
+	public int getAccountCacheTimeToLive() {
+		return accountCacheTimeToLive;
+	}
+
+	public void setAccountCacheTimeToLive(int accountCacheTimeToLive) {
+		this.accountCacheTimeToLive = accountCacheTimeToLive;
+	}
+
+	public int getAccountNegativeCacheSize() {
+		return accountNegativeCacheSize;
+	}
+
+	public void setAccountNegativeCacheSize(int accountNegativeCacheSize) {
+		this.accountNegativeCacheSize = accountNegativeCacheSize;
+	}
+
+	public int getAccountNegativeCacheTimeToLive() {
+		return accountNegativeCacheTimeToLive;
+	}
+
+	public void setAccountNegativeCacheTimeToLive(int accountNegativeCacheTimeToLive) {
+		this.accountNegativeCacheTimeToLive = accountNegativeCacheTimeToLive;
+	}
+
+	public String getAccountReadMode() {
+		return accountReadMode;
+	}
+
+	public void setAccountReadMode(String accountReadMode) {
+		this.accountReadMode = accountReadMode;
+	}
+
+	public int getAccountReadStaleness() {
+		return accountReadStaleness;
+	}
+
+	public void setAccountReadStaleness(int accountReadStaleness) {
+		this.accountReadStaleness = accountReadStaleness;
+	}
+
+	public String getAccountReadUrl() {
+		return accountReadUrl;
+	}
+
+	public void setAccountReadUrl(String accountReadUrl) {
+		this.accountReadUrl = accountReadUrl;
+	}
+
+	public String getAccountReadUsername() {
+		return accountReadUsername;
+	}
+
+	public void setAccountReadUsername(String accountReadUsername) {
+		this.accountReadUsername = accountReadUsername;
+	}
+
+	public String getAccountReadPassword() {
+		return accountReadPassword;
+	}
+
+	public void setAccountReadPassword(String accountReadPassword) {
+		this.accountReadPassword = accountReadPassword;
+	}
+
+	public int getAccountReadPoolSize() {
+		return accountReadPoolSize;
+	}
+
+	public void setAccountReadPoolSize(int accountReadPoolSize) {
+		this.accountReadPoolSize = accountReadPoolSize;
+	}
+
+	public boolean isAccountBatchEnabled() {
+		return accountBatchEnabled;
+	}
+
+	public void setAccountBatchEnabled(boolean accountBatchEnabled) {
+		this.accountBatchEnabled = accountBatchEnabled;
+	}
+
+	public int getAccountBatchWindow() {
+		return accountBatchWindow;
+	}
+
+	public void setAccountBatchWindow(int accountBatchWindow) {
+		this.accountBatchWindow = accountBatchWindow;
+	}
+
+	public int getAccountBatchSize() {
+		return accountBatchSize;
+	}
+
+	public void setAccountBatchSize(int accountBatchSize) {
+		this.accountBatchSize = accountBatchSize;
+	}
+
+	public int getAccountBatchThreads() {
+		return accountBatchThreads;
+	}
+
+	public void setAccountBatchThreads(int accountBatchThreads) {
+		this.accountBatchThreads = accountBatchThreads;
+	}
+
+	public int getAccountBatchTimeout() {
+		return accountBatchTimeout;
+	}
+
+	public void setAccountBatchTimeout(int accountBatchTimeout) {
+		this.accountBatchTimeout = accountBatchTimeout;
+	}
+
+	public boolean isAccountSnapshotEnabled() {
+		return accountSnapshotEnabled;
+	}
+
+	public void setAccountSnapshotEnabled(boolean accountSnapshotEnabled) {
+		this.accountSnapshotEnabled = accountSnapshotEnabled;
+	}
+
+	public int getAccountSnapshotPageSize() {
+		return accountSnapshotPageSize;
+	}
+
+	public void setAccountSnapshotPageSize(int accountSnapshotPageSize) {
+		this.accountSnapshotPageSize = accountSnapshotPageSize;
+	}
+
+	public int getAccountSnapshotRefreshInterval() {
+		return accountSnapshotRefreshInterval;
+	}
+
+	public void setAccountSnapshotRefreshInterval(int accountSnapshotRefreshInterval) {
+		this.accountSnapshotRefreshInterval = accountSnapshotRefreshInterval;
+	}
+
+	public int getAccountSnapshotReloadInterval() {
+		return accountSnapshotReloadInterval;
+	}
+
+	public void setAccountSnapshotReloadInterval(int accountSnapshotReloadInterval) {
+		this.accountSnapshotReloadInterval = accountSnapshotReloadInterval;
+	}
+
+	public String getAccountSnapshotUpdatedColumn() {
+		return accountSnapshotUpdatedColumn;
+	}
+
+	public void setAccountSnapshotUpdatedColumn(String accountSnapshotUpdatedColumn) {
+		this.accountSnapshotUpdatedColumn = accountSnapshotUpdatedColumn;
+	}
+
+	public String getKafkaAccountChangeQueue() {
+		return kafkaAccountChangeQueue;
+	}
+
+	public void setKafkaAccountChangeQueue(String kafkaAccountChangeQueue) {
+		this.kafkaAccountChangeQueue = kafkaAccountChangeQueue;
+	}
+
+	public long getIdempotencyCacheSize() {
+		return idempotencyCacheSize;
+	}
+
+	public void setIdempotencyCacheSize(long idempotencyCacheSize) {
+		this.idempotencyCacheSize = idempotencyCacheSize;
+	}
+
+	public int getIdempotencyTimeToLive() {
+		return idempotencyTimeToLive;
+	}
+
+	public void setIdempotencyTimeToLive(int idempotencyTimeToLive) {
+		this.idempotencyTimeToLive = idempotencyTimeToLive;
+	}
+
+	public boolean isIdempotencyPersistent() {
+		return idempotencyPersistent;
+	}
+
+	public void setIdempotencyPersistent(boolean idempotencyPersistent) {
+		this.idempotencyPersistent = idempotencyPersistent;
+	}
+
+	public boolean isOutboxEnabled() {
+		return outboxEnabled;
+	}
+
+	public void setOutboxEnabled(boolean outboxEnabled) {
+		this.outboxEnabled = outboxEnabled;
+	}
+
+	public String getOutboxDirectory() {
+		return outboxDirectory;
+	}
+
+	public void setOutboxDirectory(String outboxDirectory) {
+		this.outboxDirectory = outboxDirectory;
+	}
+
+	public long getOutboxSegmentSize() {
+		return outboxSegmentSize;
+	}
+
+	public void setOutboxSegmentSize(long outboxSegmentSize) {
+		this.outboxSegmentSize = outboxSegmentSize;
+	}
+
+	public int getOutboxRelayBatch() {
+		return outboxRelayBatch;
+	}
+
+	public void setOutboxRelayBatch(int outboxRelayBatch) {
+		this.outboxRelayBatch = outboxRelayBatch;
+	}
+
+	public int getOutboxRelayInterval() {
+		return outboxRelayInterval;
+	}
+
+	public void setOutboxRelayInterval(int outboxRelayInterval) {
+		this.outboxRelayInterval = outboxRelayInterval;
+	}
+
+	public int getOutboxRelayAttempts() {
+		return outboxRelayAttempts;
+	}
+
+	public void setOutboxRelayAttempts(int outboxRelayAttempts) {
+		this.outboxRelayAttempts = outboxRelayAttempts;
+	}
+
+	public long getOutboxMaxBytes() {
+		return outboxMaxBytes;
+	}
+
+	public void setOutboxMaxBytes(long outboxMaxBytes) {
+		this.outboxMaxBytes = outboxMaxBytes;
+	}
+
+	public boolean isServerTimingHeader() {
+		return serverTimingHeader;
+	}
+
+	public void setServerTimingHeader(boolean serverTimingHeader) {
+		this.serverTimingHeader = serverTimingHeader;
+	}
+
+	public boolean isCircuitBreakerEnabled() {
+		return circuitBreakerEnabled;
+	}
+
+	public void setCircuitBreakerEnabled(boolean circuitBreakerEnabled) {
+		this.circuitBreakerEnabled = circuitBreakerEnabled;
+	}
+
+	public int getCircuitBreakerWindowSize() {
+		return circuitBreakerWindowSize;
+	}
+
+	public void setCircuitBreakerWindowSize(int circuitBreakerWindowSize) {
+		this.circuitBreakerWindowSize = circuitBreakerWindowSize;
+	}
+
+	public int getCircuitBreakerMinimumCalls() {
+		return circuitBreakerMinimumCalls;
+	}
+
+	public void setCircuitBreakerMinimumCalls(int circuitBreakerMinimumCalls) {
+		this.circuitBreakerMinimumCalls = circuitBreakerMinimumCalls;
+	}
+
+	public int getCircuitBreakerFailureRateThreshold() {
+		return circuitBreakerFailureRateThreshold;
+	}
+
+	public void setCircuitBreakerFailureRateThreshold(int circuitBreakerFailureRateThreshold) {
+		this.circuitBreakerFailureRateThreshold = circuitBreakerFailureRateThreshold;
+	}
+
+	public int getCircuitBreakerSlowCallRateThreshold() {
+		return circuitBreakerSlowCallRateThreshold;
+	}
+
+	public void setCircuitBreakerSlowCallRateThreshold(int circuitBreakerSlowCallRateThreshold) {
+		this.circuitBreakerSlowCallRateThreshold = circuitBreakerSlowCallRateThreshold;
+	}
+
+	public int getCircuitBreakerOpenDuration() {
+		return circuitBreakerOpenDuration;
+	}
+
+	public void setCircuitBreakerOpenDuration(int circuitBreakerOpenDuration) {
+		this.circuitBreakerOpenDuration = circuitBreakerOpenDuration;
+	}
+
+	public int getCircuitBreakerHalfOpenCalls() {
+		return circuitBreakerHalfOpenCalls;
+	}
+
+	public void setCircuitBreakerHalfOpenCalls(int circuitBreakerHalfOpenCalls) {
+		this.circuitBreakerHalfOpenCalls = circuitBreakerHalfOpenCalls;
+	}
+
+	public int getCircuitBreakerReservationSlowCall() {
+		return circuitBreakerReservationSlowCall;
+	}
+
+	public void setCircuitBreakerReservationSlowCall(int circuitBreakerReservationSlowCall) {
+		this.circuitBreakerReservationSlowCall = circuitBreakerReservationSlowCall;
+	}
+
+	public int getCircuitBreakerKafkaSlowCall() {
+		return circuitBreakerKafkaSlowCall;
+	}
+
+	public void setCircuitBreakerKafkaSlowCall(int circuitBreakerKafkaSlowCall) {
+		this.circuitBreakerKafkaSlowCall = circuitBreakerKafkaSlowCall;
+	}
+
 }
@@ -0,0 +1,87 @@
+package qslv.transfer.rest;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * The point in time after which the caller no longer wants the answer to a request.
+ * Callers send the request-deadline header as the milliseconds they are prepared to wait, relative so that clocks
+ * need not agree, and the deadline is fixed when the request arrives. Downstream waits are clamped to what is left
+ * and the remainder is forwarded in the same header.
+ */
+public final class Deadline {
+	public static final String HEADER = "request-deadline";
+	public static final Deadline NONE = new Deadline(false, 0L);
+
+	private final boolean bounded;
+	private final long nanoTime;
+
+	private Deadline(boolean bounded, long nanoTime) {
+		this.bounded = bounded;
+		this.nanoTime = nanoTime;
+	}
+
+	public static Deadline after(long millis) {
+		return new Deadline(true, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis));
+	}
+
+	/**
+	 * The deadline in the request-deadline header, or NONE without one.
+	 */
+	public static Deadline fromHeaders(Map<String, String> headers) throws ResponseStatusException {
+		String value = headers.get(HEADER);
+		if (value == null) {
+			return NONE;
+		}
+		try {
+			long millis = Long.parseLong(value.trim());
+			if (millis >= 0) {
+				return after(millis);
+			}
+		} catch (NumberFormatException ex) {
+			// fall through
+		}
+		throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid header variable request-deadline, expected milliseconds.");
+	}
+
+	public boolean isBounded() {
+		return bounded;
+	}
+
+	public boolean isExpired() {
+		return bounded && System.nanoTime() - nanoTime >= 0;
+	}
+
+	/**
+	 * Milliseconds left, at least 0, or Long.MAX_VALUE when unbounded.
+	 */
+	public long remainingMillis() {
+		return bounded ? Math.max(0L, TimeUnit.NANOSECONDS.toMillis(nanoTime - System.nanoTime())) : Long.MAX_VALUE;
+	}
+
+	/**
+	 * timeout in milliseconds, reduced to what is left of the deadline.
+	 */
+	public int clamp(int timeout) {
+		return (int) Math.min(timeout, remainingMillis());
+	}
+
+	/**
+	 * The earlier of this deadline and another System.nanoTime() deadline.
+	 */
+	public long earliest(long otherNanoTime) {
+		return bounded && nanoTime - otherNanoTime < 0 ? nanoTime : otherNanoTime;
+	}
+
+	/**
+	 * Throws DeadlineExceededException if the deadline has passed, so the named work is skipped.
+	 */
+	public void check(String work) throws DeadlineExceededException {
+		if (isExpired()) {
+			throw new DeadlineExceededException(work);
+		}
+	}
+}
@@ -0,0 +1,19 @@
+package qslv.transfer.rest;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * The caller's request-deadline passed before the named work could be done, so it was skipped or abandoned.
+ */
+public class DeadlineExceededException extends ResponseStatusException {
+	private static final long serialVersionUID = 1L;
+
+	public DeadlineExceededException(String work) {
+		super(HttpStatus.GATEWAY_TIMEOUT, String.format("Request deadline exceeded before %s.", work));
+	}
+
+	public DeadlineExceededException(String work, Throwable cause) {
+		super(HttpStatus.GATEWAY_TIMEOUT, String.format("Request deadline exceeded before %s.", work), cause);
+	}
+}
@@ -0,0 +1,73 @@
+package qslv.transfer.rest;
+
+import java.net.SocketTimeoutException;
+import java.util.function.Supplier;
+
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.config.RequestConfig;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.ResourceAccessException;
+
+/**
+ * HttpComponentsClientHttpRequestFactory whose read and connection request timeouts can be reduced for the calls made
+ * by one thread, so a single RestTemplate can honour each request's own deadline. RestTemplate.exchange runs on the
+ * calling thread, which is what makes the thread-local safe.
+ */
+public class DeadlineRequestFactory extends HttpComponentsClientHttpRequestFactory {
+	private static final ThreadLocal<Integer> timeout = new ThreadLocal<>();
+
+	public DeadlineRequestFactory(HttpClient httpClient) {
+		super(httpClient);
+	}
+
+	/**
+	 * Runs call with the read timeout of any request it makes reduced to at most millis.
+	 */
+	public static <T> T withTimeout(int millis, Supplier<T> call) {
+		Integer previous = timeout.get();
+		timeout.set(millis);
+		try {
+			return call.get();
+		} finally {
+			if (previous == null) {
+				timeout.remove();
+			} else {
+				timeout.set(previous);
+			}
+		}
+	}
+
+	/**
+	 * The timeout in milliseconds set by withTimeout for this thread, or -1 outside it.
+	 */
+	public static int getReducedTimeout() {
+		Integer millis = timeout.get();
+		return millis == null ? -1 : millis;
+	}
+
+	/**
+	 * Whether a failed call says something about the remote service. Everything does except a read timeout that
+	 * withTimeout cut below the usual readTimeout, which is the caller's deadline running out. Refused connections,
+	 * resets and timeouts at the usual length all count, deadline or not.
+	 */
+	public static boolean isServiceFailure(ResourceAccessException ex, int readTimeout) {
+		int reduced = getReducedTimeout();
+		return false == (ex.getCause() instanceof SocketTimeoutException && reduced >= 0 && reduced < readTimeout);
+	}
+
+	@Override
+	protected RequestConfig createRequestConfig(Object client) {
+		RequestConfig config = super.createRequestConfig(client);
+		Integer millis = timeout.get();
+		if (millis == null) {
+			return config;
+		}
+		RequestConfig base = config == null ? RequestConfig.DEFAULT : config;
+		// 0 means infinite to HttpClient, so an exhausted budget still waits 1ms.
+		int reduced = Math.max(1, millis);
+		return RequestConfig.copy(base)
+			.setSocketTimeout(base.getSocketTimeout() <= 0 ? reduced : Math.min(base.getSocketTimeout(), reduced))
+			.setConnectionRequestTimeout(base.getConnectionRequestTimeout() <= 0 ? reduced : Math.min(base.getConnectionRequestTimeout(), reduced))
+			.build();
+	}
+}
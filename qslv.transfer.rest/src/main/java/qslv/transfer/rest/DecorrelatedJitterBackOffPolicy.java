@@ -0,0 +1,60 @@
+package qslv.transfer.rest;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.springframework.retry.RetryContext;
+import org.springframework.retry.backoff.BackOffContext;
+import org.springframework.retry.backoff.BackOffInterruptedException;
+import org.springframework.retry.backoff.BackOffPolicy;
+import org.springframework.retry.backoff.Sleeper;
+import org.springframework.retry.backoff.ThreadWaitSleeper;
+
+/**
+ * Decorrelated jitter: each pause is random between the initial interval and three times the previous pause, capped
+ * at the max interval. Requests that failed together do not retry together.
+ */
+public class DecorrelatedJitterBackOffPolicy implements BackOffPolicy {
+	private long initialInterval = 100;
+	private long maxInterval = 500;
+	private Sleeper sleeper = new ThreadWaitSleeper();
+
+	private static class JitterContext implements BackOffContext {
+		private static final long serialVersionUID = 1L;
+		private long previous;
+
+		JitterContext(long previous) {
+			this.previous = previous;
+		}
+	}
+
+	public void setInitialInterval(long initialInterval) {
+		this.initialInterval = Math.max(1, initialInterval);
+	}
+
+	public void setMaxInterval(long maxInterval) {
+		this.maxInterval = maxInterval;
+	}
+
+	public void setSleeper(Sleeper sleeper) {
+		this.sleeper = sleeper;
+	}
+
+	@Override
+	public BackOffContext start(RetryContext context) {
+		return new JitterContext(initialInterval);
+	}
+
+	@Override
+	public void backOff(BackOffContext backOffContext) throws BackOffInterruptedException {
+		JitterContext context = (JitterContext) backOffContext;
+		long upper = Math.max(initialInterval + 1, context.previous * 3);
+		long pause = Math.min(Math.max(maxInterval, initialInterval), ThreadLocalRandom.current().nextLong(initialInterval, upper));
+		context.previous = pause;
+		try {
+			sleeper.sleep(pause);
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new BackOffInterruptedException("Thread interrupted while sleeping", ex);
+		}
+	}
+}
@@ -0,0 +1,247 @@
+package qslv.transfer.rest;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.apache.kafka.common.errors.RetriableException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import qslv.common.kafka.TraceableMessage;
+import qslv.transfer.request.TransferFulfillmentMessage;
+
+/**
+ * Local outbox for fulfillment messages (qslv.outbox-enabled=true).
+ * A transfer is fulfilled once its message is durable in the OutboxJournal under qslv.outbox-directory,
+ * so kafka latency and outages are off the request path. A single relay thread drains the journal to kafka
+ * in batches of qslv.outbox-relay-batch, and only moves the checkpoint once the whole batch is acknowledged.
+ * Delivery is at least once: after a failure or restart the unacknowledged batch is sent again, which downstream
+ * handles through the fulfillment message requestUuid.
+ * Outages (timeouts, an open circuit breaker, retriable kafka errors) are waited out. A record kafka keeps rejecting
+ * for any other reason, e.g. one too large or that will not deserialize, is moved to the dead-letter journal in
+ * the dead-letter subdirectory after qslv.outbox-relay-attempts tries, so it cannot hold up the records behind it.
+ * Dead letters are counted by transfer.outbox.dead.lettered and kept for replay.
+ * Once the backlog reaches qslv.outbox-max-bytes append fails with 503 rather than filling the disk.
+ * The directory must be on a persistent volume, otherwise a lost pod loses its backlog.
+ */
+@Component
+public class FulfillmentOutbox {
+	private static final Logger log = LoggerFactory.getLogger(FulfillmentOutbox.class);
+	static final String DEAD_LETTER = "dead-letter";
+	private static final TypeReference<TraceableMessage<TransferFulfillmentMessage>> MESSAGE_TYPE =
+			new TypeReference<TraceableMessage<TransferFulfillmentMessage>>() {};
+
+	@Autowired
+	private ConfigProperties config;
+	@Autowired
+	private KafkaDao kafkaDao;
+	@Autowired
+	private ObjectMapper objectMapper;
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	private OutboxJournal journal;
+	private OutboxJournal deadLetters;
+	private ScheduledExecutorService relay;
+	private Counter relayed;
+	private Counter deadLettered;
+
+	// relay thread only
+	private long failingRecord = -1;
+	private int failingAttempts = 0;
+
+	public void setConfig(ConfigProperties config) {
+		this.config = config;
+	}
+	public void setKafkaDao(KafkaDao kafkaDao) {
+		this.kafkaDao = kafkaDao;
+	}
+	public void setObjectMapper(ObjectMapper objectMapper) {
+		this.objectMapper = objectMapper;
+	}
+	public void setMeterRegistry(MeterRegistry meterRegistry) {
+		this.meterRegistry = meterRegistry;
+	}
+
+	@PostConstruct
+	public void init() throws IOException {
+		if (false == config.isOutboxEnabled()) {
+			return;
+		}
+		journal = OutboxJournal.open(Paths.get(config.getOutboxDirectory()), config.getOutboxSegmentSize());
+		deadLetters = OutboxJournal.open(Paths.get(config.getOutboxDirectory(), DEAD_LETTER), config.getOutboxSegmentSize());
+		relayed = Counter.builder("transfer.outbox.relayed")
+				.description("Fulfillment messages relayed from the outbox to kafka")
+				.register(meterRegistry);
+		deadLettered = Counter.builder("transfer.outbox.dead.lettered")
+				.description("Fulfillment messages kafka kept rejecting, moved to the dead-letter journal")
+				.register(meterRegistry);
+		Gauge.builder("transfer.outbox.backlog", journal, j -> j.getEndPosition() - j.getCheckpoint())
+				.description("Outbox bytes not yet acknowledged by kafka")
+				.baseUnit("bytes")
+				.register(meterRegistry);
+		Gauge.builder("transfer.outbox.dead.letter.backlog", deadLetters, j -> j.getEndPosition() - j.getCheckpoint())
+				.description("Dead-letter journal bytes awaiting replay")
+				.baseUnit("bytes")
+				.register(meterRegistry);
+
+		relay = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "outbox-relay");
+			thread.setDaemon(true);
+			return thread;
+		});
+		relay.scheduleWithFixedDelay(this::relay, config.getOutboxRelayInterval(), config.getOutboxRelayInterval(), TimeUnit.MILLISECONDS);
+	}
+
+	@PreDestroy
+	public void shutdown() throws Exception {
+		if (journal == null) {
+			return;
+		}
+		relay.shutdown();
+		relay.awaitTermination(config.getKafkaTimeout() * 2L, TimeUnit.MILLISECONDS);
+		journal.close();
+		deadLetters.close();
+	}
+
+	public boolean isEnabled() {
+		return journal != null;
+	}
+
+	public boolean isFull() {
+		return journal.getEndPosition() - journal.getCheckpoint() >= config.getOutboxMaxBytes();
+	}
+
+	/**
+	 * Returns once the fulfillment message is durable in the outbox.
+	 * @throws ResponseStatusException SERVICE_UNAVAILABLE once the backlog has reached qslv.outbox-max-bytes.
+	 */
+	public void append(Map<String, String> callingHeaders, TransferFulfillmentMessage tfr) throws ResponseStatusException {
+		if (isFull()) {
+			log.warn("append rejected, the outbox backlog has reached {} bytes.", config.getOutboxMaxBytes());
+			throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Outbox full");
+		}
+		try {
+			journal.append(objectMapper.writeValueAsBytes(kafkaDao.buildMessage(callingHeaders, tfr)));
+		} catch (IOException ex) {
+			log.error("append failed. {}", ex.getLocalizedMessage());
+			throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Outbox append failure", ex);
+		}
+	}
+
+	void relay() {
+		try {
+			while (true) {
+				long checkpoint = journal.getCheckpoint();
+				OutboxJournal.Batch batch = journal.read(checkpoint, config.getOutboxRelayBatch());
+				List<byte[]> records = batch.getRecords();
+				if (records.isEmpty()) {
+					return;
+				}
+
+				List<CompletableFuture<Void>> sends = new ArrayList<>(records.size());
+				for (byte[] record : records) {
+					sends.add(send(record));
+				}
+				kafkaDao.flush();
+				int failed = -1;
+				Throwable failure = null;
+				for (int index = 0; index < sends.size() && failed < 0; index++) {
+					try {
+						sends.get(index).join();
+					} catch (CompletionException ex) {
+						failed = index;
+						failure = ex.getCause() == null ? ex : ex.getCause();
+					}
+				}
+
+				if (failed < 0) {
+					journal.commit(batch.getEnd());
+					relayed.increment(records.size());
+					log.debug("relay {} messages to {}", records.size(), batch.getEnd());
+					continue;
+				}
+				if (failed > 0) {
+					// keep what was acknowledged ahead of the failure.
+					journal.commit(batch.getEnd(failed - 1));
+					relayed.increment(failed);
+				}
+				if (false == deadLetter(records.get(failed), batch.getEnd(failed), failure)) {
+					return;
+				}
+			}
+		} catch (Exception ex) {
+			// nothing is lost. the batch is sent again on the next run.
+			log.warn("relay paused. {}", ex.getLocalizedMessage());
+		}
+	}
+
+	private CompletableFuture<Void> send(byte[] record) {
+		try {
+			return kafkaDao.produceMessageAsync(objectMapper.readValue(record, MESSAGE_TYPE));
+		} catch (IOException ex) {
+			CompletableFuture<Void> unreadable = new CompletableFuture<>();
+			unreadable.completeExceptionally(ex);
+			return unreadable;
+		}
+	}
+
+	/**
+	 * Counts a failed attempt at the record ending at end, and moves it to the dead-letter journal once it has used up
+	 * qslv.outbox-relay-attempts. Outages are not counted: every record would fail alike.
+	 * @return true if the record was moved, so the relay can carry on past it.
+	 */
+	private boolean deadLetter(byte[] record, long end, Throwable failure) throws IOException {
+		if (isOutage(failure)) {
+			log.warn("relay paused. {}", failure.getLocalizedMessage());
+			return false;
+		}
+		if (end != failingRecord) {
+			failingRecord = end;
+			failingAttempts = 0;
+		}
+		if (++failingAttempts < config.getOutboxRelayAttempts()) {
+			log.warn("relay of record ending at {} failed {} times. {}", end, failingAttempts, failure.getLocalizedMessage());
+			return false;
+		}
+		deadLetters.append(record);
+		journal.commit(end);
+		deadLettered.increment();
+		log.error("relay moved record ending at {} to the dead-letter journal after {} attempts. {}", end, failingAttempts,
+				failure.getLocalizedMessage());
+		failingRecord = -1;
+		failingAttempts = 0;
+		return true;
+	}
+
+	static boolean isOutage(Throwable failure) {
+		for (Throwable cause = failure; cause != null; cause = cause.getCause() == cause ? null : cause.getCause()) {
+			if (cause instanceof CircuitBreakerOpenException || cause instanceof TimeoutException || cause instanceof RetriableException) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
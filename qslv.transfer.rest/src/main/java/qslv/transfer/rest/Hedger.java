@@ -0,0 +1,178 @@
+package qslv.transfer.rest;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.springframework.web.client.ResourceAccessException;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Hedged calls to an idempotent dependency. Each call is started on the executor. If it has not answered within the
+ * given percentile of recent call latencies (but not less than the minimum delay), a second identical call is
+ * started and the first success wins. The loser is left to finish and its result is discarded.
+ * Hedges are paid for from a RetryBudget, so they stay a small fraction of calls however slow the dependency gets.
+ * No call is hedged until enough latencies have been seen to estimate the delay, nor when the executor is busy.
+ * Published as transfer.hedge.delay, transfer.hedge.sent and transfer.hedge.won tagged by name, plus the budget's
+ * transfer.retry.budget.* meters named name-hedge.
+ */
+public class Hedger implements MeterBinder {
+	private static final int SAMPLES = 1024;
+	private static final int RECALCULATE = 64;
+	private static final long NOT_YET = Long.MAX_VALUE;
+
+	private final String name;
+	private final int percentile;
+	private final long minDelay;
+	private final RetryBudget budget;
+	private final Executor executor;
+	private final LongAdder sent = new LongAdder();
+	private final LongAdder won = new LongAdder();
+
+	// guarded by samples
+	private final long[] samples = new long[SAMPLES];
+	private long recorded = 0;
+	private volatile long delay = NOT_YET;
+
+	/**
+	 * @param minDelay milliseconds.
+	 * @param budgetPercent hedges allowed per hundred calls, see RetryBudget.
+	 */
+	public Hedger(String name, int percentile, int minDelay, int budgetPercent, int budgetBurst, Executor executor) {
+		this.name = name;
+		this.percentile = Math.max(1, Math.min(100, percentile));
+		this.minDelay = TimeUnit.MILLISECONDS.toNanos(minDelay);
+		this.budget = new RetryBudget(name + "-hedge", budgetPercent, budgetBurst);
+		this.executor = executor;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Current hedge delay in milliseconds, or -1 while it is still being learnt.
+	 */
+	public double getDelay() {
+		long current = delay;
+		return current == NOT_YET ? -1 : current / 1e6;
+	}
+
+	/**
+	 * The result of the first attempt to succeed, or the exception of the last to fail.
+	 */
+	public <T> T execute(Supplier<T> attempt) {
+		budget.deposit();
+		CompletableFuture<T> primary = submit(attempt);
+		if (primary == null) {
+			return timed(attempt);
+		}
+		try {
+			long hedgeAfter = delay;
+			if (hedgeAfter == NOT_YET) {
+				return primary.get();
+			}
+			try {
+				return primary.get(hedgeAfter, TimeUnit.NANOSECONDS);
+			} catch (TimeoutException ex) {
+				// too slow, hedge it.
+			}
+			CompletableFuture<T> hedge = budget.tryRetry() ? submit(attempt) : null;
+			if (hedge == null) {
+				return primary.get();
+			}
+			sent.increment();
+			return firstSuccess(primary, hedge).get();
+		} catch (ExecutionException ex) {
+			throw unwrap(ex.getCause());
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new ResourceAccessException(String.format("Interrupted waiting for %s.", name));
+		}
+	}
+
+	private <T> CompletableFuture<T> submit(Supplier<T> attempt) {
+		try {
+			return CompletableFuture.supplyAsync(() -> timed(attempt), executor);
+		} catch (RejectedExecutionException ex) {
+			return null;
+		}
+	}
+
+	private <T> CompletableFuture<T> firstSuccess(CompletableFuture<T> primary, CompletableFuture<T> hedge) {
+		CompletableFuture<T> winner = new CompletableFuture<>();
+		AtomicInteger failures = new AtomicInteger();
+		primary.whenComplete((result, ex) -> {
+			if (ex == null) {
+				winner.complete(result);
+			} else if (failures.incrementAndGet() == 2) {
+				winner.completeExceptionally(ex);
+			}
+		});
+		hedge.whenComplete((result, ex) -> {
+			if (ex == null) {
+				if (winner.complete(result)) {
+					won.increment();
+				}
+			} else if (failures.incrementAndGet() == 2) {
+				winner.completeExceptionally(ex);
+			}
+		});
+		return winner;
+	}
+
+	private <T> T timed(Supplier<T> attempt) {
+		long start = System.nanoTime();
+		T result = attempt.get();
+		record(System.nanoTime() - start);
+		return result;
+	}
+
+	private void record(long latency) {
+		synchronized (samples) {
+			samples[(int) (recorded % SAMPLES)] = latency;
+			recorded++;
+			if (recorded % RECALCULATE == 0) {
+				long[] sorted = Arrays.copyOf(samples, (int) Math.min(recorded, SAMPLES));
+				Arrays.sort(sorted);
+				delay = Math.max(minDelay, sorted[Math.min(sorted.length - 1, sorted.length * percentile / 100)]);
+			}
+		}
+	}
+
+	private static RuntimeException unwrap(Throwable ex) {
+		while (ex instanceof CompletionException && ex.getCause() != null) {
+			ex = ex.getCause();
+		}
+		return ex instanceof RuntimeException ? (RuntimeException) ex : new CompletionException(ex);
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		budget.bindTo(registry);
+		Gauge.builder("transfer.hedge.delay", this, Hedger::getDelay)
+			.description("milliseconds after which a call is hedged, -1 until learnt")
+			.tag("name", name)
+			.register(registry);
+		FunctionCounter.builder("transfer.hedge.sent", sent, LongAdder::sum)
+			.description("hedged calls started")
+			.tag("name", name)
+			.register(registry);
+		FunctionCounter.builder("transfer.hedge.won", won, LongAdder::sum)
+			.description("hedged calls that answered before the original")
+			.tag("name", name)
+			.register(registry);
+	}
+}
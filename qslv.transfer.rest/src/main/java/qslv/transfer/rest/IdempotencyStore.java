@@ -0,0 +1,208 @@
+package qslv.transfer.rest;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import javax.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Repository;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import qslv.transfer.request.TransferFundsRequest;
+import qslv.transfer.response.TransferFundsResponse;
+
+/**
+ * Outcome of each transfer keyed by TransferFundsRequest.requestUuid, so a client retry gets the original
+ * TransferFundsResponse without another account lookup or reservation call.
+ * Entries are bounded by qslv.idempotency-cache-size and kept for qslv.idempotency-time-to-live milliseconds.
+ * A transfer still in flight is held as its future, so concurrent duplicates wait on the one execution.
+ * Only completed responses are kept; a failed transfer is forgotten and the next retry runs it again.
+ * Each outcome is kept with a fingerprint of the request's accounts and amount. A requestUuid reused for a different
+ * transfer is rejected with 422 rather than answered with the first transfer's response.
+ * With qslv.idempotency-persistent=true responses are also written to the transfer_response table
+ * (request_uuid UUID PRIMARY KEY, request_fingerprint UUID, response_json STRING) and read back on a local miss,
+ * which covers retries that land on another instance or arrive after a restart.
+ */
+@Repository
+public class IdempotencyStore {
+	private static final Logger log = LoggerFactory.getLogger(IdempotencyStore.class);
+	public static final String CACHE_NAME = "idempotencyStore";
+
+	@Autowired
+	private ConfigProperties config;
+	@Autowired
+	private JdbcDao jdbcDao;
+	@Autowired
+	private ObjectMapper objectMapper;
+	@Autowired
+	private MeterRegistry meterRegistry;
+	@Autowired
+	private Executor transferExecutor;
+
+	private static class Outcome {
+		final UUID fingerprint;
+		final CompletableFuture<TransferFundsResponse> response = new CompletableFuture<>();
+
+		Outcome(UUID fingerprint) {
+			this.fingerprint = fingerprint;
+		}
+	}
+
+	private Cache<UUID, Outcome> cache;
+	private Counter duplicates;
+
+	public void setConfig(ConfigProperties config) {
+		this.config = config;
+	}
+	public void setJdbcDao(JdbcDao jdbcDao) {
+		this.jdbcDao = jdbcDao;
+	}
+	public void setObjectMapper(ObjectMapper objectMapper) {
+		this.objectMapper = objectMapper;
+	}
+	public void setMeterRegistry(MeterRegistry meterRegistry) {
+		this.meterRegistry = meterRegistry;
+	}
+	public void setTransferExecutor(Executor transferExecutor) {
+		this.transferExecutor = transferExecutor;
+	}
+
+	@PostConstruct
+	public void init() {
+		cache = Caffeine.newBuilder()
+				.maximumSize(config.getIdempotencyCacheSize())
+				.expireAfterWrite(config.getIdempotencyTimeToLive(), TimeUnit.MILLISECONDS)
+				.recordStats()
+				.build();
+		CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+		duplicates = Counter.builder("transfer.idempotency.duplicates")
+				.description("Transfers answered from a stored or in-flight outcome")
+				.register(meterRegistry);
+	}
+
+	/**
+	 * Returns the stored or in-flight outcome for the request's requestUuid. Otherwise runs transfer and shares its outcome.
+	 * The outcome is a 422 ResponseStatusException if the requestUuid was used for a different transfer.
+	 */
+	public CompletableFuture<TransferFundsResponse> execute(final TransferFundsRequest request,
+			final Supplier<CompletableFuture<TransferFundsResponse>> transfer) {
+		final UUID requestUuid = request.getRequestUuid();
+		final Outcome outcome = new Outcome(fingerprint(request));
+		Outcome existing = cache.asMap().putIfAbsent(requestUuid, outcome);
+		if (existing != null) {
+			if (false == existing.fingerprint.equals(outcome.fingerprint)) {
+				return mismatch(requestUuid);
+			}
+			log.debug("execute duplicate request {}", requestUuid);
+			duplicates.increment();
+			return existing.response;
+		}
+
+		CompletableFuture<TransferFundsResponse> result;
+		try {
+			result = config.isIdempotencyPersistent() ? executePersistent(requestUuid, outcome.fingerprint, transfer) : transfer.get();
+		} catch (RuntimeException ex) {
+			result = new CompletableFuture<>();
+			result.completeExceptionally(ex);
+		}
+
+		result.whenComplete((response, ex) -> {
+			if (ex != null) {
+				cache.asMap().remove(requestUuid, outcome);
+				outcome.response.completeExceptionally(ex);
+			} else {
+				outcome.response.complete(response);
+			}
+		});
+		return outcome.response;
+	}
+
+	/**
+	 * Identifies what a request asks for, so that a retry can be told apart from a requestUuid reused for another transfer.
+	 */
+	static UUID fingerprint(TransferFundsRequest request) {
+		return UUID.nameUUIDFromBytes(String.format("%s|%s|%d", request.getFromAccountNumber(), request.getToAccountNumber(),
+				request.getTransactionAmount()).getBytes(StandardCharsets.UTF_8));
+	}
+
+	private CompletableFuture<TransferFundsResponse> mismatch(final UUID requestUuid) {
+		log.warn("execute requestUuid {} reused for a different transfer.", requestUuid);
+		CompletableFuture<TransferFundsResponse> rejected = new CompletableFuture<>();
+		rejected.completeExceptionally(new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY,
+				String.format("requestUuid %s was already used for a different transfer.", requestUuid)));
+		return rejected;
+	}
+
+	private CompletableFuture<TransferFundsResponse> executePersistent(final UUID requestUuid, final UUID fingerprint,
+			final Supplier<CompletableFuture<TransferFundsResponse>> transfer) {
+		CompletableFuture<JdbcDao.StoredResponse> stored;
+		try {
+			stored = CompletableFuture.supplyAsync(() -> jdbcDao.getTransferResponse(requestUuid), transferExecutor);
+		} catch (RejectedExecutionException ex) {
+			throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Transfer capacity exhausted.", ex);
+		}
+		return stored.thenCompose(row -> {
+			// rows written before fingerprints were kept are taken on trust.
+			if (row != null && row.getFingerprint() != null && false == row.getFingerprint().equals(fingerprint)) {
+				return mismatch(requestUuid);
+			}
+			TransferFundsResponse response = row == null ? null : readStored(requestUuid, row.getJson());
+			if (response != null) {
+				log.debug("execute stored response {}", requestUuid);
+				duplicates.increment();
+				return CompletableFuture.completedFuture(response);
+			}
+			return transfer.get().thenApply(result -> {
+				writeStored(requestUuid, fingerprint, result);
+				return result;
+			});
+		});
+	}
+
+	private TransferFundsResponse readStored(final UUID requestUuid, final String json) {
+		try {
+			return objectMapper.readValue(json, TransferFundsResponse.class);
+		} catch (JsonProcessingException ex) {
+			log.warn("readStored unreadable response for {}. {}", requestUuid, ex.getLocalizedMessage());
+			return null;
+		}
+	}
+
+	// called from the producer callback, so the insert is handed to the transfer executor.
+	private void writeStored(final UUID requestUuid, final UUID fingerprint, final TransferFundsResponse response) {
+		try {
+			final String json = objectMapper.writeValueAsString(response);
+			transferExecutor.execute(() -> {
+				try {
+					jdbcDao.insertTransferResponse(requestUuid, fingerprint, json);
+				} catch (RuntimeException ex) {
+					log.warn("writeStored failed for {}. {}", requestUuid, ex.getLocalizedMessage());
+				}
+			});
+		} catch (JsonProcessingException | RejectedExecutionException ex) {
+			log.warn("writeStored skipped for {}. {}", requestUuid, ex.getLocalizedMessage());
+		}
+	}
+
+	public void invalidateAll() {
+		cache.invalidateAll();
+	}
+
+}
@@ -0,0 +1,51 @@
+package qslv.transfer.rest;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpClientConnection;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ConnectionRequest;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Pooling connection manager that records how long each request waits to lease a connection.
+ * A growing lease wait is the first sign of pool saturation.
+ */
+public class InstrumentedConnectionManager extends PoolingHttpClientConnectionManager {
+	private final Timer leaseTimer;
+
+	public InstrumentedConnectionManager(MeterRegistry meterRegistry, String poolName) {
+		super();
+		leaseTimer = Timer.builder("httpcomponents.httpclient.pool.lease.wait")
+				.description("Time spent waiting to lease a pooled connection")
+				.tag("httpclient", poolName)
+				.register(meterRegistry);
+	}
+
+	@Override
+	public ConnectionRequest requestConnection(final HttpRoute route, final Object state) {
+		final ConnectionRequest request = super.requestConnection(route, state);
+		return new ConnectionRequest() {
+			@Override
+			public HttpClientConnection get(long timeout, TimeUnit tunit)
+					throws InterruptedException, ExecutionException, ConnectionPoolTimeoutException {
+				long start = System.nanoTime();
+				try {
+					return request.get(timeout, tunit);
+				} finally {
+					leaseTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+				}
+			}
+
+			@Override
+			public boolean cancel() {
+				return request.cancel();
+			}
+		};
+	}
+}
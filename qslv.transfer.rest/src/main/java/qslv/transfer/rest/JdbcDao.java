@@ -2,15 +2,30 @@ package qslv.transfer.rest;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.dao.DataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Repository;
+import org.springframework.util.StringUtils;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
 
 import qslv.data.Account;
 import qslv.util.ExternalResourceSLI;
@@ -18,34 +33,279 @@ import qslv.util.ExternalResourceSLI;
 @Repository
 public class JdbcDao {
 	private static final Logger log = LoggerFactory.getLogger(JdbcDao.class);
+	public static final String CONSISTENT_READ = "consistent";
+	public static final String FOLLOWER_READ = "follower";
+	public static final String BOUNDED_STALENESS_READ = "bounded-staleness";
 
 	@Autowired
 	private JdbcTemplate jdbcTemplate;
+	@Autowired
+	private ConfigProperties config;
+	private JdbcTemplate accountJdbcTemplate;
+	private HikariDataSource accountDataSource;
+	private String accountSql = getAccount_sql;
+	private String accountsSql = getAccounts_sql;
+	private String accountAsOf = "";
+	private String scanAsOf = "";
 
 	public void setJdbcTemplate(JdbcTemplate template) {
 		this.jdbcTemplate = template;
 	}
+	public void setConfig(ConfigProperties config) {
+		this.config = config;
+	}
+	public void setAccountJdbcTemplate(JdbcTemplate accountJdbcTemplate) {
+		this.accountJdbcTemplate = accountJdbcTemplate;
+	}
 
 	public final static String getAccount_sql = "SELECT account_no, lifecycle_status_cd FROM account WHERE account_no = ?; ";
+	public final static String getAccounts_sql = "SELECT account_no, lifecycle_status_cd FROM account WHERE account_no IN (?, ?); ";
+	public final static String getAccountAsOf_sql = "SELECT account_no, lifecycle_status_cd FROM account AS OF SYSTEM TIME %s WHERE account_no = ?; ";
+	public final static String getAccountsAsOf_sql = "SELECT account_no, lifecycle_status_cd FROM account AS OF SYSTEM TIME %s WHERE account_no IN (?, ?); ";
+	public final static String getAccountsIn_sql = "SELECT account_no, lifecycle_status_cd FROM account%s WHERE account_no IN (%s); ";
+	public final static String getAccountCount_sql = "SELECT count(*) FROM account%s; ";
+	public final static String getAccountPage_sql = "SELECT account_no, lifecycle_status_cd FROM account%s WHERE account_no > ? ORDER BY account_no LIMIT %d; ";
+	public final static String getAccountChanges_sql = "SELECT account_no, lifecycle_status_cd, %2$s FROM account%1$s WHERE %2$s >= ?; ";
+	public final static String getLatestAccountChange_sql = "SELECT max(%2$s) FROM account%1$s; ";
+	public final static String getTransferResponse_sql = "SELECT request_fingerprint, response_json FROM transfer_response WHERE request_uuid = ?; ";
+	public final static String insertTransferResponse_sql = "INSERT INTO transfer_response (request_uuid, request_fingerprint, response_json) "
+			+ "VALUES (?, ?, ?) ON CONFLICT (request_uuid) DO NOTHING; ";
+
+	/**
+	 * A transfer_response row: the fingerprint of the request it answered, null in rows written before fingerprints
+	 * were kept, and the response JSON.
+	 */
+	public static class StoredResponse {
+		private final UUID fingerprint;
+		private final String json;
+
+		public StoredResponse(UUID fingerprint, String json) {
+			this.fingerprint = fingerprint;
+			this.json = json;
+		}
+		public UUID getFingerprint() {
+			return fingerprint;
+		}
+		public String getJson() {
+			return json;
+		}
+	}
+
+	private final static RowMapper<Account> accountRowMapper = new RowMapper<Account>() {
+		public Account mapRow(ResultSet rs, int rowNum) throws SQLException {
+			Account res = new Account();
+			
+			res.setAccountNumber(rs.getString(1));
+			res.setAccountLifeCycleStatus(rs.getString(2));
+			return res;
+		}
+	};
+
+	/**
+	 * Account lookups read as qslv.account-read-mode says, from qslv.account-read-url when one is configured.
+	 * Lifecycle status tolerates seconds of staleness, so a stale read the nearest replica can serve beats a consistent
+	 * read from a leaseholder in another zone. Transfer responses are always read and written consistently.
+	 * consistent is the default and the stale modes are opt-in, as they need a CockroachDB that serves follower reads;
+	 * older versions only do so with an enterprise license, and without one every account read fails.
+	 */
+	@PostConstruct
+	public void init() {
+		String asOf = asOfSystemTime(config.getAccountReadMode(), config.getAccountReadStaleness());
+		if (asOf != null) {
+			// bounded staleness is limited to point lookups. anything that may read more than one row, the two
+			// accounts of a transfer, a batch or a scan, settles for a follower read.
+			String multiRowAsOf = asOfSystemTime(FOLLOWER_READ, 0);
+			accountSql = String.format(getAccountAsOf_sql, asOf);
+			accountsSql = String.format(getAccountsAsOf_sql, multiRowAsOf);
+			accountAsOf = " AS OF SYSTEM TIME " + multiRowAsOf;
+			scanAsOf = " AS OF SYSTEM TIME " + multiRowAsOf;
+		}
+		if (StringUtils.hasText(config.getAccountReadUrl())) {
+			HikariConfig hikari = new HikariConfig();
+			hikari.setPoolName("account-read");
+			hikari.setJdbcUrl(config.getAccountReadUrl());
+			hikari.setUsername(config.getAccountReadUsername());
+			hikari.setPassword(config.getAccountReadPassword());
+			hikari.setMaximumPoolSize(config.getAccountReadPoolSize());
+			hikari.setReadOnly(true);
+			accountDataSource = new HikariDataSource(hikari);
+			accountJdbcTemplate = new JdbcTemplate(accountDataSource);
+		}
+		log.info("Account reads {}{}.", config.getAccountReadMode(), accountDataSource == null ? "" : " from " + config.getAccountReadUrl());
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		if (accountDataSource != null) {
+			accountDataSource.close();
+		}
+	}
+
+	/**
+	 * The CockroachDB AS OF SYSTEM TIME expression for a read mode, or null for consistent reads.
+	 * follower reads at follower_read_timestamp(), a few seconds back, which any replica can serve.
+	 * bounded-staleness reads with_max_staleness, the freshest data the nearest replica has within staleness
+	 * milliseconds. CockroachDB only allows it in single-statement read-only transactions.
+	 */
+	public static String asOfSystemTime(String mode, int staleness) {
+		if (CONSISTENT_READ.equals(mode)) {
+			return null;
+		} else if (FOLLOWER_READ.equals(mode)) {
+			return "follower_read_timestamp()";
+		} else if (BOUNDED_STALENESS_READ.equals(mode)) {
+			return String.format("with_max_staleness('%dms')", staleness);
+		}
+		throw new IllegalArgumentException(String.format("Unknown account read mode %s.", mode));
+	}
 
 	@ExternalResourceSLI(value="jdbc::AccountDB", ait = "#{@configProperties.aitid}", remoteFailures= {DataAccessException.class})
 	public Account getAccount(final String accountNumber) {
 		log.debug("getAccount ENTRY {}", accountNumber);
 
 		// TODO - test retries using QueryTimeoutException
-		List<Account> resources = jdbcTemplate.query(getAccount_sql,
-				new RowMapper<Account>() {
-					public Account mapRow(ResultSet rs, int rowNum) throws SQLException {
-						Account res = new Account();
-						
-						res.setAccountNumber(rs.getString(1));
-						res.setAccountLifeCycleStatus(rs.getString(2));
-						return res;
-					}
-				}, accountNumber);
-		
-		log.debug("getDebitCardAccountJoin  {}", resources.get(0));
+		List<Account> resources = accountJdbcTemplate().query(accountSql, accountRowMapper, accountNumber);
+		if (resources.isEmpty()) {
+			log.debug("getAccount EXIT Account {} not found.", accountNumber);
+			throw notFound(accountNumber);
+		}
+
+		log.debug("getAccount EXIT {}", resources.get(0));
 		return resources.get(0);
 	}
 
+	/**
+	 * Read both accounts of a transfer in a single round trip.
+	 * The result is keyed by account number. Every requested account must exist.
+	 */
+	@ExternalResourceSLI(value="jdbc::AccountDB", ait = "#{@configProperties.aitid}", remoteFailures= {DataAccessException.class})
+	public Map<String, Account> getAccounts(final String fromAccountNumber, final String toAccountNumber) {
+		log.debug("getAccounts ENTRY {} {}", fromAccountNumber, toAccountNumber);
+		return getAccounts(accountsSql, fromAccountNumber, toAccountNumber);
+	}
+
+	/**
+	 * getAccounts read consistently whatever qslv.account-read-mode says, e.g. to confirm that an account a stale read
+	 * did not find really does not exist.
+	 */
+	@ExternalResourceSLI(value="jdbc::AccountDB", ait = "#{@configProperties.aitid}", remoteFailures= {DataAccessException.class})
+	public Map<String, Account> getAccountsConsistently(final String fromAccountNumber, final String toAccountNumber) {
+		log.debug("getAccountsConsistently ENTRY {} {}", fromAccountNumber, toAccountNumber);
+		return getAccounts(getAccounts_sql, fromAccountNumber, toAccountNumber);
+	}
+
+	private Map<String, Account> getAccounts(final String sql, final String fromAccountNumber, final String toAccountNumber) {
+		List<Account> resources = accountJdbcTemplate().query(sql, accountRowMapper, fromAccountNumber, toAccountNumber);
+
+		Map<String, Account> accounts = new HashMap<>();
+		for (Account account : resources) {
+			accounts.put(account.getAccountNumber(), account);
+		}
+		verifyFound(accounts, fromAccountNumber);
+		verifyFound(accounts, toAccountNumber);
+
+		log.debug("getAccounts EXIT {}", accounts.values());
+		return accounts;
+	}
+
+	/**
+	 * Read any number of accounts in a single round trip, e.g. a batch collected by AccountBatcher.
+	 * The result is keyed by account number and has no entry for an account that does not exist.
+	 */
+	@ExternalResourceSLI(value="jdbc::AccountDB", ait = "#{@configProperties.aitid}", remoteFailures= {DataAccessException.class})
+	public Map<String, Account> getAccounts(final Collection<String> accountNumbers) {
+		log.debug("getAccounts ENTRY {} accounts", accountNumbers.size());
+
+		String sql = String.format(getAccountsIn_sql, accountAsOf, String.join(", ", Collections.nCopies(accountNumbers.size(), "?")));
+		List<Account> resources = accountJdbcTemplate().query(sql, accountRowMapper, accountNumbers.toArray());
+
+		Map<String, Account> accounts = new HashMap<>();
+		for (Account account : resources) {
+			accounts.put(account.getAccountNumber(), account);
+		}
+		log.debug("getAccounts EXIT {} found", accounts.size());
+		return accounts;
+	}
+
+	@ExternalResourceSLI(value="jdbc::AccountDB", ait = "#{@configProperties.aitid}", remoteFailures= {DataAccessException.class})
+	public long getAccountCount() {
+		Long count = accountJdbcTemplate().queryForObject(String.format(getAccountCount_sql, scanAsOf), Long.class);
+		return count == null ? 0 : count;
+	}
+
+	/**
+	 * Up to limit accounts in account number order, starting after afterAccountNumber. "" starts at the first.
+	 * Paging a full scan keeps each statement short and the driver from buffering the whole table.
+	 */
+	@ExternalResourceSLI(value="jdbc::AccountDB", ait = "#{@configProperties.aitid}", remoteFailures= {DataAccessException.class})
+	public List<Account> getAccountPage(final String afterAccountNumber, final int limit) {
+		log.debug("getAccountPage ENTRY {} {}", afterAccountNumber, limit);
+
+		return accountJdbcTemplate().query(String.format(getAccountPage_sql, scanAsOf, limit), accountRowMapper, afterAccountNumber);
+	}
+
+	/**
+	 * Pass every account whose updatedColumn is at or after since to consumer.
+	 * @return the latest updatedColumn value seen, or since if there were no changes.
+	 */
+	@ExternalResourceSLI(value="jdbc::AccountDB", ait = "#{@configProperties.aitid}", remoteFailures= {DataAccessException.class})
+	public Timestamp getAccountChanges(final String updatedColumn, final Timestamp since, final Consumer<Account> consumer) {
+		log.debug("getAccountChanges ENTRY {} {}", updatedColumn, since);
+
+		Timestamp[] latest = { since };
+		accountJdbcTemplate().query(String.format(getAccountChanges_sql, scanAsOf, updatedColumn), (RowCallbackHandler) rs -> {
+			consumer.accept(accountRowMapper.mapRow(rs, 0));
+			Timestamp updated = rs.getTimestamp(3);
+			if (updated != null && updated.after(latest[0])) {
+				latest[0] = updated;
+			}
+		}, since);
+		return latest[0];
+	}
+
+	/**
+	 * The latest updatedColumn value in the account table. Changes from here on are picked up by getAccountChanges.
+	 */
+	@ExternalResourceSLI(value="jdbc::AccountDB", ait = "#{@configProperties.aitid}", remoteFailures= {DataAccessException.class})
+	public Timestamp getLatestAccountChange(final String updatedColumn) {
+		Timestamp latest = accountJdbcTemplate().queryForObject(String.format(getLatestAccountChange_sql, scanAsOf, updatedColumn), Timestamp.class);
+		return latest == null ? new Timestamp(0) : latest;
+	}
+
+	/**
+	 * Stored outcome of an earlier transfer with this requestUuid, or null.
+	 */
+	@ExternalResourceSLI(value="jdbc::AccountDB", ait = "#{@configProperties.aitid}", remoteFailures= {DataAccessException.class})
+	public StoredResponse getTransferResponse(final UUID requestUuid) {
+		log.debug("getTransferResponse ENTRY {}", requestUuid);
+
+		List<StoredResponse> resources = jdbcTemplate.query(getTransferResponse_sql,
+				(rs, rowNum) -> new StoredResponse(rs.getObject(1, UUID.class), rs.getString(2)), requestUuid);
+		return resources.isEmpty() ? null : resources.get(0);
+	}
+
+	/**
+	 * Record the outcome of a transfer. The first outcome recorded for a requestUuid wins.
+	 */
+	@ExternalResourceSLI(value="jdbc::AccountDB", ait = "#{@configProperties.aitid}", remoteFailures= {DataAccessException.class})
+	public void insertTransferResponse(final UUID requestUuid, final UUID fingerprint, final String responseJson) {
+		log.debug("insertTransferResponse ENTRY {}", requestUuid);
+
+		jdbcTemplate.update(insertTransferResponse_sql, requestUuid, fingerprint, responseJson);
+	}
+
+	private JdbcTemplate accountJdbcTemplate() {
+		return accountJdbcTemplate == null ? jdbcTemplate : accountJdbcTemplate;
+	}
+
+	private void verifyFound(Map<String, Account> accounts, String accountNumber) {
+		if (false == accounts.containsKey(accountNumber)) {
+			log.debug("getAccounts EXIT Account {} not found.", accountNumber);
+			throw notFound(accountNumber);
+		}
+	}
+
+	public static AccountNotFoundException notFound(String accountNumber) {
+		return new AccountNotFoundException(accountNumber);
+	}
+
 }
\ No newline at end of file
@@ -0,0 +1,115 @@
+package qslv.transfer.rest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import qslv.common.kafka.TraceableMessage;
+import qslv.transfer.request.TransferFulfillmentMessage;
+
+/**
+ * The kafka clusters fulfillment messages can be produced to, in order of preference, with their health.
+ * A cluster is unhealthy after qslv.kafka-failover-threshold consecutive failures and is then skipped, except as a last
+ * resort, for qslv.kafka-failback-interval milliseconds. After that it is tried in its usual place again, and
+ * one success restores it. Health is published as transfer.kafka.cluster.healthy tagged by cluster.
+ */
+public class KafkaClusters implements MeterBinder {
+	private static final Logger log = LoggerFactory.getLogger(KafkaClusters.class);
+
+	public static class Cluster {
+		private final String name;
+		private final KafkaTemplate<String, TraceableMessage<TransferFulfillmentMessage>> template;
+		private final AtomicInteger consecutiveFailures = new AtomicInteger();
+		private volatile long unhealthyUntil = 0;
+
+		Cluster(String name, KafkaTemplate<String, TraceableMessage<TransferFulfillmentMessage>> template) {
+			this.name = name;
+			this.template = template;
+		}
+		public String getName() {
+			return name;
+		}
+		public KafkaTemplate<String, TraceableMessage<TransferFulfillmentMessage>> getTemplate() {
+			return template;
+		}
+		public boolean isHealthy() {
+			return System.currentTimeMillis() >= unhealthyUntil;
+		}
+	}
+
+	private final ConfigProperties config;
+	private final List<Cluster> clusters = new ArrayList<>();
+
+	/**
+	 * templates in order of preference, keyed by cluster name. The first is the primary.
+	 */
+	public KafkaClusters(ConfigProperties config, Map<String, KafkaTemplate<String, TraceableMessage<TransferFulfillmentMessage>>> templates) {
+		this.config = config;
+		templates.forEach((name, template) -> clusters.add(new Cluster(name, template)));
+	}
+
+	public Cluster getPrimary() {
+		return clusters.get(0);
+	}
+
+	public int size() {
+		return clusters.size();
+	}
+
+	/**
+	 * Healthy clusters in order of preference, followed by the unhealthy ones.
+	 */
+	public List<Cluster> candidates() {
+		if (clusters.size() == 1) {
+			return clusters;
+		}
+		List<Cluster> healthy = new ArrayList<>(clusters.size());
+		List<Cluster> unhealthy = new ArrayList<>(clusters.size());
+		for (Cluster cluster : clusters) {
+			(cluster.isHealthy() ? healthy : unhealthy).add(cluster);
+		}
+		healthy.addAll(unhealthy);
+		return Collections.unmodifiableList(healthy);
+	}
+
+	public void recordSuccess(Cluster cluster) {
+		if (cluster.consecutiveFailures.getAndSet(0) >= config.getKafkaFailoverThreshold()) {
+			log.info("Kafka cluster {} restored.", cluster.name);
+		}
+		cluster.unhealthyUntil = 0;
+	}
+
+	public void recordFailure(Cluster cluster) {
+		if (cluster.consecutiveFailures.incrementAndGet() >= config.getKafkaFailoverThreshold()) {
+			if (cluster.isHealthy()) {
+				log.warn("Kafka cluster {} unhealthy for {}ms.", cluster.name, config.getKafkaFailbackInterval());
+			}
+			cluster.unhealthyUntil = System.currentTimeMillis() + config.getKafkaFailbackInterval();
+		}
+	}
+
+	public void flush() {
+		for (Cluster cluster : clusters) {
+			cluster.template.flush();
+		}
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		for (Cluster cluster : clusters) {
+			Gauge.builder("transfer.kafka.cluster.healthy", cluster, c -> c.isHealthy() ? 1 : 0)
+				.description("1 while the kafka cluster is in normal rotation")
+				.tag("cluster", cluster.name)
+				.register(registry);
+		}
+	}
+}
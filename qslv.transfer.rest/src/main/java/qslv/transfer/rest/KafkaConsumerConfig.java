@@ -0,0 +1,90 @@
+package qslv.transfer.rest;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import javax.annotation.Resource;
+
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.listener.KafkaMessageListenerContainer;
+import org.springframework.kafka.listener.MessageListener;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Listens to qslv.kafka-account-change-queue and invalidates the matching AccountCache entries.
+ * The record key is the account number, either plain or as a JSON array such as a CockroachDB changefeed emits.
+ * <p>
+ * Every instance joins its own randomly named consumer group. Each instance caches every account, so each must see
+ * every invalidation; in a shared group the topic's partitions would be split between instances and every change
+ * would reach just one of them, leaving the others serving the stale entry until it expires. A new group starts at
+ * the latest offset and commits nothing: a starting instance has nothing cached to invalidate, and the groups left
+ * behind by old instances hold no offsets for the broker to keep.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "qslv", name = "kafka-account-change-queue")
+public class KafkaConsumerConfig {
+	private static final Logger log = LoggerFactory.getLogger(KafkaConsumerConfig.class);
+	private static final ObjectMapper mapper = new ObjectMapper();
+
+	@Autowired
+	private ConfigProperties config;
+	@Autowired
+	private AccountCache accountCache;
+	@Resource(name = "kafkaConfig")
+	private Map<String, Object> kafkaConfig;
+
+	@Bean
+	public KafkaMessageListenerContainer<String, byte[]> accountChangeListenerContainer() {
+		Map<String, Object> kafkaprops = new HashMap<>(kafkaConfig);
+		kafkaprops.put(ConsumerConfig.GROUP_ID_CONFIG, accountChangeGroupId());
+		kafkaprops.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "latest");
+		kafkaprops.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+
+		DefaultKafkaConsumerFactory<String, byte[]> consumerFactory = new DefaultKafkaConsumerFactory<>(kafkaprops,
+				new StringDeserializer(), new ByteArrayDeserializer());
+
+		ContainerProperties containerProperties = new ContainerProperties(config.getKafkaAccountChangeQueue());
+		containerProperties.setMessageListener((MessageListener<String, byte[]>) record -> {
+			String accountNumber = accountNumberFromKey(record.key());
+			if (accountNumber != null) {
+				accountCache.invalidate(accountNumber);
+			}
+		});
+		return new KafkaMessageListenerContainer<>(consumerFactory, containerProperties);
+	}
+
+	static String accountChangeGroupId() {
+		return "qslv-transfer-rest-" + UUID.randomUUID().toString();
+	}
+
+	static String accountNumberFromKey(String key) {
+		if (key == null) {
+			return null;
+		}
+		String trimmed = key.trim();
+		if (false == trimmed.startsWith("[")) {
+			return trimmed;
+		}
+		try {
+			List<String> values = mapper.readValue(trimmed, new TypeReference<List<String>>() {});
+			return values.isEmpty() ? null : values.get(0);
+		} catch (Exception ex) {
+			log.warn("Unreadable account change key {}. {}", key, ex.getLocalizedMessage());
+			return null;
+		}
+	}
+}
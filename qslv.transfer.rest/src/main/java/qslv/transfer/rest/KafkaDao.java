@@ -1,15 +1,24 @@
 package qslv.transfer.rest;
 
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.apache.kafka.clients.producer.ProducerRecord;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
-import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
 import org.springframework.stereotype.Repository;
+import org.springframework.util.concurrent.ListenableFuture;
 import org.springframework.web.server.ResponseStatusException;
 
 import qslv.common.TraceableRequest;
@@ -20,53 +29,228 @@ import qslv.util.ElapsedTimeSLILogger;
 @Repository
 public class KafkaDao {
 	private static final Logger log = LoggerFactory.getLogger(KafkaDao.class);
+	private static final ScheduledExecutorService timeoutScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "kafka-ack-timeout");
+		thread.setDaemon(true);
+		return thread;
+	});
 
 	@Autowired
 	private ConfigProperties config;
 	@Autowired
-	private KafkaTemplate<String, TraceableMessage<TransferFulfillmentMessage>> kafkaTemplate;
+	private KafkaClusters kafkaClusters;
 	@Autowired
 	private ElapsedTimeSLILogger kafkaTimer;
+	@Autowired
+	private KafkaGroupCommit kafkaGroupCommit;
+	@Autowired
+	private CircuitBreaker kafkaCircuitBreaker;
+	@Autowired
+	private Executor kafkaFailoverExecutor;
 	
 	public void setConfig(ConfigProperties config) {
 		this.config = config;
 	}
-	public void setKafkaTemplate(KafkaTemplate<String, TraceableMessage<TransferFulfillmentMessage>> kafkaTemplate) {
-		this.kafkaTemplate = kafkaTemplate;
+	public void setKafkaClusters(KafkaClusters kafkaClusters) {
+		this.kafkaClusters = kafkaClusters;
 	}
 	public void setKafkaTimer(ElapsedTimeSLILogger kafkaTimer) {
 		this.kafkaTimer = kafkaTimer;
 	}
+	public void setKafkaGroupCommit(KafkaGroupCommit kafkaGroupCommit) {
+		this.kafkaGroupCommit = kafkaGroupCommit;
+	}
+	public void setKafkaCircuitBreaker(CircuitBreaker kafkaCircuitBreaker) {
+		this.kafkaCircuitBreaker = kafkaCircuitBreaker;
+	}
+	public void setKafkaFailoverExecutor(Executor kafkaFailoverExecutor) {
+		this.kafkaFailoverExecutor = kafkaFailoverExecutor;
+	}
 	
 	public void produceTransferMessage(Map<String, String> callingHeaders, TransferFulfillmentMessage tfr) throws ResponseStatusException {
+		produceTransferMessage(callingHeaders, tfr, Deadline.NONE);
+	}
+
+	/**
+	 * Same as produceTransferMessage, waiting for the acknowledgement no longer than the caller's deadline.
+	 * Running out of that time fails with DeadlineExceededException.
+	 */
+	public void produceTransferMessage(Map<String, String> callingHeaders, TransferFulfillmentMessage tfr, Deadline deadline)
+			throws ResponseStatusException {
 		log.trace("ENTRY produceTransferMessage");
 		
+		TraceableMessage<TransferFulfillmentMessage> msg = buildMessage(callingHeaders, tfr);
+		
+		kafkaTimer.logElapsedTime(() -> {
+			produce(tfr.getFromAccountNumber(), msg, deadline);
+		});
+		log.trace("Exit produceTransferMessage");
+	}
+
+	/**
+	 * Non-blocking variant of produceTransferMessage. The future completes when the broker acknowledges the record,
+	 * or exceptionally with a ResponseStatusException on failure or after kafkaTimeout milliseconds.
+	 */
+	public CompletableFuture<Void> produceTransferMessageAsync(Map<String, String> callingHeaders, TransferFulfillmentMessage tfr) {
+		return produceTransferMessageAsync(callingHeaders, tfr, Deadline.NONE);
+	}
+
+	/**
+	 * Same as produceTransferMessageAsync, completing with DeadlineExceededException if the caller's deadline ends the wait.
+	 */
+	public CompletableFuture<Void> produceTransferMessageAsync(Map<String, String> callingHeaders, TransferFulfillmentMessage tfr,
+			Deadline deadline) {
+		log.trace("ENTRY produceTransferMessageAsync");
+		return produceMessageAsync(buildMessage(callingHeaders, tfr), deadline);
+	}
+
+	/**
+	 * Same as produceTransferMessageAsync for a message that has already been built, e.g. one read back from the outbox.
+	 */
+	public CompletableFuture<Void> produceMessageAsync(TraceableMessage<TransferFulfillmentMessage> msg) {
+		return produceMessageAsync(msg, Deadline.NONE);
+	}
+
+	private CompletableFuture<Void> produceMessageAsync(TraceableMessage<TransferFulfillmentMessage> msg, Deadline deadline) {
+		CompletableFuture<Void> result = new CompletableFuture<>();
+		if (false == kafkaCircuitBreaker.tryAcquire()) {
+			result.completeExceptionally(new CircuitBreakerOpenException(kafkaCircuitBreaker.getName()));
+			return result;
+		}
+		long start = System.nanoTime();
+		// running out of the caller's time says nothing about kafka.
+		result.whenComplete((ignore, ex) -> kafkaCircuitBreaker.onResult(System.nanoTime() - start,
+				ex != null && false == ex instanceof DeadlineExceededException));
+		long kafkaDeadline = start + TimeUnit.MILLISECONDS.toNanos(config.getKafkaTimeout());
+		produceAsync(msg, kafkaClusters.candidates(), 0, deadline.earliest(kafkaDeadline), kafkaDeadline, result);
+		return result;
+	}
+
+	// one attempt per cluster, each with an equal share of what is left of the kafkaTimeout budget.
+	// deadline is the earlier of kafkaDeadline and the caller's deadline. When it is the caller's, running out is a DeadlineExceededException.
+	private void produceAsync(TraceableMessage<TransferFulfillmentMessage> msg, List<KafkaClusters.Cluster> candidates, int index,
+			long deadline, long kafkaDeadline, CompletableFuture<Void> result) {
+		KafkaClusters.Cluster cluster = candidates.get(index);
+		long budget = Math.max(0L, (deadline - System.nanoTime()) / (candidates.size() - index));
+		long start = System.nanoTime();
+		CompletableFuture<Void> attempt = new CompletableFuture<>();
+		ScheduledFuture<?> timeout = timeoutScheduler.schedule(() -> {
+			attempt.completeExceptionally(new TimeoutException("Kafka acknowledgement not received from " + cluster.getName()
+					+ " in " + TimeUnit.NANOSECONDS.toMillis(budget) + "ms."));
+		}, budget, TimeUnit.NANOSECONDS);
+		try {
+			send(cluster, msg.getPayload().getFromAccountNumber(), msg).addCallback(sendResult -> {
+				log.debug("Kakfa Produce {} to {} in {}ms", sendResult.getProducerRecord().value().getPayload(), cluster.getName(),
+						TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+				attempt.complete(null);
+			}, attempt::completeExceptionally);
+		} catch (Exception ex) {
+			attempt.completeExceptionally(ex);
+		}
+
+		attempt.whenComplete((ignore, ex) -> {
+			timeout.cancel(false);
+			if (ex == null) {
+				kafkaClusters.recordSuccess(cluster);
+				result.complete(null);
+				return;
+			}
+			kafkaClusters.recordFailure(cluster);
+			log.debug(ex.getLocalizedMessage());
+			if (index + 1 < candidates.size() && deadline - System.nanoTime() > 0) {
+				log.warn("Kafka cluster {} failed, failing over to {}. {}", cluster.getName(), candidates.get(index + 1).getName(),
+						ex.getLocalizedMessage());
+				// this is the producer's I/O thread or the ack timeout thread, and send() can block for max.block.ms.
+				try {
+					kafkaFailoverExecutor.execute(() -> produceAsync(msg, candidates, index + 1, deadline, kafkaDeadline, result));
+				} catch (RejectedExecutionException rex) {
+					result.completeExceptionally(new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Kafka Producer failure", ex));
+				}
+			} else if (deadline - kafkaDeadline < 0 && deadline - System.nanoTime() <= 0) {
+				result.completeExceptionally(new DeadlineExceededException("kafka acknowledgement", ex));
+			} else {
+				result.completeExceptionally(new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Kafka Producer failure", ex));
+			}
+		});
+	}
+	
+	/**
+	 * Sends anything buffered by the producer without waiting for linger.ms.
+	 */
+	public void flush() {
+		kafkaClusters.flush();
+	}
+
+	public TraceableMessage<TransferFulfillmentMessage> buildMessage(Map<String, String> callingHeaders, TransferFulfillmentMessage tfr) {
 		TraceableMessage<TransferFulfillmentMessage> msg = new TraceableMessage<>();
 		msg.setBusinessTaxonomyId(callingHeaders.get(TraceableRequest.BUSINESS_TAXONOMY_ID));
 		msg.setCorrelationId(callingHeaders.get(TraceableRequest.CORRELATION_ID));
 		msg.setProducerAit(config.getAitid());
 		msg.setPayload(tfr);
-		
-		//TODO: multi-data center retry
-		kafkaTimer.logElapsedTime(() -> {
-			produce(tfr.getFromAccountNumber(), msg);
-		});
-		log.trace("Exit produceTransferMessage");
+		return msg;
+	}
+	
+	private ListenableFuture<SendResult<String, TraceableMessage<TransferFulfillmentMessage>>> send(KafkaClusters.Cluster cluster,
+			String key, TraceableMessage<TransferFulfillmentMessage> msg) {
+		// kafkaTemplate auto-flush is true unless group commit or the outbox is on, in which case the flush is shared.
+		return (config.isKafkaGroupCommit() && cluster == kafkaClusters.getPrimary())
+			? kafkaGroupCommit.send(config.getKafkaTransferRequestQueue(), key, msg)
+			: cluster.getTemplate().send(config.getKafkaTransferRequestQueue(), key, msg);
 	}
 	
-	private void produce(String key, TraceableMessage<TransferFulfillmentMessage> msg) throws ResponseStatusException {
+	private void produce(String key, TraceableMessage<TransferFulfillmentMessage> msg, Deadline deadline) throws ResponseStatusException {
+		kafkaCircuitBreaker.acquire();
+		long start = System.nanoTime();
+		boolean failed = true;
 		try {
-			// retry handled internally by kafka using retries & retry.backoff.ms in properties file
-			ProducerRecord<String ,TraceableMessage<TransferFulfillmentMessage>> record = 
-				kafkaTemplate.send(config.getKafkaTransferRequestQueue(), key, msg)
-				// wait with time out for post to complete. 
-				// kafkaTemplate auto-flush is set to true. timeouts are in properties.
-				.get(config.getKafkaTimeout(), TimeUnit.MILLISECONDS).getProducerRecord();
-			log.debug("Kakfa Produce {}", record.value().getPayload());
-		} catch ( Exception ex) {
-			log.debug(ex.getLocalizedMessage());
-			throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Kafka Producer failure", ex);
+			produceToClusters(key, msg, start, deadline);
+			failed = false;
+		} catch (DeadlineExceededException ex) {
+			// running out of the caller's time says nothing about kafka.
+			failed = false;
+			throw ex;
+		} finally {
+			kafkaCircuitBreaker.onResult(System.nanoTime() - start, failed);
+		}
+	}
+
+	private void produceToClusters(String key, TraceableMessage<TransferFulfillmentMessage> msg, long start, Deadline requestDeadline)
+			throws ResponseStatusException {
+		// retry handled internally by kafka using retries & retry.backoff.ms in properties file.
+		// each cluster in turn gets an equal share of what is left of the kafkaTimeout budget, or of the caller's deadline if sooner.
+		long kafkaDeadline = start + TimeUnit.MILLISECONDS.toNanos(config.getKafkaTimeout());
+		long deadline = requestDeadline.earliest(kafkaDeadline);
+		List<KafkaClusters.Cluster> candidates = kafkaClusters.candidates();
+		Exception failure = null;
+		for (int index = 0; index < candidates.size(); index++) {
+			KafkaClusters.Cluster cluster = candidates.get(index);
+			long budget = (deadline - System.nanoTime()) / (candidates.size() - index);
+			if (index > 0 && budget <= 0) {
+				break;
+			}
+			try {
+				ProducerRecord<String ,TraceableMessage<TransferFulfillmentMessage>> record = 
+					send(cluster, key, msg).get(Math.max(0L, budget), TimeUnit.NANOSECONDS).getProducerRecord();
+				kafkaClusters.recordSuccess(cluster);
+				log.debug("Kakfa Produce {} to {}", record.value().getPayload(), cluster.getName());
+				return;
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				failure = ex;
+				break;
+			} catch (Exception ex) {
+				kafkaClusters.recordFailure(cluster);
+				log.debug(ex.getLocalizedMessage());
+				failure = ex;
+				if (index + 1 < candidates.size()) {
+					log.warn("Kafka cluster {} failed, failing over to {}. {}", cluster.getName(), candidates.get(index + 1).getName(),
+							ex.getLocalizedMessage());
+				}
+			}
+		}
+		if (deadline - kafkaDeadline < 0 && deadline - System.nanoTime() <= 0) {
+			throw new DeadlineExceededException("kafka acknowledgement", failure);
 		}
-		// TODO: log time it took
+		throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Kafka Producer failure", failure);
 	}
 }
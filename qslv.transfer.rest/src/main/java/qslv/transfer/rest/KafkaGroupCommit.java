@@ -0,0 +1,89 @@
+package qslv.transfer.rest;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.stereotype.Component;
+import org.springframework.util.concurrent.ListenableFuture;
+
+import qslv.common.kafka.TraceableMessage;
+import qslv.transfer.request.TransferFulfillmentMessage;
+
+/**
+ * Group commit for the kafka producer (qslv.kafka-group-commit=true).
+ * Sends are buffered by the producer and flushed together once qslv.kafka-group-commit-size records are pending
+ * or qslv.kafka-group-commit-linger milliseconds after the first unflushed send, whichever comes first.
+ * Callers still wait on their own future, so a transfer only succeeds once its record is acknowledged.
+ */
+@Component
+public class KafkaGroupCommit {
+	private static final Logger log = LoggerFactory.getLogger(KafkaGroupCommit.class);
+
+	@Autowired
+	private ConfigProperties config;
+	@Autowired
+	private KafkaTemplate<String, TraceableMessage<TransferFulfillmentMessage>> kafkaTemplate;
+
+	private final AtomicInteger pending = new AtomicInteger();
+	private final AtomicBoolean flushScheduled = new AtomicBoolean();
+	private ScheduledExecutorService flusher;
+
+	public void setConfig(ConfigProperties config) {
+		this.config = config;
+	}
+	public void setKafkaTemplate(KafkaTemplate<String, TraceableMessage<TransferFulfillmentMessage>> kafkaTemplate) {
+		this.kafkaTemplate = kafkaTemplate;
+	}
+
+	@PostConstruct
+	public void init() {
+		flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "kafka-group-commit");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		flusher.shutdown();
+		flush();
+	}
+
+	public ListenableFuture<SendResult<String, TraceableMessage<TransferFulfillmentMessage>>> send(String topic, String key,
+			TraceableMessage<TransferFulfillmentMessage> msg) {
+		ListenableFuture<SendResult<String, TraceableMessage<TransferFulfillmentMessage>>> future = kafkaTemplate.send(topic, key, msg);
+
+		if (pending.incrementAndGet() >= config.getKafkaGroupCommitSize()) {
+			flusher.execute(this::flush);
+		} else if (flushScheduled.compareAndSet(false, true)) {
+			flusher.schedule(this::flush, config.getKafkaGroupCommitLinger(), TimeUnit.MILLISECONDS);
+		}
+		return future;
+	}
+
+	void flush() {
+		flushScheduled.set(false);
+		int count = pending.getAndSet(0);
+		if (count > 0) {
+			log.trace("flush {} records", count);
+			try {
+				kafkaTemplate.flush();
+			} catch (Exception ex) {
+				// each caller's future carries the failure of its own record.
+				log.warn("Kafka group commit flush failed. {}", ex.getLocalizedMessage());
+			}
+		}
+	}
+}
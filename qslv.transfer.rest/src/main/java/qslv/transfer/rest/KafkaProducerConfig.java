@@ -3,9 +3,11 @@ package qslv.transfer.rest;
 import java.io.FileInputStream;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Properties;
 
+import org.apache.kafka.clients.producer.ProducerConfig;
 import org.apache.kafka.common.serialization.StringSerializer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -27,20 +29,53 @@ import qslv.util.ElapsedTimeSLILogger;
 @Configuration
 public class KafkaProducerConfig {
 	private static final Logger log = LoggerFactory.getLogger(KafkaProducerConfig.class);
+	public static final String STANDARD_PROFILE = "standard";
+	public static final String IDEMPOTENT_PROFILE = "idempotent";
+	// the idempotent producer only guarantees ordering with up to 5 requests in flight.
+	public static final int IDEMPOTENT_MAX_IN_FLIGHT = 5;
+
 	@Autowired
 	private ConfigProperties config;
 
-	@SuppressWarnings({ "unchecked", "rawtypes" })
 	@Bean 
 	public Map<String,Object> kafkaConfig() throws Exception {
+		return loadKafkaProperties(config.getKafkaProperties());
+	}
+	
+	@Bean
+	public ProducerFactory<String, TraceableMessage<TransferFulfillmentMessage>> producerFactory() throws Exception {
+		return buildProducerFactory(kafkaConfig());
+	}
+
+	/**
+	 * The primary cluster from qslv.kafka-properties, then one cluster per file in qslv.kafka-failover-properties.
+	 */
+	@Bean
+	public KafkaClusters kafkaClusters() throws Exception {
+		Map<String, KafkaTemplate<String, TraceableMessage<TransferFulfillmentMessage>>> templates = new LinkedHashMap<>();
+		templates.put(config.getKafkaProperties(), kafkaTemplate());
+		for (String properties : config.getKafkaFailoverPropertiesArray()) {
+			// group commit only flushes the primary. the outbox relay flushes every cluster.
+			templates.put(properties, new KafkaTemplate<>(buildProducerFactory(loadKafkaProperties(properties)), false == config.isOutboxEnabled()));
+		}
+		return new KafkaClusters(config, templates);
+	}
+
+	@Bean
+	public CircuitBreaker kafkaCircuitBreaker() {
+		return new CircuitBreaker("kafka", config, config.getCircuitBreakerKafkaSlowCall());
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private Map<String,Object> loadKafkaProperties(String file) throws Exception {
 		Properties kafkaconfig = new Properties();
 		try {
-			kafkaconfig.load(new FileInputStream(config.getKafkaProperties()));
+			kafkaconfig.load(new FileInputStream(file));
 		} catch (Exception fileEx) {
 			try {
-				kafkaconfig.load(Thread.currentThread().getContextClassLoader().getResourceAsStream(config.getKafkaProperties()));
+				kafkaconfig.load(Thread.currentThread().getContextClassLoader().getResourceAsStream(file));
 			} catch (Exception resourceEx) {
-				log.error("{} not found.", config.getKafkaProperties());
+				log.error("{} not found.", file);
 				log.error("File Exception. {}", fileEx.toString());
 				log.error("Resource Exception. {}", resourceEx.toString());
 				throw resourceEx;
@@ -48,10 +83,10 @@ public class KafkaProducerConfig {
 		}
 		return new HashMap(kafkaconfig);
 	}
-	
-	@Bean
-	public ProducerFactory<String, TraceableMessage<TransferFulfillmentMessage>> producerFactory() throws Exception {
-		Map<String,Object> kafkaprops = kafkaConfig();
+
+	private ProducerFactory<String, TraceableMessage<TransferFulfillmentMessage>> buildProducerFactory(Map<String,Object> kafkaConfig) {
+		Map<String,Object> kafkaprops = applyProducerProfile(config.getKafkaProducerProfile(), config.getKafkaMaxInFlight(), 
+				new HashMap<>(kafkaConfig));
 		JacksonAvroSerializer<TraceableMessage<TransferFulfillmentMessage>> jas = new JacksonAvroSerializer<>();
 		JavaType type = jas.getTypeFactory().constructParametricType(TraceableMessage.class, TransferFulfillmentMessage.class);
 		jas.configure(kafkaprops, false, type);
@@ -59,9 +94,31 @@ public class KafkaProducerConfig {
 				new StringSerializer(), jas);
 	}
 
+	/**
+	 * The idempotent profile lets the broker discard retried duplicates and keeps per partition ordering,
+	 * so more than one request can be in flight while records for the same fromAccountNumber key stay in order.
+	 * The standard profile uses the properties file as is.
+	 */
+	public static Map<String,Object> applyProducerProfile(String profile, int maxInFlight, Map<String,Object> kafkaprops) {
+		if (IDEMPOTENT_PROFILE.equals(profile)) {
+			if (maxInFlight < 1 || maxInFlight > IDEMPOTENT_MAX_IN_FLIGHT) {
+				log.warn("kafka-max-in-flight {} is not supported by the idempotent producer. Using {}.", maxInFlight, IDEMPOTENT_MAX_IN_FLIGHT);
+				maxInFlight = IDEMPOTENT_MAX_IN_FLIGHT;
+			}
+			kafkaprops.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true);
+			kafkaprops.put(ProducerConfig.ACKS_CONFIG, "all");
+			kafkaprops.put(ProducerConfig.RETRIES_CONFIG, Integer.MAX_VALUE); // bounded by delivery.timeout.ms
+			kafkaprops.put(ProducerConfig.MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION, maxInFlight);
+		} else if (false == STANDARD_PROFILE.equals(profile)) {
+			throw new IllegalArgumentException(String.format("Unknown kafka producer profile %s.", profile));
+		}
+		return kafkaprops;
+	}
+
 	@Bean
 	public KafkaTemplate<String, TraceableMessage<TransferFulfillmentMessage>> kafkaTemplate() throws Exception {
-		return new KafkaTemplate<>(producerFactory(), true); // auto-flush true, to force each message to broker.
+		// auto-flush true, to force each message to broker. Group commit and the outbox relay flush on their own schedule instead.
+		return new KafkaTemplate<>(producerFactory(), false == (config.isKafkaGroupCommit() || config.isOutboxEnabled()));
 	}
 	
 	@Bean
@@ -0,0 +1,29 @@
+package qslv.transfer.rest;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * A request was shed because the ConcurrencyLimiter guarding it was at its limit. Tells the client when to retry.
+ */
+public class LimitExceededException extends ResponseStatusException {
+	private static final long serialVersionUID = 1L;
+	private final int retryAfter;
+
+	public LimitExceededException(String name, int retryAfter) {
+		super(HttpStatus.SERVICE_UNAVAILABLE, String.format("Too many %s requests in progress.", name));
+		this.retryAfter = retryAfter;
+	}
+
+	public int getRetryAfter() {
+		return retryAfter;
+	}
+
+	@Override
+	public HttpHeaders getResponseHeaders() {
+		HttpHeaders headers = new HttpHeaders();
+		headers.set(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfter));
+		return headers;
+	}
+}
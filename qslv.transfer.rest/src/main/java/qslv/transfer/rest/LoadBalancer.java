@@ -0,0 +1,289 @@
+package qslv.transfer.rest;
+
+import java.io.Closeable;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Client side load balancing of calls across the instances of a service, bypassing the ingress.
+ * Instances are host:port pairs, each host resolved to all of its addresses every refresh interval, so a Kubernetes
+ * headless Service name discovers every ready pod. Each call goes to the better of two instances picked at random,
+ * scored by its latency (moving average of successful calls) times its outstanding calls plus one; this routes
+ * around slow instances without herding onto the single best one. A newly discovered instance starts at the mean
+ * latency of the others rather than looking free, and equal scores go to the instance with fewer outstanding calls.
+ * An instance failing ejectFailures calls in a row (timeouts, refused
+ * connections, 5xx) is ejected for ejectDuration milliseconds. A read timeout cut short by the caller's deadline is
+ * not held against the instance, see DeadlineRequestFactory.isServiceFailure. If every instance is ejected they are all used.
+ * With no instances configured calls go to the URL they were made with.
+ * Only plain http is balanced: addressing an instance by IP would break https hostname verification and the Host
+ * header, so https calls also go to the URL they were made with.
+ * Published as transfer.balancer.instances tagged name and state=available|ejected, and transfer.balancer.ejections.
+ */
+public class LoadBalancer implements MeterBinder, Closeable {
+	private static final Logger log = LoggerFactory.getLogger(LoadBalancer.class);
+	private static final double DECAY = 0.2;
+
+	static class Instance {
+		final String authority;
+		final AtomicInteger outstanding = new AtomicInteger();
+		// racy updates only blur the average.
+		volatile double latency = 0;
+		volatile int failures = 0;
+		volatile long ejectedUntil = 0;
+
+		Instance(String authority, double latency) {
+			this.authority = authority;
+			this.latency = latency;
+		}
+
+		boolean isEjected(long now) {
+			return ejectedUntil != 0 && now - ejectedUntil < 0;
+		}
+
+		double score() {
+			return latency * (outstanding.get() + 1);
+		}
+	}
+
+	private final String name;
+	private final List<String> hostPorts;
+	private final int ejectFailures;
+	private final long ejectDuration;
+	private final int readTimeout;
+	private final LongAdder ejections = new LongAdder();
+	volatile List<Instance> instances = Collections.emptyList();
+	private ScheduledExecutorService refresher;
+
+	/**
+	 * @param instances comma separated host:port.
+	 * @param ejectDuration milliseconds.
+	 * @param readTimeout milliseconds, the usual read timeout of the calls.
+	 */
+	public LoadBalancer(String name, String instances, int ejectFailures, int ejectDuration, int readTimeout) {
+		this.name = name;
+		this.hostPorts = new ArrayList<>();
+		for (String hostPort : instances.split(",")) {
+			if (false == hostPort.trim().isEmpty()) {
+				this.hostPorts.add(hostPort.trim());
+			}
+		}
+		this.ejectFailures = Math.max(1, ejectFailures);
+		this.ejectDuration = TimeUnit.MILLISECONDS.toNanos(ejectDuration);
+		this.readTimeout = readTimeout;
+	}
+
+	public boolean isEnabled() {
+		return false == hostPorts.isEmpty();
+	}
+
+	/**
+	 * Resolve the instances now and every refreshInterval milliseconds.
+	 */
+	public void start(int refreshInterval) {
+		if (false == isEnabled()) {
+			return;
+		}
+		refresh();
+		refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "balancer-" + name);
+			thread.setDaemon(true);
+			return thread;
+		});
+		refresher.scheduleWithFixedDelay(this::refresh, refreshInterval, refreshInterval, TimeUnit.MILLISECONDS);
+	}
+
+	@Override
+	public void close() {
+		if (refresher != null) {
+			refresher.shutdownNow();
+		}
+	}
+
+	void refresh() {
+		Map<String, Instance> current = new HashMap<>();
+		for (Instance instance : instances) {
+			current.put(instance.authority, instance);
+		}
+		double seed = meanLatency();
+		List<Instance> resolved = new ArrayList<>();
+		for (String hostPort : hostPorts) {
+			int colon = hostPort.lastIndexOf(':');
+			String host = colon < 0 ? hostPort : hostPort.substring(0, colon);
+			String port = colon < 0 ? "" : hostPort.substring(colon);
+			try {
+				for (InetAddress address : InetAddress.getAllByName(host)) {
+					String authority = (address instanceof Inet6Address ? "[" + address.getHostAddress() + "]" : address.getHostAddress()) + port;
+					resolved.add(current.containsKey(authority) ? current.get(authority) : new Instance(authority, seed));
+				}
+			} catch (UnknownHostException ex) {
+				log.warn("{} instances {} not resolved. {}", name, host, ex.getLocalizedMessage());
+			}
+		}
+		if (resolved.isEmpty()) {
+			// keep calling the last instances known rather than none.
+			return;
+		}
+		if (resolved.size() != instances.size()) {
+			log.info("{} has {} instances.", name, resolved.size());
+		}
+		instances = resolved;
+	}
+
+	/**
+	 * Latency a new instance starts at: a new pod is no faster than its peers until measured, and starting it at 0
+	 * would send it every call until its average caught up.
+	 */
+	private double meanLatency() {
+		double total = 0;
+		int measured = 0;
+		for (Instance instance : instances) {
+			if (instance.latency > 0) {
+				total += instance.latency;
+				measured++;
+			}
+		}
+		return measured == 0 ? 0 : total / measured;
+	}
+
+	/**
+	 * Make the call with url pointed at the chosen instance, if url is plain http.
+	 */
+	public <T> T execute(String url, Function<String, T> call) {
+		if (false == url.regionMatches(true, 0, "http://", 0, 7)) {
+			return call.apply(url);
+		}
+		Instance instance = choose();
+		if (instance == null) {
+			return call.apply(url);
+		}
+		instance.outstanding.incrementAndGet();
+		long start = System.nanoTime();
+		boolean failed = true;
+		try {
+			T result = call.apply(rewrite(url, instance.authority));
+			failed = false;
+			return result;
+		} catch (HttpClientErrorException ex) {
+			failed = false;
+			throw ex;
+		} catch (ResourceAccessException ex) {
+			failed = DeadlineRequestFactory.isServiceFailure(ex, readTimeout);
+			throw ex;
+		} finally {
+			instance.outstanding.decrementAndGet();
+			onResult(instance, System.nanoTime() - start, failed);
+		}
+	}
+
+	Instance choose() {
+		List<Instance> all = instances;
+		if (all.isEmpty()) {
+			return null;
+		}
+		long now = System.nanoTime();
+		List<Instance> available = all;
+		for (Instance instance : all) {
+			if (instance.isEjected(now)) {
+				available = new ArrayList<>(all.size());
+				for (Instance candidate : all) {
+					if (false == candidate.isEjected(now)) {
+						available.add(candidate);
+					}
+				}
+				if (available.isEmpty()) {
+					available = all;
+				}
+				break;
+			}
+		}
+		if (available.size() == 1) {
+			return available.get(0);
+		}
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		int first = random.nextInt(available.size());
+		int second = random.nextInt(available.size() - 1);
+		if (second >= first) {
+			second++;
+		}
+		Instance a = available.get(first);
+		Instance b = available.get(second);
+		double scoreA = a.score();
+		double scoreB = b.score();
+		if (scoreA == scoreB) {
+			// unmeasured instances all score 0.
+			return a.outstanding.get() <= b.outstanding.get() ? a : b;
+		}
+		return scoreA < scoreB ? a : b;
+	}
+
+	private void onResult(Instance instance, long elapsed, boolean failed) {
+		if (false == failed) {
+			instance.latency += (elapsed - instance.latency) * DECAY;
+			instance.failures = 0;
+			return;
+		}
+		// a failure is not averaged in: an instance refusing connections would look fast. ejection deals with it.
+		if (++instance.failures >= ejectFailures && false == instance.isEjected(System.nanoTime())) {
+			log.warn("{} instance {} ejected for {}ms after {} failures.", name, instance.authority,
+					TimeUnit.NANOSECONDS.toMillis(ejectDuration), instance.failures);
+			instance.failures = 0;
+			instance.ejectedUntil = System.nanoTime() + ejectDuration;
+			ejections.increment();
+		}
+	}
+
+	static String rewrite(String url, String authority) {
+		int scheme = url.indexOf("://");
+		if (scheme < 0) {
+			return url;
+		}
+		int path = url.indexOf('/', scheme + 3);
+		return url.substring(0, scheme + 3) + authority + (path < 0 ? "" : url.substring(path));
+	}
+
+	private long count(boolean ejected) {
+		long now = System.nanoTime();
+		return instances.stream().filter(instance -> instance.isEjected(now) == ejected).count();
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		Gauge.builder("transfer.balancer.instances", this, balancer -> balancer.count(false))
+			.description("instances calls are balanced across")
+			.tag("name", name)
+			.tag("state", "available")
+			.register(registry);
+		Gauge.builder("transfer.balancer.instances", this, balancer -> balancer.count(true))
+			.description("instances calls are balanced across")
+			.tag("name", name)
+			.tag("state", "ejected")
+			.register(registry);
+		FunctionCounter.builder("transfer.balancer.ejections", ejections, LongAdder::sum)
+			.description("instances ejected after consecutive failures")
+			.tag("name", name)
+			.register(registry);
+	}
+}
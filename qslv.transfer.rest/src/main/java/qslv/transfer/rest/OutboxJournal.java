@@ -0,0 +1,291 @@
+package qslv.transfer.rest;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Append-only journal of opaque records in segment files.
+ * Positions are logical byte offsets across the whole journal; each segment file is named after the position
+ * of its first record. A record is [length][crc32][bytes].
+ * append returns once the record is on disk. Concurrent appenders share one force, so the fsync cost is
+ * paid per group rather than per record. The reader only sees records that are on disk and commit moves the
+ * checkpoint, deleting segments that are wholly behind it.
+ * On open a torn record at the tail of the last segment is truncated.
+ */
+public class OutboxJournal implements Closeable {
+	private static final Logger log = LoggerFactory.getLogger(OutboxJournal.class);
+	static final String SEGMENT_SUFFIX = ".log";
+	static final String CHECKPOINT = "outbox.checkpoint";
+	private static final int HEADER = 8;
+
+	private final Path directory;
+	private final long segmentSize;
+	private final NavigableSet<Long> segments = new ConcurrentSkipListSet<>();
+	private final AtomicLong syncedPosition = new AtomicLong();
+	private final Object syncLock = new Object();
+
+	private FileChannel writer;
+	private long writerBase;
+	private long writePosition;
+	private volatile long checkpoint;
+
+	public static class Batch {
+		private final List<byte[]> records;
+		private final long[] ends;
+		private final long end;
+
+		Batch(List<byte[]> records, long[] ends, long end) {
+			this.records = records;
+			this.ends = ends;
+			this.end = end;
+		}
+		public List<byte[]> getRecords() {
+			return records;
+		}
+		public long getEnd() {
+			return end;
+		}
+		/**
+		 * The position just after the record at index, i.e. the checkpoint that commits it and all before it.
+		 */
+		public long getEnd(int index) {
+			return ends[index];
+		}
+	}
+
+	private OutboxJournal(Path directory, long segmentSize) {
+		this.directory = directory;
+		this.segmentSize = segmentSize;
+	}
+
+	public static OutboxJournal open(Path directory, long segmentSize) throws IOException {
+		OutboxJournal journal = new OutboxJournal(directory, segmentSize);
+		journal.recover();
+		return journal;
+	}
+
+	private void recover() throws IOException {
+		Files.createDirectories(directory);
+		Path checkpointFile = directory.resolve(CHECKPOINT);
+		checkpoint = Files.exists(checkpointFile)
+				? Long.parseLong(new String(Files.readAllBytes(checkpointFile), StandardCharsets.UTF_8).trim()) : 0L;
+
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SEGMENT_SUFFIX)) {
+			for (Path file : files) {
+				String name = file.getFileName().toString();
+				segments.add(Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())));
+			}
+		}
+		if (segments.isEmpty()) {
+			segments.add(checkpoint);
+		}
+
+		writerBase = segments.last();
+		writer = FileChannel.open(segmentPath(writerBase), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		long valid = validLength(writer);
+		if (valid < writer.size()) {
+			log.warn("recover truncating torn tail of segment {} at {} of {} bytes", writerBase, valid, writer.size());
+			writer.truncate(valid);
+		}
+		writer.position(valid);
+		writer.force(true);
+		writePosition = writerBase + valid;
+		syncedPosition.set(writePosition);
+		if (checkpoint < segments.first()) {
+			checkpoint = segments.first();
+		}
+		log.info("recover journal {} from {} to {}", directory, checkpoint, writePosition);
+	}
+
+	private static long validLength(FileChannel channel) throws IOException {
+		long offset = 0;
+		long size = channel.size();
+		ByteBuffer header = ByteBuffer.allocate(HEADER);
+		while (offset + HEADER <= size) {
+			header.clear();
+			readFully(channel, header, offset);
+			int length = header.getInt(0);
+			if (length < 0 || offset + HEADER + length > size) {
+				break;
+			}
+			ByteBuffer record = ByteBuffer.allocate(length);
+			readFully(channel, record, offset + HEADER);
+			if (crc(record.array()) != header.getInt(4)) {
+				break;
+			}
+			offset += HEADER + length;
+		}
+		return offset;
+	}
+
+	/**
+	 * Appends one record and returns once it has been forced to disk.
+	 */
+	public void append(byte[] record) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(HEADER + record.length);
+		buffer.putInt(record.length).putInt(crc(record)).put(record).flip();
+
+		long end;
+		synchronized (this) {
+			if (writePosition > writerBase && writePosition - writerBase + buffer.remaining() > segmentSize) {
+				roll();
+			}
+			while (buffer.hasRemaining()) {
+				writer.write(buffer);
+			}
+			writePosition += HEADER + record.length;
+			end = writePosition;
+		}
+		sync(end);
+	}
+
+	// group commit: whoever takes the lock forces everything written so far, later arrivals find their record already synced.
+	private void sync(long position) throws IOException {
+		if (syncedPosition.get() >= position) {
+			return;
+		}
+		synchronized (syncLock) {
+			if (syncedPosition.get() >= position) {
+				return;
+			}
+			long target;
+			FileChannel channel;
+			synchronized (this) {
+				target = writePosition;
+				channel = writer;
+			}
+			try {
+				channel.force(false);
+			} catch (ClosedChannelException ex) {
+				// rolled meanwhile. roll forced the segment before closing it.
+			}
+			syncedPosition.accumulateAndGet(target, Math::max);
+		}
+	}
+
+	private void roll() throws IOException {
+		writer.force(false);
+		writer.close();
+		syncedPosition.accumulateAndGet(writePosition, Math::max);
+		writerBase = writePosition;
+		writer = FileChannel.open(segmentPath(writerBase), StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		segments.add(writerBase);
+		log.debug("roll new segment {}", writerBase);
+	}
+
+	/**
+	 * Reads up to maxRecords durable records starting at position.
+	 */
+	public Batch read(long position, int maxRecords) throws IOException {
+		List<byte[]> records = new ArrayList<>();
+		List<Long> ends = new ArrayList<>();
+		long limit = syncedPosition.get();
+		Map<Long, FileChannel> channels = new HashMap<>();
+		try {
+			ByteBuffer header = ByteBuffer.allocate(HEADER);
+			while (records.size() < maxRecords && position < limit) {
+				Long base = segments.floor(position);
+				if (base == null) {
+					throw new IOException("Journal position " + position + " precedes the first segment.");
+				}
+				FileChannel channel = channels.get(base);
+				if (channel == null) {
+					channel = FileChannel.open(segmentPath(base), StandardOpenOption.READ);
+					channels.put(base, channel);
+				}
+				header.clear();
+				readFully(channel, header, position - base);
+				int length = header.getInt(0);
+				ByteBuffer record = ByteBuffer.allocate(length);
+				readFully(channel, record, position - base + HEADER);
+				if (crc(record.array()) != header.getInt(4)) {
+					throw new IOException("Journal record at " + position + " is corrupt.");
+				}
+				records.add(record.array());
+				position += HEADER + length;
+				ends.add(position);
+			}
+		} finally {
+			for (FileChannel channel : channels.values()) {
+				channel.close();
+			}
+		}
+		return new Batch(Collections.unmodifiableList(records), ends.stream().mapToLong(Long::longValue).toArray(), position);
+	}
+
+	/**
+	 * Records that everything before position has been relayed, and deletes segments wholly before it.
+	 */
+	public void commit(long position) throws IOException {
+		Path temporary = directory.resolve(CHECKPOINT + ".tmp");
+		Files.write(temporary, Long.toString(position).getBytes(StandardCharsets.UTF_8));
+		Files.move(temporary, directory.resolve(CHECKPOINT), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		checkpoint = position;
+
+		for (Long base : segments.headSet(segments.last(), false)) {
+			Long next = segments.higher(base);
+			if (next != null && next <= position) {
+				Files.deleteIfExists(segmentPath(base));
+				segments.remove(base);
+				log.debug("commit deleted segment {}", base);
+			}
+		}
+	}
+
+	public long getCheckpoint() {
+		return checkpoint;
+	}
+
+	public long getEndPosition() {
+		return syncedPosition.get();
+	}
+
+	public int getSegmentCount() {
+		return segments.size();
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		writer.force(false);
+		writer.close();
+	}
+
+	private Path segmentPath(long base) {
+		return directory.resolve(String.format("%020d%s", base, SEGMENT_SUFFIX));
+	}
+
+	private static void readFully(FileChannel channel, ByteBuffer buffer, long offset) throws IOException {
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, offset + buffer.position()) < 0) {
+				throw new IOException("Unexpected end of journal segment.");
+			}
+		}
+	}
+
+	private static int crc(byte[] bytes) {
+		CRC32 crc = new CRC32();
+		crc.update(bytes, 0, bytes.length);
+		return (int) crc.getValue();
+	}
+}
@@ -2,6 +2,7 @@ package qslv.transfer.rest;
 
 import java.util.Collections;
 import java.util.Map;
+import java.util.function.Supplier;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -22,7 +23,9 @@ import org.springframework.web.server.ResponseStatusException;
 
 import qslv.common.TimedResponse;
 import qslv.common.TraceableRequest;
+import qslv.transaction.request.CancelReservationRequest;
 import qslv.transaction.request.ReservationRequest;
+import qslv.transaction.response.CancelReservationResponse;
 import qslv.transaction.response.ReservationResponse;
 
 @Repository
@@ -30,12 +33,18 @@ public class ReservationDao {
 	private static final Logger log = LoggerFactory.getLogger(ReservationDao.class);
 	private static ParameterizedTypeReference<TimedResponse<ReservationResponse>> reservationTypeReference = 
 			new ParameterizedTypeReference<TimedResponse<ReservationResponse>>() {};
+	private static ParameterizedTypeReference<TimedResponse<CancelReservationResponse>> cancelReservationTypeReference = 
+			new ParameterizedTypeReference<TimedResponse<CancelReservationResponse>>() {};
 	@Autowired
 	private ConfigProperties config;
 	@Autowired
 	private RetryTemplate retryTemplate;
 	@Autowired
 	private RestTemplateProxy restTemplateProxy;
+	@Autowired
+	private TransferMetrics transferMetrics;
+	@Autowired
+	private Hedger reservationHedger;
 
 	public ConfigProperties getConfig() {
 		return config;
@@ -45,7 +54,26 @@ public class ReservationDao {
 		this.config = config;
 	}
 
+	public void setTransferMetrics(TransferMetrics transferMetrics) {
+		this.transferMetrics = transferMetrics;
+	}
+
+	public void setReservationHedger(Hedger reservationHedger) {
+		this.reservationHedger = reservationHedger;
+	}
+
 	public ReservationResponse recordReservation(final Map<String, String> callingHeaders, final ReservationRequest request) {
+		return recordReservation(callingHeaders, request, Deadline.NONE);
+	}
+
+	/**
+	 * Same as recordReservation, within the caller's deadline. Each attempt's timeout is clamped to what is left of it
+	 * and forwarded as the request-deadline header. No attempt is started once it has passed.
+	 * With qslv.reservation-hedge-enabled a slow attempt is hedged, which is safe as reservations are idempotent
+	 * on requestUuid.
+	 */
+	public ReservationResponse recordReservation(final Map<String, String> callingHeaders, final ReservationRequest request,
+			final Deadline deadline) {
 		log.trace("recordTransaction ENTRY");
 
 		HttpHeaders headers = buildHeaders(callingHeaders);
@@ -54,11 +82,35 @@ public class ReservationDao {
 		try {
 			response = retryTemplate.execute(new RetryCallback<ResponseEntity<TimedResponse<ReservationResponse>>, ResourceAccessException>() {
 				public ResponseEntity<TimedResponse<ReservationResponse>> doWithRetry( RetryContext context) throws ResourceAccessException {
-					return restTemplateProxy.exchange(config.getReservationUrl(), HttpMethod.POST, 
-							new HttpEntity<ReservationRequest>(request, headers), reservationTypeReference);
+					deadline.check("reservation");
+					long start = System.nanoTime();
+					try {
+						// a copy per attempt: a hedge or a retry must not rewrite the deadline of an attempt still being sent.
+						HttpHeaders attemptHeaders = new HttpHeaders();
+						attemptHeaders.putAll(headers);
+						Supplier<ResponseEntity<TimedResponse<ReservationResponse>>> exchange = () -> restTemplateProxy.exchange(config.getReservationUrl(),
+								HttpMethod.POST, new HttpEntity<ReservationRequest>(request, attemptHeaders), reservationTypeReference);
+						if (deadline.isBounded()) {
+							int timeout = deadline.clamp(config.getRestTimeout());
+							attemptHeaders.set(Deadline.HEADER, String.valueOf(timeout));
+							Supplier<ResponseEntity<TimedResponse<ReservationResponse>>> unbounded = exchange;
+							exchange = () -> DeadlineRequestFactory.withTimeout(timeout, unbounded);
+						}
+						ResponseEntity<TimedResponse<ReservationResponse>> attempt = config.isReservationHedgeEnabled()
+								? reservationHedger.execute(exchange) : exchange.get();
+						transferMetrics.record(TransferMetrics.RESERVATION_ATTEMPT, TransferMetrics.SUCCESS, start);
+						return attempt;
+					} catch (RuntimeException ex) {
+						transferMetrics.record(TransferMetrics.RESERVATION_ATTEMPT, ex, start);
+						throw ex;
+					}
 				} });
 		} 
 		catch (ResourceAccessException ex ) {
+			if (deadline.isExpired()) {
+				log.debug("recordTransaction EXIT request deadline exceeded.");
+				throw new DeadlineExceededException("reservation", ex);
+			}
 			String msg = String.format("HTTP POST to URL %s with %d retries failed.", config.getReservationUrl(), config.getRestAttempts());
 			log.warn("recordTransaction EXIT {}", msg);
 			throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, msg, ex);
@@ -72,6 +124,36 @@ public class ReservationDao {
 		return response.getBody().getPayload();
 	}
 	
+	/**
+	 * Reverses a reservation, e.g. when it was made speculatively for a transfer that turned out to be invalid.
+	 */
+	public CancelReservationResponse cancelReservation(final Map<String, String> callingHeaders, final CancelReservationRequest request) {
+		log.trace("cancelReservation ENTRY");
+
+		HttpHeaders headers = buildHeaders(callingHeaders);
+		headers.add(TraceableRequest.ACCEPT_VERSION, CancelReservationRequest.VERSION_1_0);
+		ResponseEntity<TimedResponse<CancelReservationResponse>> response = null;
+		try {
+			response = retryTemplate.execute(new RetryCallback<ResponseEntity<TimedResponse<CancelReservationResponse>>, ResourceAccessException>() {
+				public ResponseEntity<TimedResponse<CancelReservationResponse>> doWithRetry( RetryContext context) throws ResourceAccessException {
+					return restTemplateProxy.exchange(config.getCancelReservationUrl(), HttpMethod.POST, 
+							new HttpEntity<CancelReservationRequest>(request, headers), cancelReservationTypeReference);
+				} });
+		} 
+		catch (ResourceAccessException ex ) {
+			String msg = String.format("HTTP POST to URL %s with %d retries failed.", config.getCancelReservationUrl(), config.getRestAttempts());
+			log.warn("cancelReservation EXIT {}", msg);
+			throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, msg, ex);
+		}
+		catch (Exception ex) {
+			log.debug("cancelReservation EXIT {}", ex.getLocalizedMessage());
+			throw (ex);
+		}
+
+		log.trace("cancelReservation EXIT");
+		return response.getBody().getPayload();
+	}
+
 	private HttpHeaders buildHeaders(final Map<String, String> callingHeaders) {
 		HttpHeaders headers = new HttpHeaders();
 		headers.setContentType(MediaType.APPLICATION_JSON);
@@ -1,23 +1,62 @@
 package qslv.transfer.rest;
 
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
 import org.apache.http.impl.client.HttpClients;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
-import org.springframework.retry.backoff.ExponentialBackOffPolicy;
 import org.springframework.retry.policy.SimpleRetryPolicy;
 import org.springframework.retry.support.RetryTemplate;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.web.client.RestTemplate;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.httpcomponents.PoolingHttpClientConnectionManagerMetricsBinder;
+
 @Configuration
 public class RestConfig {
+	public static final String RESERVATION_POOL = "reservation";
+
 	@Autowired
 	private ConfigProperties config;
+	@Autowired
+	private MeterRegistry meterRegistry;
+	@Autowired
+	private ThreadPoolTaskExecutor hedgeExecutor;
+	
+	@Bean
+	public InstrumentedConnectionManager restConnectionManager() {
+		InstrumentedConnectionManager connectionManager = new InstrumentedConnectionManager(meterRegistry, RESERVATION_POOL);
+		connectionManager.setMaxTotal(config.getRestMaxConnections());
+		connectionManager.setDefaultMaxPerRoute(config.getRestMaxConnectionsPerRoute());
+		connectionManager.setValidateAfterInactivity(config.getRestValidateAfterInactivity());
+		// pool size, leased, available and pending lease gauges
+		new PoolingHttpClientConnectionManagerMetricsBinder(connectionManager, RESERVATION_POOL).bindTo(meterRegistry);
+		return connectionManager;
+	}
 	
 	@Bean
 	public RestTemplate restTemplate() {
-        HttpComponentsClientHttpRequestFactory httpRequestFactory = new HttpComponentsClientHttpRequestFactory(HttpClients.createDefault());
+		// never keep a connection longer than configured, even if the server allows more.
+		ConnectionKeepAliveStrategy keepAliveStrategy = (response, context) -> {
+			long keepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+			return (keepAlive < 0 || keepAlive > config.getRestKeepAlive()) ? config.getRestKeepAlive() : keepAlive;
+		};
+		
+        // DeadlineRequestFactory lets ReservationDao shorten the timeouts to the caller's request-deadline.
+        HttpComponentsClientHttpRequestFactory httpRequestFactory = new DeadlineRequestFactory(
+        		HttpClients.custom()
+        			.setConnectionManager(restConnectionManager())
+        			.setKeepAliveStrategy(keepAliveStrategy)
+        			.evictExpiredConnections()
+        			.evictIdleConnections(config.getRestIdleTimeout(), TimeUnit.MILLISECONDS)
+        			.build());
         httpRequestFactory.setConnectionRequestTimeout(config.getRestConnectionRequestTimeout());;
         httpRequestFactory.setConnectTimeout(config.getRestConnectTimeout());
         httpRequestFactory.setReadTimeout(config.getRestTimeout());
@@ -25,21 +64,59 @@ public class RestConfig {
         return new RestTemplate(httpRequestFactory);
 	}
 	
+	@Bean
+	public CircuitBreaker reservationCircuitBreaker() {
+		return new CircuitBreaker(RESERVATION_POOL, config, config.getCircuitBreakerReservationSlowCall());
+	}
+	
+	@Bean
+	public RetryBudget reservationRetryBudget() {
+		return new RetryBudget(RESERVATION_POOL, config.getRestRetryBudgetPercent(), config.getRestRetryBudgetBurst());
+	}
+	
+	/**
+	 * Spreads reservation calls over qslv.reservation-instances, e.g. the headless Service of the reservation pods,
+	 * instead of the ingress in qslv.reservation-url.
+	 */
+	@Bean
+	public LoadBalancer reservationBalancer() {
+		LoadBalancer balancer = new LoadBalancer(RESERVATION_POOL, config.getReservationInstances(), config.getReservationEjectFailures(),
+				config.getReservationEjectDuration(), config.getRestTimeout());
+		balancer.start(config.getReservationDiscoveryInterval());
+		return balancer;
+	}
+	
+	@Bean
+	public Hedger reservationHedger() {
+		return new Hedger(RESERVATION_POOL, config.getReservationHedgePercentile(), config.getReservationHedgeMinDelay(),
+				config.getReservationHedgeBudgetPercent(), config.getReservationHedgeBudgetBurst(), hedgeExecutor);
+	}
+	
 	@Bean 
 	RetryTemplate retryTemplate() {
-		ExponentialBackOffPolicy bop = new ExponentialBackOffPolicy();
-		bop.setMaxInterval(config.getRestBackoffDelay());
+		DecorrelatedJitterBackOffPolicy bop = new DecorrelatedJitterBackOffPolicy();
+		bop.setInitialInterval(config.getRestBackoffDelay());
 		bop.setMaxInterval(config.getRestBackoffDelayMax());
 		
-		SimpleRetryPolicy srp = new SimpleRetryPolicy();
-		srp.setMaxAttempts(config.getRestAttempts());
+		// retrying while the circuit breaker is open, or once the caller has given up, only delays the failure.
+		SimpleRetryPolicy srp = new SimpleRetryPolicy(config.getRestAttempts(),
+				nonRetryable(CircuitBreakerOpenException.class, DeadlineExceededException.class), false, true);
 		
 		RetryTemplate retryTemplate = new RetryTemplate();
 		retryTemplate.setThrowLastExceptionOnExhausted(true);
-		retryTemplate.setRetryPolicy(srp);
+		retryTemplate.setRetryPolicy(new BudgetedRetryPolicy(srp, reservationRetryBudget()));
 		retryTemplate.setBackOffPolicy(bop);
 		
 		return retryTemplate;
 	}
 
+	@SafeVarargs
+	private static Map<Class<? extends Throwable>, Boolean> nonRetryable(Class<? extends Throwable>... exceptions) {
+		Map<Class<? extends Throwable>, Boolean> retryable = new HashMap<>();
+		for (Class<? extends Throwable> exception : exceptions) {
+			retryable.put(exception, false);
+		}
+		return retryable;
+	}
+
 }
@@ -1,5 +1,7 @@
 package qslv.transfer.rest;
 
+import java.util.function.Supplier;
+
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpEntity;
@@ -7,6 +9,7 @@ import org.springframework.http.HttpMethod;
 import org.springframework.http.ResponseEntity;
 import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.ResourceAccessException;
 import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
@@ -15,20 +18,55 @@ import qslv.util.RemoteServiceSLI;
 
 @Component
 public class RestTemplateProxy  {
+	@Autowired
+	ConfigProperties config;
 	@Autowired
 	RestTemplate restTemplate;
+	@Autowired
+	CircuitBreaker reservationCircuitBreaker;
+	@Autowired
+	LoadBalancer reservationBalancer;
 	
+	public void setConfig(ConfigProperties config) {
+		this.config = config;
+	}
 	public void setRestTemplate(RestTemplate restTemplate) {
 		this.restTemplate = restTemplate;
 	}
+	public void setReservationCircuitBreaker(CircuitBreaker reservationCircuitBreaker) {
+		this.reservationCircuitBreaker = reservationCircuitBreaker;
+	}
+	public void setReservationBalancer(LoadBalancer reservationBalancer) {
+		this.reservationBalancer = reservationBalancer;
+	}
 
 	@RemoteServiceSLI(value="POST /Transaction", ait="#{@configProperties.aitid}", remoteAit="#{@configProperties.aitid}", remoteFailures= {ResourceAccessException.class})
 	public <T> ResponseEntity<T> exchange(String url, HttpMethod method, @Nullable HttpEntity<?> requestEntity, ParameterizedTypeReference<T> responseType, Object... uriVariables) throws RestClientException {
-		return restTemplate.exchange(url, method, requestEntity, responseType, uriVariables);
+		return guarded(() -> reservationBalancer.execute(url, target -> restTemplate.exchange(target, method, requestEntity, responseType, uriVariables)));
 	}
 	@RemoteServiceSLI(value="POST /Transaction", ait="#{@configProperties.aitid}", remoteAit="#{@configProperties.aitid}", remoteFailures= {ResourceAccessException.class})
 	public <T> ResponseEntity<T> exchange(String url, HttpMethod method, @Nullable HttpEntity<?> requestEntity, Class<T> responseType, Object... uriVariables) throws RestClientException {
-		return restTemplate.exchange(url, method, requestEntity, responseType, uriVariables);
+		return guarded(() -> reservationBalancer.execute(url, target -> restTemplate.exchange(target, method, requestEntity, responseType, uriVariables)));
+	}
+
+	// timeouts and 5xx count against the circuit breaker. 4xx answers mean the service is up.
+	private <T> ResponseEntity<T> guarded(Supplier<ResponseEntity<T>> exchange) throws RestClientException {
+		reservationCircuitBreaker.acquire();
+		long start = System.nanoTime();
+		boolean failed = true;
+		try {
+			ResponseEntity<T> response = exchange.get();
+			failed = false;
+			return response;
+		} catch (HttpClientErrorException ex) {
+			failed = false;
+			throw ex;
+		} catch (ResourceAccessException ex) {
+			failed = DeadlineRequestFactory.isServiceFailure(ex, config.getRestTimeout());
+			throw ex;
+		} finally {
+			reservationCircuitBreaker.onResult(System.nanoTime() - start, failed);
+		}
 	}
 	
 }
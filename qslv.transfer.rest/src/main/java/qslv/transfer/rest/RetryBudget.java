@@ -0,0 +1,81 @@
+package qslv.transfer.rest;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Token bucket shared by every request, capping retries at a percentage of calls so a brownout downstream is not
+ * multiplied by the retry count. Each call deposits qslv.rest-retry-budget-percent hundredths of a token, up to
+ * qslv.rest-retry-budget-burst tokens, and each retry spends a whole token. The bucket starts full, so a quiet service
+ * can still retry. Published as transfer.retry.budget.tokens, transfer.retry.budget.retries and
+ * transfer.retry.budget.exhausted, tagged by name.
+ */
+public class RetryBudget implements MeterBinder {
+	private static final long TOKEN = 100;
+
+	private final String name;
+	private final long deposit;
+	private final long capacity;
+	private final AtomicLong balance;
+	private final LongAdder retries = new LongAdder();
+	private final LongAdder exhausted = new LongAdder();
+
+	public RetryBudget(String name, int percent, int burst) {
+		this.name = name;
+		this.deposit = Math.max(0, percent);
+		this.capacity = Math.max(1, burst) * TOKEN;
+		this.balance = new AtomicLong(capacity);
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Called once per call, before its first attempt.
+	 */
+	public void deposit() {
+		balance.getAndUpdate(tokens -> Math.min(capacity, tokens + deposit));
+	}
+
+	/**
+	 * @return true if a retry may be made, having paid for it.
+	 */
+	public boolean tryRetry() {
+		long tokens;
+		do {
+			tokens = balance.get();
+			if (tokens < TOKEN) {
+				exhausted.increment();
+				return false;
+			}
+		} while (false == balance.compareAndSet(tokens, tokens - TOKEN));
+		retries.increment();
+		return true;
+	}
+
+	public double getTokens() {
+		return (double) balance.get() / TOKEN;
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		Gauge.builder("transfer.retry.budget.tokens", this, RetryBudget::getTokens)
+			.description("retries that may be made before the budget is exhausted")
+			.tag("name", name)
+			.register(registry);
+		FunctionCounter.builder("transfer.retry.budget.retries", retries, LongAdder::sum)
+			.description("retries paid for from the budget")
+			.tag("name", name)
+			.register(registry);
+		FunctionCounter.builder("transfer.retry.budget.exhausted", exhausted, LongAdder::sum)
+			.description("retries refused because the budget was exhausted")
+			.tag("name", name)
+			.register(registry);
+	}
+}
@@ -0,0 +1,69 @@
+package qslv.transfer.rest;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Where the time of one transfer went, for the TimedResponse and the Server-Timing response header.
+ * Stages recorded through TransferMetrics are accumulated as db (account lookup), reservation (including retries
+ * and cancellation) and kafka (kafka or outbox). Overhead is the rest of the time since construction.
+ * With qslv.speculative-reservation the account lookup and reservation overlap, so their sum would overstate the time
+ * taken and hide the overhead. Such a transfer reports the wall time of both together as validate-reserve instead.
+ */
+public class ServerTiming {
+	public static final String HEADER = "Server-Timing";
+	public static final String VALIDATE_RESERVE = "validate-reserve";
+
+	private final long start = System.nanoTime();
+	private final AtomicLong db = new AtomicLong();
+	private final AtomicLong reservation = new AtomicLong();
+	private final AtomicLong kafka = new AtomicLong();
+	private final AtomicLong validateReserve = new AtomicLong();
+
+	public void add(String stage, long nanos) {
+		switch (stage) {
+		case TransferMetrics.ACCOUNTS:
+			db.addAndGet(nanos);
+			break;
+		case TransferMetrics.RESERVATION:
+		case TransferMetrics.RESERVATION_CANCEL:
+			reservation.addAndGet(nanos);
+			break;
+		case TransferMetrics.KAFKA:
+		case TransferMetrics.OUTBOX:
+			kafka.addAndGet(nanos);
+			break;
+		case VALIDATE_RESERVE:
+			validateReserve.addAndGet(nanos);
+			break;
+		default:
+			break;
+		}
+	}
+
+	/**
+	 * Nanoseconds since construction.
+	 */
+	public long getElapsedTime() {
+		return System.nanoTime() - start;
+	}
+
+	/**
+	 * Server-Timing header value for a response that took total nanoseconds, durations in milliseconds.
+	 */
+	public String toHeader(long total) {
+		if (validateReserve.get() > 0) {
+			long overhead = Math.max(0L, total - validateReserve.get() - kafka.get());
+			return String.format(Locale.ROOT, "validate-reserve;dur=%.3f, kafka;dur=%.3f, overhead;dur=%.3f, total;dur=%.3f",
+					millis(validateReserve.get()), millis(kafka.get()), millis(overhead), millis(total));
+		}
+		long overhead = Math.max(0L, total - db.get() - reservation.get() - kafka.get());
+		return String.format(Locale.ROOT, "db;dur=%.3f, reservation;dur=%.3f, kafka;dur=%.3f, overhead;dur=%.3f, total;dur=%.3f",
+				millis(db.get()), millis(reservation.get()), millis(kafka.get()), millis(overhead), millis(total));
+	}
+
+	private static double millis(long nanos) {
+		return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+	}
+}
@@ -1,30 +1,50 @@
 package qslv.transfer.rest;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 import qslv.common.TimedResponse;
 import qslv.common.TraceableRequest;
 import qslv.transfer.request.TransferFundsRequest;
 import qslv.transfer.response.TransferFundsResponse;
-import qslv.util.ServiceElapsedTimeSLI;
 import qslv.util.LogRequestTracingData;
 
 @RestController
 public class TransferController {
 	private static final Logger log = LoggerFactory.getLogger(TransferController.class);
+	public static final MediaType APPLICATION_NDJSON = MediaType.valueOf("application/x-ndjson");
 
 	@Autowired
 	public ConfigProperties config;
 	@Autowired
 	private TransferService transferService;
+	@Autowired
+	private Executor batchExecutor;
+	@Autowired
+	private ObjectMapper objectMapper;
+	@Autowired
+	private ConcurrencyLimiter transferLimiter;
 
 	public ConfigProperties getConfig() {
 		return config;
@@ -38,11 +58,19 @@ public class TransferController {
 	public void setTransferService(TransferService transferService) {
 		this.transferService = transferService;
 	}
+	public void setBatchExecutor(Executor batchExecutor) {
+		this.batchExecutor = batchExecutor;
+	}
+	public void setObjectMapper(ObjectMapper objectMapper) {
+		this.objectMapper = objectMapper;
+	}
+	public void setTransferLimiter(ConcurrencyLimiter transferLimiter) {
+		this.transferLimiter = transferLimiter;
+	}
 	
 	@PostMapping("/TransferFunds")
 	@LogRequestTracingData(value="POST/TransferFunds", ait = "#{@configProperties.aitid}")
-	@ServiceElapsedTimeSLI(value="POST/TransferFunds", injectResponse = true, ait = "#{@configProperties.aitid}")
-	public ResponseEntity<TimedResponse<TransferFundsResponse>> postTransferFunds(final @RequestHeader Map<String, String> headers,
+	public CompletableFuture<ResponseEntity<TimedResponse<TransferFundsResponse>>> postTransferFunds(final @RequestHeader Map<String, String> headers,
 			final @RequestBody TransferFundsRequest request) {
 		
 		validateHeaders(headers);
@@ -51,24 +79,161 @@ public class TransferController {
 			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid service version.");
 		}
 
-		HttpStatus responseStatus = HttpStatus.OK; 
-		TransferFundsResponse response = null;
+		// the servlet thread is released here. the response is written when the transfer completes.
+		ServerTiming timing = new ServerTiming();
+		Deadline deadline = Deadline.fromHeaders(headers);
+		return limited(() -> transferService.transferFundsAsync(headers, request, timing, deadline)).handle((response, exception) -> {
+			HttpStatus responseStatus = HttpStatus.OK; 
+			if (exception != null) {
+				Throwable ex = unwrap(exception);
+				if (ex instanceof DisruptedProcessingException) {
+					response = ((DisruptedProcessingException) ex).getResponse();
+					responseStatus = ((DisruptedProcessingException) ex).getStatus();
+				} else if (ex instanceof ResponseStatusException) {
+					throw (ResponseStatusException) ex;
+				} else {
+					throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "", ex);
+				}
+			}
+			
+			long elapsed = timing.getElapsedTime();
+			ResponseEntity.BodyBuilder builder = ResponseEntity.status(responseStatus);
+			if (config.isServerTimingHeader()) {
+				builder.header(ServerTiming.HEADER, timing.toHeader(elapsed));
+			}
+			return builder.body(new TimedResponse<TransferFundsResponse>(elapsed, response));
+		});
+	}
+	
+	/**
+	 * With qslv.transfer-limit-enabled, rejects the transfer with 503 and Retry-After once transferLimiter is at its
+	 * limit, and otherwise holds a place under the limit until it completes.
+	 */
+	private <T> CompletableFuture<T> limited(Supplier<CompletableFuture<T>> transfer) {
+		if (false == config.isTransferLimitEnabled()) {
+			return transfer.get();
+		}
+		long start = transferLimiter.acquire();
+		CompletableFuture<T> future;
 		try {
-			response = transferService.transferFunds(headers, request);
-		} catch (DisruptedProcessingException ex) {
-			response = ex.getResponse();
-			responseStatus = ex.getStatus();
-		} catch (ResponseStatusException ex) {
+			future = transfer.get();
+		} catch (RuntimeException ex) {
+			transferLimiter.release(start, ex);
 			throw ex;
+		}
+		return future.whenComplete((response, exception) -> transferLimiter.release(start, exception));
+	}
+
+	/**
+	 * Accepts a stream of TransferFundsRequest, either newline delimited or as a JSON array, sharing one set of headers.
+	 * Items run through the same validation and TransferService.transferFundsAsync as POST /TransferFunds, at most
+	 * qslv.batch-parallelism at a time, and one TransferFundsBatchItem line is streamed back per item as it completes.
+	 */
+	@PostMapping("/TransferFundsBatch")
+	@LogRequestTracingData(value="POST/TransferFundsBatch", ait = "#{@configProperties.aitid}")
+	public ResponseEntity<ResponseBodyEmitter> postTransferFundsBatch(final @RequestHeader Map<String, String> headers,
+			final InputStream body) {
+
+		validateHeaders(headers);
+		if ( false == headers.get(TraceableRequest.ACCEPT_VERSION).equals(TransferFundsRequest.Version1_0)) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid service version.");
+		}
+
+		ResponseBodyEmitter emitter = new ResponseBodyEmitter(config.getBatchTimeout());
+		try {
+			batchExecutor.execute(() -> processBatch(headers, body, emitter));
+		} catch (RejectedExecutionException ex) {
+			log.warn("postTransferFundsBatch, batch executor saturated. {}", ex.getLocalizedMessage());
+			throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Batch capacity exhausted.");
+		}
+		return ResponseEntity.ok().contentType(APPLICATION_NDJSON).body(emitter);
+	}
+
+	void processBatch(Map<String, String> headers, InputStream body, ResponseBodyEmitter emitter) {
+		final int parallelism = config.getBatchParallelism();
+		final Semaphore permits = new Semaphore(parallelism);
+		long sequence = 0;
+		try (MappingIterator<TransferFundsRequest> requests = objectMapper.readerFor(TransferFundsRequest.class).readValues(body)) {
+			while (requests.hasNextValue()) {
+				final TransferFundsRequest request = requests.nextValue();
+				final long itemSequence = sequence++;
+				permits.acquire();
+				transferItem(headers, request).handle((response, exception) -> batchItem(itemSequence, request, response, exception))
+					.whenComplete((item, exception) -> {
+						try {
+							if (item != null) emit(emitter, item);
+						} finally {
+							permits.release();
+						}
+					});
+			}
+			permits.acquire(parallelism);
+			emitter.complete();
+		} catch (IOException ex) {
+			log.error("processBatch, malformed batch after {} items. {}", sequence, ex.getLocalizedMessage());
+			permits.acquireUninterruptibly(parallelism);
+			TransferFundsBatchItem item = new TransferFundsBatchItem();
+			item.setSequence(sequence);
+			item.setStatus(HttpStatus.BAD_REQUEST.value());
+			item.setReason("Malformed batch. " + ex.getLocalizedMessage());
+			emit(emitter, item);
+			emitter.complete();
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			emitter.completeWithError(ex);
+		}
+	}
+
+	private CompletableFuture<TransferFundsResponse> transferItem(Map<String, String> headers, TransferFundsRequest request) {
+		try {
+			if (request == null) {
+				throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Missing request");
+			}
+			validateTransferFundsRequest(request);
+			return transferService.transferFundsAsync(headers, request);
 		} catch (RuntimeException ex) {
-			throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "", ex);
+			CompletableFuture<TransferFundsResponse> failed = new CompletableFuture<>();
+			failed.completeExceptionally(ex);
+			return failed;
 		}
-		
-		return ResponseEntity
-				.status(responseStatus)
-				.body(new TimedResponse<TransferFundsResponse>(0, response));
 	}
-	
+
+	private TransferFundsBatchItem batchItem(long sequence, TransferFundsRequest request, TransferFundsResponse response, Throwable exception) {
+		TransferFundsBatchItem item = new TransferFundsBatchItem();
+		item.setSequence(sequence);
+		item.setRequestUuid(request == null ? null : request.getRequestUuid());
+		item.setStatus(HttpStatus.OK.value());
+		item.setResponse(response);
+		if (exception != null) {
+			Throwable ex = unwrap(exception);
+			if (ex instanceof ResponseStatusException) {
+				item.setStatus(((ResponseStatusException) ex).getStatus().value());
+				item.setReason(((ResponseStatusException) ex).getReason());
+				if (ex instanceof DisruptedProcessingException) {
+					item.setResponse(((DisruptedProcessingException) ex).getResponse());
+				}
+			} else {
+				log.error("batchItem, transfer {} failed. {}", item.getRequestUuid(), ex.getLocalizedMessage());
+				item.setStatus(HttpStatus.INTERNAL_SERVER_ERROR.value());
+			}
+		}
+		return item;
+	}
+
+	private void emit(ResponseBodyEmitter emitter, TransferFundsBatchItem item) {
+		try {
+			byte[] line = (objectMapper.writeValueAsString(item) + "\n").getBytes(StandardCharsets.UTF_8);
+			emitter.send(line, MediaType.APPLICATION_OCTET_STREAM);
+		} catch (IOException | IllegalStateException ex) {
+			// the client has gone. remaining items still run to completion so their reservations are fulfilled.
+			log.warn("emit, unable to write batch item {}. {}", item.getSequence(), ex.getLocalizedMessage());
+		}
+	}
+
+	private static Throwable unwrap(Throwable exception) {
+		return (exception instanceof CompletionException && exception.getCause() != null) ? exception.getCause() : exception;
+	}
+
 	private void validateTransferFundsRequest(TransferFundsRequest request) {
 		log.debug("validateTransferFundsRequest ENTRY");
 		if (request.getRequestUuid() == null) {
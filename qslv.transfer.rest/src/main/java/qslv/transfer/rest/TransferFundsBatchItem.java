@@ -0,0 +1,49 @@
+package qslv.transfer.rest;
+
+import java.util.UUID;
+
+import qslv.transfer.response.TransferFundsResponse;
+
+/**
+ * One line of the POST /TransferFundsBatch response stream.
+ * Lines are written as items complete, so sequence (the item's position in the request stream) and requestUuid
+ * tie each line back to its request. status is the HTTP status POST /TransferFunds would have returned for the item.
+ */
+public class TransferFundsBatchItem {
+	private long sequence;
+	private UUID requestUuid;
+	private int status;
+	private String reason;
+	private TransferFundsResponse response;
+
+	public long getSequence() {
+		return sequence;
+	}
+	public void setSequence(long sequence) {
+		this.sequence = sequence;
+	}
+	public UUID getRequestUuid() {
+		return requestUuid;
+	}
+	public void setRequestUuid(UUID requestUuid) {
+		this.requestUuid = requestUuid;
+	}
+	public int getStatus() {
+		return status;
+	}
+	public void setStatus(int status) {
+		this.status = status;
+	}
+	public String getReason() {
+		return reason;
+	}
+	public void setReason(String reason) {
+		this.reason = reason;
+	}
+	public TransferFundsResponse getResponse() {
+		return response;
+	}
+	public void setResponse(TransferFundsResponse response) {
+		this.response = response;
+	}
+}
@@ -0,0 +1,87 @@
+package qslv.transfer.rest;
+
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Latency of each stage of a transfer as the transfer.stage timer, tagged by stage and outcome.
+ * The stages are accounts, reservation (the whole call, retries included), reservation.attempt (each HTTP attempt
+ * of it), reservation.cancel, kafka, outbox and total. Tag values keep their dots in Prometheus, e.g.
+ * transfer_stage_seconds_count{stage="reservation.attempt"}.
+ * The timers publish percentile histograms so p99 can be aggregated across instances, e.g. through /actuator/prometheus.
+ * The outcome is success, insufficient_funds, the HTTP status of a ResponseStatusException, or the exception's class name.
+ * Speculative reservations that could not be cancelled even after retrying are counted as transfer.reservation.cancel.failed;
+ * each leaves funds reserved for a transfer that never happened.
+ */
+@Component
+public class TransferMetrics {
+	public static final String ACCOUNTS = "accounts";
+	public static final String RESERVATION = "reservation";
+	public static final String RESERVATION_ATTEMPT = "reservation.attempt";
+	public static final String RESERVATION_CANCEL = "reservation.cancel";
+	public static final String KAFKA = "kafka";
+	public static final String OUTBOX = "outbox";
+	public static final String TOTAL = "total";
+
+	public static final String SUCCESS = "success";
+	public static final String INSUFFICIENT_FUNDS = "insufficient_funds";
+
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	private final ConcurrentMap<String, Timer> timers = new ConcurrentHashMap<>();
+	private volatile Counter cancelFailed;
+
+	public void setMeterRegistry(MeterRegistry meterRegistry) {
+		this.meterRegistry = meterRegistry;
+	}
+
+	/**
+	 * Records the time since start, a System.nanoTime() value, and returns it in nanoseconds.
+	 */
+	public long record(String stage, String outcome, long start) {
+		long elapsed = System.nanoTime() - start;
+		timers.computeIfAbsent(stage + ':' + outcome, key -> Timer.builder("transfer.stage")
+				.description("Latency of a transfer stage")
+				.tag("stage", stage)
+				.tag("outcome", outcome)
+				.publishPercentileHistogram()
+				.register(meterRegistry))
+			.record(elapsed, TimeUnit.NANOSECONDS);
+		return elapsed;
+	}
+
+	public long record(String stage, Throwable ex, long start) {
+		return record(stage, outcome(ex), start);
+	}
+
+	public void cancelFailed() {
+		if (cancelFailed == null) {
+			cancelFailed = Counter.builder("transfer.reservation.cancel.failed")
+					.description("Speculative reservations left in place after every cancel attempt failed")
+					.register(meterRegistry);
+		}
+		cancelFailed.increment();
+	}
+
+	public static String outcome(Throwable ex) {
+		if (ex == null) {
+			return SUCCESS;
+		}
+		Throwable cause = (ex instanceof CompletionException && ex.getCause() != null) ? ex.getCause() : ex;
+		if (cause instanceof ResponseStatusException) {
+			return Integer.toString(((ResponseStatusException) cause).getStatus().value());
+		}
+		return cause.getClass().getSimpleName();
+	}
+}
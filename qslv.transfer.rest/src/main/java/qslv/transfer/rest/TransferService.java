@@ -1,12 +1,23 @@
 package qslv.transfer.rest;
 import qslv.data.Account;
+import qslv.transaction.request.CancelReservationRequest;
 import qslv.transaction.request.ReservationRequest;
 import qslv.transaction.response.ReservationResponse;
 import qslv.transfer.request.TransferFulfillmentMessage;
 import qslv.transfer.request.TransferFundsRequest;
 import qslv.transfer.response.TransferFundsResponse;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -20,20 +31,40 @@ import org.springframework.web.server.ResponseStatusException;
 @Service
 public class TransferService {
 	private static final Logger log = LoggerFactory.getLogger(TransferService.class);
+	private static final ScheduledExecutorService cancelRetryScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "reservation-cancel-retry");
+		thread.setDaemon(true);
+		return thread;
+	});
 
 	@Autowired
-	private JdbcDao jdbcDao;
+	private ConfigProperties config;
+	@Autowired
+	private AccountCache accountCache;
 	@Autowired
 	private KafkaDao kafkaDao;
 	@Autowired
 	private ReservationDao reservationDao;
+	@Autowired
+	private Executor transferExecutor;
+	@Autowired
+	private IdempotencyStore idempotencyStore;
+	@Autowired
+	private FulfillmentOutbox fulfillmentOutbox;
+	@Autowired
+	private TransferMetrics transferMetrics;
+	private ScheduledExecutorService cancelScheduler = cancelRetryScheduler;
+
+	public void setConfig(ConfigProperties config) {
+		this.config = config;
+	}
 
-	public JdbcDao getJdbcDao() {
-		return jdbcDao;
+	public AccountCache getAccountCache() {
+		return accountCache;
 	}
 
-	public void setJdbcDao(JdbcDao jdbcDao) {
-		this.jdbcDao = jdbcDao;
+	public void setAccountCache(AccountCache accountCache) {
+		this.accountCache = accountCache;
 	}
 
 	public KafkaDao getKafkaDao() {
@@ -52,23 +83,295 @@ public class TransferService {
 		this.reservationDao = reservationDao;
 	}
 
+	public void setTransferExecutor(Executor transferExecutor) {
+		this.transferExecutor = transferExecutor;
+	}
+
+	public void setIdempotencyStore(IdempotencyStore idempotencyStore) {
+		this.idempotencyStore = idempotencyStore;
+	}
+
+	public void setFulfillmentOutbox(FulfillmentOutbox fulfillmentOutbox) {
+		this.fulfillmentOutbox = fulfillmentOutbox;
+	}
+
+	public void setTransferMetrics(TransferMetrics transferMetrics) {
+		this.transferMetrics = transferMetrics;
+	}
+
+	public void setCancelScheduler(ScheduledExecutorService cancelScheduler) {
+		this.cancelScheduler = cancelScheduler;
+	}
+
 	public TransferFundsResponse transferFunds(Map<String, String> callingHeaders, TransferFundsRequest request) {
 		log.trace("service.transferFunds ENTRY");
+
+		long start = System.nanoTime();
+		try {
+			TransferFundsResponse response = idempotencyStore.execute(request,
+					() -> CompletableFuture.completedFuture(executeTransfer(callingHeaders, request, new ServerTiming(), Deadline.NONE))).join();
+			transferMetrics.record(TransferMetrics.TOTAL, outcome(response), start);
+			return response;
+		} catch (RuntimeException ex) {
+			transferMetrics.record(TransferMetrics.TOTAL, ex, start);
+			if (ex instanceof CompletionException && ex.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) ex.getCause();
+			}
+			throw ex;
+		}
+	}
+
+	private TransferFundsResponse executeTransfer(Map<String, String> callingHeaders, TransferFundsRequest request, ServerTiming timing,
+			Deadline deadline) {
+		ReservationResponse tresp = config.isSpeculativeReservation() ? reserveFundsSpeculatively(callingHeaders, request, timing, deadline)
+				: reserveFunds(callingHeaders, request, timing, deadline);
+		
+		// ---------------
+		TransferFundsResponse response = new TransferFundsResponse();
+		response.setReservation(tresp.getResource());
 		
-		Account fromAccount = jdbcDao.getAccount(request.getFromAccountNumber());
+		// ---------------
+		if (tresp.getStatus() == ReservationResponse.INSUFFICIENT_FUNDS) {
+			response.setStatus(TransferFundsResponse.INSUFFICIENT_FUNDS);
+			response.setFulfillmentMessage(null);
+		} else {
+			TransferFulfillmentMessage tfr = buildFulfillmentMessage(request, tresp);
+			
+			try {
+				fulfill(callingHeaders, tfr, timing, deadline);
+				response.setFulfillmentMessage(tfr);
+				response.setStatus(TransferFundsResponse.SUCCESS);
+			} catch (ResponseStatusException ex) {
+				throw fulfillmentFailure(response, ex);
+			}
+		}
+	
+		log.trace("service.transferFunds EXIT");
+		return response;
+	}
+
+	/**
+	 * Same processing and exceptions as transferFunds, without holding the caller's thread.
+	 * Account validation and the reservation run on the transfer executor, the kafka acknowledgement
+	 * completes the future from the producer callback. Failures complete the future exceptionally.
+	 * Retries of a requestUuid are answered from the idempotency store.
+	 */
+	public CompletableFuture<TransferFundsResponse> transferFundsAsync(Map<String, String> callingHeaders, TransferFundsRequest request) {
+		return transferFundsAsync(callingHeaders, request, new ServerTiming());
+	}
+
+	/**
+	 * Same as transferFundsAsync, accumulating the time spent in each stage into timing.
+	 */
+	public CompletableFuture<TransferFundsResponse> transferFundsAsync(Map<String, String> callingHeaders, TransferFundsRequest request,
+			ServerTiming timing) {
+		return transferFundsAsync(callingHeaders, request, timing, Deadline.NONE);
+	}
+
+	/**
+	 * Same as transferFundsAsync, within the caller's deadline. No reservation is attempted once it has passed,
+	 * downstream waits are clamped to what is left of it, and running out fails with DeadlineExceededException.
+	 */
+	public CompletableFuture<TransferFundsResponse> transferFundsAsync(Map<String, String> callingHeaders, TransferFundsRequest request,
+			ServerTiming timing, Deadline deadline) {
+		log.trace("service.transferFundsAsync ENTRY");
+		long start = System.nanoTime();
+		return idempotencyStore.execute(request, () -> executeTransferAsync(callingHeaders, request, timing, deadline))
+			.whenComplete((response, ex) -> transferMetrics.record(TransferMetrics.TOTAL,
+					ex == null ? outcome(response) : TransferMetrics.outcome(ex), start));
+	}
+
+	private CompletableFuture<TransferFundsResponse> executeTransferAsync(Map<String, String> callingHeaders, TransferFundsRequest request,
+			ServerTiming timing, Deadline deadline) {
+		CompletableFuture<ReservationResponse> reservation;
+		try {
+			reservation = config.isSpeculativeReservation() ? reserveFundsSpeculativelyAsync(callingHeaders, request, timing, deadline)
+					: CompletableFuture.supplyAsync(() -> reserveFunds(callingHeaders, request, timing, deadline), transferExecutor);
+		} catch (RejectedExecutionException ex) {
+			log.warn("service.transferFundsAsync EXIT transfer executor is saturated.");
+			CompletableFuture<TransferFundsResponse> rejected = new CompletableFuture<>();
+			rejected.completeExceptionally(new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Transfer capacity exhausted.", ex));
+			return rejected;
+		}
+
+		return reservation.thenCompose(tresp -> {
+			TransferFundsResponse response = new TransferFundsResponse();
+			response.setReservation(tresp.getResource());
+
+			if (tresp.getStatus() == ReservationResponse.INSUFFICIENT_FUNDS) {
+				response.setStatus(TransferFundsResponse.INSUFFICIENT_FUNDS);
+				response.setFulfillmentMessage(null);
+				return CompletableFuture.completedFuture(response);
+			}
+			
+			TransferFulfillmentMessage tfr = buildFulfillmentMessage(request, tresp);
+			return fulfillAsync(callingHeaders, tfr, timing, deadline).handle((result, ex) -> {
+				if (ex != null) {
+					Throwable cause = (ex instanceof CompletionException && ex.getCause() != null) ? ex.getCause() : ex;
+					throw fulfillmentFailure(response, (cause instanceof ResponseStatusException) ? (ResponseStatusException) cause
+							: new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Kafka Producer failure", cause));
+				}
+				response.setFulfillmentMessage(tfr);
+				response.setStatus(TransferFundsResponse.SUCCESS);
+				log.trace("service.transferFundsAsync EXIT");
+				return response;
+			});
+		});
+	}
+
+	private ReservationResponse reserveFunds(Map<String, String> callingHeaders, TransferFundsRequest request, ServerTiming timing,
+			Deadline deadline) {
+		// the deadline may have passed while queued for the transfer executor.
+		deadline.check("account validation");
+		validateAccounts(request, timing, deadline);
+		return reserve(callingHeaders, request, timing, deadline);
+	}
+
+	private ReservationResponse reserveFundsSpeculatively(Map<String, String> callingHeaders, TransferFundsRequest request, ServerTiming timing,
+			Deadline deadline) {
+		try {
+			return reserveFundsSpeculativelyAsync(callingHeaders, request, timing, deadline).join();
+		} catch (RejectedExecutionException ex) {
+			return reserveFunds(callingHeaders, request, timing, deadline);
+		} catch (CompletionException ex) {
+			if (ex.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) ex.getCause();
+			}
+			throw ex;
+		}
+	}
+
+	/**
+	 * qslv.speculative-reservation: validate the accounts and reserve the funds concurrently, so the critical path is the
+	 * slower of the two rather than their sum. When validation fails a reservation that was made is cancelled and the
+	 * validation failure is returned. A reservation that failed outright needs no compensation.
+	 * Validation is submitted first, so a reservation is never made without it. Neither is started once the deadline
+	 * has passed, and the reservation is not started if it passes while queued.
+	 */
+	private CompletableFuture<ReservationResponse> reserveFundsSpeculativelyAsync(Map<String, String> callingHeaders,
+			TransferFundsRequest request, ServerTiming timing, Deadline deadline) {
+		deadline.check("account validation");
+		long start = System.nanoTime();
+		CompletableFuture<Void> validation = CompletableFuture.runAsync(() -> validateAccounts(request, timing, deadline), transferExecutor);
+		CompletableFuture<ReservationResponse> reservation = CompletableFuture.supplyAsync(() -> {
+			deadline.check("reservation");
+			return reserve(callingHeaders, request, timing, deadline);
+		}, transferExecutor);
+
+		return CompletableFuture.allOf(validation, reservation).handle((ignore, ex) -> {
+			try {
+				Throwable invalid = failure(validation);
+				if (invalid == null) {
+					return reservation.join();
+				}
+				if (failure(reservation) == null && reservation.join().getStatus() != ReservationResponse.INSUFFICIENT_FUNDS) {
+					cancelReservation(callingHeaders, request, reservation.join(), timing);
+				}
+				throw (invalid instanceof RuntimeException) ? (RuntimeException) invalid : new CompletionException(invalid);
+			} finally {
+				timing.add(ServerTiming.VALIDATE_RESERVE, System.nanoTime() - start);
+			}
+		});
+	}
+
+	private void cancelReservation(Map<String, String> callingHeaders, TransferFundsRequest request, ReservationResponse tresp, ServerTiming timing) {
+		CancelReservationRequest crr = new CancelReservationRequest();
+		// derived from the transfer's requestUuid so a retried transfer cancels idempotently
+		crr.setRequestUuid(UUID.nameUUIDFromBytes(("cancel:" + request.getRequestUuid()).getBytes(StandardCharsets.UTF_8)));
+		crr.setReservationUuid(tresp.getResource().getTransactionUuid());
+		crr.setAccountNumber(request.getFromAccountNumber());
+		crr.setTransactionMetaDataJson(request.getTransactionJsonMetaData());
+
+		if (false == tryCancel(callingHeaders, crr, timing)) {
+			retryCancel(callingHeaders, crr, 1);
+		}
+	}
+
+	private boolean tryCancel(Map<String, String> callingHeaders, CancelReservationRequest crr, ServerTiming timing) {
+		long start = System.nanoTime();
+		try {
+			reservationDao.cancelReservation(callingHeaders, crr);
+			record(timing, TransferMetrics.RESERVATION_CANCEL, TransferMetrics.SUCCESS, start);
+			log.debug("Speculative reservation {} cancelled.", crr.getReservationUuid());
+			return true;
+		} catch (RuntimeException ex) {
+			record(timing, TransferMetrics.RESERVATION_CANCEL, ex, start);
+			log.warn("Speculative reservation {} of account {} could not be cancelled. {}", crr.getReservationUuid(),
+					crr.getAccountNumber(), ex.getLocalizedMessage());
+			return false;
+		}
+	}
+
+	/**
+	 * A failed cancel is retried in the background, up to qslv.reservation-cancel-attempts in all, the delay doubling from
+	 * qslv.reservation-cancel-retry-delay milliseconds. The cancel's requestUuid is fixed, so repeating it is harmless.
+	 * A reservation still in place after the last attempt is counted as transfer.reservation.cancel.failed for reversal by hand.
+	 */
+	private void retryCancel(Map<String, String> callingHeaders, CancelReservationRequest crr, int attempts) {
+		if (attempts >= config.getReservationCancelAttempts()) {
+			transferMetrics.cancelFailed();
+			log.error("Speculative reservation {} of account {} left in place after {} cancel attempts.", crr.getReservationUuid(),
+					crr.getAccountNumber(), attempts);
+			return;
+		}
+		long delay = (long) config.getReservationCancelRetryDelay() << Math.min(attempts - 1, 10);
+		try {
+			cancelScheduler.schedule(() -> {
+				try {
+					// the cancel blocks, so it is not made on the scheduler's thread.
+					transferExecutor.execute(() -> {
+						if (false == tryCancel(callingHeaders, crr, new ServerTiming())) {
+							retryCancel(callingHeaders, crr, attempts + 1);
+						}
+					});
+				} catch (RejectedExecutionException ex) {
+					retryCancel(callingHeaders, crr, attempts + 1);
+				}
+			}, delay, TimeUnit.MILLISECONDS);
+		} catch (RejectedExecutionException ex) {
+			transferMetrics.cancelFailed();
+			log.error("Speculative reservation {} of account {} left in place, cancel retries stopped.", crr.getReservationUuid(),
+					crr.getAccountNumber());
+		}
+	}
+
+	private static Throwable failure(CompletableFuture<?> future) {
+		try {
+			future.join();
+			return null;
+		} catch (CompletionException ex) {
+			return ex.getCause() == null ? ex : ex.getCause();
+		} catch (CancellationException ex) {
+			return ex;
+		}
+	}
+
+	private void validateAccounts(TransferFundsRequest request, ServerTiming timing, Deadline deadline) {
+		long start = System.nanoTime();
+		Map<String, Account> accounts;
+		try {
+			accounts = accountCache.getAccounts(request.getFromAccountNumber(), request.getToAccountNumber(), deadline);
+		} catch (RuntimeException ex) {
+			record(timing, TransferMetrics.ACCOUNTS, ex, start);
+			throw ex;
+		}
+		record(timing, TransferMetrics.ACCOUNTS, TransferMetrics.SUCCESS, start);
+		Account fromAccount = accounts.get(request.getFromAccountNumber());
 		if (false == accountInGoodStanding(fromAccount)) {
 			log.debug("service.transferFunds EXIT From Account in bad standing. {}", fromAccount.toString());
 			throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY,
 					String.format("From account is in an invalid state."));
 		}
-		Account toAccount = jdbcDao.getAccount(request.getToAccountNumber());
+		Account toAccount = accounts.get(request.getToAccountNumber());
 		if (false == accountInGoodStanding(toAccount)) {
-			log.debug("service.transferFunds EXIT To Account in bad standing. {}", fromAccount.toString());
+			log.debug("service.transferFunds EXIT To Account in bad standing. {}", toAccount.toString());
 			throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY,
 					String.format("To account is in an invalid state."));
 		}
-		
-		// --------------
+	}
+
+	private ReservationResponse reserve(Map<String, String> callingHeaders, TransferFundsRequest request, ServerTiming timing,
+			Deadline deadline) {
 		ReservationRequest treq = new ReservationRequest();
 		treq.setAccountNumber(request.getFromAccountNumber());
 		treq.setDebitCardNumber(null);
@@ -79,40 +382,98 @@ public class TransferService {
 		treq.setProtectAgainstOverdraft(false);
 		
 		// Reserve Money in From Account---------------
-		ReservationResponse tresp = reservationDao.recordReservation(callingHeaders, treq);
-		
-		// ---------------
-		TransferFundsResponse response = new TransferFundsResponse();
-		response.setReservation(tresp.getResource());
-		
-		// ---------------
-		if (tresp.getStatus() == ReservationResponse.INSUFFICIENT_FUNDS) {
-			response.setStatus(TransferFundsResponse.INSUFFICIENT_FUNDS);
-			response.setFulfillmentMessage(null);
-		} else {
-			TransferFulfillmentMessage tfr = new TransferFulfillmentMessage();
-			tfr.setRequestUuid(tresp.getResource().getTransactionUuid()); // <-- critical to downstream idempotency
-			tfr.setReservationUuid(tresp.getResource().getTransactionUuid());
-			tfr.setFromAccountNumber(fromAccount.getAccountNumber());
-			tfr.setToAccountNumber(toAccount.getAccountNumber());
-			tfr.setTransactionAmount(request.getTransactionAmount());
-			tfr.setTransactionMetaDataJson(request.getTransactionJsonMetaData());
-			tfr.setVersion(TransferFulfillmentMessage.version1_0);
-			
-			try {
-				kafkaDao.produceTransferMessage(callingHeaders, tfr);
-				response.setFulfillmentMessage(tfr);
-				response.setStatus(TransferFundsResponse.SUCCESS);
-			} catch (ResponseStatusException ex) {
-				log.debug("Kafka message production failed.");
-				response.setStatus(TransferFundsResponse.FAILURE);
-				throw new DisruptedProcessingException(response, ex.getStatus(), "Kafka message production failed. "
-						+ "Try the same request in another cluster.", ex);
+		long start = System.nanoTime();
+		try {
+			ReservationResponse tresp = reservationDao.recordReservation(callingHeaders, treq, deadline);
+			record(timing, TransferMetrics.RESERVATION, tresp.getStatus() == ReservationResponse.INSUFFICIENT_FUNDS
+					? TransferMetrics.INSUFFICIENT_FUNDS : TransferMetrics.SUCCESS, start);
+			return tresp;
+		} catch (RuntimeException ex) {
+			record(timing, TransferMetrics.RESERVATION, ex, start);
+			throw ex;
+		}
+	}
+
+	// with the outbox enabled a transfer is fulfilled once its message is durable locally. kafka is the fallback, except when the outbox is full.
+	private void fulfill(Map<String, String> callingHeaders, TransferFulfillmentMessage tfr, ServerTiming timing, Deadline deadline) {
+		if (appendToOutbox(callingHeaders, tfr, timing)) {
+			return;
+		}
+		long start = System.nanoTime();
+		try {
+			kafkaDao.produceTransferMessage(callingHeaders, tfr, deadline);
+		} catch (RuntimeException ex) {
+			record(timing, TransferMetrics.KAFKA, ex, start);
+			throw ex;
+		}
+		record(timing, TransferMetrics.KAFKA, TransferMetrics.SUCCESS, start);
+	}
+
+	private CompletableFuture<Void> fulfillAsync(Map<String, String> callingHeaders, TransferFulfillmentMessage tfr, ServerTiming timing,
+			Deadline deadline) {
+		try {
+			if (appendToOutbox(callingHeaders, tfr, timing)) {
+				return CompletableFuture.completedFuture(null);
 			}
+		} catch (ResponseStatusException ex) {
+			CompletableFuture<Void> full = new CompletableFuture<>();
+			full.completeExceptionally(ex);
+			return full;
 		}
-	
-		log.trace("service.transferFunds EXIT");
-		return response;
+		long start = System.nanoTime();
+		return kafkaDao.produceTransferMessageAsync(callingHeaders, tfr, deadline)
+			.whenComplete((result, ex) -> record(timing, TransferMetrics.KAFKA, ex, start));
+	}
+
+	private boolean appendToOutbox(Map<String, String> callingHeaders, TransferFulfillmentMessage tfr, ServerTiming timing) {
+		if (false == fulfillmentOutbox.isEnabled()) {
+			return false;
+		}
+		long start = System.nanoTime();
+		try {
+			fulfillmentOutbox.append(callingHeaders, tfr);
+			record(timing, TransferMetrics.OUTBOX, TransferMetrics.SUCCESS, start);
+			return true;
+		} catch (ResponseStatusException ex) {
+			record(timing, TransferMetrics.OUTBOX, ex, start);
+			if (ex.getStatus() == HttpStatus.SERVICE_UNAVAILABLE) {
+				// full. kafka is most likely down too, and bypassing the outbox would only add to the load.
+				throw ex;
+			}
+			log.warn("Outbox append failed, producing to kafka directly. {}", ex.getLocalizedMessage());
+			return false;
+		}
+	}
+
+	private TransferFulfillmentMessage buildFulfillmentMessage(TransferFundsRequest request, ReservationResponse tresp) {
+		TransferFulfillmentMessage tfr = new TransferFulfillmentMessage();
+		tfr.setRequestUuid(tresp.getResource().getTransactionUuid()); // <-- critical to downstream idempotency
+		tfr.setReservationUuid(tresp.getResource().getTransactionUuid());
+		tfr.setFromAccountNumber(request.getFromAccountNumber());
+		tfr.setToAccountNumber(request.getToAccountNumber());
+		tfr.setTransactionAmount(request.getTransactionAmount());
+		tfr.setTransactionMetaDataJson(request.getTransactionJsonMetaData());
+		tfr.setVersion(TransferFulfillmentMessage.version1_0);
+		return tfr;
+	}
+
+	private DisruptedProcessingException fulfillmentFailure(TransferFundsResponse response, ResponseStatusException ex) {
+		log.debug("Kafka message production failed.");
+		response.setStatus(TransferFundsResponse.FAILURE);
+		return new DisruptedProcessingException(response, ex.getStatus(), "Kafka message production failed. "
+				+ "Try the same request in another cluster.", ex);
+	}
+
+	private void record(ServerTiming timing, String stage, String outcome, long start) {
+		timing.add(stage, transferMetrics.record(stage, outcome, start));
+	}
+
+	private void record(ServerTiming timing, String stage, Throwable ex, long start) {
+		timing.add(stage, transferMetrics.record(stage, ex, start));
+	}
+
+	private static String outcome(TransferFundsResponse response) {
+		return response.getStatus() == TransferFundsResponse.INSUFFICIENT_FUNDS ? TransferMetrics.INSUFFICIENT_FUNDS : TransferMetrics.SUCCESS;
 	}
 
 	private boolean accountInGoodStanding(Account account) {
@@ -0,0 +1,151 @@
+package qslv.transfer.rest;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import qslv.data.Account;
+
+@ExtendWith(MockitoExtension.class)
+public class Unit_AccountBatcher {
+	@Mock
+	JdbcDao jdbcDao;
+
+	ConfigProperties config = new ConfigProperties();
+	SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+	AccountBatcher batcher = new AccountBatcher();
+
+	@BeforeEach
+	public void setup() {
+		config.setAccountBatchWindow(50);
+		config.setAccountBatchSize(100);
+		config.setAccountBatchThreads(2);
+		batcher.setConfig(config);
+		batcher.setJdbcDao(jdbcDao);
+		batcher.setMeterRegistry(meterRegistry);
+		batcher.init();
+	}
+
+	@AfterEach
+	public void shutdown() {
+		batcher.shutdown();
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void load_batchedAndDeduplicated() throws Exception {
+		when(jdbcDao.getAccounts(anyCollection())).thenAnswer(invocation -> accounts(invocation.getArgument(0)));
+
+		List<CompletableFuture<Account>> futures = new ArrayList<>();
+		for (int request = 0; request < 20; request++) {
+			futures.add(batcher.load("ACCOUNT" + (request % 10)));
+		}
+		for (int request = 0; request < 20; request++) {
+			assertEquals("ACCOUNT" + (request % 10), futures.get(request).get(1, TimeUnit.SECONDS).getAccountNumber());
+		}
+
+		ArgumentCaptor<Collection<String>> batch = ArgumentCaptor.forClass(Collection.class);
+		verify(jdbcDao, times(1)).getAccounts(batch.capture());
+		assertEquals(10, batch.getValue().size());
+		assertEquals(10, new HashSet<>(batch.getValue()).size());
+		assertEquals(10.0, meterRegistry.get("transfer.account.batch.deduplicated").counter().count());
+	}
+
+	@Test
+	public void load_sizeCap() throws Exception {
+		config.setAccountBatchWindow(60000);
+		config.setAccountBatchSize(3);
+		when(jdbcDao.getAccounts(anyCollection())).thenAnswer(invocation -> accounts(invocation.getArgument(0)));
+
+		// the third lookup fills the batch, nobody waits out the window
+		batcher.load("ACCOUNT1");
+		batcher.load("ACCOUNT2");
+		assertEquals("ACCOUNT3", batcher.load("ACCOUNT3").get(1, TimeUnit.SECONDS).getAccountNumber());
+	}
+
+	@Test
+	public void getAccounts_notFound() {
+		when(jdbcDao.getAccounts(anyCollection())).thenReturn(accounts(Collections.singletonList("ACCOUNT1")));
+
+		ResponseStatusException ex = assertThrows(ResponseStatusException.class, () -> batcher.getAccounts("ACCOUNT1", "ACCOUNT2"));
+		assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, ex.getStatus());
+		assertTrue(ex.getReason().contains("ACCOUNT2"));
+	}
+
+	@Test
+	public void load_queryFails() {
+		when(jdbcDao.getAccounts(anyCollection())).thenThrow(new QueryTimeoutException("timeout"));
+
+		CompletableFuture<Account> first = batcher.load("ACCOUNT1");
+		CompletableFuture<Account> second = batcher.load("ACCOUNT2");
+		ExecutionException ex = assertThrows(ExecutionException.class, () -> first.get(1, TimeUnit.SECONDS));
+		assertTrue(ex.getCause() instanceof QueryTimeoutException);
+		assertThrows(ExecutionException.class, () -> second.get(1, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void getAccounts_slowQuery() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		when(jdbcDao.getAccounts(anyCollection())).thenAnswer(invocation -> {
+			release.await(5, TimeUnit.SECONDS);
+			return accounts(invocation.getArgument(0));
+		});
+		try {
+			// bounded by the caller's deadline
+			long start = System.nanoTime();
+			DeadlineExceededException ex = assertThrows(DeadlineExceededException.class,
+					() -> batcher.getAccounts("ACCOUNT1", "ACCOUNT2", Deadline.after(100)));
+			assertEquals(HttpStatus.GATEWAY_TIMEOUT, ex.getStatus());
+			assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2));
+
+			// and without one by qslv.account-batch-timeout, which is the database's fault rather than the caller's
+			config.setAccountBatchTimeout(100);
+			ResponseStatusException stalled = assertThrows(ResponseStatusException.class,
+					() -> batcher.getAccounts("ACCOUNT3", "ACCOUNT4", Deadline.NONE));
+			assertFalse(stalled instanceof DeadlineExceededException);
+			assertEquals(HttpStatus.SERVICE_UNAVAILABLE, stalled.getStatus());
+
+			// a deadline later than the batch timeout is not what ran out either
+			stalled = assertThrows(ResponseStatusException.class,
+					() -> batcher.getAccounts("ACCOUNT5", "ACCOUNT6", Deadline.after(60000)));
+			assertEquals(HttpStatus.SERVICE_UNAVAILABLE, stalled.getStatus());
+		} finally {
+			release.countDown();
+		}
+	}
+
+	private static Map<String, Account> accounts(Collection<String> accountNumbers) {
+		Map<String, Account> accounts = new HashMap<>();
+		for (String accountNumber : accountNumbers) {
+			Account account = new Account();
+			account.setAccountNumber(accountNumber);
+			account.setAccountLifeCycleStatus("EF");
+			accounts.put(accountNumber, account);
+		}
+		return accounts;
+	}
+}
@@ -0,0 +1,154 @@
+package qslv.transfer.rest;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import qslv.data.Account;
+
+@ExtendWith(MockitoExtension.class)
+public class Unit_AccountCache {
+	@Mock
+	JdbcDao jdbcDao;
+
+	ConfigProperties config = new ConfigProperties();
+	SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+	AccountCache cache = new AccountCache();
+
+	Account fromAccount = new Account();
+	Account toAccount = new Account();
+	HashMap<String, Account> accounts = new HashMap<>();
+
+	@BeforeEach
+	public void setup() {
+		config.setAccountCacheSize(100);
+		config.setAccountCacheTimeToLive(60000);
+		cache.setConfig(config);
+		cache.setJdbcDao(jdbcDao);
+		cache.setMeterRegistry(meterRegistry);
+		cache.init();
+
+		fromAccount.setAccountNumber("DDDD3456HKWER7890");
+		fromAccount.setAccountLifeCycleStatus("EF");
+		toAccount.setAccountNumber("YYYY3456HKWER7890");
+		toAccount.setAccountLifeCycleStatus("EF");
+		accounts.put(fromAccount.getAccountNumber(), fromAccount);
+		accounts.put(toAccount.getAccountNumber(), toAccount);
+	}
+
+	@Test
+	public void getAccounts_missThenHit() {
+		when(jdbcDao.getAccounts(fromAccount.getAccountNumber(), toAccount.getAccountNumber())).thenReturn(accounts);
+
+		Map<String, Account> first = cache.getAccounts(fromAccount.getAccountNumber(), toAccount.getAccountNumber());
+		Map<String, Account> second = cache.getAccounts(fromAccount.getAccountNumber(), toAccount.getAccountNumber());
+
+		verify(jdbcDao, times(1)).getAccounts(fromAccount.getAccountNumber(), toAccount.getAccountNumber());
+		assertSame(fromAccount, first.get(fromAccount.getAccountNumber()));
+		assertSame(fromAccount, second.get(fromAccount.getAccountNumber()));
+		assertSame(toAccount, second.get(toAccount.getAccountNumber()));
+
+		assertEquals(2.0, meterRegistry.get("cache.gets").tag("cache", AccountCache.CACHE_NAME).tag("result", "hit")
+				.functionCounter().count());
+		assertEquals(2.0, meterRegistry.get("cache.gets").tag("cache", AccountCache.CACHE_NAME).tag("result", "miss")
+				.functionCounter().count());
+	}
+
+	@Test
+	public void getAccounts_invalidate() {
+		when(jdbcDao.getAccounts(fromAccount.getAccountNumber(), toAccount.getAccountNumber())).thenReturn(accounts);
+
+		cache.getAccounts(fromAccount.getAccountNumber(), toAccount.getAccountNumber());
+		cache.invalidate(toAccount.getAccountNumber());
+		cache.getAccounts(fromAccount.getAccountNumber(), toAccount.getAccountNumber());
+
+		verify(jdbcDao, times(2)).getAccounts(fromAccount.getAccountNumber(), toAccount.getAccountNumber());
+	}
+
+	@Test
+	public void getAccounts_throws() {
+		when(jdbcDao.getAccounts(fromAccount.getAccountNumber(), toAccount.getAccountNumber()))
+			.thenThrow(new RuntimeException("message"));
+
+		assertThrows(RuntimeException.class, () -> {
+			cache.getAccounts(fromAccount.getAccountNumber(), toAccount.getAccountNumber());
+		});
+	}
+
+	@Test
+	public void getAccounts_notFound() {
+		when(jdbcDao.getAccounts(fromAccount.getAccountNumber(), toAccount.getAccountNumber()))
+			.thenThrow(new AccountNotFoundException(toAccount.getAccountNumber()));
+
+		// the second lookup is rejected without a query
+		assertThrows(AccountNotFoundException.class, () -> cache.getAccounts(fromAccount.getAccountNumber(), toAccount.getAccountNumber()));
+		AccountNotFoundException ex = assertThrows(AccountNotFoundException.class,
+				() -> cache.getAccounts(fromAccount.getAccountNumber(), toAccount.getAccountNumber()));
+		assertEquals(toAccount.getAccountNumber(), ex.getAccountNumber());
+		verify(jdbcDao, times(1)).getAccounts(fromAccount.getAccountNumber(), toAccount.getAccountNumber());
+		verify(jdbcDao, never()).getAccountsConsistently(anyString(), anyString());
+		assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", AccountCache.NEGATIVE_CACHE_NAME).tag("result", "hit")
+				.functionCounter().count());
+
+		// until the account is created
+		cache.invalidate(toAccount.getAccountNumber());
+		assertThrows(AccountNotFoundException.class, () -> cache.getAccounts(fromAccount.getAccountNumber(), toAccount.getAccountNumber()));
+		verify(jdbcDao, times(2)).getAccounts(fromAccount.getAccountNumber(), toAccount.getAccountNumber());
+	}
+
+	@Test
+	public void getAccounts_staleNotFound() {
+		config.setAccountReadMode(JdbcDao.FOLLOWER_READ);
+		when(jdbcDao.getAccounts(fromAccount.getAccountNumber(), toAccount.getAccountNumber()))
+			.thenThrow(new AccountNotFoundException(toAccount.getAccountNumber()));
+		// just opened, not yet in the follower read.
+		when(jdbcDao.getAccountsConsistently(fromAccount.getAccountNumber(), toAccount.getAccountNumber())).thenReturn(accounts);
+
+		assertSame(toAccount, cache.getAccounts(fromAccount.getAccountNumber(), toAccount.getAccountNumber()).get(toAccount.getAccountNumber()));
+		assertSame(toAccount, cache.getAccounts(fromAccount.getAccountNumber(), toAccount.getAccountNumber()).get(toAccount.getAccountNumber()));
+		verify(jdbcDao, times(1)).getAccountsConsistently(anyString(), anyString());
+	}
+
+	@Test
+	public void getAccounts_staleNotFoundConfirmed() {
+		config.setAccountReadMode(JdbcDao.BOUNDED_STALENESS_READ);
+		when(jdbcDao.getAccounts(fromAccount.getAccountNumber(), toAccount.getAccountNumber()))
+			.thenThrow(new AccountNotFoundException(toAccount.getAccountNumber()));
+		when(jdbcDao.getAccountsConsistently(fromAccount.getAccountNumber(), toAccount.getAccountNumber()))
+			.thenThrow(new AccountNotFoundException(toAccount.getAccountNumber()));
+
+		assertThrows(AccountNotFoundException.class, () -> cache.getAccounts(fromAccount.getAccountNumber(), toAccount.getAccountNumber()));
+		assertThrows(AccountNotFoundException.class, () -> cache.getAccounts(fromAccount.getAccountNumber(), toAccount.getAccountNumber()));
+		verify(jdbcDao, times(1)).getAccounts(fromAccount.getAccountNumber(), toAccount.getAccountNumber());
+		verify(jdbcDao, times(1)).getAccountsConsistently(anyString(), anyString());
+	}
+
+	@Test
+	public void getAccounts_snapshot() {
+		AccountSnapshot snapshot = mock(AccountSnapshot.class);
+		config.setAccountSnapshotEnabled(true);
+		cache.setAccountSnapshot(snapshot);
+		when(snapshot.getAccount(fromAccount.getAccountNumber())).thenReturn(fromAccount);
+		when(snapshot.getAccount(toAccount.getAccountNumber())).thenReturn(toAccount).thenReturn(null);
+		when(jdbcDao.getAccounts(fromAccount.getAccountNumber(), toAccount.getAccountNumber())).thenReturn(accounts);
+
+		// answered by the snapshot, then by the database once it misses
+		assertSame(toAccount, cache.getAccounts(fromAccount.getAccountNumber(), toAccount.getAccountNumber()).get(toAccount.getAccountNumber()));
+		verify(jdbcDao, never()).getAccounts(anyString(), anyString());
+		assertSame(toAccount, cache.getAccounts(fromAccount.getAccountNumber(), toAccount.getAccountNumber()).get(toAccount.getAccountNumber()));
+		verify(jdbcDao, times(1)).getAccounts(fromAccount.getAccountNumber(), toAccount.getAccountNumber());
+
+		cache.invalidate(toAccount.getAccountNumber());
+		verify(snapshot).invalidate(toAccount.getAccountNumber());
+	}
+}
@@ -0,0 +1,107 @@
+package qslv.transfer.rest;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.QueryTimeoutException;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import qslv.data.Account;
+
+@ExtendWith(MockitoExtension.class)
+public class Unit_AccountSnapshot {
+	@Mock
+	JdbcDao jdbcDao;
+
+	ConfigProperties config = new ConfigProperties();
+	AccountSnapshot snapshot = new AccountSnapshot();
+	Timestamp loadedAt = new Timestamp(1000);
+	Timestamp changedAt = new Timestamp(2000);
+
+	@BeforeEach
+	public void setup() {
+		config.setAccountSnapshotPageSize(2);
+		config.setAccountSnapshotUpdatedColumn("updated_ts");
+		snapshot.setConfig(config);
+		snapshot.setJdbcDao(jdbcDao);
+		// init is not called, the tests drive refresh themselves.
+	}
+
+	@Test
+	public void refresh_loadThenChanges() {
+		when(jdbcDao.getLatestAccountChange("updated_ts")).thenReturn(loadedAt);
+		when(jdbcDao.getAccountCount()).thenReturn(3L);
+		when(jdbcDao.getAccountPage("", 2)).thenReturn(Arrays.asList(account("A1", "EF"), account("A2", "EF")));
+		when(jdbcDao.getAccountPage("A2", 2)).thenReturn(Collections.singletonList(account("A3", "CL")));
+
+		assertFalse(snapshot.isLoaded());
+		assertNull(snapshot.getAccount("A1"));
+		snapshot.refresh();
+		assertTrue(snapshot.isLoaded());
+		assertEquals("EF", snapshot.getAccount("A1").getAccountLifeCycleStatus());
+		assertEquals("CL", snapshot.getAccount("A3").getAccountLifeCycleStatus());
+		assertNull(snapshot.getAccount("A4"));
+
+		when(jdbcDao.getAccountChanges(eq("updated_ts"), eq(loadedAt), any())).thenAnswer(invocation -> {
+			Consumer<Account> consumer = invocation.getArgument(2);
+			consumer.accept(account("A1", "CL"));
+			consumer.accept(account("A4", "EF"));
+			return changedAt;
+		});
+		snapshot.refresh();
+		assertEquals("CL", snapshot.getAccount("A1").getAccountLifeCycleStatus());
+		assertEquals("EF", snapshot.getAccount("A4").getAccountLifeCycleStatus());
+
+		// the next refresh starts from the latest change seen
+		when(jdbcDao.getAccountChanges(eq("updated_ts"), eq(changedAt), any())).thenReturn(changedAt);
+		snapshot.refresh();
+		verify(jdbcDao).getAccountChanges(eq("updated_ts"), eq(changedAt), any());
+		verify(jdbcDao, times(1)).getAccountCount();
+
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		snapshot.bindTo(registry);
+		assertEquals(4.0, registry.get("transfer.account.snapshot.size").gauge().value());
+		assertEquals(2.0, registry.get("transfer.account.snapshot.lookups").tag("result", "miss").functionCounter().count());
+	}
+
+	@Test
+	public void invalidate() {
+		when(jdbcDao.getLatestAccountChange("updated_ts")).thenReturn(loadedAt);
+		when(jdbcDao.getAccountCount()).thenReturn(1L);
+		when(jdbcDao.getAccountPage("", 2)).thenReturn(Collections.singletonList(account("A1", "EF")));
+		snapshot.refresh();
+
+		snapshot.invalidate("A1");
+		assertNull(snapshot.getAccount("A1"));
+	}
+
+	@Test
+	public void refresh_failureKeepsSnapshot() {
+		when(jdbcDao.getLatestAccountChange("updated_ts")).thenReturn(loadedAt);
+		when(jdbcDao.getAccountCount()).thenReturn(1L);
+		when(jdbcDao.getAccountPage("", 2)).thenReturn(Collections.singletonList(account("A1", "EF")));
+		snapshot.refresh();
+
+		when(jdbcDao.getAccountChanges(eq("updated_ts"), eq(loadedAt), any())).thenThrow(new QueryTimeoutException("timeout"));
+		snapshot.refresh();
+		assertEquals("EF", snapshot.getAccount("A1").getAccountLifeCycleStatus());
+	}
+
+	private static Account account(String accountNumber, String status) {
+		Account account = new Account();
+		account.setAccountNumber(accountNumber);
+		account.setAccountLifeCycleStatus(status);
+		return account;
+	}
+}
@@ -0,0 +1,92 @@
+package qslv.transfer.rest;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+public class Unit_AccountStatusTable {
+
+	@Test
+	public void test_putGet() {
+		AccountStatusTable table = new AccountStatusTable(AccountStatusTable.capacityFor(100000));
+		for (int index = 0; index < 100000; index++) {
+			assertTrue(table.put(accountNumber(index), index % 10 == 0 ? "CL" : "EF"));
+		}
+		assertEquals(100000, table.size());
+		for (int index = 0; index < 100000; index++) {
+			assertEquals(index % 10 == 0 ? "CL" : "EF", table.get(accountNumber(index)));
+		}
+		for (int index = 100000; index < 200000; index++) {
+			assertNull(table.get(accountNumber(index)));
+		}
+		assertEquals(150000L * 9, table.bytes());
+	}
+
+	@Test
+	public void test_update() {
+		AccountStatusTable table = new AccountStatusTable(1024);
+		table.put("DDDD3456HKWER7890", "EF");
+		table.put("DDDD3456HKWER7890", "CL");
+		assertEquals("CL", table.get("DDDD3456HKWER7890"));
+		assertEquals(1, table.size());
+
+		table.markStale("DDDD3456HKWER7890");
+		assertNull(table.get("DDDD3456HKWER7890"));
+		table.put("DDDD3456HKWER7890", "EF");
+		assertEquals("EF", table.get("DDDD3456HKWER7890"));
+	}
+
+	@Test
+	public void test_markStaleUnknown() {
+		AccountStatusTable table = new AccountStatusTable(100);
+		for (int index = 0; index < 200; index++) {
+			table.markStale(accountNumber(index));
+		}
+		assertEquals(0, table.size());
+		assertNull(table.get(accountNumber(0)));
+		assertTrue(table.put(accountNumber(0), "EF"));
+		assertEquals("EF", table.get(accountNumber(0)));
+	}
+
+	@Test
+	public void test_sipHash() {
+		// reference vectors from the SipHash paper, key 00 01 .. 0f
+		long key0 = 0x0706050403020100L;
+		long key1 = 0x0f0e0d0c0b0a0908L;
+		byte[] message = new byte[15];
+		for (int index = 0; index < message.length; index++) {
+			message[index] = (byte) index;
+		}
+		assertEquals(0x726fdb47dd0e0e31L, AccountStatusTable.sipHash(key0, key1, new byte[0]));
+		assertEquals(0xa129ca6149be45e5L, AccountStatusTable.sipHash(key0, key1, message));
+	}
+
+	@Test
+	public void test_full() {
+		AccountStatusTable table = new AccountStatusTable(100);
+		for (int index = 0; index < 85; index++) {
+			assertTrue(table.put(accountNumber(index), "EF"));
+		}
+		assertTrue(table.isFull());
+		assertFalse(table.put(accountNumber(85), "EF"));
+		assertNull(table.get(accountNumber(85)));
+		// known accounts can still change
+		assertTrue(table.put(accountNumber(0), "CL"));
+		assertEquals("CL", table.get(accountNumber(0)));
+	}
+
+	@Test
+	public void test_tooManyStatusCodes() {
+		AccountStatusTable table = new AccountStatusTable(1024);
+		for (int index = 0; index < 254; index++) {
+			table.put(accountNumber(index), "S" + index);
+		}
+		table.put(accountNumber(254), "S254");
+		assertEquals("S253", table.get(accountNumber(253)));
+		assertNull(table.get(accountNumber(254)));
+	}
+
+	private static String accountNumber(int index) {
+		return String.format("ACCT%013d", index);
+	}
+}
@@ -0,0 +1,121 @@
+package qslv.transfer.rest;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class Unit_CircuitBreaker {
+	static final long FAST = TimeUnit.MILLISECONDS.toNanos(1);
+	static final long SLOW = TimeUnit.MILLISECONDS.toNanos(200);
+
+	ConfigProperties config = new ConfigProperties();
+
+	@BeforeEach
+	public void setup() {
+		config.setCircuitBreakerWindowSize(10);
+		config.setCircuitBreakerMinimumCalls(4);
+		config.setCircuitBreakerFailureRateThreshold(50);
+		config.setCircuitBreakerSlowCallRateThreshold(80);
+		config.setCircuitBreakerOpenDuration(50);
+		config.setCircuitBreakerHalfOpenCalls(2);
+	}
+
+	@Test
+	public void test_opensOnFailureRate() throws Exception {
+		CircuitBreaker breaker = new CircuitBreaker("test", config, 100);
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		breaker.bindTo(registry);
+
+		// not enough calls to judge yet
+		record(breaker, FAST, true);
+		record(breaker, FAST, true);
+		record(breaker, FAST, true);
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+		record(breaker, FAST, false);
+		assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+		assertEquals(1.0, registry.get("transfer.circuit.breaker.state").tag("name", "test").gauge().value());
+
+		assertFalse(breaker.tryAcquire());
+		CircuitBreakerOpenException ex = assertThrows(CircuitBreakerOpenException.class, () -> breaker.acquire());
+		assertEquals(HttpStatus.SERVICE_UNAVAILABLE, ex.getStatus());
+		assertEquals(2.0, registry.get("transfer.circuit.breaker.rejected").tag("name", "test").functionCounter().count());
+	}
+
+	@Test
+	public void test_opensOnSlowCallRate() {
+		CircuitBreaker breaker = new CircuitBreaker("test", config, 100);
+		record(breaker, FAST, false);
+		record(breaker, FAST, false);
+		for (int call = 0; call < 7; call++) {
+			record(breaker, SLOW, false);
+		}
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+		record(breaker, SLOW, false);
+		assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+	}
+
+	@Test
+	public void test_slidingWindow() {
+		CircuitBreaker breaker = new CircuitBreaker("test", config, 100);
+		for (int call = 0; call < 6; call++) {
+			record(breaker, FAST, false);
+		}
+		for (int call = 0; call < 4; call++) {
+			record(breaker, FAST, true);
+		}
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+		// the oldest successes fall out of the window
+		record(breaker, FAST, true);
+		assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+	}
+
+	@Test
+	public void test_halfOpen() throws Exception {
+		CircuitBreaker breaker = new CircuitBreaker("test", config, 100);
+		for (int call = 0; call < 4; call++) {
+			record(breaker, FAST, true);
+		}
+		assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+		// failed probes open it again
+		Thread.sleep(60);
+		assertTrue(breaker.tryAcquire());
+		assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+		assertTrue(breaker.tryAcquire());
+		assertFalse(breaker.tryAcquire());
+		breaker.onResult(FAST, false);
+		breaker.onResult(FAST, true);
+		assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+		// successful probes close it
+		Thread.sleep(60);
+		record(breaker, FAST, false);
+		record(breaker, FAST, false);
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+		record(breaker, FAST, true);
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+	}
+
+	@Test
+	public void test_disabled() {
+		config.setCircuitBreakerEnabled(false);
+		CircuitBreaker breaker = new CircuitBreaker("test", config, 100);
+		for (int call = 0; call < 20; call++) {
+			record(breaker, SLOW, true);
+		}
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+	}
+
+	private void record(CircuitBreaker breaker, long elapsed, boolean failed) {
+		assertTrue(breaker.tryAcquire());
+		breaker.onResult(elapsed, failed);
+	}
+}
@@ -0,0 +1,81 @@
+package qslv.transfer.rest;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class Unit_ConcurrencyLimiter {
+	static final long FAST = TimeUnit.MILLISECONDS.toNanos(10);
+	static final long SLOW = TimeUnit.MILLISECONDS.toNanos(100);
+
+	@Test
+	public void test_rejectsAtLimit() {
+		ConcurrencyLimiter limiter = new ConcurrencyLimiter("test", 2, 1, 10, 150, 3);
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		limiter.bindTo(registry);
+
+		long first = limiter.acquire();
+		limiter.acquire();
+		LimitExceededException ex = assertThrows(LimitExceededException.class, () -> limiter.acquire());
+		assertEquals(HttpStatus.SERVICE_UNAVAILABLE, ex.getStatus());
+		assertEquals("3", ex.getResponseHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+		assertEquals(2.0, registry.get("transfer.concurrency.inflight").tag("name", "test").gauge().value());
+		assertEquals(1.0, registry.get("transfer.concurrency.rejected").tag("name", "test").functionCounter().count());
+
+		limiter.release(first, null);
+		limiter.acquire();
+		assertEquals(2.0, registry.get("transfer.concurrency.limit").tag("name", "test").gauge().value());
+	}
+
+	@Test
+	public void test_growsWhileLatencyHolds() {
+		ConcurrencyLimiter limiter = new ConcurrencyLimiter("test", 20, 1, 1000, 150, 1);
+		samples(limiter, 10, FAST, 20);
+		assertTrue(limiter.getLimit() > 20, () -> "limit " + limiter.getLimit());
+		assertTrue(limiter.getLimit() <= 1000);
+	}
+
+	@Test
+	public void test_doesNotGrowUnused() {
+		ConcurrencyLimiter limiter = new ConcurrencyLimiter("test", 20, 1, 1000, 150, 1);
+		samples(limiter, 10, FAST, 2);
+		assertEquals(20, limiter.getLimit());
+	}
+
+	@Test
+	public void test_shrinksAsLatencyClimbs() {
+		ConcurrencyLimiter limiter = new ConcurrencyLimiter("test", 100, 10, 100, 150, 1);
+		samples(limiter, 5, FAST, 100);
+		assertEquals(100, limiter.getLimit());
+		samples(limiter, 10, SLOW, 100);
+		assertTrue(limiter.getLimit() <= 60, () -> "limit " + limiter.getLimit());
+		assertTrue(limiter.getLimit() >= 10);
+	}
+
+	@Test
+	public void test_overload() {
+		ConcurrencyLimiter limiter = new ConcurrencyLimiter("test", 100, 10, 100, 150, 1);
+		limiter.release(limiter.acquire(), new CompletionException(new ResponseStatusException(HttpStatus.GATEWAY_TIMEOUT)));
+		assertEquals(90, limiter.getLimit());
+		limiter.release(limiter.acquire(), new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY));
+		assertEquals(90, limiter.getLimit());
+		for (int request = 0; request < 50; request++) {
+			limiter.release(limiter.acquire(), new IllegalStateException());
+		}
+		assertEquals(10, limiter.getLimit());
+	}
+
+	private static void samples(ConcurrencyLimiter limiter, int windows, long latency, int inflight) {
+		for (int sample = 0; sample < windows * ConcurrencyLimiter.WINDOW; sample++) {
+			limiter.onSample(latency, inflight, false);
+		}
+	}
+}
@@ -0,0 +1,34 @@
+package qslv.transfer.rest;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.retry.backoff.BackOffContext;
+
+public class Unit_DecorrelatedJitterBackOffPolicy {
+
+	@Test
+	public void test_backOff() {
+		List<Long> pauses = new ArrayList<>();
+		DecorrelatedJitterBackOffPolicy policy = new DecorrelatedJitterBackOffPolicy();
+		policy.setInitialInterval(100);
+		policy.setMaxInterval(500);
+		policy.setSleeper(pauses::add);
+
+		for (int call = 0; call < 100; call++) {
+			BackOffContext context = policy.start(null);
+			long previous = 100;
+			for (int retry = 0; retry < 5; retry++) {
+				policy.backOff(context);
+				long pause = pauses.get(pauses.size() - 1);
+				assertTrue(pause >= 100 && pause <= 500, "pause " + pause);
+				assertTrue(pause <= Math.max(101, previous * 3), "pause " + pause + " after " + previous);
+				previous = pause;
+			}
+		}
+		assertTrue(pauses.stream().distinct().count() > 10, "pauses are jittered");
+	}
+}
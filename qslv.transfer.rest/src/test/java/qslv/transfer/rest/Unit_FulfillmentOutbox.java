@@ -0,0 +1,200 @@
+package qslv.transfer.rest;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.kafka.common.errors.RecordTooLargeException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import qslv.common.TraceableRequest;
+import qslv.common.kafka.TraceableMessage;
+import qslv.transfer.request.TransferFulfillmentMessage;
+
+@ExtendWith(MockitoExtension.class)
+class Unit_FulfillmentOutbox {
+	@Mock
+	KafkaDao kafkaDao;
+	@TempDir
+	Path directory;
+
+	ConfigProperties config = new ConfigProperties();
+	SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+	FulfillmentOutbox outbox = new FulfillmentOutbox();
+	HashMap<String, String> headers = new HashMap<>();
+
+	@BeforeEach
+	public void setup() throws Exception {
+		config.setOutboxEnabled(true);
+		config.setOutboxDirectory(directory.toString());
+		config.setOutboxRelayInterval(60000); // relay is driven by the test
+		config.setKafkaTimeout(1000);
+		outbox.setConfig(config);
+		outbox.setKafkaDao(kafkaDao);
+		outbox.setObjectMapper(new ObjectMapper());
+		outbox.setMeterRegistry(meterRegistry);
+		headers.put(TraceableRequest.CORRELATION_ID, "273849273498273498");
+
+		lenient().when(kafkaDao.buildMessage(any(), any())).thenAnswer(invocation -> {
+			TraceableMessage<TransferFulfillmentMessage> msg = new TraceableMessage<>();
+			msg.setCorrelationId(invocation.<HashMap<String, String>>getArgument(0).get(TraceableRequest.CORRELATION_ID));
+			msg.setPayload(invocation.getArgument(1));
+			return msg;
+		});
+	}
+
+	@AfterEach
+	public void teardown() throws Exception {
+		outbox.shutdown();
+	}
+
+	@Test
+	void test_disabled() throws Exception {
+		config.setOutboxEnabled(false);
+		outbox.init();
+		assertFalse(outbox.isEnabled());
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void test_relay() throws Exception {
+		outbox.init();
+		assertTrue(outbox.isEnabled());
+		outbox.append(headers, message("ACCOUNT1", 100L));
+		outbox.append(headers, message("ACCOUNT2", 200L));
+		when(kafkaDao.produceMessageAsync(any())).thenReturn(CompletableFuture.completedFuture(null));
+
+		outbox.relay();
+
+		ArgumentCaptor<TraceableMessage<TransferFulfillmentMessage>> sent = ArgumentCaptor.forClass(TraceableMessage.class);
+		verify(kafkaDao, times(2)).produceMessageAsync(sent.capture());
+		List<TraceableMessage<TransferFulfillmentMessage>> messages = sent.getAllValues();
+		assertEquals("ACCOUNT1", messages.get(0).getPayload().getFromAccountNumber());
+		assertEquals(200L, messages.get(1).getPayload().getTransactionAmount());
+		assertEquals("273849273498273498", messages.get(1).getCorrelationId());
+		verify(kafkaDao).flush();
+		assertEquals(2.0, meterRegistry.get("transfer.outbox.relayed").counter().count());
+		assertEquals(0.0, meterRegistry.get("transfer.outbox.backlog").gauge().value());
+
+		// nothing left to send
+		outbox.relay();
+		verify(kafkaDao, times(2)).produceMessageAsync(any());
+	}
+
+	@Test
+	void test_relay_retriesUnacknowledgedBatch() throws Exception {
+		outbox.init();
+		outbox.append(headers, message("ACCOUNT1", 100L));
+		CompletableFuture<Void> failed = new CompletableFuture<>();
+		failed.completeExceptionally(new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Kafka Producer failure"));
+		when(kafkaDao.produceMessageAsync(any()))
+			.thenReturn(failed)
+			.thenReturn(CompletableFuture.completedFuture(null));
+
+		outbox.relay();
+		assertTrue(meterRegistry.get("transfer.outbox.backlog").gauge().value() > 0);
+
+		outbox.relay();
+		verify(kafkaDao, times(2)).produceMessageAsync(any());
+		assertEquals(0.0, meterRegistry.get("transfer.outbox.backlog").gauge().value());
+	}
+
+	@Test
+	void test_relay_deadLettersPoisonRecord() throws Exception {
+		config.setOutboxRelayAttempts(2);
+		outbox.init();
+		outbox.append(headers, message("ACCOUNT1", 100L));
+		outbox.append(headers, message("POISON", 200L));
+		outbox.append(headers, message("ACCOUNT3", 300L));
+		CompletableFuture<Void> tooLarge = new CompletableFuture<>();
+		tooLarge.completeExceptionally(new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Kafka Producer failure",
+				new RecordTooLargeException("The message is too large.")));
+		when(kafkaDao.produceMessageAsync(any())).thenAnswer(invocation ->
+			"POISON".equals(invocation.<TraceableMessage<TransferFulfillmentMessage>>getArgument(0).getPayload().getFromAccountNumber())
+				? tooLarge : CompletableFuture.completedFuture(null));
+
+		// the record ahead of the poison is committed, the poison is retried
+		outbox.relay();
+		assertEquals(1.0, meterRegistry.get("transfer.outbox.relayed").counter().count());
+		assertEquals(0.0, meterRegistry.get("transfer.outbox.dead.lettered").counter().count());
+
+		// out of attempts, it is set aside and the rest relayed
+		outbox.relay();
+		assertEquals(1.0, meterRegistry.get("transfer.outbox.dead.lettered").counter().count());
+		assertTrue(meterRegistry.get("transfer.outbox.dead.letter.backlog").gauge().value() > 0);
+		assertEquals(2.0, meterRegistry.get("transfer.outbox.relayed").counter().count());
+		assertEquals(0.0, meterRegistry.get("transfer.outbox.backlog").gauge().value());
+	}
+
+	@Test
+	void test_relay_waitsOutOutage() throws Exception {
+		config.setOutboxRelayAttempts(1);
+		outbox.init();
+		outbox.append(headers, message("ACCOUNT1", 100L));
+		CompletableFuture<Void> timedOut = new CompletableFuture<>();
+		timedOut.completeExceptionally(new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Kafka Producer failure",
+				new TimeoutException("Kafka acknowledgement not received")));
+		when(kafkaDao.produceMessageAsync(any())).thenReturn(timedOut);
+
+		for (int run = 0; run < 3; run++) {
+			outbox.relay();
+		}
+		assertEquals(0.0, meterRegistry.get("transfer.outbox.dead.lettered").counter().count());
+		assertTrue(meterRegistry.get("transfer.outbox.backlog").gauge().value() > 0);
+	}
+
+	@Test
+	void test_append_full() throws Exception {
+		config.setOutboxMaxBytes(1);
+		outbox.init();
+		outbox.append(headers, message("ACCOUNT1", 100L));
+		assertTrue(outbox.isFull());
+		ResponseStatusException ex = assertThrows(ResponseStatusException.class, () -> outbox.append(headers, message("ACCOUNT2", 200L)));
+		assertEquals(HttpStatus.SERVICE_UNAVAILABLE, ex.getStatus());
+	}
+
+	@Test
+	void test_backlogSurvivesRestart() throws Exception {
+		outbox.init();
+		outbox.append(headers, message("ACCOUNT1", 100L));
+		outbox.shutdown();
+
+		outbox = new FulfillmentOutbox();
+		outbox.setConfig(config);
+		outbox.setKafkaDao(kafkaDao);
+		outbox.setObjectMapper(new ObjectMapper());
+		outbox.setMeterRegistry(new SimpleMeterRegistry());
+		outbox.init();
+		when(kafkaDao.produceMessageAsync(any())).thenReturn(CompletableFuture.completedFuture(null));
+
+		outbox.relay();
+		verify(kafkaDao, times(1)).produceMessageAsync(any());
+	}
+
+	private TransferFulfillmentMessage message(String fromAccount, long amount) {
+		TransferFulfillmentMessage tfr = new TransferFulfillmentMessage();
+		tfr.setFromAccountNumber(fromAccount);
+		tfr.setToAccountNumber("YYYY3456HKWER7890");
+		tfr.setTransactionAmount(amount);
+		tfr.setTransactionMetaDataJson("{}");
+		return tfr;
+	}
+}
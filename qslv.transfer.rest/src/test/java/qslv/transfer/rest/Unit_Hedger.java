@@ -0,0 +1,99 @@
+package qslv.transfer.rest;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.ResourceAccessException;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class Unit_Hedger {
+	ExecutorService executor = Executors.newCachedThreadPool();
+	SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+	@AfterEach
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void test_hedgeWins() {
+		Hedger hedger = learnt(new Hedger("test", 95, 10, 0, 1, executor));
+		AtomicInteger calls = new AtomicInteger();
+
+		long start = System.nanoTime();
+		String result = hedger.execute(() -> {
+			if (calls.incrementAndGet() == 1) {
+				sleep(2000);
+				return "primary";
+			}
+			return "hedge";
+		});
+		assertEquals("hedge", result);
+		assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000);
+		assertEquals(10.0, hedger.getDelay(), 1.0);
+		assertEquals(1.0, registry.get("transfer.hedge.sent").tag("name", "test").functionCounter().count());
+		assertEquals(1.0, registry.get("transfer.hedge.won").tag("name", "test").functionCounter().count());
+	}
+
+	@Test
+	public void test_notUntilLearnt() {
+		Hedger hedger = new Hedger("test", 95, 10, 0, 1, executor);
+		hedger.bindTo(registry);
+		assertEquals("slow", hedger.execute(() -> {
+			sleep(50);
+			return "slow";
+		}));
+		assertEquals(-1.0, hedger.getDelay());
+		assertEquals(0.0, registry.get("transfer.hedge.sent").tag("name", "test").functionCounter().count());
+	}
+
+	@Test
+	public void test_budget() {
+		Hedger hedger = learnt(new Hedger("test", 95, 10, 0, 1, executor));
+		AtomicInteger calls = new AtomicInteger();
+		for (int call = 0; call < 3; call++) {
+			hedger.execute(() -> {
+				calls.incrementAndGet();
+				sleep(50);
+				return "slow";
+			});
+		}
+		// one hedge, then the budget is spent
+		assertEquals(4, calls.get());
+		assertEquals(2.0, registry.get("transfer.retry.budget.exhausted").tag("name", "test-hedge").functionCounter().count());
+	}
+
+	@Test
+	public void test_bothFail() {
+		Hedger hedger = learnt(new Hedger("test", 95, 10, 0, 1, executor));
+		assertThrows(ResourceAccessException.class, () -> hedger.execute(() -> {
+			sleep(50);
+			throw new ResourceAccessException("timeout");
+		}));
+		assertEquals(1.0, registry.get("transfer.hedge.sent").tag("name", "test").functionCounter().count());
+		assertEquals(0.0, registry.get("transfer.hedge.won").tag("name", "test").functionCounter().count());
+	}
+
+	private Hedger learnt(Hedger hedger) {
+		hedger.bindTo(registry);
+		for (int call = 0; call < 64; call++) {
+			hedger.execute(() -> "fast");
+		}
+		return hedger;
+	}
+
+	private static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
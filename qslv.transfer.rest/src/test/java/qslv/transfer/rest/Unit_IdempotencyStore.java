@@ -0,0 +1,169 @@
+package qslv.transfer.rest;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import qslv.transfer.request.TransferFundsRequest;
+import qslv.transfer.response.TransferFundsResponse;
+
+@ExtendWith(MockitoExtension.class)
+public class Unit_IdempotencyStore {
+	@Mock
+	JdbcDao jdbcDao;
+
+	ConfigProperties config = new ConfigProperties();
+	SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+	ObjectMapper objectMapper = new ObjectMapper();
+	IdempotencyStore store = new IdempotencyStore();
+
+	UUID requestUuid = UUID.randomUUID();
+	TransferFundsRequest request = new TransferFundsRequest();
+	TransferFundsResponse response = new TransferFundsResponse();
+	AtomicInteger executions = new AtomicInteger();
+
+	@BeforeEach
+	public void setup() {
+		store.setConfig(config);
+		store.setJdbcDao(jdbcDao);
+		store.setObjectMapper(objectMapper);
+		store.setMeterRegistry(meterRegistry);
+		store.setTransferExecutor(Runnable::run);
+		response.setStatus(TransferFundsResponse.SUCCESS);
+		request.setRequestUuid(requestUuid);
+		request.setFromAccountNumber("12345679");
+		request.setToAccountNumber("7890123");
+		request.setTransactionAmount(100L);
+	}
+
+	@Test
+	public void execute_retryReturnsStoredResponse() {
+		store.init();
+
+		assertSame(response, store.execute(request, this::transfer).join());
+		assertSame(response, store.execute(request, this::transfer).join());
+
+		assertEquals(1, executions.get());
+		assertEquals(1.0, meterRegistry.get("transfer.idempotency.duplicates").counter().count());
+		verifyNoInteractions(jdbcDao);
+	}
+
+	@Test
+	public void execute_coalescesInFlight() {
+		store.init();
+		CompletableFuture<TransferFundsResponse> inFlight = new CompletableFuture<>();
+
+		CompletableFuture<TransferFundsResponse> first = store.execute(request, () -> inFlight);
+		CompletableFuture<TransferFundsResponse> second = store.execute(request, this::transfer);
+		assertFalse(first.isDone());
+		assertFalse(second.isDone());
+
+		inFlight.complete(response);
+		assertSame(response, first.join());
+		assertSame(response, second.join());
+		assertEquals(0, executions.get());
+	}
+
+	@Test
+	public void execute_failureIsNotStored() {
+		store.init();
+		CompletableFuture<TransferFundsResponse> failed = new CompletableFuture<>();
+		failed.completeExceptionally(new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Transfer capacity exhausted."));
+
+		CompletionException ex = assertThrows(CompletionException.class, () -> {
+			store.execute(request, () -> failed).join();
+		});
+		assertTrue(ex.getCause() instanceof ResponseStatusException);
+
+		assertSame(response, store.execute(request, this::transfer).join());
+		assertEquals(1, executions.get());
+	}
+
+	@Test
+	public void execute_persistent() throws Exception {
+		config.setIdempotencyPersistent(true);
+		store.init();
+		when(jdbcDao.getTransferResponse(requestUuid)).thenReturn(null);
+
+		store.execute(request, this::transfer).join();
+
+		ArgumentCaptor<UUID> fingerprint = ArgumentCaptor.forClass(UUID.class);
+		ArgumentCaptor<String> json = ArgumentCaptor.forClass(String.class);
+		verify(jdbcDao).insertTransferResponse(any(), fingerprint.capture(), json.capture());
+		assertEquals(IdempotencyStore.fingerprint(request), fingerprint.getValue());
+		assertEquals(TransferFundsResponse.SUCCESS, objectMapper.readValue(json.getValue(), TransferFundsResponse.class).getStatus());
+
+		// another instance, or this one after a restart.
+		store.invalidateAll();
+		when(jdbcDao.getTransferResponse(requestUuid)).thenReturn(new JdbcDao.StoredResponse(fingerprint.getValue(), json.getValue()));
+		TransferFundsResponse stored = store.execute(request, this::transfer).join();
+
+		assertEquals(TransferFundsResponse.SUCCESS, stored.getStatus());
+		assertEquals(1, executions.get());
+		verify(jdbcDao, times(1)).insertTransferResponse(any(), any(), any());
+	}
+
+	@Test
+	public void execute_reusedForDifferentTransfer() {
+		store.init();
+		assertSame(response, store.execute(request, this::transfer).join());
+
+		TransferFundsRequest other = copy(request);
+		other.setTransactionAmount(200L);
+		CompletionException ex = assertThrows(CompletionException.class, () -> {
+			store.execute(other, this::transfer).join();
+		});
+		assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, ((ResponseStatusException) ex.getCause()).getStatus());
+
+		// the original is untouched and still answers its retries.
+		assertSame(response, store.execute(copy(request), this::transfer).join());
+		assertEquals(1, executions.get());
+	}
+
+	@Test
+	public void execute_persistentReusedForDifferentTransfer() {
+		config.setIdempotencyPersistent(true);
+		store.init();
+		TransferFundsRequest other = copy(request);
+		other.setToAccountNumber("555555");
+		when(jdbcDao.getTransferResponse(requestUuid)).thenReturn(new JdbcDao.StoredResponse(IdempotencyStore.fingerprint(other), "{}"));
+
+		CompletionException ex = assertThrows(CompletionException.class, () -> {
+			store.execute(request, this::transfer).join();
+		});
+		assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, ((ResponseStatusException) ex.getCause()).getStatus());
+		assertEquals(0, executions.get());
+		verify(jdbcDao, never()).insertTransferResponse(any(), any(), any());
+	}
+
+	private TransferFundsRequest copy(TransferFundsRequest original) {
+		TransferFundsRequest copy = new TransferFundsRequest();
+		copy.setRequestUuid(original.getRequestUuid());
+		copy.setFromAccountNumber(original.getFromAccountNumber());
+		copy.setToAccountNumber(original.getToAccountNumber());
+		copy.setTransactionAmount(original.getTransactionAmount());
+		return copy;
+	}
+
+	private CompletableFuture<TransferFundsResponse> transfer() {
+		executions.incrementAndGet();
+		return CompletableFuture.completedFuture(response);
+	}
+}
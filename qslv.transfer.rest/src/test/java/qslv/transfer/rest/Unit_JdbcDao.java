@@ -4,8 +4,10 @@ import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -15,14 +17,17 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.dao.DataAccessException;
 import org.springframework.dao.QueryTimeoutException;
+import org.springframework.http.HttpStatus;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
+import org.springframework.web.server.ResponseStatusException;
 
 import qslv.data.Account;
 
 @ExtendWith(MockitoExtension.class)
 public class Unit_JdbcDao {
 	@Mock JdbcTemplate jdbcTemplate; 
+	@Mock JdbcTemplate accountJdbcTemplate;
 	
 	JdbcDao dao = new JdbcDao();
 	
@@ -59,4 +64,146 @@ public class Unit_JdbcDao {
 		assertThrows(DataAccessException.class, ()-> { dao.getAccount(accountNumber); } );
 
 	}
+
+	@Test
+	public void getAccount_notFound() {
+		when( jdbcTemplate.query(eq(JdbcDao.getAccount_sql), ArgumentMatchers.<RowMapper<Account>>any(), anyString()) )
+			.thenReturn(Collections.emptyList());
+
+		AccountNotFoundException ex = assertThrows(AccountNotFoundException.class, ()-> { dao.getAccount("DDDD3456HKWER7890"); } );
+		assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, ex.getStatus());
+		assertEquals("DDDD3456HKWER7890", ex.getAccountNumber());
+	}
+
+	@Test
+	public void getAccounts_success() {		
+		Account fromAccount = new Account();
+		fromAccount.setAccountLifeCycleStatus("EF");
+		fromAccount.setAccountNumber("DDDD3456HKWER7890");
+		Account toAccount = new Account();
+		toAccount.setAccountLifeCycleStatus("CL");
+		toAccount.setAccountNumber("YYYY3456HKWER7890");
+		
+		when( jdbcTemplate.query(eq(JdbcDao.getAccounts_sql), ArgumentMatchers.<RowMapper<Account>>any(), anyString(), anyString()) )
+			.thenReturn(Arrays.asList(toAccount, fromAccount));
+		
+		Map<String, Account> accounts = dao.getAccounts(fromAccount.getAccountNumber(), toAccount.getAccountNumber());
+		verify(jdbcTemplate).query(eq(JdbcDao.getAccounts_sql), ArgumentMatchers.<RowMapper<Account>>any(), 
+				eq(fromAccount.getAccountNumber()), eq(toAccount.getAccountNumber()));
+		assertEquals(2, accounts.size());
+		assertSame(fromAccount, accounts.get(fromAccount.getAccountNumber()));
+		assertSame(toAccount, accounts.get(toAccount.getAccountNumber()));
+	}
+
+	@Test
+	public void getAccounts_notFound() {		
+		Account fromAccount = new Account();
+		fromAccount.setAccountLifeCycleStatus("EF");
+		fromAccount.setAccountNumber("DDDD3456HKWER7890");
+		
+		when( jdbcTemplate.query(eq(JdbcDao.getAccounts_sql), ArgumentMatchers.<RowMapper<Account>>any(), anyString(), anyString()) )
+			.thenReturn(Collections.singletonList(fromAccount));
+		
+		ResponseStatusException ex = assertThrows(ResponseStatusException.class, ()-> { 
+			dao.getAccounts(fromAccount.getAccountNumber(), "YYYY3456HKWER7890"); } );
+		assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, ex.getStatus());
+		assertTrue(ex.getReason().contains("YYYY3456HKWER7890"));
+	}
+
+	@Test
+	public void getAccounts_throws() {		
+		DataAccessException dae = new QueryTimeoutException("message");
+		when( jdbcTemplate.query(eq(JdbcDao.getAccounts_sql), ArgumentMatchers.<RowMapper<Account>>any(), anyString(), anyString()) )
+			.thenThrow(dae);
+		
+		assertThrows(DataAccessException.class, ()-> { dao.getAccounts("DDDD3456HKWER7890", "YYYY3456HKWER7890"); } );
+	}
+
+	@Test
+	public void getAccounts_followerRead() {		
+		ConfigProperties config = new ConfigProperties();
+		config.setAccountReadMode(JdbcDao.FOLLOWER_READ);
+		dao.setConfig(config);
+		dao.init();
+		String followerSql = String.format(JdbcDao.getAccountsAsOf_sql, "follower_read_timestamp()");
+
+		Account fromAccount = new Account();
+		fromAccount.setAccountLifeCycleStatus("EF");
+		fromAccount.setAccountNumber("DDDD3456HKWER7890");
+		Account toAccount = new Account();
+		toAccount.setAccountLifeCycleStatus("EF");
+		toAccount.setAccountNumber("YYYY3456HKWER7890");
+		when( accountJdbcTemplate.query(eq(followerSql), ArgumentMatchers.<RowMapper<Account>>any(), anyString(), anyString()) )
+			.thenReturn(Arrays.asList(fromAccount, toAccount));
+
+		// the read-only template, when there is one, serves account lookups
+		dao.setAccountJdbcTemplate(accountJdbcTemplate);
+		Map<String, Account> accounts = dao.getAccounts(fromAccount.getAccountNumber(), toAccount.getAccountNumber());
+		assertEquals(2, accounts.size());
+		verifyNoInteractions(jdbcTemplate);
+	}
+
+	@Test
+	public void getAccountsConsistently_followerRead() {		
+		ConfigProperties config = new ConfigProperties();
+		config.setAccountReadMode(JdbcDao.FOLLOWER_READ);
+		dao.setConfig(config);
+		dao.init();
+
+		Account fromAccount = new Account();
+		fromAccount.setAccountLifeCycleStatus("EF");
+		fromAccount.setAccountNumber("DDDD3456HKWER7890");
+		Account toAccount = new Account();
+		toAccount.setAccountLifeCycleStatus("EF");
+		toAccount.setAccountNumber("YYYY3456HKWER7890");
+		when( jdbcTemplate.query(eq(JdbcDao.getAccounts_sql), ArgumentMatchers.<RowMapper<Account>>any(), anyString(), anyString()) )
+			.thenReturn(Arrays.asList(fromAccount, toAccount));
+
+		Map<String, Account> accounts = dao.getAccountsConsistently(fromAccount.getAccountNumber(), toAccount.getAccountNumber());
+		assertEquals(2, accounts.size());
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void readModeSql() {
+		String follower = "follower_read_timestamp()";
+		String bounded = "with_max_staleness('10000ms')";
+		// single row, two rows, batch
+		assertReadSql(JdbcDao.CONSISTENT_READ, JdbcDao.getAccount_sql, JdbcDao.getAccounts_sql,
+				String.format(JdbcDao.getAccountsIn_sql, "", "?, ?, ?"));
+		assertReadSql(JdbcDao.FOLLOWER_READ, String.format(JdbcDao.getAccountAsOf_sql, follower),
+				String.format(JdbcDao.getAccountsAsOf_sql, follower),
+				String.format(JdbcDao.getAccountsIn_sql, " AS OF SYSTEM TIME " + follower, "?, ?, ?"));
+		// cockroachdb refuses bounded staleness for anything that may touch more than one row
+		assertReadSql(JdbcDao.BOUNDED_STALENESS_READ, String.format(JdbcDao.getAccountAsOf_sql, bounded),
+				String.format(JdbcDao.getAccountsAsOf_sql, follower),
+				String.format(JdbcDao.getAccountsIn_sql, " AS OF SYSTEM TIME " + follower, "?, ?, ?"));
+	}
+
+	@SuppressWarnings("unchecked")
+	private void assertReadSql(String mode, String single, String pair, String batch) {
+		JdbcTemplate template = mock(JdbcTemplate.class);
+		ConfigProperties config = new ConfigProperties();
+		config.setAccountReadMode(mode);
+		config.setAccountReadStaleness(10000);
+		JdbcDao dao = new JdbcDao();
+		dao.setConfig(config);
+		dao.setJdbcTemplate(template);
+		dao.init();
+
+		assertThrows(ResponseStatusException.class, () -> dao.getAccount("A"));
+		verify(template).query(eq(single), any(RowMapper.class), eq("A"));
+		assertThrows(ResponseStatusException.class, () -> dao.getAccounts("A", "B"));
+		verify(template).query(eq(pair), any(RowMapper.class), eq("A"), eq("B"));
+		dao.getAccounts(Arrays.asList("A", "B", "C"));
+		verify(template).query(eq(batch), any(RowMapper.class), eq("A"), eq("B"), eq("C"));
+	}
+
+	@Test
+	public void asOfSystemTime() {		
+		assertNull(JdbcDao.asOfSystemTime(JdbcDao.CONSISTENT_READ, 10000));
+		assertEquals("follower_read_timestamp()", JdbcDao.asOfSystemTime(JdbcDao.FOLLOWER_READ, 10000));
+		assertEquals("with_max_staleness('10000ms')", JdbcDao.asOfSystemTime(JdbcDao.BOUNDED_STALENESS_READ, 10000));
+		assertThrows(IllegalArgumentException.class, () -> { JdbcDao.asOfSystemTime("eventual", 10000); } );
+	}
 }
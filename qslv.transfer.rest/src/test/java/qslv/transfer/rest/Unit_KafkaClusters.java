@@ -0,0 +1,65 @@
+package qslv.transfer.rest;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.LinkedHashMap;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.core.KafkaTemplate;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import qslv.common.kafka.TraceableMessage;
+import qslv.transfer.request.TransferFulfillmentMessage;
+
+@ExtendWith(MockitoExtension.class)
+public class Unit_KafkaClusters {
+	@Mock
+	KafkaTemplate<String, TraceableMessage<TransferFulfillmentMessage>> primaryTemplate;
+	@Mock
+	KafkaTemplate<String, TraceableMessage<TransferFulfillmentMessage>> secondaryTemplate;
+
+	ConfigProperties config = new ConfigProperties();
+	KafkaClusters clusters;
+
+	@BeforeEach
+	public void setup() {
+		config.setKafkaFailoverThreshold(2);
+		config.setKafkaFailbackInterval(50);
+		LinkedHashMap<String, KafkaTemplate<String, TraceableMessage<TransferFulfillmentMessage>>> templates = new LinkedHashMap<>();
+		templates.put("primary", primaryTemplate);
+		templates.put("secondary", secondaryTemplate);
+		clusters = new KafkaClusters(config, templates);
+	}
+
+	@Test
+	public void test_failoverAndFailback() throws Exception {
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		clusters.bindTo(registry);
+		KafkaClusters.Cluster primary = clusters.getPrimary();
+		assertEquals("primary", clusters.candidates().get(0).getName());
+
+		clusters.recordFailure(primary);
+		assertEquals("primary", clusters.candidates().get(0).getName());
+
+		clusters.recordFailure(primary);
+		assertEquals("secondary", clusters.candidates().get(0).getName());
+		assertEquals("primary", clusters.candidates().get(1).getName());
+		assertEquals(0.0, registry.get("transfer.kafka.cluster.healthy").tag("cluster", "primary").gauge().value());
+
+		// after the failback interval the primary is tried first again, one failure takes it straight back out.
+		Thread.sleep(60);
+		assertEquals("primary", clusters.candidates().get(0).getName());
+		clusters.recordFailure(primary);
+		assertEquals("secondary", clusters.candidates().get(0).getName());
+
+		Thread.sleep(60);
+		clusters.recordSuccess(primary);
+		clusters.recordFailure(primary);
+		assertEquals("primary", clusters.candidates().get(0).getName());
+		assertEquals(1.0, registry.get("transfer.kafka.cluster.healthy").tag("cluster", "primary").gauge().value());
+	}
+}
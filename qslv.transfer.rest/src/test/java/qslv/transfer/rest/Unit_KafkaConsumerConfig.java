@@ -0,0 +1,41 @@
+package qslv.transfer.rest;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+public class Unit_KafkaConsumerConfig {
+
+	@Test
+	public void accountNumberFromKey_plain() {
+		assertEquals("DDDD3456HKWER7890", KafkaConsumerConfig.accountNumberFromKey("DDDD3456HKWER7890"));
+		assertEquals("DDDD3456HKWER7890", KafkaConsumerConfig.accountNumberFromKey("  DDDD3456HKWER7890\n"));
+	}
+
+	@Test
+	public void accountNumberFromKey_changefeed() {
+		// a changefeed keys each row by its primary key as a JSON array
+		assertEquals("DDDD3456HKWER7890", KafkaConsumerConfig.accountNumberFromKey("[\"DDDD3456HKWER7890\"]"));
+		assertEquals("DDDD3456HKWER7890", KafkaConsumerConfig.accountNumberFromKey(" [ \"DDDD3456HKWER7890\" ] "));
+		// composite keys lead with the account number
+		assertEquals("DDDD3456HKWER7890", KafkaConsumerConfig.accountNumberFromKey("[\"DDDD3456HKWER7890\", \"EF\"]"));
+		assertEquals("12345679", KafkaConsumerConfig.accountNumberFromKey("[12345679]"));
+	}
+
+	@Test
+	public void accountNumberFromKey_unreadable() {
+		assertNull(KafkaConsumerConfig.accountNumberFromKey(null));
+		assertNull(KafkaConsumerConfig.accountNumberFromKey("[]"));
+		assertNull(KafkaConsumerConfig.accountNumberFromKey("[\"DDDD3456"));
+		assertNull(KafkaConsumerConfig.accountNumberFromKey("[{\"account_no\": \"DDDD3456HKWER7890\"}]"));
+	}
+
+	@Test
+	public void accountChangeGroupId() {
+		// every instance must see every invalidation, so no two share a group
+		String first = KafkaConsumerConfig.accountChangeGroupId();
+		String second = KafkaConsumerConfig.accountChangeGroupId();
+		assertTrue(first.startsWith("qslv-transfer-rest-"));
+		assertNotEquals(first, second);
+	}
+}
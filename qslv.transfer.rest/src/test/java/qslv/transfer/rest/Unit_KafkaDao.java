@@ -3,15 +3,20 @@ package qslv.transfer.rest;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
 import org.apache.kafka.clients.producer.ProducerRecord;
 import org.apache.kafka.clients.producer.RecordMetadata;
 import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -20,9 +25,12 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.support.SendResult;
+import org.springframework.kafka.KafkaException;
 import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.util.concurrent.SettableListenableFuture;
 import org.springframework.web.server.ResponseStatusException;
 
 import qslv.common.TraceableRequest;
@@ -40,17 +48,33 @@ public class Unit_KafkaDao {
 	KafkaTemplate<String, TraceableMessage<TransferFulfillmentMessage>> kafkaTemplate;
 	@Mock
 	ListenableFuture<SendResult<String, TraceableMessage<TransferFulfillmentMessage>>> future;
+	@Mock
+	KafkaGroupCommit kafkaGroupCommit;
+	@Mock
+	KafkaTemplate<String, TraceableMessage<TransferFulfillmentMessage>> secondaryTemplate;
+	@Mock
+	ListenableFuture<SendResult<String, TraceableMessage<TransferFulfillmentMessage>>> secondaryFuture;
+
+	ExecutorService failoverExecutor = Executors.newCachedThreadPool();
 
 	@BeforeEach
 	public void setup() {
-		dao.setKafkaTemplate(kafkaTemplate);
+		dao.setKafkaFailoverExecutor(failoverExecutor);
+		dao.setKafkaClusters(new KafkaClusters(config, Collections.singletonMap("primary", kafkaTemplate)));
 		dao.setConfig(config);
 		dao.setKafkaTimer(new ElapsedTimeSLILogger(LoggerFactory.getLogger(KafkaDao.class),"AIT","KAFKA"));
+		dao.setKafkaGroupCommit(kafkaGroupCommit);
+		dao.setKafkaCircuitBreaker(new CircuitBreaker("kafka", config, 500));
 		config.setKafkaTransferRequestQueue("sdfsdfsdf");
 		config.setAitid("234234");
 		config.setKafkaTimeout(23423);
 	}
 	
+	@AfterEach
+	public void teardown() {
+		failoverExecutor.shutdownNow();
+	}
+
 	@Test
 	public void test_produceTransferMessage_Success() throws InterruptedException, ExecutionException, TimeoutException {
 		//---------------
@@ -75,6 +99,34 @@ public class Unit_KafkaDao {
 		dao.produceTransferMessage(headers, tfr);
 	}
 
+	@Test
+	public void test_produceTransferMessage_groupCommit() throws InterruptedException, ExecutionException, TimeoutException {
+		config.setKafkaGroupCommit(true);
+		//---------------
+		TraceableMessage<TransferFulfillmentMessage> message = new TraceableMessage<>();
+		message.setPayload(new TransferFulfillmentMessage());
+		
+		//----------------
+		ProducerRecord<String, TraceableMessage<TransferFulfillmentMessage>> producerRecord = new ProducerRecord<>("mockTopicName", message);
+		SendResult<String, TraceableMessage<TransferFulfillmentMessage>> sendResult = new SendResult<String, TraceableMessage<TransferFulfillmentMessage>>(producerRecord, new RecordMetadata(new TopicPartition("mockTopic", 1), 1, 1, 1, 1L, 1, 1));
+		when( future.get(anyLong(), any(TimeUnit.class) ) ).thenReturn(sendResult);
+		when(kafkaGroupCommit.send(anyString(), anyString(), ArgumentMatchers.<TraceableMessage<TransferFulfillmentMessage>>any()))
+			.thenReturn(future);
+
+		// ------------------
+		Map<String, String> headers = new HashMap<String, String>();
+		headers.put(TraceableRequest.BUSINESS_TAXONOMY_ID, "78237492834");
+		headers.put(TraceableRequest.CORRELATION_ID, "234234234234234234");
+		
+		//-----------------------------
+		TransferFulfillmentMessage tfr = new TransferFulfillmentMessage();
+		tfr.setFromAccountNumber("213478234");
+		dao.produceTransferMessage(headers, tfr);
+		
+		verify(kafkaGroupCommit).send(anyString(), eq("213478234"), ArgumentMatchers.<TraceableMessage<TransferFulfillmentMessage>>any());
+		verify(kafkaTemplate, never()).send(anyString(), anyString(), ArgumentMatchers.<TraceableMessage<TransferFulfillmentMessage>>any());
+	}
+
 	@Test
 	public void test_produceTransferMessage_throwsInterrupted() throws InterruptedException, ExecutionException, TimeoutException {
 		//---------------
@@ -149,4 +201,172 @@ public class Unit_KafkaDao {
 			dao.produceTransferMessage(headers, tfr);
 		});
 	}
+
+	@Test
+	public void test_produceTransferMessage_circuitBreakerOpen() throws InterruptedException, ExecutionException, TimeoutException {
+		config.setCircuitBreakerMinimumCalls(1);
+		dao.setKafkaCircuitBreaker(new CircuitBreaker("kafka", config, 500));
+		when( future.get(anyLong(), any(TimeUnit.class) ) ).thenThrow(new TimeoutException());
+		when(kafkaTemplate.send(anyString(), anyString(), ArgumentMatchers.<TraceableMessage<TransferFulfillmentMessage>>any()))
+			.thenReturn(future);
+
+		// ------------------
+		Map<String, String> headers = new HashMap<String, String>();
+		TransferFulfillmentMessage tfr = new TransferFulfillmentMessage();
+		tfr.setFromAccountNumber("213478234");
+
+		//----------------------------- the failure opens the breaker, then kafka is not tried at all
+		ResponseStatusException ex = assertThrows(ResponseStatusException.class, () -> {
+			dao.produceTransferMessage(headers, tfr);
+		});
+		assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, ex.getStatus());
+		assertThrows(CircuitBreakerOpenException.class, () -> {
+			dao.produceTransferMessage(headers, tfr);
+		});
+		ExecutionException async = assertThrows(ExecutionException.class, () -> {
+			dao.produceTransferMessageAsync(headers, tfr).get(1, TimeUnit.SECONDS);
+		});
+		assertTrue(async.getCause() instanceof CircuitBreakerOpenException);
+		verify(kafkaTemplate, times(1)).send(anyString(), anyString(), ArgumentMatchers.<TraceableMessage<TransferFulfillmentMessage>>any());
+	}
+
+	@Test
+	public void test_produceTransferMessageAsync_deadline() throws Exception {
+		SettableListenableFuture<SendResult<String, TraceableMessage<TransferFulfillmentMessage>>> never = new SettableListenableFuture<>();
+		when(kafkaTemplate.send(anyString(), anyString(), ArgumentMatchers.<TraceableMessage<TransferFulfillmentMessage>>any()))
+			.thenReturn(never);
+
+		Map<String, String> headers = new HashMap<String, String>();
+		TransferFulfillmentMessage tfr = new TransferFulfillmentMessage();
+		tfr.setFromAccountNumber("213478234");
+
+		//----------------------------- the caller's deadline, not the kafkaTimeout, ends the wait
+		long start = System.nanoTime();
+		ExecutionException ex = assertThrows(ExecutionException.class, () -> {
+			dao.produceTransferMessageAsync(headers, tfr, Deadline.after(100)).get(5, TimeUnit.SECONDS);
+		});
+		long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		assertTrue(ex.getCause() instanceof DeadlineExceededException);
+		assertTrue(elapsed >= 90 && elapsed < 1000, "gave up at the deadline, took " + elapsed + "ms");
+	}
+
+	@Test
+	public void test_produceTransferMessage_failover() throws InterruptedException, ExecutionException, TimeoutException {
+		config.setKafkaFailoverThreshold(1);
+		LinkedHashMap<String, KafkaTemplate<String, TraceableMessage<TransferFulfillmentMessage>>> templates = new LinkedHashMap<>();
+		templates.put("primary", kafkaTemplate);
+		templates.put("secondary", secondaryTemplate);
+		KafkaClusters clusters = new KafkaClusters(config, templates);
+		dao.setKafkaClusters(clusters);
+
+		//----------------
+		TraceableMessage<TransferFulfillmentMessage> message = new TraceableMessage<>();
+		message.setPayload(new TransferFulfillmentMessage());
+		ProducerRecord<String, TraceableMessage<TransferFulfillmentMessage>> producerRecord = new ProducerRecord<>("mockTopicName", message);
+		SendResult<String, TraceableMessage<TransferFulfillmentMessage>> sendResult = new SendResult<String, TraceableMessage<TransferFulfillmentMessage>>(producerRecord, new RecordMetadata(new TopicPartition("mockTopic", 1), 1, 1, 1, 1L, 1, 1));
+		when( future.get(anyLong(), any(TimeUnit.class) ) ).thenThrow(new TimeoutException());
+		when( secondaryFuture.get(anyLong(), any(TimeUnit.class) ) ).thenReturn(sendResult);
+		when(kafkaTemplate.send(anyString(), anyString(), ArgumentMatchers.<TraceableMessage<TransferFulfillmentMessage>>any()))
+			.thenReturn(future);
+		when(secondaryTemplate.send(anyString(), anyString(), ArgumentMatchers.<TraceableMessage<TransferFulfillmentMessage>>any()))
+			.thenReturn(secondaryFuture);
+
+		// ------------------
+		Map<String, String> headers = new HashMap<String, String>();
+		headers.put(TraceableRequest.BUSINESS_TAXONOMY_ID, "78237492834");
+		headers.put(TraceableRequest.CORRELATION_ID, "234234234234234234");
+		TransferFulfillmentMessage tfr = new TransferFulfillmentMessage();
+		tfr.setFromAccountNumber("213478234");
+
+		//-----------------------------
+		dao.produceTransferMessage(headers, tfr);
+		verify(kafkaTemplate, times(1)).send(anyString(), anyString(), ArgumentMatchers.<TraceableMessage<TransferFulfillmentMessage>>any());
+		verify(secondaryTemplate, times(1)).send(anyString(), anyString(), ArgumentMatchers.<TraceableMessage<TransferFulfillmentMessage>>any());
+		assertFalse(clusters.getPrimary().isHealthy());
+
+		// the unhealthy primary is skipped until the failback interval passes
+		dao.produceTransferMessage(headers, tfr);
+		verify(kafkaTemplate, times(1)).send(anyString(), anyString(), ArgumentMatchers.<TraceableMessage<TransferFulfillmentMessage>>any());
+		verify(secondaryTemplate, times(2)).send(anyString(), anyString(), ArgumentMatchers.<TraceableMessage<TransferFulfillmentMessage>>any());
+	}
+
+	@Test
+	public void test_produceTransferMessageAsync_failover() throws Exception {
+		config.setKafkaTimeout(200);
+		LinkedHashMap<String, KafkaTemplate<String, TraceableMessage<TransferFulfillmentMessage>>> templates = new LinkedHashMap<>();
+		templates.put("primary", kafkaTemplate);
+		templates.put("secondary", secondaryTemplate);
+		dao.setKafkaClusters(new KafkaClusters(config, templates));
+
+		//----------------
+		TraceableMessage<TransferFulfillmentMessage> message = new TraceableMessage<>();
+		message.setPayload(new TransferFulfillmentMessage());
+		ProducerRecord<String, TraceableMessage<TransferFulfillmentMessage>> producerRecord = new ProducerRecord<>("mockTopicName", message);
+		SettableListenableFuture<SendResult<String, TraceableMessage<TransferFulfillmentMessage>>> primary = new SettableListenableFuture<>();
+		SettableListenableFuture<SendResult<String, TraceableMessage<TransferFulfillmentMessage>>> secondary = new SettableListenableFuture<>();
+		secondary.set(new SendResult<>(producerRecord, new RecordMetadata(new TopicPartition("mockTopic", 1), 1, 1, 1, 1L, 1, 1)));
+		when(kafkaTemplate.send(anyString(), anyString(), ArgumentMatchers.<TraceableMessage<TransferFulfillmentMessage>>any()))
+			.thenReturn(primary);
+		when(secondaryTemplate.send(anyString(), anyString(), ArgumentMatchers.<TraceableMessage<TransferFulfillmentMessage>>any()))
+			.thenReturn(secondary);
+
+		// ------------------
+		Map<String, String> headers = new HashMap<String, String>();
+		TransferFulfillmentMessage tfr = new TransferFulfillmentMessage();
+		tfr.setFromAccountNumber("213478234");
+
+		//----------------------------- the primary never acknowledges
+		long start = System.nanoTime();
+		dao.produceTransferMessageAsync(headers, tfr).get(1, TimeUnit.SECONDS);
+		long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		assertTrue(elapsed >= 90 && elapsed < 500, "failover after half the budget, took " + elapsed + "ms");
+		verify(secondaryTemplate).send(anyString(), eq("213478234"), ArgumentMatchers.<TraceableMessage<TransferFulfillmentMessage>>any());
+
+		//----------------------------- both clusters fail
+		when(secondaryTemplate.send(anyString(), anyString(), ArgumentMatchers.<TraceableMessage<TransferFulfillmentMessage>>any()))
+			.thenThrow(new KafkaException("broker down"));
+		ExecutionException ex = assertThrows(ExecutionException.class, () -> {
+			dao.produceTransferMessageAsync(headers, tfr).get(1, TimeUnit.SECONDS);
+		});
+		assertTrue(ex.getCause() instanceof ResponseStatusException);
+	}
+
+	@Test
+	public void test_produceTransferMessageAsync_blockingFailover() throws Exception {
+		config.setKafkaTimeout(200);
+		LinkedHashMap<String, KafkaTemplate<String, TraceableMessage<TransferFulfillmentMessage>>> templates = new LinkedHashMap<>();
+		templates.put("primary", kafkaTemplate);
+		templates.put("secondary", secondaryTemplate);
+		dao.setKafkaClusters(new KafkaClusters(config, templates));
+
+		//----------------
+		TraceableMessage<TransferFulfillmentMessage> message = new TraceableMessage<>();
+		message.setPayload(new TransferFulfillmentMessage());
+		ProducerRecord<String, TraceableMessage<TransferFulfillmentMessage>> producerRecord = new ProducerRecord<>("mockTopicName", message);
+		SettableListenableFuture<SendResult<String, TraceableMessage<TransferFulfillmentMessage>>> never = new SettableListenableFuture<>();
+		SettableListenableFuture<SendResult<String, TraceableMessage<TransferFulfillmentMessage>>> acknowledged = new SettableListenableFuture<>();
+		acknowledged.set(new SendResult<>(producerRecord, new RecordMetadata(new TopicPartition("mockTopic", 1), 1, 1, 1, 1L, 1, 1)));
+		when(kafkaTemplate.send(anyString(), anyString(), ArgumentMatchers.<TraceableMessage<TransferFulfillmentMessage>>any()))
+			.thenReturn(never);
+		// the first failover blocks in send() as on a metadata wait, the second is acknowledged at once
+		when(secondaryTemplate.send(anyString(), anyString(), ArgumentMatchers.<TraceableMessage<TransferFulfillmentMessage>>any()))
+			.thenAnswer(invocation -> {
+				Thread.sleep(1000);
+				return never;
+			})
+			.thenReturn(acknowledged);
+
+		// ------------------
+		Map<String, String> headers = new HashMap<String, String>();
+		TransferFulfillmentMessage tfr = new TransferFulfillmentMessage();
+		tfr.setFromAccountNumber("213478234");
+
+		//----------------------------- the blocked failover does not hold up the next timeout
+		dao.produceTransferMessageAsync(headers, tfr);
+		Thread.sleep(150);
+		long start = System.nanoTime();
+		dao.produceTransferMessageAsync(headers, tfr).get(2, TimeUnit.SECONDS);
+		long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		assertTrue(elapsed < 500, "timed out and failed over in half the budget, took " + elapsed + "ms");
+	}
 }
@@ -0,0 +1,72 @@
+package qslv.transfer.rest;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.util.concurrent.ListenableFuture;
+
+import qslv.common.kafka.TraceableMessage;
+import qslv.transfer.request.TransferFulfillmentMessage;
+
+@ExtendWith(MockitoExtension.class)
+public class Unit_KafkaGroupCommit {
+	@Mock
+	KafkaTemplate<String, TraceableMessage<TransferFulfillmentMessage>> kafkaTemplate;
+	@Mock
+	ListenableFuture<SendResult<String, TraceableMessage<TransferFulfillmentMessage>>> future;
+
+	ConfigProperties config = new ConfigProperties();
+	KafkaGroupCommit groupCommit = new KafkaGroupCommit();
+	TraceableMessage<TransferFulfillmentMessage> message = new TraceableMessage<>();
+
+	@BeforeEach
+	public void setup() {
+		groupCommit.setConfig(config);
+		groupCommit.setKafkaTemplate(kafkaTemplate);
+		groupCommit.init();
+		message.setPayload(new TransferFulfillmentMessage());
+		when(kafkaTemplate.send(anyString(), anyString(), ArgumentMatchers.<TraceableMessage<TransferFulfillmentMessage>>any()))
+			.thenReturn(future);
+	}
+
+	@AfterEach
+	public void teardown() {
+		groupCommit.shutdown();
+	}
+
+	@Test
+	public void test_send_flushOnSize() {
+		config.setKafkaGroupCommitSize(3);
+		config.setKafkaGroupCommitLinger(60000);
+
+		assertSame(future, groupCommit.send("topic", "key1", message));
+		groupCommit.send("topic", "key2", message);
+		verify(kafkaTemplate, after(100).never()).flush();
+
+		groupCommit.send("topic", "key3", message);
+		verify(kafkaTemplate, timeout(1000).times(1)).flush();
+		verify(kafkaTemplate, times(3)).send(anyString(), anyString(), ArgumentMatchers.<TraceableMessage<TransferFulfillmentMessage>>any());
+	}
+
+	@Test
+	public void test_send_flushOnLinger() {
+		config.setKafkaGroupCommitSize(100);
+		config.setKafkaGroupCommitLinger(20);
+
+		groupCommit.send("topic", "key1", message);
+		groupCommit.send("topic", "key2", message);
+		verify(kafkaTemplate, timeout(1000).times(1)).flush();
+
+		groupCommit.send("topic", "key3", message);
+		verify(kafkaTemplate, timeout(1000).times(2)).flush();
+	}
+}
@@ -0,0 +1,127 @@
+package qslv.transfer.rest;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+
+/**
+ * Runs the idempotent producer profile against an embedded broker. Several accounts are produced concurrently
+ * through one producer with small batches and retries enabled, so many requests are in flight per connection.
+ * Each account's records must come back exactly once and in the order they were sent.
+ */
+class Unit_KafkaProducerConfig_idempotentProfile {
+	static final String TOPIC = "online.transfer.requests";
+	static final int ACCOUNTS = 8;
+	static final int MESSAGES_PER_ACCOUNT = 500;
+
+	static EmbeddedKafkaBroker broker;
+
+	@BeforeAll
+	static void startBroker() throws Exception {
+		broker = new EmbeddedKafkaBroker(1, true, 4, TOPIC);
+		broker.afterPropertiesSet();
+	}
+
+	@AfterAll
+	static void stopBroker() {
+		broker.destroy();
+	}
+
+	@Test
+	void test_profile_settings() {
+		Map<String, Object> props = KafkaProducerConfig.applyProducerProfile(KafkaProducerConfig.IDEMPOTENT_PROFILE, 20, new HashMap<>());
+		assertEquals(true, props.get(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG));
+		assertEquals("all", props.get(ProducerConfig.ACKS_CONFIG));
+		assertEquals(KafkaProducerConfig.IDEMPOTENT_MAX_IN_FLIGHT, props.get(ProducerConfig.MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION));
+
+		Map<String, Object> standard = new HashMap<>();
+		standard.put(ProducerConfig.MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION, "1");
+		KafkaProducerConfig.applyProducerProfile(KafkaProducerConfig.STANDARD_PROFILE, 5, standard);
+		assertEquals("1", standard.get(ProducerConfig.MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION));
+
+		assertThrows(IllegalArgumentException.class, () -> {
+			KafkaProducerConfig.applyProducerProfile("bogus", 5, new HashMap<>());
+		});
+	}
+
+	@Test
+	void test_orderedWithoutDuplicates() throws Exception {
+		Map<String, Object> props = new HashMap<>();
+		props.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, broker.getBrokersAsString());
+		props.put(ProducerConfig.RETRY_BACKOFF_MS_CONFIG, 10);
+		props.put(ProducerConfig.LINGER_MS_CONFIG, 1);
+		props.put(ProducerConfig.BATCH_SIZE_CONFIG, 256);
+		KafkaProducerConfig.applyProducerProfile(KafkaProducerConfig.IDEMPOTENT_PROFILE, 5, props);
+
+		ExecutorService executor = Executors.newFixedThreadPool(ACCOUNTS);
+		try (KafkaProducer<String, String> producer = new KafkaProducer<>(props, new StringSerializer(), new StringSerializer())) {
+			List<Future<List<Future<RecordMetadata>>>> senders = new ArrayList<>();
+			for (int account = 0; account < ACCOUNTS; account++) {
+				final String key = "ACCOUNT" + account;
+				senders.add(executor.submit(() -> {
+					List<Future<RecordMetadata>> sends = new ArrayList<>();
+					for (int sequence = 0; sequence < MESSAGES_PER_ACCOUNT; sequence++) {
+						sends.add(producer.send(new ProducerRecord<>(TOPIC, key, Integer.toString(sequence))));
+					}
+					return sends;
+				}));
+			}
+			for (Future<List<Future<RecordMetadata>>> sender : senders) {
+				for (Future<RecordMetadata> send : sender.get(30, TimeUnit.SECONDS)) {
+					send.get(30, TimeUnit.SECONDS);
+				}
+			}
+		} finally {
+			executor.shutdown();
+		}
+
+		Map<String, Object> consumerProps = new HashMap<>();
+		consumerProps.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, broker.getBrokersAsString());
+		consumerProps.put(ConsumerConfig.GROUP_ID_CONFIG, "Unit_KafkaProducerConfig_idempotentProfile");
+		consumerProps.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+		Map<String, List<Integer>> received = new HashMap<>();
+		int total = 0;
+		try (KafkaConsumer<String, String> consumer = new KafkaConsumer<>(consumerProps, new StringDeserializer(), new StringDeserializer())) {
+			consumer.subscribe(Collections.singletonList(TOPIC));
+			long deadline = System.currentTimeMillis() + 30000;
+			while (total < ACCOUNTS * MESSAGES_PER_ACCOUNT && System.currentTimeMillis() < deadline) {
+				for (ConsumerRecord<String, String> record : consumer.poll(Duration.ofMillis(200))) {
+					received.computeIfAbsent(record.key(), key -> new ArrayList<>()).add(Integer.valueOf(record.value()));
+					total++;
+				}
+			}
+		}
+
+		assertEquals(ACCOUNTS, received.size());
+		for (Map.Entry<String, List<Integer>> entry : received.entrySet()) {
+			List<Integer> sequences = entry.getValue();
+			assertEquals(MESSAGES_PER_ACCOUNT, sequences.size(), entry.getKey());
+			for (int sequence = 0; sequence < MESSAGES_PER_ACCOUNT; sequence++) {
+				assertEquals(sequence, sequences.get(sequence).intValue(), entry.getKey());
+			}
+		}
+	}
+}
@@ -0,0 +1,157 @@
+package qslv.transfer.rest;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class Unit_LoadBalancer {
+	static final String URL = "http://reservation.example.com/Reservation?version=1";
+
+	@Test
+	public void test_rewrite() {
+		assertEquals("http://10.0.0.1:8080/Reservation?version=1", LoadBalancer.rewrite(URL, "10.0.0.1:8080"));
+		assertEquals("http://[::1]:8080", LoadBalancer.rewrite("http://host", "[::1]:8080"));
+	}
+
+	@Test
+	public void test_httpsNotBalanced() {
+		LoadBalancer balancer = new LoadBalancer("test", "127.0.0.1:8443", 2, 1000, 1000);
+		balancer.refresh();
+		String https = "https://reservation.example.com/Reservation?version=1";
+		assertEquals(https, balancer.execute(https, target -> target));
+	}
+
+	@Test
+	public void test_disabled() {
+		LoadBalancer balancer = new LoadBalancer("test", "", 2, 1000, 1000);
+		balancer.start(1000);
+		assertFalse(balancer.isEnabled());
+		assertEquals(URL, balancer.execute(URL, target -> target));
+	}
+
+	@Test
+	public void test_avoidsSlowInstance() {
+		LoadBalancer balancer = new LoadBalancer("test", "127.0.0.1:8080, 127.0.0.2:8080", 2, 1000, 1000);
+		balancer.refresh();
+		List<String> targets = new ArrayList<>();
+		for (int call = 0; call < 20; call++) {
+			targets.add(balancer.execute(URL, target -> {
+				if (target.contains("127.0.0.1")) {
+					sleep(20);
+				}
+				return target;
+			}));
+		}
+		for (String target : targets.subList(10, 20)) {
+			assertEquals("http://127.0.0.2:8080/Reservation?version=1", target);
+		}
+	}
+
+	@Test
+	public void test_newInstanceDoesNotHerd() {
+		LoadBalancer balancer = new LoadBalancer("test", "127.0.0.1:8080,127.0.0.2:8080", 2, 1000, 1000);
+		balancer.refresh();
+		LoadBalancer.Instance old = balancer.instances.get(0);
+		old.latency = 5_000_000;
+		// 127.0.0.2 appears on the next refresh, and already has calls outstanding
+		balancer.instances = Collections.singletonList(old);
+		balancer.refresh();
+		LoadBalancer.Instance added = balancer.instances.get(1);
+		assertEquals("127.0.0.2:8080", added.authority);
+		assertEquals(old.latency, added.latency);
+		added.outstanding.set(3);
+		for (int call = 0; call < 20; call++) {
+			assertSame(old, balancer.choose());
+		}
+	}
+
+	@Test
+	public void test_unmeasuredTieGoesToLeastOutstanding() {
+		LoadBalancer balancer = new LoadBalancer("test", "127.0.0.1:8080,127.0.0.2:8080", 2, 1000, 1000);
+		balancer.refresh();
+		balancer.instances.get(0).outstanding.set(3);
+		for (int call = 0; call < 20; call++) {
+			assertSame(balancer.instances.get(1), balancer.choose());
+		}
+	}
+
+	@Test
+	public void test_ejectsFailingInstance() {
+		LoadBalancer balancer = new LoadBalancer("test", "127.0.0.1:8080,127.0.0.2:8080", 2, 60000, 1000);
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		balancer.bindTo(registry);
+		balancer.refresh();
+		int failures = 0;
+		for (int call = 0; call < 20; call++) {
+			try {
+				balancer.execute(URL, target -> {
+					if (target.contains("127.0.0.1")) {
+						throw new ResourceAccessException("connection refused");
+					}
+					return target;
+				});
+			} catch (ResourceAccessException ex) {
+				failures++;
+			}
+		}
+		assertEquals(2, failures);
+		assertEquals(1.0, registry.get("transfer.balancer.ejections").functionCounter().count());
+		assertEquals(1.0, registry.get("transfer.balancer.instances").tag("state", "ejected").gauge().value());
+		assertEquals(1.0, registry.get("transfer.balancer.instances").tag("state", "available").gauge().value());
+	}
+
+	@Test
+	public void test_ejectsRefusingInstanceUnderDeadline() {
+		LoadBalancer balancer = new LoadBalancer("test", "127.0.0.1:8080", 2, 60000, 1000);
+		balancer.refresh();
+		for (int call = 0; call < 2; call++) {
+			assertThrows(ResourceAccessException.class, () -> DeadlineRequestFactory.withTimeout(200, () -> balancer.execute(URL, target -> {
+				throw new ResourceAccessException("I/O error", new ConnectException("Connection refused"));
+			})));
+		}
+		assertTrue(balancer.choose().isEjected(System.nanoTime()));
+	}
+
+	@Test
+	public void test_deadlineTimeoutsDoNotEject() {
+		LoadBalancer balancer = new LoadBalancer("test", "127.0.0.1:8080", 1, 60000, 1000);
+		balancer.refresh();
+		for (int call = 0; call < 3; call++) {
+			assertThrows(ResourceAccessException.class, () -> DeadlineRequestFactory.withTimeout(200, () -> balancer.execute(URL, target -> {
+				throw new ResourceAccessException("I/O error", new SocketTimeoutException("Read timed out"));
+			})));
+		}
+		assertFalse(balancer.choose().isEjected(System.nanoTime()));
+	}
+
+	@Test
+	public void test_clientErrorsDoNotEject() {
+		LoadBalancer balancer = new LoadBalancer("test", "127.0.0.1:8080", 1, 60000, 1000);
+		balancer.refresh();
+		for (int call = 0; call < 3; call++) {
+			assertThrows(HttpClientErrorException.class, () -> balancer.execute(URL, target -> {
+				throw new HttpClientErrorException(HttpStatus.BAD_REQUEST);
+			}));
+		}
+		assertFalse(balancer.choose().isEjected(System.nanoTime()));
+	}
+
+	private static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
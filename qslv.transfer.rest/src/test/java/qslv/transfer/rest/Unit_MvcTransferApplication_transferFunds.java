@@ -4,13 +4,14 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import java.io.UnsupportedEncodingException;
@@ -18,10 +19,10 @@ import java.net.SocketTimeoutException;
 import java.nio.charset.Charset;
 import java.sql.Timestamp;
 import java.time.Instant;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.UUID;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
 import org.apache.kafka.clients.producer.ProducerRecord;
@@ -46,8 +47,9 @@ import org.springframework.jdbc.core.RowMapper;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.support.SendResult;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.ResultMatcher;
-import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.util.concurrent.SettableListenableFuture;
 import org.springframework.web.client.ResourceAccessException;
 import org.springframework.web.client.RestTemplate;
 
@@ -80,6 +82,8 @@ class Unit_MvcTransferApplication_transferFunds {
 	@Autowired
 	JdbcDao jdbcDao;
 	@Autowired
+	AccountCache accountCache;
+	@Autowired
 	KafkaDao kafkaDao;
 	@Autowired
 	ConfigProperties config;
@@ -92,14 +96,14 @@ class Unit_MvcTransferApplication_transferFunds {
 	JdbcTemplate jdbcTemplate;
 	@Mock
 	KafkaTemplate<String, TraceableMessage<TransferFulfillmentMessage>> kafkaTemplate;
-	@Mock
-	ListenableFuture<SendResult<String, TraceableMessage<TransferFulfillmentMessage>>> future;
+	SettableListenableFuture<SendResult<String, TraceableMessage<TransferFulfillmentMessage>>> future = new SettableListenableFuture<>();
 	ObjectMapper mapper = new ObjectMapper();
 
 	@BeforeEach
 	void setup() {
 		jdbcDao.setJdbcTemplate(jdbcTemplate);
-		kafkaDao.setKafkaTemplate(kafkaTemplate);
+		accountCache.invalidateAll();
+		kafkaDao.setKafkaClusters(new KafkaClusters(config, Collections.singletonMap("primary", kafkaTemplate)));
 		restTemplateProxy.setRestTemplate(restTemplate);
 	}
 	
@@ -118,11 +122,10 @@ class Unit_MvcTransferApplication_transferFunds {
 		//--Execute---post transaction
 		execute_post(status().isOk());
 		
-		verify(jdbcTemplate, times(2)).query( eq(JdbcDao.getAccount_sql), ArgumentMatchers.<RowMapper<Account>>any(), anyString() );
+		verify(jdbcTemplate).query( eq(JdbcDao.getAccounts_sql), ArgumentMatchers.<RowMapper<Account>>any(), anyString(), anyString() );
 		verify(restTemplate).exchange(eq(config.getReservationUrl()), eq(HttpMethod.POST), 
 				ArgumentMatchers.<HttpEntity<ReservationRequest>>any(), 
 				ArgumentMatchers.<ParameterizedTypeReference<TimedResponse<ReservationResponse>>>any());
-		verify(future).get(anyLong(), any(TimeUnit.class));
 		verify(kafkaTemplate).send(anyString(), anyString(), ArgumentMatchers.<TraceableMessage<TransferFulfillmentMessage>>any());
 
 		extract_response();
@@ -154,12 +157,12 @@ class Unit_MvcTransferApplication_transferFunds {
 		setup_fromAcct();
 		fromAcct.setAccountLifeCycleStatus("CL");
 		
-		when( jdbcTemplate.query(eq(JdbcDao.getAccount_sql), ArgumentMatchers.<RowMapper<Account>>any(), anyString()) )
+		when( jdbcTemplate.query(eq(JdbcDao.getAccounts_sql), ArgumentMatchers.<RowMapper<Account>>any(), anyString(), anyString()) )
 		.thenReturn(Collections.singletonList(fromAcct));
 		
 		execute_post(status().isUnprocessableEntity());
 		
-		verify(jdbcTemplate).query( eq(JdbcDao.getAccount_sql), ArgumentMatchers.<RowMapper<Account>>any(), anyString() );
+		verify(jdbcTemplate).query( eq(JdbcDao.getAccounts_sql), ArgumentMatchers.<RowMapper<Account>>any(), anyString(), anyString() );
 
 	}
 	
@@ -169,24 +172,23 @@ class Unit_MvcTransferApplication_transferFunds {
 		setup_toAcct();
 		toAcct.setAccountLifeCycleStatus("CL");
 		
-		when( jdbcTemplate.query(eq(JdbcDao.getAccount_sql), ArgumentMatchers.<RowMapper<Account>>any(), anyString()) )
-		.thenReturn(Collections.singletonList(fromAcct))
-		.thenReturn(Collections.singletonList(toAcct));
+		when( jdbcTemplate.query(eq(JdbcDao.getAccounts_sql), ArgumentMatchers.<RowMapper<Account>>any(), anyString(), anyString()) )
+		.thenReturn(Arrays.asList(fromAcct, toAcct));
 		
 		execute_post(status().isUnprocessableEntity());
 
-		verify(jdbcTemplate, times(2)).query( eq(JdbcDao.getAccount_sql), ArgumentMatchers.<RowMapper<Account>>any(), anyString() );
+		verify(jdbcTemplate).query( eq(JdbcDao.getAccounts_sql), ArgumentMatchers.<RowMapper<Account>>any(), anyString(), anyString() );
 	}
 	
 	@Test void test_transferFunds_jdbcError() throws Exception {
 		setup_request();
 		
-		when( jdbcTemplate.query(eq(JdbcDao.getAccount_sql), ArgumentMatchers.<RowMapper<Account>>any(), anyString()) )
+		when( jdbcTemplate.query(eq(JdbcDao.getAccounts_sql), ArgumentMatchers.<RowMapper<Account>>any(), anyString(), anyString()) )
 			.thenThrow(new QueryTimeoutException("message"));
 
 		execute_post(status().isInternalServerError());
 		
-		verify(jdbcTemplate).query( eq(JdbcDao.getAccount_sql), ArgumentMatchers.<RowMapper<Account>>any(), anyString() );
+		verify(jdbcTemplate).query( eq(JdbcDao.getAccounts_sql), ArgumentMatchers.<RowMapper<Account>>any(), anyString(), anyString() );
 
 	}
 	
@@ -204,7 +206,7 @@ class Unit_MvcTransferApplication_transferFunds {
 		execute_post(status().isOk());
 		extract_response();
 		
-		verify(jdbcTemplate, times(2)).query( eq(JdbcDao.getAccount_sql), ArgumentMatchers.<RowMapper<Account>>any(), anyString() );
+		verify(jdbcTemplate).query( eq(JdbcDao.getAccounts_sql), ArgumentMatchers.<RowMapper<Account>>any(), anyString(), anyString() );
 		verify(restTemplate).exchange(eq(config.getReservationUrl()), eq(HttpMethod.POST), 
 				ArgumentMatchers.<HttpEntity<ReservationRequest>>any(), 
 				ArgumentMatchers.<ParameterizedTypeReference<TimedResponse<ReservationResponse>>>any());
@@ -231,7 +233,7 @@ class Unit_MvcTransferApplication_transferFunds {
 		
 		execute_post(status().isInternalServerError());
 		
-		verify(jdbcTemplate, times(2)).query( eq(JdbcDao.getAccount_sql), ArgumentMatchers.<RowMapper<Account>>any(), anyString() );
+		verify(jdbcTemplate).query( eq(JdbcDao.getAccounts_sql), ArgumentMatchers.<RowMapper<Account>>any(), anyString(), anyString() );
 		verify(restTemplate, times(3)).exchange(eq(config.getReservationUrl()), eq(HttpMethod.POST), 
 				ArgumentMatchers.<HttpEntity<ReservationRequest>>any(), 
 				ArgumentMatchers.<ParameterizedTypeReference<TimedResponse<TransactionResource>>>any());
@@ -246,14 +248,14 @@ class Unit_MvcTransferApplication_transferFunds {
 		setup_reservation();
 		prepare_restTemplate();
 		
-		when( future.get(anyLong(), any(TimeUnit.class) ) ).thenThrow(new InterruptedException("Mock Interrupted Exception"));
+		future.setException(new InterruptedException("Mock Interrupted Exception"));
 		when(kafkaTemplate.send(anyString(), anyString(), ArgumentMatchers.<TraceableMessage<TransferFulfillmentMessage>>any()))
 			.thenReturn(future);
 		
 		execute_post(status().isInternalServerError());
 		extract_response();
 		
-		verify(jdbcTemplate, times(2)).query( eq(JdbcDao.getAccount_sql), ArgumentMatchers.<RowMapper<Account>>any(), anyString() );
+		verify(jdbcTemplate).query( eq(JdbcDao.getAccounts_sql), ArgumentMatchers.<RowMapper<Account>>any(), anyString(), anyString() );
 		verify(restTemplate).exchange(eq(config.getReservationUrl()), eq(HttpMethod.POST), 
 				ArgumentMatchers.<HttpEntity<ReservationRequest>>any(), 
 				ArgumentMatchers.<ParameterizedTypeReference<TimedResponse<ReservationResponse>>>any());
@@ -295,9 +297,8 @@ class Unit_MvcTransferApplication_transferFunds {
 		toAcct.setAccountNumber(request.getToAccountNumber());
 	}
 	void prepare_jdbcTemplate() {
-		when( jdbcTemplate.query(eq(JdbcDao.getAccount_sql), ArgumentMatchers.<RowMapper<Account>>any(), anyString()) )
-		.thenReturn(Collections.singletonList(fromAcct))
-		.thenReturn(Collections.singletonList(toAcct));
+		when( jdbcTemplate.query(eq(JdbcDao.getAccounts_sql), ArgumentMatchers.<RowMapper<Account>>any(), anyString(), anyString()) )
+		.thenReturn(Arrays.asList(fromAcct, toAcct));
 	}
 	
 	TransactionResource reservationResource = new TransactionResource();
@@ -345,20 +346,23 @@ class Unit_MvcTransferApplication_transferFunds {
 		SendResult<String, TraceableMessage<TransferFulfillmentMessage>> sendResult = 
 				new SendResult<String, TraceableMessage<TransferFulfillmentMessage>>(producerRecord, 
 						new RecordMetadata(new TopicPartition("mockTopic", 1), 1, 1, 1, 1L, 1, 1));
-		when( future.get(anyLong(), any(TimeUnit.class) ) ).thenReturn(sendResult);
+		future.set(sendResult);
 		when(kafkaTemplate.send(anyString(), anyString(), ArgumentMatchers.<TraceableMessage<TransferFulfillmentMessage>>any()))
 			.thenReturn(future);
 	}
 	
 	String postResult;
 	void execute_post(ResultMatcher status) throws UnsupportedEncodingException, Exception {
-		postResult = this.mockMvc.perform(post("/TransferFunds")
+		MvcResult asyncResult = this.mockMvc.perform(post("/TransferFunds")
 				.contentType(APPLICATION_JSON_UTF8)
 				.content(requestJson)
 				.header(TraceableRequest.AIT_ID, "46778")
 				.header(TraceableRequest.BUSINESS_TAXONOMY_ID, "12.35.12.01")
 				.header(TraceableRequest.CORRELATION_ID, "28394-njs78sd78f-23784234")
 				.header(TraceableRequest.ACCEPT_VERSION, TransferFundsRequest.Version1_0))
+				.andExpect(request().asyncStarted())
+				.andReturn();
+		postResult = this.mockMvc.perform(asyncDispatch(asyncResult))
 				.andExpect(status)
 				.andReturn()
 				.getResponse()
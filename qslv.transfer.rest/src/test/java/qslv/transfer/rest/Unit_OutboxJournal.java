@@ -0,0 +1,117 @@
+package qslv.transfer.rest;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class Unit_OutboxJournal {
+	@TempDir
+	Path directory;
+
+	@Test
+	void test_appendReadCommit() throws Exception {
+		try (OutboxJournal journal = OutboxJournal.open(directory, 1024 * 1024)) {
+			for (int i = 0; i < 10; i++) {
+				journal.append(bytes("record" + i));
+			}
+
+			OutboxJournal.Batch first = journal.read(journal.getCheckpoint(), 4);
+			assertEquals(4, first.getRecords().size());
+			assertEquals("record0", string(first.getRecords().get(0)));
+			journal.commit(first.getEnd());
+
+			OutboxJournal.Batch rest = journal.read(journal.getCheckpoint(), 100);
+			assertEquals(6, rest.getRecords().size());
+			assertEquals("record4", string(rest.getRecords().get(0)));
+			assertEquals(journal.getEndPosition(), rest.getEnd());
+		}
+	}
+
+	@Test
+	void test_rollAndDeleteSegments() throws Exception {
+		try (OutboxJournal journal = OutboxJournal.open(directory, 64)) {
+			for (int i = 0; i < 10; i++) {
+				journal.append(bytes("a record of some thirty bytes " + i));
+			}
+			assertEquals(10, journal.getSegmentCount());
+
+			OutboxJournal.Batch batch = journal.read(journal.getCheckpoint(), 100);
+			assertEquals(10, batch.getRecords().size());
+			assertEquals("a record of some thirty bytes 9", string(batch.getRecords().get(9)));
+
+			journal.commit(batch.getEnd());
+			assertEquals(1, journal.getSegmentCount());
+		}
+	}
+
+	@Test
+	void test_recoverCheckpointAndTornTail() throws Exception {
+		long end;
+		try (OutboxJournal journal = OutboxJournal.open(directory, 1024 * 1024)) {
+			journal.append(bytes("relayed"));
+			journal.commit(journal.getEndPosition());
+			journal.append(bytes("pending"));
+			end = journal.getEndPosition();
+		}
+		// a crash half way through the next append
+		Path segment = Files.list(directory).filter(p -> p.toString().endsWith(OutboxJournal.SEGMENT_SUFFIX)).findFirst().get();
+		Files.write(segment, new byte[] {0, 0, 0, 40, 1, 2}, StandardOpenOption.APPEND);
+
+		try (OutboxJournal journal = OutboxJournal.open(directory, 1024 * 1024)) {
+			assertEquals(end, journal.getEndPosition());
+			List<byte[]> records = journal.read(journal.getCheckpoint(), 100).getRecords();
+			assertEquals(1, records.size());
+			assertEquals("pending", string(records.get(0)));
+
+			journal.append(bytes("after restart"));
+			assertEquals(2, journal.read(journal.getCheckpoint(), 100).getRecords().size());
+		}
+	}
+
+	@Test
+	void test_concurrentAppends() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try (OutboxJournal journal = OutboxJournal.open(directory, 4096)) {
+			List<Future<?>> appends = new ArrayList<>();
+			for (int i = 0; i < 400; i++) {
+				final String record = "record" + i;
+				appends.add(executor.submit(() -> {
+					journal.append(bytes(record));
+					return null;
+				}));
+			}
+			for (Future<?> append : appends) {
+				append.get(10, TimeUnit.SECONDS);
+			}
+
+			Set<String> read = journal.read(journal.getCheckpoint(), 1000).getRecords().stream()
+					.map(Unit_OutboxJournal::string).collect(Collectors.toCollection(HashSet::new));
+			assertEquals(400, read.size());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	private static byte[] bytes(String value) {
+		return value.getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static String string(byte[] value) {
+		return new String(value, StandardCharsets.UTF_8);
+	}
+}
@@ -4,13 +4,16 @@ import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
 import java.net.SocketTimeoutException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.ArgumentMatchers;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -92,6 +95,77 @@ class Unit_ReservationDao_recordReservation {
 
 	}
 
+	@Test
+	@SuppressWarnings("unchecked")
+	void test_recordReservation_deadline() {
+		Map<String, String> headers = new HashMap<String, String>();
+		headers.put(TraceableRequest.BUSINESS_TAXONOMY_ID, "78237492834");
+		headers.put(TraceableRequest.CORRELATION_ID, "234234234234234234");
+
+		ReservationRequest request = new ReservationRequest();
+		request.setAccountNumber("237489237492");
+		request.setRequestUuid(UUID.randomUUID());
+		request.setTransactionAmount(-27384);
+
+		ReservationResponse rr = new ReservationResponse(ReservationResponse.SUCCESS, new TransactionResource());
+		ResponseEntity<TimedResponse<ReservationResponse>> response = 
+			new ResponseEntity<TimedResponse<ReservationResponse>>(new TimedResponse<>(rr), HttpStatus.OK);
+		ArgumentCaptor<HttpEntity<ReservationRequest>> entity = ArgumentCaptor.forClass(HttpEntity.class);
+		when(restTemplate.exchange(anyString(), eq(HttpMethod.POST), entity.capture(),
+				ArgumentMatchers.<ParameterizedTypeReference<TimedResponse<ReservationResponse>>>any()))
+			.thenReturn(response);
+
+		//----------------- the remaining budget, no more than restTimeout, is forwarded
+		reservationDao.recordReservation(headers, request, Deadline.after(60000));
+		long forwarded = Long.parseLong(entity.getValue().getHeaders().getFirst(Deadline.HEADER));
+		assertTrue(forwarded <= config.getRestTimeout() && forwarded > 0);
+
+		//----------------- no attempt once the deadline has passed
+		DeadlineExceededException ex = assertThrows(DeadlineExceededException.class, () -> {
+			reservationDao.recordReservation(headers, request, Deadline.after(0));
+		});
+		assertEquals(HttpStatus.GATEWAY_TIMEOUT, ex.getStatus());
+		verify(restTemplate, times(1)).exchange(anyString(), eq(HttpMethod.POST), ArgumentMatchers.<HttpEntity<ReservationRequest>>any(),
+				ArgumentMatchers.<ParameterizedTypeReference<TimedResponse<ReservationResponse>>>any());
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void test_recordReservation_deadlinePerAttempt() {
+		Map<String, String> headers = new HashMap<String, String>();
+		headers.put(TraceableRequest.BUSINESS_TAXONOMY_ID, "78237492834");
+		headers.put(TraceableRequest.CORRELATION_ID, "234234234234234234");
+
+		ReservationRequest request = new ReservationRequest();
+		request.setAccountNumber("237489237492");
+		request.setRequestUuid(UUID.randomUUID());
+		request.setTransactionAmount(-27384);
+
+		ReservationResponse rr = new ReservationResponse(ReservationResponse.SUCCESS, new TransactionResource());
+		ResponseEntity<TimedResponse<ReservationResponse>> response = 
+			new ResponseEntity<TimedResponse<ReservationResponse>>(new TimedResponse<>(rr), HttpStatus.OK);
+		List<String> sent = new ArrayList<>();
+		ArgumentCaptor<HttpEntity<ReservationRequest>> entity = ArgumentCaptor.forClass(HttpEntity.class);
+		when(restTemplate.exchange(anyString(), eq(HttpMethod.POST), entity.capture(),
+				ArgumentMatchers.<ParameterizedTypeReference<TimedResponse<ReservationResponse>>>any()))
+			.thenAnswer(invocation -> {
+				sent.add(invocation.<HttpEntity<ReservationRequest>>getArgument(2).getHeaders().getFirst(Deadline.HEADER));
+				Thread.sleep(20);
+				throw new ResourceAccessException("message", new SocketTimeoutException());
+			})
+			.thenAnswer(invocation -> {
+				sent.add(invocation.<HttpEntity<ReservationRequest>>getArgument(2).getHeaders().getFirst(Deadline.HEADER));
+				return response;
+			});
+
+		//----------------- each attempt forwards its own budget, which the next attempt leaves alone
+		reservationDao.recordReservation(headers, request, Deadline.after(400));
+		assertEquals(2, entity.getAllValues().size());
+		assertTrue(Long.parseLong(sent.get(1)) < Long.parseLong(sent.get(0)));
+		assertEquals(sent.get(0), entity.getAllValues().get(0).getHeaders().getFirst(Deadline.HEADER));
+		assertEquals(sent.get(1), entity.getAllValues().get(1).getHeaders().getFirst(Deadline.HEADER));
+	}
+
 	@Test
 	void test_recordReservation_failsOnce() {
 		
@@ -0,0 +1,75 @@
+package qslv.transfer.rest;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+@ExtendWith(MockitoExtension.class)
+public class Unit_RestTemplateProxy {
+	static final String URL = "http://localhost:9091/reservation";
+
+	@Mock
+	RestTemplate restTemplate;
+
+	ConfigProperties config = new ConfigProperties();
+	CircuitBreaker breaker;
+	RestTemplateProxy proxy = new RestTemplateProxy();
+
+	@BeforeEach
+	public void setup() {
+		config.setRestTimeout(1000);
+		config.setCircuitBreakerWindowSize(10);
+		config.setCircuitBreakerMinimumCalls(4);
+		config.setCircuitBreakerFailureRateThreshold(50);
+		breaker = new CircuitBreaker("test", config, 500);
+		proxy.setConfig(config);
+		proxy.setRestTemplate(restTemplate);
+		proxy.setReservationCircuitBreaker(breaker);
+		proxy.setReservationBalancer(new LoadBalancer("test", "", 2, 1000, 1000));
+	}
+
+	@Test
+	public void test_refusedUnderDeadlineOpensBreaker() {
+		when(restTemplate.exchange(anyString(), eq(HttpMethod.POST), ArgumentMatchers.<HttpEntity<String>>any(), eq(String.class)))
+			.thenThrow(new ResourceAccessException("I/O error", new ConnectException("Connection refused")));
+
+		for (int call = 0; call < 4; call++) {
+			assertThrows(ResourceAccessException.class, () -> DeadlineRequestFactory.withTimeout(200,
+					() -> proxy.exchange(URL, HttpMethod.POST, new HttpEntity<String>("{}"), String.class)));
+		}
+		assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+	}
+
+	@Test
+	public void test_deadlineTimeoutDoesNotCount() {
+		when(restTemplate.exchange(anyString(), eq(HttpMethod.POST), ArgumentMatchers.<HttpEntity<String>>any(), eq(String.class)))
+			.thenThrow(new ResourceAccessException("I/O error", new SocketTimeoutException("Read timed out")));
+
+		// cut short by the caller's deadline
+		for (int call = 0; call < 4; call++) {
+			assertThrows(ResourceAccessException.class, () -> DeadlineRequestFactory.withTimeout(200,
+					() -> proxy.exchange(URL, HttpMethod.POST, new HttpEntity<String>("{}"), String.class)));
+		}
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+		// a deadline longer than restTimeout left the usual timeout in place, so the service was slow
+		for (int call = 0; call < 4; call++) {
+			assertThrows(ResourceAccessException.class, () -> DeadlineRequestFactory.withTimeout(1000,
+					() -> proxy.exchange(URL, HttpMethod.POST, new HttpEntity<String>("{}"), String.class)));
+		}
+		assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+	}
+}
@@ -0,0 +1,78 @@
+package qslv.transfer.rest;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.retry.backoff.NoBackOffPolicy;
+import org.springframework.retry.policy.SimpleRetryPolicy;
+import org.springframework.retry.support.RetryTemplate;
+import org.springframework.web.client.ResourceAccessException;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class Unit_RetryBudget {
+
+	@Test
+	public void test_tokenBucket() {
+		RetryBudget budget = new RetryBudget("test", 10, 2);
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		budget.bindTo(registry);
+
+		// starts full
+		assertTrue(budget.tryRetry());
+		assertTrue(budget.tryRetry());
+		assertFalse(budget.tryRetry());
+
+		// ten calls earn one retry
+		for (int call = 0; call < 9; call++) {
+			budget.deposit();
+		}
+		assertFalse(budget.tryRetry());
+		budget.deposit();
+		assertTrue(budget.tryRetry());
+
+		// never more than the burst
+		for (int call = 0; call < 1000; call++) {
+			budget.deposit();
+		}
+		assertEquals(2.0, budget.getTokens());
+		assertEquals(3.0, registry.get("transfer.retry.budget.retries").tag("name", "test").functionCounter().count());
+		assertEquals(2.0, registry.get("transfer.retry.budget.exhausted").tag("name", "test").functionCounter().count());
+	}
+
+	@Test
+	public void test_retryPolicy() {
+		RetryBudget budget = new RetryBudget("test", 0, 3);
+		RetryTemplate retryTemplate = new RetryTemplate();
+		retryTemplate.setThrowLastExceptionOnExhausted(true);
+		retryTemplate.setBackOffPolicy(new NoBackOffPolicy());
+		retryTemplate.setRetryPolicy(new BudgetedRetryPolicy(new SimpleRetryPolicy(3), budget));
+		AtomicInteger attempts = new AtomicInteger();
+
+		// two retries, paid once each
+		assertThrows(ResourceAccessException.class, () -> retryTemplate.execute(context -> {
+			attempts.incrementAndGet();
+			throw new ResourceAccessException("down");
+		}));
+		assertEquals(3, attempts.get());
+		assertEquals(1.0, budget.getTokens());
+
+		// only one retry left
+		attempts.set(0);
+		assertThrows(ResourceAccessException.class, () -> retryTemplate.execute(context -> {
+			attempts.incrementAndGet();
+			throw new ResourceAccessException("down");
+		}));
+		assertEquals(2, attempts.get());
+
+		// the first attempt is never refused
+		attempts.set(0);
+		assertEquals("ok", retryTemplate.execute(context -> {
+			attempts.incrementAndGet();
+			return "ok";
+		}));
+		assertEquals(1, attempts.get());
+	}
+}
@@ -8,10 +8,14 @@ import java.sql.Timestamp;
 import java.time.Instant;
 import java.util.HashMap;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.HttpStatus;
@@ -41,7 +45,7 @@ class Unit_TransferController_postTransferFunds {
 	}
 
 	@Test
-	void test_postTransferFunds_success() {
+	void test_postTransferFunds_success() throws Exception {
 		//-- Prepare ------------------
 		HashMap<String, String> headers = new HashMap<String, String>();
 		headers.put(TraceableRequest.AIT_ID, "12345");
@@ -73,13 +77,13 @@ class Unit_TransferController_postTransferFunds {
 		trans.setTransactionTypeCode(TransactionResource.RESERVATION);
 		setupResponse.setReservation(trans);
 
-		when(transferService.transferFunds(any(), any())).thenReturn(setupResponse);
+		when(transferService.transferFundsAsync(any(), any(), any(), any())).thenReturn(CompletableFuture.completedFuture(setupResponse));
 		
 		//- Execute --------------------------
-		ResponseEntity<TimedResponse<TransferFundsResponse>> httpResponse = controller.postTransferFunds(headers, request);
+		ResponseEntity<TimedResponse<TransferFundsResponse>> httpResponse = controller.postTransferFunds(headers, request).get();
 
 		//- Verify --------------------------
-		verify(transferService).transferFunds(any(), any());
+		verify(transferService).transferFundsAsync(any(), any(), any(), any());
 		assertEquals (HttpStatus.OK, httpResponse.getStatusCode());
 		assertTrue(httpResponse.hasBody());
 		
@@ -88,6 +92,78 @@ class Unit_TransferController_postTransferFunds {
 		
 		TransferFundsResponse tfr = ttr.getPayload();
 		assertSame(setupResponse, tfr);
+		assertTrue(ttr.getServiceElapsedTime() > 0);
+		assertFalse(httpResponse.getHeaders().containsKey(ServerTiming.HEADER));
+	}
+
+	@Test
+	void test_postTransferFunds_serverTiming() throws Exception {
+		config.setServerTimingHeader(true);
+		HashMap<String, String> headers = new HashMap<String, String>();
+		headers.put(TraceableRequest.AIT_ID, "12345");
+		headers.put(TraceableRequest.BUSINESS_TAXONOMY_ID, "7483495");
+		headers.put(TraceableRequest.CORRELATION_ID, "273849273498273498");
+		headers.put(TraceableRequest.ACCEPT_VERSION, TransferFundsRequest.Version1_0);
+
+		TransferFundsRequest request = new TransferFundsRequest();
+		request.setRequestUuid(UUID.randomUUID());
+		request.setFromAccountNumber("1234HHHH1234");
+		request.setToAccountNumber("2738492734982");
+		request.setTransactionAmount(27384L);
+		request.setTransactionJsonMetaData("{}");
+
+		TransferFundsResponse setupResponse = new TransferFundsResponse();
+		setupResponse.setStatus(TransferFundsResponse.SUCCESS);
+		when(transferService.transferFundsAsync(any(), any(), any(), any())).thenAnswer(invocation -> {
+			ServerTiming timing = invocation.getArgument(2);
+			timing.add(TransferMetrics.ACCOUNTS, 2000000L);
+			timing.add(TransferMetrics.RESERVATION, 5500000L);
+			timing.add(TransferMetrics.KAFKA, 3000000L);
+			Thread.sleep(15);
+			return CompletableFuture.completedFuture(setupResponse);
+		});
+
+		ResponseEntity<TimedResponse<TransferFundsResponse>> httpResponse = controller.postTransferFunds(headers, request).get();
+
+		assertTrue(httpResponse.getBody().getServiceElapsedTime() >= 15000000L);
+		String serverTiming = httpResponse.getHeaders().getFirst(ServerTiming.HEADER);
+		assertNotNull(serverTiming);
+		assertTrue(serverTiming.startsWith("db;dur=2.000, reservation;dur=5.500, kafka;dur=3.000, overhead;dur="), serverTiming);
+		assertTrue(serverTiming.contains(", total;dur="), serverTiming);
+	}
+
+	@Test
+	void test_postTransferFunds_limited() throws Exception {
+		config.setTransferLimitEnabled(true);
+		controller.setTransferLimiter(new ConcurrencyLimiter("transfer", 1, 1, 1, 150, 2));
+		HashMap<String, String> headers = new HashMap<String, String>();
+		headers.put(TraceableRequest.AIT_ID, "12345");
+		headers.put(TraceableRequest.BUSINESS_TAXONOMY_ID, "7483495");
+		headers.put(TraceableRequest.CORRELATION_ID, "273849273498273498");
+		headers.put(TraceableRequest.ACCEPT_VERSION, TransferFundsRequest.Version1_0);
+
+		TransferFundsRequest request = new TransferFundsRequest();
+		request.setRequestUuid(UUID.randomUUID());
+		request.setFromAccountNumber("1234HHHH1234");
+		request.setToAccountNumber("2738492734982");
+		request.setTransactionAmount(27384L);
+		request.setTransactionJsonMetaData("{}");
+
+		TransferFundsResponse setupResponse = new TransferFundsResponse();
+		setupResponse.setStatus(TransferFundsResponse.SUCCESS);
+		CompletableFuture<TransferFundsResponse> inProgress = new CompletableFuture<>();
+		when(transferService.transferFundsAsync(any(), any(), any(), any())).thenReturn(inProgress);
+
+		CompletableFuture<ResponseEntity<TimedResponse<TransferFundsResponse>>> first = controller.postTransferFunds(headers, request);
+		LimitExceededException ex = assertThrows(LimitExceededException.class, () -> controller.postTransferFunds(headers, request));
+		assertEquals(HttpStatus.SERVICE_UNAVAILABLE, ex.getStatus());
+		assertEquals("2", ex.getResponseHeaders().getFirst("Retry-After"));
+		verify(transferService, times(1)).transferFundsAsync(any(), any(), any(), any());
+
+		// a completed transfer makes room for the next
+		inProgress.complete(setupResponse);
+		assertEquals(HttpStatus.OK, first.get().getStatusCode());
+		assertEquals(HttpStatus.OK, controller.postTransferFunds(headers, request).get().getStatusCode());
 	}
 
 	@Test
@@ -108,17 +184,19 @@ class Unit_TransferController_postTransferFunds {
 		request.setTransactionAmount(27384L);
 		request.setTransactionJsonMetaData("{}");
 		
-		when(transferService.transferFunds(any(), any()))
-			.thenThrow(new ResponseStatusException(HttpStatus.NOT_ACCEPTABLE, "garbage"));
+		CompletableFuture<TransferFundsResponse> failure = new CompletableFuture<>();
+		failure.completeExceptionally(new CompletionException(new ResponseStatusException(HttpStatus.NOT_ACCEPTABLE, "garbage")));
+		when(transferService.transferFundsAsync(any(), any(), any(), any())).thenReturn(failure);
 
-		ResponseStatusException ex = assertThrows(ResponseStatusException.class, () -> {
-			controller.postTransferFunds(headers, request);
+		ExecutionException ex = assertThrows(ExecutionException.class, () -> {
+			controller.postTransferFunds(headers, request).get();
 		});
-		assertEquals (HttpStatus.NOT_ACCEPTABLE, ex.getStatus());
+		assertTrue (ex.getCause() instanceof ResponseStatusException);
+		assertEquals (HttpStatus.NOT_ACCEPTABLE, ((ResponseStatusException) ex.getCause()).getStatus());
 	}
 	
 	@Test
-	void test_postTransferFunds_kafkaFails() {
+	void test_postTransferFunds_kafkaFails() throws Exception {
 		//-- Prepare ------------------
 		HashMap<String, String> headers = new HashMap<String, String>();
 		headers.put(TraceableRequest.AIT_ID, "12345");
@@ -152,13 +230,15 @@ class Unit_TransferController_postTransferFunds {
 
 		DisruptedProcessingException tfpe = new DisruptedProcessingException(setupResponse, HttpStatus.INTERNAL_SERVER_ERROR, "msg");
 		
-		when(transferService.transferFunds(any(), any())).thenThrow(tfpe);
+		CompletableFuture<TransferFundsResponse> failure = new CompletableFuture<>();
+		failure.completeExceptionally(tfpe);
+		when(transferService.transferFundsAsync(any(), any(), any(), any())).thenReturn(failure);
 		
 		//- Execute --------------------------
-		ResponseEntity<TimedResponse<TransferFundsResponse>> httpResponse = controller.postTransferFunds(headers, request);
+		ResponseEntity<TimedResponse<TransferFundsResponse>> httpResponse = controller.postTransferFunds(headers, request).get();
 
 		//- Verify --------------------------
-		verify(transferService).transferFunds(any(), any());
+		verify(transferService).transferFundsAsync(any(), any(), any(), any());
 		assertEquals (HttpStatus.INTERNAL_SERVER_ERROR, httpResponse.getStatusCode());
 		assertTrue(httpResponse.hasBody());
 		assertSame( setupResponse, httpResponse.getBody().getPayload());
@@ -171,7 +251,7 @@ class Unit_TransferController_postTransferFunds {
 	}
 	
 	@Test
-	void testPostReserveFunds_validateInput() {
+	void testPostReserveFunds_validateInput() throws Exception {
 
 		HashMap<String, String> headers = new HashMap<String, String>();
 		TransferFundsRequest request = new TransferFundsRequest();
@@ -267,13 +347,26 @@ class Unit_TransferController_postTransferFunds {
 		// --- add right version
 		headers.put(TraceableRequest.ACCEPT_VERSION, TransferFundsRequest.Version1_0);
 
+		// --- malformed deadline
+		headers.put(Deadline.HEADER, "soon");
+		ex = assertThrows(ResponseStatusException.class, () -> {
+			controller.postTransferFunds(headers, request);
+		});
+		assertTrue (ex.getStatus() == HttpStatus.BAD_REQUEST);
+		assertTrue (ex.getLocalizedMessage().contains("request-deadline"));
+		headers.put(Deadline.HEADER, "250");
+
 		// --- all clear
 		TransferFundsResponse setupResponse = new TransferFundsResponse();
 		setupResponse.setStatus(TransferFundsResponse.SUCCESS);
-		when(transferService.transferFunds(any(), any())).thenReturn(setupResponse);
+		when(transferService.transferFundsAsync(any(), any(), any(), any())).thenReturn(CompletableFuture.completedFuture(setupResponse));
 		
 		//- Execute --------------------------
-		ResponseEntity<TimedResponse<TransferFundsResponse>> httpResponse = controller.postTransferFunds(headers, request);
+		ResponseEntity<TimedResponse<TransferFundsResponse>> httpResponse = controller.postTransferFunds(headers, request).get();
 		assertTrue( httpResponse.hasBody() );
+		ArgumentCaptor<Deadline> deadline = ArgumentCaptor.forClass(Deadline.class);
+		verify(transferService).transferFundsAsync(any(), any(), any(), deadline.capture());
+		assertTrue( deadline.getValue().isBounded() );
+		assertTrue( deadline.getValue().remainingMillis() <= 250 );
 	}
 }
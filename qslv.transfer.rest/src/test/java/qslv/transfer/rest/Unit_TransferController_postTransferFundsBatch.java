@@ -0,0 +1,206 @@
+package qslv.transfer.rest;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import qslv.common.TraceableRequest;
+import qslv.transfer.request.TransferFundsRequest;
+import qslv.transfer.response.TransferFundsResponse;
+
+@ExtendWith(MockitoExtension.class)
+class Unit_TransferController_postTransferFundsBatch {
+	@Mock
+	public TransferService transferService;
+	public ConfigProperties config = new ConfigProperties();
+
+	TransferController controller = new TransferController();
+	ObjectMapper mapper = new ObjectMapper();
+	ExecutorService batchExecutor = Executors.newSingleThreadExecutor();
+	MockMvc mockMvc;
+
+	@BeforeEach
+	public void setup() {
+		config.setAitid("234234");
+		config.setBatchParallelism(2);
+		controller.setTransferService(transferService);
+		controller.setConfig(config);
+		controller.setObjectMapper(mapper);
+		controller.setBatchExecutor(batchExecutor);
+		mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+	}
+
+	@AfterEach
+	public void teardown() {
+		batchExecutor.shutdownNow();
+	}
+
+	@Test
+	void test_postTransferFundsBatch_ndjson() throws Exception {
+		List<TransferFundsRequest> requests = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			requests.add(setupRequest());
+		}
+		requests.get(3).setTransactionAmount(0L);
+		StringBuilder body = new StringBuilder();
+		for (TransferFundsRequest request : requests) {
+			body.append(mapper.writeValueAsString(request)).append('\n');
+		}
+
+		AtomicInteger inFlight = new AtomicInteger();
+		AtomicInteger maxInFlight = new AtomicInteger();
+		when(transferService.transferFundsAsync(any(), any())).thenAnswer(invocation -> {
+			maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+			return CompletableFuture.supplyAsync(() -> {
+				sleep(20);
+				inFlight.decrementAndGet();
+				TransferFundsResponse response = new TransferFundsResponse();
+				response.setStatus(TransferFundsResponse.SUCCESS);
+				return response;
+			});
+		});
+
+		List<TransferFundsBatchItem> items = perform(body.toString());
+
+		assertEquals(5, items.size());
+		verify(transferService, times(4)).transferFundsAsync(any(), any());
+		assertTrue(maxInFlight.get() <= 2);
+		for (TransferFundsBatchItem item : items) {
+			TransferFundsRequest request = requests.get((int) item.getSequence());
+			assertEquals(request.getRequestUuid(), item.getRequestUuid());
+			if (item.getSequence() == 3) {
+				assertEquals(HttpStatus.BAD_REQUEST.value(), item.getStatus());
+				assertTrue(item.getReason().contains("Transaction Amount"));
+				assertNull(item.getResponse());
+			} else {
+				assertEquals(HttpStatus.OK.value(), item.getStatus());
+				assertEquals(TransferFundsResponse.SUCCESS, item.getResponse().getStatus());
+			}
+		}
+	}
+
+	@Test
+	void test_postTransferFundsBatch_jsonArray() throws Exception {
+		TransferFundsResponse insufficient = new TransferFundsResponse();
+		insufficient.setStatus(TransferFundsResponse.INSUFFICIENT_FUNDS);
+		CompletableFuture<TransferFundsResponse> failed = new CompletableFuture<>();
+		failed.completeExceptionally(new DisruptedProcessingException(insufficient, HttpStatus.INTERNAL_SERVER_ERROR, "Kafka message production failed."));
+		when(transferService.transferFundsAsync(any(), any()))
+			.thenReturn(CompletableFuture.completedFuture(insufficient))
+			.thenReturn(failed);
+
+		List<TransferFundsRequest> requests = new ArrayList<>();
+		requests.add(setupRequest());
+		requests.add(setupRequest());
+		List<TransferFundsBatchItem> items = perform(mapper.writeValueAsString(requests));
+
+		assertEquals(2, items.size());
+		TransferFundsBatchItem first = items.get(0).getSequence() == 0 ? items.get(0) : items.get(1);
+		TransferFundsBatchItem second = items.get(0).getSequence() == 0 ? items.get(1) : items.get(0);
+		assertEquals(HttpStatus.OK.value(), first.getStatus());
+		assertEquals(TransferFundsResponse.INSUFFICIENT_FUNDS, first.getResponse().getStatus());
+		assertEquals(HttpStatus.INTERNAL_SERVER_ERROR.value(), second.getStatus());
+		assertEquals(TransferFundsResponse.INSUFFICIENT_FUNDS, second.getResponse().getStatus());
+	}
+
+	@Test
+	void test_postTransferFundsBatch_malformed() throws Exception {
+		TransferFundsResponse response = new TransferFundsResponse();
+		response.setStatus(TransferFundsResponse.SUCCESS);
+		when(transferService.transferFundsAsync(any(), any())).thenReturn(CompletableFuture.completedFuture(response));
+
+		List<TransferFundsBatchItem> items = perform(mapper.writeValueAsString(setupRequest()) + "\n{\"requestUuid\": ");
+
+		assertEquals(2, items.size());
+		assertEquals(HttpStatus.OK.value(), items.get(0).getStatus());
+		assertEquals(1, items.get(1).getSequence());
+		assertEquals(HttpStatus.BAD_REQUEST.value(), items.get(1).getStatus());
+		assertTrue(items.get(1).getReason().startsWith("Malformed batch."));
+	}
+
+	@Test
+	void test_postTransferFundsBatch_badHeaders() throws Exception {
+		mockMvc.perform(post("/TransferFundsBatch")
+				.header(TraceableRequest.AIT_ID, "12345")
+				.content(mapper.writeValueAsString(setupRequest())))
+			.andExpect(status().isBadRequest());
+		verify(transferService, never()).transferFundsAsync(any(), any());
+	}
+
+	@Test
+	void test_postTransferFundsBatch_saturated() throws Exception {
+		batchExecutor.shutdown();
+		mockMvc.perform(post("/TransferFundsBatch")
+				.header(TraceableRequest.AIT_ID, "12345")
+				.header(TraceableRequest.BUSINESS_TAXONOMY_ID, "7483495")
+				.header(TraceableRequest.CORRELATION_ID, "273849273498273498")
+				.header(TraceableRequest.ACCEPT_VERSION, TransferFundsRequest.Version1_0)
+				.content(mapper.writeValueAsString(setupRequest())))
+			.andExpect(status().isServiceUnavailable());
+	}
+
+	private List<TransferFundsBatchItem> perform(String body) throws Exception {
+		MvcResult result = mockMvc.perform(post("/TransferFundsBatch")
+				.header(TraceableRequest.AIT_ID, "12345")
+				.header(TraceableRequest.BUSINESS_TAXONOMY_ID, "7483495")
+				.header(TraceableRequest.CORRELATION_ID, "273849273498273498")
+				.header(TraceableRequest.ACCEPT_VERSION, TransferFundsRequest.Version1_0)
+				.content(body))
+			.andExpect(request().asyncStarted())
+			.andReturn();
+		result.getAsyncResult(TimeUnit.SECONDS.toMillis(10));
+		mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk());
+
+		assertEquals(TransferController.APPLICATION_NDJSON.toString(), result.getResponse().getContentType());
+		List<TransferFundsBatchItem> items = new ArrayList<>();
+		for (String line : result.getResponse().getContentAsString().split("\n")) {
+			items.add(mapper.readValue(line, TransferFundsBatchItem.class));
+		}
+		return items;
+	}
+
+	private TransferFundsRequest setupRequest() {
+		TransferFundsRequest request = new TransferFundsRequest();
+		request.setRequestUuid(UUID.randomUUID());
+		request.setFromAccountNumber("1234HHHH1234");
+		request.setToAccountNumber("2738492734982");
+		request.setTransactionAmount(27384L);
+		request.setTransactionJsonMetaData("{\"value\": 1}");
+		return request;
+	}
+
+	private static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -8,6 +8,10 @@ import java.sql.Timestamp;
 import java.time.Instant;
 import java.util.HashMap;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -18,7 +22,9 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.server.ResponseStatusException;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import qslv.data.Account;
+import qslv.transaction.request.CancelReservationRequest;
 import qslv.transaction.request.ReservationRequest;
 import qslv.transaction.resource.TransactionResource;
 import qslv.transaction.response.ReservationResponse;
@@ -29,19 +35,39 @@ import qslv.transfer.response.TransferFundsResponse;
 @ExtendWith(MockitoExtension.class)
 class Unit_TransferService_transferFunds {
 	@Mock
-	private JdbcDao jdbcDao;
+	private AccountCache accountCache;
 	@Mock
 	private KafkaDao kafkaDao;
 	@Mock
 	private ReservationDao reservationDao;
+	@Mock
+	private FulfillmentOutbox fulfillmentOutbox;
 
 	TransferService service = new TransferService();
+	ConfigProperties config = new ConfigProperties();
+	IdempotencyStore idempotencyStore = new IdempotencyStore();
+	TransferMetrics transferMetrics = new TransferMetrics();
+	SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
 
 	@BeforeEach
 	public void setup() {
-		service.setJdbcDao(jdbcDao);
+		idempotencyStore.setConfig(new ConfigProperties());
+		idempotencyStore.setMeterRegistry(new SimpleMeterRegistry());
+		idempotencyStore.setTransferExecutor(Runnable::run);
+		idempotencyStore.init();
+		service.setConfig(config);
+		service.setIdempotencyStore(idempotencyStore);
+		service.setFulfillmentOutbox(fulfillmentOutbox);
+		service.setAccountCache(accountCache);
 		service.setKafkaDao(kafkaDao);
 		service.setReservationDao(reservationDao);
+		service.setTransferExecutor(Runnable::run);
+		transferMetrics.setMeterRegistry(meterRegistry);
+		service.setTransferMetrics(transferMetrics);
+	}
+
+	long stageCount(String stage, String outcome) {
+		return meterRegistry.get("transfer.stage").tag("stage", stage).tag("outcome", outcome).timer().count();
 	}
 
 	@Test
@@ -63,7 +89,10 @@ class Unit_TransferService_transferFunds {
 		Account acct2 = new Account();
 		acct2.setAccountLifeCycleStatus("EF");
 		acct2.setAccountNumber(request.getToAccountNumber());
-		when(jdbcDao.getAccount(anyString())).thenReturn(acct1).thenReturn(acct2);
+		HashMap<String, Account> accounts = new HashMap<String, Account>();
+		accounts.put(acct1.getAccountNumber(), acct1);
+		accounts.put(acct2.getAccountNumber(), acct2);
+		when(accountCache.getAccounts(anyString(), anyString(), any())).thenReturn(accounts);
 
 		// --------------
 		ReservationResponse setupResponse = new ReservationResponse(ReservationResponse.SUCCESS, new TransactionResource());
@@ -77,18 +106,22 @@ class Unit_TransferService_transferFunds {
 		setupResponse.getResource().setTransactionAmount(request.getTransactionAmount());
 		setupResponse.getResource().setTransactionMetaDataJson(request.getTransactionJsonMetaData());
 		setupResponse.getResource().setTransactionTypeCode(TransactionResource.RESERVATION);
-		when(reservationDao.recordReservation(any(), any(ReservationRequest.class))).thenReturn(setupResponse);
+		when(reservationDao.recordReservation(any(), any(ReservationRequest.class), any())).thenReturn(setupResponse);
 
 		// ---------------
-		doNothing().when(kafkaDao).produceTransferMessage(any(), any(TransferFulfillmentMessage.class));
+		doNothing().when(kafkaDao).produceTransferMessage(any(), any(TransferFulfillmentMessage.class), any());
 
 		// ---------------
 		TransferFundsResponse response = service.transferFunds(headers, request);
 
-		verify(kafkaDao).produceTransferMessage(any(), any(TransferFulfillmentMessage.class));
-		verify(jdbcDao, times(2)).getAccount(anyString());
+		verify(kafkaDao).produceTransferMessage(any(), any(TransferFulfillmentMessage.class), any());
+		verify(accountCache).getAccounts(anyString(), anyString(), any());
 		ArgumentCaptor<ReservationRequest> trCaptor = ArgumentCaptor.forClass(ReservationRequest.class);
-		verify(reservationDao).recordReservation(any(), trCaptor.capture());
+		verify(reservationDao).recordReservation(any(), trCaptor.capture(), any());
+		assertEquals(1, stageCount(TransferMetrics.ACCOUNTS, TransferMetrics.SUCCESS));
+		assertEquals(1, stageCount(TransferMetrics.RESERVATION, TransferMetrics.SUCCESS));
+		assertEquals(1, stageCount(TransferMetrics.KAFKA, TransferMetrics.SUCCESS));
+		assertEquals(1, stageCount(TransferMetrics.TOTAL, TransferMetrics.SUCCESS));
 		
 		assertEquals(request.getFromAccountNumber(),trCaptor.getValue().getAccountNumber());
 		assertEquals(request.getRequestUuid(),trCaptor.getValue().getRequestUuid());
@@ -125,14 +158,16 @@ class Unit_TransferService_transferFunds {
 		Account acct1 = new Account();
 		acct1.setAccountLifeCycleStatus("CL");
 		acct1.setAccountNumber(request.getFromAccountNumber());
-		when(jdbcDao.getAccount(anyString())).thenReturn(acct1);
+		HashMap<String, Account> accounts = new HashMap<String, Account>();
+		accounts.put(acct1.getAccountNumber(), acct1);
+		when(accountCache.getAccounts(anyString(), anyString(), any())).thenReturn(accounts);
 
 		// ---------------
 		assertThrows(ResponseStatusException.class, () -> {
 			service.transferFunds(headers, request);
 		});
 
-		verify(jdbcDao, times(1)).getAccount(anyString());
+		verify(accountCache).getAccounts(anyString(), anyString(), any());
 	}
 
 	@Test
@@ -154,7 +189,10 @@ class Unit_TransferService_transferFunds {
 		Account acct2 = new Account();
 		acct2.setAccountLifeCycleStatus("CL");
 		acct2.setAccountNumber(request.getToAccountNumber());
-		when(jdbcDao.getAccount(anyString())).thenReturn(acct1).thenReturn(acct2);
+		HashMap<String, Account> accounts = new HashMap<String, Account>();
+		accounts.put(acct1.getAccountNumber(), acct1);
+		accounts.put(acct2.getAccountNumber(), acct2);
+		when(accountCache.getAccounts(anyString(), anyString(), any())).thenReturn(accounts);
 
 		// --------------
 		// ---------------
@@ -162,7 +200,7 @@ class Unit_TransferService_transferFunds {
 			service.transferFunds(headers, request);
 		});
 
-		verify(jdbcDao, times(2)).getAccount(anyString());
+		verify(accountCache).getAccounts(anyString(), anyString(), any());
 	}
 
 	@Test
@@ -183,7 +221,10 @@ class Unit_TransferService_transferFunds {
 		Account acct2 = new Account();
 		acct2.setAccountLifeCycleStatus("EF");
 		acct2.setAccountNumber(request.getToAccountNumber());
-		when(jdbcDao.getAccount(anyString())).thenReturn(acct1).thenReturn(acct2);
+		HashMap<String, Account> accounts = new HashMap<String, Account>();
+		accounts.put(acct1.getAccountNumber(), acct1);
+		accounts.put(acct2.getAccountNumber(), acct2);
+		when(accountCache.getAccounts(anyString(), anyString(), any())).thenReturn(accounts);
 
 		// --------------		
 		ReservationResponse setupResponse = new ReservationResponse(ReservationResponse.INSUFFICIENT_FUNDS, new TransactionResource());
@@ -197,13 +238,13 @@ class Unit_TransferService_transferFunds {
 		setupResponse.getResource().setTransactionAmount(request.getTransactionAmount());
 		setupResponse.getResource().setTransactionMetaDataJson(request.getTransactionJsonMetaData());
 		setupResponse.getResource().setTransactionTypeCode(TransactionResource.REJECTED_TRANSACTION);
-		when(reservationDao.recordReservation(any(), any(ReservationRequest.class))).thenReturn(setupResponse);
+		when(reservationDao.recordReservation(any(), any(ReservationRequest.class), any())).thenReturn(setupResponse);
 
 		// ---------------
 		TransferFundsResponse response = service.transferFunds(headers, request);
 
-		verify(jdbcDao, times(2)).getAccount(anyString());
-		verify(reservationDao).recordReservation(any(), any(ReservationRequest.class));
+		verify(accountCache).getAccounts(anyString(), anyString(), any());
+		verify(reservationDao).recordReservation(any(), any(ReservationRequest.class), any());
 
 		assertEquals(TransferFundsResponse.INSUFFICIENT_FUNDS, response.getStatus());
 		assertEquals(request.getFromAccountNumber(), response.getReservation().getAccountNumber());
@@ -227,10 +268,13 @@ class Unit_TransferService_transferFunds {
 		Account acct2 = new Account();
 		acct2.setAccountLifeCycleStatus("EF");
 		acct2.setAccountNumber(request.getToAccountNumber());
-		when(jdbcDao.getAccount(anyString())).thenReturn(acct1).thenReturn(acct2);
+		HashMap<String, Account> accounts = new HashMap<String, Account>();
+		accounts.put(acct1.getAccountNumber(), acct1);
+		accounts.put(acct2.getAccountNumber(), acct2);
+		when(accountCache.getAccounts(anyString(), anyString(), any())).thenReturn(accounts);
 
 		// --------------
-		when(reservationDao.recordReservation(any(), any(ReservationRequest.class)))
+		when(reservationDao.recordReservation(any(), any(ReservationRequest.class), any()))
 			.thenThrow(new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "test msg"));
 
 		// ---------------
@@ -238,8 +282,8 @@ class Unit_TransferService_transferFunds {
 			service.transferFunds(headers, request);
 		});
 		
-		verify(jdbcDao, times(2)).getAccount(anyString());
-		verify(reservationDao).recordReservation(any(), any(ReservationRequest.class));
+		verify(accountCache).getAccounts(anyString(), anyString(), any());
+		verify(reservationDao).recordReservation(any(), any(ReservationRequest.class), any());
 	}
 
 	@Test
@@ -261,7 +305,10 @@ class Unit_TransferService_transferFunds {
 		Account acct2 = new Account();
 		acct2.setAccountLifeCycleStatus("EF");
 		acct2.setAccountNumber(request.getToAccountNumber());
-		when(jdbcDao.getAccount(anyString())).thenReturn(acct1).thenReturn(acct2);
+		HashMap<String, Account> accounts = new HashMap<String, Account>();
+		accounts.put(acct1.getAccountNumber(), acct1);
+		accounts.put(acct2.getAccountNumber(), acct2);
+		when(accountCache.getAccounts(anyString(), anyString(), any())).thenReturn(accounts);
 
 		// --------------
 		ReservationResponse setupResponse = new ReservationResponse(ReservationResponse.SUCCESS, new TransactionResource());
@@ -275,26 +322,27 @@ class Unit_TransferService_transferFunds {
 		setupResponse.getResource().setTransactionAmount(request.getTransactionAmount());
 		setupResponse.getResource().setTransactionMetaDataJson(request.getTransactionJsonMetaData());
 		setupResponse.getResource().setTransactionTypeCode(TransactionResource.RESERVATION);
-		when(reservationDao.recordReservation(any(), any(ReservationRequest.class))).thenReturn(setupResponse);
+		when(reservationDao.recordReservation(any(), any(ReservationRequest.class), any())).thenReturn(setupResponse);
 
 		// ---------------
 		doThrow(new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "test msg"))
-			.when(kafkaDao).produceTransferMessage(any(), any(TransferFulfillmentMessage.class));
+			.when(kafkaDao).produceTransferMessage(any(), any(TransferFulfillmentMessage.class), any());
 
 		// ---------------
 		DisruptedProcessingException ex = assertThrows(DisruptedProcessingException.class, () -> {
 			service.transferFunds(headers, request);
 		});
-		verify(kafkaDao).produceTransferMessage(any(), any(TransferFulfillmentMessage.class));
-		verify(jdbcDao, times(2)).getAccount(anyString());
-		verify(reservationDao).recordReservation(any(), any(ReservationRequest.class));
+		verify(kafkaDao).produceTransferMessage(any(), any(TransferFulfillmentMessage.class), any());
+		verify(accountCache).getAccounts(anyString(), anyString(), any());
+		verify(reservationDao).recordReservation(any(), any(ReservationRequest.class), any());
 
 		assertTrue( ex.getCause() instanceof ResponseStatusException);
 		assertEquals(TransferFundsResponse.FAILURE, ex.getResponse().getStatus());
 		assertEquals(request.getFromAccountNumber(), ex.getResponse().getReservation().getAccountNumber());
 		assertEquals(TransactionResource.RESERVATION, ex.getResponse().getReservation().getTransactionTypeCode());
 		assertNull(ex.getResponse().getFulfillmentMessage());
-
+		assertEquals(1, stageCount(TransferMetrics.KAFKA, "503"));
+		assertEquals(1, stageCount(TransferMetrics.TOTAL, "503"));
 	}
 
 	@Test
@@ -316,7 +364,10 @@ class Unit_TransferService_transferFunds {
 		Account acct2 = new Account();
 		acct2.setAccountLifeCycleStatus("EF");
 		acct2.setAccountNumber(request.getToAccountNumber());
-		when(jdbcDao.getAccount(anyString())).thenReturn(acct1).thenReturn(acct2);
+		HashMap<String, Account> accounts = new HashMap<String, Account>();
+		accounts.put(acct1.getAccountNumber(), acct1);
+		accounts.put(acct2.getAccountNumber(), acct2);
+		when(accountCache.getAccounts(anyString(), anyString(), any())).thenReturn(accounts);
 
 		// --------------
 		ReservationResponse setupResponse = new ReservationResponse(ReservationResponse.SUCCESS, new TransactionResource());
@@ -330,19 +381,19 @@ class Unit_TransferService_transferFunds {
 		setupResponse.getResource().setTransactionAmount(request.getTransactionAmount());
 		setupResponse.getResource().setTransactionMetaDataJson(request.getTransactionJsonMetaData());
 		setupResponse.getResource().setTransactionTypeCode(TransactionResource.RESERVATION);
-		when(reservationDao.recordReservation(any(), any(ReservationRequest.class))).thenReturn(setupResponse);
+		when(reservationDao.recordReservation(any(), any(ReservationRequest.class), any())).thenReturn(setupResponse);
 
 		// ---------------
 		doThrow(new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "test msg"))
-			.when(kafkaDao).produceTransferMessage(any(), any(TransferFulfillmentMessage.class));
+			.when(kafkaDao).produceTransferMessage(any(), any(TransferFulfillmentMessage.class), any());
 
 		// ---------------
 		DisruptedProcessingException ex = assertThrows(DisruptedProcessingException.class, () -> {
 			service.transferFunds(headers, request);
 		});
-		verify(kafkaDao).produceTransferMessage(any(), any(TransferFulfillmentMessage.class));
-		verify(jdbcDao, times(2)).getAccount(anyString());
-		verify(reservationDao).recordReservation(any(), any(ReservationRequest.class));
+		verify(kafkaDao).produceTransferMessage(any(), any(TransferFulfillmentMessage.class), any());
+		verify(accountCache).getAccounts(anyString(), anyString(), any());
+		verify(reservationDao).recordReservation(any(), any(ReservationRequest.class), any());
 
 		assertTrue( ex.getCause() instanceof ResponseStatusException);
 		assertEquals(TransferFundsResponse.FAILURE, ex.getResponse().getStatus());
@@ -352,4 +403,401 @@ class Unit_TransferService_transferFunds {
 
 	}
 
-}
\ No newline at end of file
+	@Test
+	void test_transferFundsAsync_success() throws Exception {
+
+		HashMap<String, String> headers = new HashMap<String, String>();
+
+		TransferFundsRequest request = new TransferFundsRequest();
+		request.setRequestUuid(UUID.randomUUID());
+		request.setFromAccountNumber("12341234");
+		request.setToAccountNumber("1334124");
+		request.setTransactionAmount(-2345L);
+		request.setTransactionJsonMetaData("{}");
+
+		// --------------
+		Account acct1 = new Account();
+		acct1.setAccountLifeCycleStatus("EF");
+		acct1.setAccountNumber(request.getFromAccountNumber());
+		Account acct2 = new Account();
+		acct2.setAccountLifeCycleStatus("EF");
+		acct2.setAccountNumber(request.getToAccountNumber());
+		HashMap<String, Account> accounts = new HashMap<String, Account>();
+		accounts.put(acct1.getAccountNumber(), acct1);
+		accounts.put(acct2.getAccountNumber(), acct2);
+		when(accountCache.getAccounts(anyString(), anyString(), any())).thenReturn(accounts);
+
+		// --------------
+		ReservationResponse setupResponse = new ReservationResponse(ReservationResponse.SUCCESS, new TransactionResource());
+		setupResponse.getResource().setTransactionUuid(UUID.randomUUID());
+		setupResponse.getResource().setAccountNumber(request.getFromAccountNumber());
+		setupResponse.getResource().setTransactionTypeCode(TransactionResource.RESERVATION);
+		when(reservationDao.recordReservation(any(), any(ReservationRequest.class), any())).thenReturn(setupResponse);
+
+		// ---------------
+		when(kafkaDao.produceTransferMessageAsync(any(), any(TransferFulfillmentMessage.class), any()))
+			.thenReturn(CompletableFuture.completedFuture(null));
+
+		// ---------------
+		TransferFundsResponse response = service.transferFundsAsync(headers, request).get();
+
+		verify(kafkaDao).produceTransferMessageAsync(any(), any(TransferFulfillmentMessage.class), any());
+		verify(kafkaDao, never()).produceTransferMessage(any(), any(TransferFulfillmentMessage.class), any());
+		assertEquals(TransferFundsResponse.SUCCESS, response.getStatus());
+		assertEquals(request.getToAccountNumber(), response.getFulfillmentMessage().getToAccountNumber());
+		assertEquals(setupResponse.getResource().getTransactionUuid(),
+				response.getFulfillmentMessage().getReservationUuid());
+
+		// a client retry is answered from the idempotency store ---------------
+		assertSame(response, service.transferFundsAsync(headers, request).get());
+		verify(accountCache, times(1)).getAccounts(anyString(), anyString(), any());
+		verify(reservationDao, times(1)).recordReservation(any(), any(ReservationRequest.class), any());
+	}
+
+	@Test
+	void test_transferFundsAsync_badToAccount() {
+
+		HashMap<String, String> headers = new HashMap<String, String>();
+
+		TransferFundsRequest request = new TransferFundsRequest();
+		request.setRequestUuid(UUID.randomUUID());
+		request.setFromAccountNumber("12341234");
+		request.setToAccountNumber("1334124");
+		request.setTransactionAmount(-2345L);
+		request.setTransactionJsonMetaData("{}");
+
+		// --------------
+		Account acct1 = new Account();
+		acct1.setAccountLifeCycleStatus("EF");
+		acct1.setAccountNumber(request.getFromAccountNumber());
+		Account acct2 = new Account();
+		acct2.setAccountLifeCycleStatus("CL");
+		acct2.setAccountNumber(request.getToAccountNumber());
+		HashMap<String, Account> accounts = new HashMap<String, Account>();
+		accounts.put(acct1.getAccountNumber(), acct1);
+		accounts.put(acct2.getAccountNumber(), acct2);
+		when(accountCache.getAccounts(anyString(), anyString(), any())).thenReturn(accounts);
+
+		// ---------------
+		ExecutionException ex = assertThrows(ExecutionException.class, () -> {
+			service.transferFundsAsync(headers, request).get();
+		});
+		assertTrue(ex.getCause() instanceof ResponseStatusException);
+		assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, ((ResponseStatusException) ex.getCause()).getStatus());
+		verify(reservationDao, never()).recordReservation(any(), any(ReservationRequest.class), any());
+	}
+
+	@Test
+	void test_transferFundsAsync_deadlineExpired() {
+
+		HashMap<String, String> headers = new HashMap<String, String>();
+
+		TransferFundsRequest request = new TransferFundsRequest();
+		request.setRequestUuid(UUID.randomUUID());
+		request.setFromAccountNumber("12341234");
+		request.setToAccountNumber("1334124");
+		request.setTransactionAmount(-2345L);
+		request.setTransactionJsonMetaData("{}");
+
+		// ---------------
+		ExecutionException ex = assertThrows(ExecutionException.class, () -> {
+			service.transferFundsAsync(headers, request, new ServerTiming(), Deadline.after(0)).get();
+		});
+		assertTrue(ex.getCause() instanceof DeadlineExceededException);
+		assertEquals(HttpStatus.GATEWAY_TIMEOUT, ((ResponseStatusException) ex.getCause()).getStatus());
+		verify(accountCache, never()).getAccounts(anyString(), anyString(), any());
+		verify(reservationDao, never()).recordReservation(any(), any(ReservationRequest.class), any());
+	}
+
+	@Test
+	void test_transferFundsAsync_speculative() throws Exception {
+		config.setSpeculativeReservation(true);
+		HashMap<String, String> headers = new HashMap<String, String>();
+
+		TransferFundsRequest request = new TransferFundsRequest();
+		request.setRequestUuid(UUID.randomUUID());
+		request.setFromAccountNumber("12341234");
+		request.setToAccountNumber("1334124");
+		request.setTransactionAmount(-2345L);
+		request.setTransactionJsonMetaData("{}");
+
+		Account acct1 = new Account();
+		acct1.setAccountLifeCycleStatus("EF");
+		acct1.setAccountNumber(request.getFromAccountNumber());
+		Account acct2 = new Account();
+		acct2.setAccountLifeCycleStatus("EF");
+		acct2.setAccountNumber(request.getToAccountNumber());
+		HashMap<String, Account> accounts = new HashMap<String, Account>();
+		accounts.put(acct1.getAccountNumber(), acct1);
+		accounts.put(acct2.getAccountNumber(), acct2);
+		when(accountCache.getAccounts(anyString(), anyString(), any())).thenReturn(accounts);
+
+		ReservationResponse setupResponse = new ReservationResponse(ReservationResponse.SUCCESS, new TransactionResource());
+		setupResponse.getResource().setTransactionUuid(UUID.randomUUID());
+		setupResponse.getResource().setAccountNumber(request.getFromAccountNumber());
+		when(reservationDao.recordReservation(any(), any(ReservationRequest.class), any())).thenReturn(setupResponse);
+		when(kafkaDao.produceTransferMessageAsync(any(), any(TransferFulfillmentMessage.class), any()))
+			.thenReturn(CompletableFuture.completedFuture(null));
+
+		ServerTiming timing = new ServerTiming();
+		TransferFundsResponse response = service.transferFundsAsync(headers, request, timing, Deadline.NONE).get();
+
+		assertEquals(TransferFundsResponse.SUCCESS, response.getStatus());
+		verify(accountCache).getAccounts(anyString(), anyString(), any());
+		verify(reservationDao).recordReservation(any(), any(ReservationRequest.class), any());
+		verify(reservationDao, never()).cancelReservation(any(), any(CancelReservationRequest.class));
+		// lookup and reservation overlapped, so they are reported together
+		assertTrue(timing.toHeader(timing.getElapsedTime()).startsWith("validate-reserve;dur="));
+	}
+
+	@Test
+	void test_transferFundsAsync_speculative_badToAccount() {
+		config.setSpeculativeReservation(true);
+		HashMap<String, String> headers = new HashMap<String, String>();
+
+		TransferFundsRequest request = new TransferFundsRequest();
+		request.setRequestUuid(UUID.randomUUID());
+		request.setFromAccountNumber("12341234");
+		request.setToAccountNumber("1334124");
+		request.setTransactionAmount(-2345L);
+		request.setTransactionJsonMetaData("{}");
+
+		Account acct1 = new Account();
+		acct1.setAccountLifeCycleStatus("EF");
+		acct1.setAccountNumber(request.getFromAccountNumber());
+		Account acct2 = new Account();
+		acct2.setAccountLifeCycleStatus("CL");
+		acct2.setAccountNumber(request.getToAccountNumber());
+		HashMap<String, Account> accounts = new HashMap<String, Account>();
+		accounts.put(acct1.getAccountNumber(), acct1);
+		accounts.put(acct2.getAccountNumber(), acct2);
+		when(accountCache.getAccounts(anyString(), anyString(), any())).thenReturn(accounts);
+
+		ReservationResponse setupResponse = new ReservationResponse(ReservationResponse.SUCCESS, new TransactionResource());
+		setupResponse.getResource().setTransactionUuid(UUID.randomUUID());
+		setupResponse.getResource().setAccountNumber(request.getFromAccountNumber());
+		when(reservationDao.recordReservation(any(), any(ReservationRequest.class), any())).thenReturn(setupResponse);
+
+		ExecutionException ex = assertThrows(ExecutionException.class, () -> {
+			service.transferFundsAsync(headers, request).get();
+		});
+		assertTrue(ex.getCause() instanceof ResponseStatusException);
+		assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, ((ResponseStatusException) ex.getCause()).getStatus());
+
+		ArgumentCaptor<CancelReservationRequest> cancelCaptor = ArgumentCaptor.forClass(CancelReservationRequest.class);
+		verify(reservationDao).cancelReservation(any(), cancelCaptor.capture());
+		assertEquals(setupResponse.getResource().getTransactionUuid(), cancelCaptor.getValue().getReservationUuid());
+		assertEquals(request.getFromAccountNumber(), cancelCaptor.getValue().getAccountNumber());
+		assertNotEquals(request.getRequestUuid(), cancelCaptor.getValue().getRequestUuid());
+		verify(kafkaDao, never()).produceTransferMessageAsync(any(), any(TransferFulfillmentMessage.class), any());
+		assertEquals(1, stageCount(TransferMetrics.RESERVATION_CANCEL, TransferMetrics.SUCCESS));
+	}
+
+	@Test
+	void test_transferFundsAsync_speculative_cancelRetried() throws Exception {
+		config.setReservationCancelRetryDelay(1);
+		ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+		service.setCancelScheduler(scheduler);
+		try {
+			TransferFundsRequest request = setupSpeculativeBadToAccount();
+			when(reservationDao.cancelReservation(any(), any(CancelReservationRequest.class)))
+				.thenThrow(new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "cancel failed"))
+				.thenReturn(null);
+
+			assertThrows(ExecutionException.class, () -> {
+				service.transferFundsAsync(new HashMap<String, String>(), request).get();
+			});
+
+			verify(reservationDao, timeout(2000).times(2)).cancelReservation(any(), any(CancelReservationRequest.class));
+			Thread.sleep(50);
+			assertEquals(0.0, meterRegistry.counter("transfer.reservation.cancel.failed").count());
+		} finally {
+			scheduler.shutdownNow();
+		}
+	}
+
+	@Test
+	void test_transferFundsAsync_speculative_cancelAbandoned() throws Exception {
+		config.setReservationCancelAttempts(3);
+		config.setReservationCancelRetryDelay(1);
+		ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+		service.setCancelScheduler(scheduler);
+		try {
+			TransferFundsRequest request = setupSpeculativeBadToAccount();
+			when(reservationDao.cancelReservation(any(), any(CancelReservationRequest.class)))
+				.thenThrow(new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "cancel failed"));
+
+			assertThrows(ExecutionException.class, () -> {
+				service.transferFundsAsync(new HashMap<String, String>(), request).get();
+			});
+
+			verify(reservationDao, timeout(2000).times(3)).cancelReservation(any(), any(CancelReservationRequest.class));
+			for (int wait = 0; wait < 100 && meterRegistry.find("transfer.reservation.cancel.failed").counter() == null; wait++) {
+				Thread.sleep(20);
+			}
+			assertEquals(1.0, meterRegistry.get("transfer.reservation.cancel.failed").counter().count());
+			Thread.sleep(50);
+			verify(reservationDao, times(3)).cancelReservation(any(), any(CancelReservationRequest.class));
+		} finally {
+			scheduler.shutdownNow();
+		}
+	}
+
+	@Test
+	void test_transferFundsAsync_speculative_deadlineExceeded() {
+		config.setSpeculativeReservation(true);
+		TransferFundsRequest request = new TransferFundsRequest();
+		request.setRequestUuid(UUID.randomUUID());
+		request.setFromAccountNumber("12341234");
+		request.setToAccountNumber("1334124");
+		request.setTransactionAmount(-2345L);
+
+		ExecutionException ex = assertThrows(ExecutionException.class, () -> {
+			service.transferFundsAsync(new HashMap<String, String>(), request, new ServerTiming(), Deadline.after(0)).get();
+		});
+		assertEquals(HttpStatus.GATEWAY_TIMEOUT, ((ResponseStatusException) ex.getCause()).getStatus());
+		verify(accountCache, never()).getAccounts(anyString(), anyString(), any());
+		verify(reservationDao, never()).recordReservation(any(), any(ReservationRequest.class), any());
+	}
+
+	private TransferFundsRequest setupSpeculativeBadToAccount() {
+		config.setSpeculativeReservation(true);
+		TransferFundsRequest request = new TransferFundsRequest();
+		request.setRequestUuid(UUID.randomUUID());
+		request.setFromAccountNumber("12341234");
+		request.setToAccountNumber("1334124");
+		request.setTransactionAmount(-2345L);
+		request.setTransactionJsonMetaData("{}");
+
+		Account acct1 = new Account();
+		acct1.setAccountLifeCycleStatus("EF");
+		acct1.setAccountNumber(request.getFromAccountNumber());
+		Account acct2 = new Account();
+		acct2.setAccountLifeCycleStatus("CL");
+		acct2.setAccountNumber(request.getToAccountNumber());
+		HashMap<String, Account> accounts = new HashMap<String, Account>();
+		accounts.put(acct1.getAccountNumber(), acct1);
+		accounts.put(acct2.getAccountNumber(), acct2);
+		when(accountCache.getAccounts(anyString(), anyString(), any())).thenReturn(accounts);
+
+		ReservationResponse setupResponse = new ReservationResponse(ReservationResponse.SUCCESS, new TransactionResource());
+		setupResponse.getResource().setTransactionUuid(UUID.randomUUID());
+		setupResponse.getResource().setAccountNumber(request.getFromAccountNumber());
+		when(reservationDao.recordReservation(any(), any(ReservationRequest.class), any())).thenReturn(setupResponse);
+		return request;
+	}
+
+	@Test
+	void test_transferFundsAsync_kafkaFailure() {
+
+		HashMap<String, String> headers = new HashMap<String, String>();
+
+		TransferFundsRequest request = new TransferFundsRequest();
+		request.setRequestUuid(UUID.randomUUID());
+		request.setFromAccountNumber("12341234");
+		request.setToAccountNumber("1334124");
+		request.setTransactionAmount(-2345L);
+		request.setTransactionJsonMetaData("{}");
+
+		// --------------
+		Account acct1 = new Account();
+		acct1.setAccountLifeCycleStatus("EF");
+		acct1.setAccountNumber(request.getFromAccountNumber());
+		Account acct2 = new Account();
+		acct2.setAccountLifeCycleStatus("EF");
+		acct2.setAccountNumber(request.getToAccountNumber());
+		HashMap<String, Account> accounts = new HashMap<String, Account>();
+		accounts.put(acct1.getAccountNumber(), acct1);
+		accounts.put(acct2.getAccountNumber(), acct2);
+		when(accountCache.getAccounts(anyString(), anyString(), any())).thenReturn(accounts);
+
+		// --------------
+		ReservationResponse setupResponse = new ReservationResponse(ReservationResponse.SUCCESS, new TransactionResource());
+		setupResponse.getResource().setTransactionUuid(UUID.randomUUID());
+		setupResponse.getResource().setAccountNumber(request.getFromAccountNumber());
+		setupResponse.getResource().setTransactionTypeCode(TransactionResource.RESERVATION);
+		when(reservationDao.recordReservation(any(), any(ReservationRequest.class), any())).thenReturn(setupResponse);
+
+		// ---------------
+		CompletableFuture<Void> failure = new CompletableFuture<>();
+		failure.completeExceptionally(new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "test msg"));
+		when(kafkaDao.produceTransferMessageAsync(any(), any(TransferFulfillmentMessage.class), any())).thenReturn(failure);
+
+		// ---------------
+		ExecutionException ex = assertThrows(ExecutionException.class, () -> {
+			service.transferFundsAsync(headers, request).get();
+		});
+		assertTrue(ex.getCause() instanceof DisruptedProcessingException);
+		DisruptedProcessingException dpe = (DisruptedProcessingException) ex.getCause();
+		assertEquals(HttpStatus.SERVICE_UNAVAILABLE, dpe.getStatus());
+		assertEquals(TransferFundsResponse.FAILURE, dpe.getResponse().getStatus());
+		assertNull(dpe.getResponse().getFulfillmentMessage());
+		assertEquals(request.getFromAccountNumber(), dpe.getResponse().getReservation().getAccountNumber());
+	}
+
+	@Test
+	void test_transferFundsAsync_outbox() throws Exception {
+
+		HashMap<String, String> headers = new HashMap<String, String>();
+
+		TransferFundsRequest request = new TransferFundsRequest();
+		request.setRequestUuid(UUID.randomUUID());
+		request.setFromAccountNumber("12341234");
+		request.setToAccountNumber("1334124");
+		request.setTransactionAmount(-2345L);
+		request.setTransactionJsonMetaData("{}");
+
+		// --------------
+		Account acct1 = new Account();
+		acct1.setAccountLifeCycleStatus("EF");
+		acct1.setAccountNumber(request.getFromAccountNumber());
+		Account acct2 = new Account();
+		acct2.setAccountLifeCycleStatus("EF");
+		acct2.setAccountNumber(request.getToAccountNumber());
+		HashMap<String, Account> accounts = new HashMap<String, Account>();
+		accounts.put(acct1.getAccountNumber(), acct1);
+		accounts.put(acct2.getAccountNumber(), acct2);
+		when(accountCache.getAccounts(anyString(), anyString(), any())).thenReturn(accounts);
+
+		// --------------
+		ReservationResponse setupResponse = new ReservationResponse(ReservationResponse.SUCCESS, new TransactionResource());
+		setupResponse.getResource().setTransactionUuid(UUID.randomUUID());
+		setupResponse.getResource().setAccountNumber(request.getFromAccountNumber());
+		setupResponse.getResource().setTransactionTypeCode(TransactionResource.RESERVATION);
+		when(reservationDao.recordReservation(any(), any(ReservationRequest.class), any())).thenReturn(setupResponse);
+
+		// ---------------
+		when(fulfillmentOutbox.isEnabled()).thenReturn(true);
+
+		// ---------------
+		TransferFundsResponse response = service.transferFundsAsync(headers, request).get();
+
+		verify(fulfillmentOutbox).append(any(), any(TransferFulfillmentMessage.class));
+		verify(kafkaDao, never()).produceTransferMessageAsync(any(), any(TransferFulfillmentMessage.class), any());
+		assertEquals(TransferFundsResponse.SUCCESS, response.getStatus());
+		assertEquals(setupResponse.getResource().getTransactionUuid(),
+				response.getFulfillmentMessage().getReservationUuid());
+
+		// an outbox failure falls back to kafka ---------------
+		request.setRequestUuid(UUID.randomUUID());
+		doThrow(new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Outbox append failure"))
+			.when(fulfillmentOutbox).append(any(), any(TransferFulfillmentMessage.class));
+		when(kafkaDao.produceTransferMessageAsync(any(), any(TransferFulfillmentMessage.class), any()))
+			.thenReturn(CompletableFuture.completedFuture(null));
+
+		response = service.transferFundsAsync(headers, request).get();
+
+		verify(kafkaDao).produceTransferMessageAsync(any(), any(TransferFulfillmentMessage.class), any());
+		assertEquals(TransferFundsResponse.SUCCESS, response.getStatus());
+
+		// a full outbox is a 503, not a reason to go around it ---------------
+		request.setRequestUuid(UUID.randomUUID());
+		doThrow(new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Outbox full"))
+			.when(fulfillmentOutbox).append(any(), any(TransferFulfillmentMessage.class));
+
+		ExecutionException ex = assertThrows(ExecutionException.class, () -> service.transferFundsAsync(headers, request).get());
+		DisruptedProcessingException dpe = (DisruptedProcessingException) ex.getCause();
+		assertEquals(HttpStatus.SERVICE_UNAVAILABLE, dpe.getStatus());
+		verify(kafkaDao, times(1)).produceTransferMessageAsync(any(), any(TransferFulfillmentMessage.class), any());
+	}
+}